@@ -94,16 +94,6 @@ public PermissionProvider getPermissionProvider() {
         return permissionProvider;
     }
 
-    /**
-     * @return The non-ModuleClassLoader that the module classloader chain is based on
-     */
-    private ClassLoader getBaseClassLoader() {
-        if (getParent() instanceof ModuleClassLoader) {
-            return ((AndroidModuleClassLoader) getParent()).getBaseClassLoader();
-        }
-        return getParent();
-    }
-
     @Override
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
         Class<?> clazz;
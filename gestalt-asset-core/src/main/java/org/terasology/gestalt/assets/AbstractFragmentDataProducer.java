@@ -85,6 +85,15 @@ public ResourceUrn redirect(ResourceUrn urn) {
         return urn;
     }
 
+    /**
+     * When resolving modules from the root asset type, the modules providing a fragment change along with the root asset type's producers, which this producer
+     * cannot observe - so change listeners are only supported when not resolving from the root, as resolution then never changes.
+     */
+    @Override
+    public boolean addChangeListener(Runnable listener) {
+        return !resolveModuleFromRoot;
+    }
+
     @Override
     public Optional<T> getAssetData(ResourceUrn urn) throws IOException {
         Optional<? extends U> rootAsset = assetManager.getAsset(urn.getRootUrn(), rootAssetType);
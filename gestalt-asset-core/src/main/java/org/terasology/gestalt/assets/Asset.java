@@ -167,6 +167,22 @@ protected Optional<? extends Asset<T>> doCreateCopy(ResourceUrn copyUrn, AssetTy
         return Optional.empty();
     }
 
+    /**
+     * @return Whether this asset is an instance that shares the data of its parent, and so does not need to be reloaded alongside it
+     */
+    boolean isSharingParentData() {
+        return false;
+    }
+
+    /**
+     * Called on an instance that shares the data of its parent when a new parent asset has been created for its urn - such as after the previous parent was
+     * disposed - so that the instance follows the new parent.
+     *
+     * @param parent The new parent asset
+     */
+    void shareParentData(Asset<T> parent) {
+    }
+
     /**
      * @return Whether this asset has been disposed
      */
@@ -75,4 +75,25 @@
      */
     Optional<T> getAssetData(ResourceUrn urn) throws IOException;
 
+    /**
+     * Adds a listener to be notified whenever the results of {@link #getModulesProviding(Name)} or {@link #redirect(ResourceUrn)} may have changed. Asset types
+     * only cache resolution and redirection results while all their producers support change listeners, as there is otherwise no way to know when a
+     * cached result has become stale.
+     * <p>
+     * Producers whose resolution and redirection results never change may return true without ever notifying the listener.
+     * </p>
+     *
+     * @param listener The listener to notify of changes
+     * @return Whether the producer supports change listeners. By default it does not.
+     */
+    default boolean addChangeListener(Runnable listener) {
+        return false;
+    }
+
+    /**
+     * @param listener The listener to remove
+     */
+    default void removeChangeListener(Runnable listener) {
+    }
+
 }
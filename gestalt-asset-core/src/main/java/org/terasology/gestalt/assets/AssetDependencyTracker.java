@@ -0,0 +1,244 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * AssetDependencyTracker records which assets are derived from which other assets - such as a fragment asset from its root asset, a prefab from the prefab it
+ * inherits from, or any asset from an asset it was redirected to. This allows the dependents of a changed asset to be reloaded, rather than every asset.
+ * <p>
+ * Dependencies are captured automatically: while an {@link AssetType} is producing the data for an asset, any asset it obtains from an AssetType sharing the same
+ * tracker is recorded as a dependency of the asset being produced. The dependencies of an asset are replaced each time its data is produced.
+ * </p>
+ * <p>
+ * AssetDependencyTracker is thread safe.
+ * </p>
+ */
+@ThreadSafe
+public final class AssetDependencyTracker {
+
+    private final SetMultimap<TrackedAsset, TrackedAsset> dependencies = HashMultimap.create();
+    private final SetMultimap<TrackedAsset, TrackedAsset> dependents = HashMultimap.create();
+
+    /**
+     * The assets being produced on each thread, most recent first. Only set while the thread is producing assets, so threads that only obtain assets leave
+     * nothing behind.
+     */
+    private final ThreadLocal<Deque<TrackedAsset>> producing = new ThreadLocal<>();
+
+    /**
+     * Notifies the tracker that the data of an asset is being produced on the current thread. Its previous dependencies are discarded, and assets obtained
+     * on this thread until {@link #endProduction()} is called are recorded as its dependencies.
+     *
+     * @param assetType The type of the asset being produced
+     * @param urn       The urn of the asset being produced
+     */
+    void beginProduction(AssetType<?, ?> assetType, ResourceUrn urn) {
+        TrackedAsset asset = new TrackedAsset(assetType, urn);
+        synchronized (this) {
+            for (TrackedAsset dependency : dependencies.removeAll(asset)) {
+                dependents.remove(dependency, asset);
+            }
+        }
+        Deque<TrackedAsset> stack = producing.get();
+        if (stack == null) {
+            stack = new ArrayDeque<>();
+            producing.set(stack);
+        }
+        stack.push(asset);
+    }
+
+    /**
+     * Notifies the tracker that production of the most recently begun asset on this thread has finished.
+     */
+    void endProduction() {
+        Deque<TrackedAsset> stack = producing.get();
+        Preconditions.checkState(stack != null, "No asset is being produced on this thread");
+        stack.pop();
+        if (stack.isEmpty()) {
+            producing.remove();
+        }
+    }
+
+    /**
+     * Records that an asset has been obtained. If an asset is being produced on the current thread, the obtained asset is recorded as one of its dependencies.
+     *
+     * @param assetType The type of the obtained asset
+     * @param urn       The urn of the obtained asset
+     */
+    void recordAccess(AssetType<?, ?> assetType, ResourceUrn urn) {
+        Deque<TrackedAsset> stack = producing.get();
+        if (stack != null) {
+            TrackedAsset dependent = stack.peek();
+            TrackedAsset dependency = new TrackedAsset(assetType, urn);
+            if (!dependent.equals(dependency)) {
+                synchronized (this) {
+                    dependencies.put(dependent, dependency);
+                    dependents.put(dependency, dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the dependencies of an asset, such as when it has been disposed. Assets depending on it are retained, so they will still be reloaded if it
+     * changes in the future.
+     *
+     * @param assetType The type of the asset
+     * @param urn       The urn of the asset
+     */
+    synchronized void remove(AssetType<?, ?> assetType, ResourceUrn urn) {
+        TrackedAsset asset = new TrackedAsset(assetType, urn);
+        for (TrackedAsset dependency : dependencies.removeAll(asset)) {
+            dependents.remove(dependency, asset);
+        }
+    }
+
+    /**
+     * @param assetType The type of the asset
+     * @param urn       The urn of the asset
+     * @return The assets the given asset was directly derived from
+     */
+    public synchronized Set<TrackedAsset> getDependencies(AssetType<?, ?> assetType, ResourceUrn urn) {
+        return ImmutableSet.copyOf(dependencies.get(new TrackedAsset(assetType, urn)));
+    }
+
+    /**
+     * @param assetType The type of the asset
+     * @param urn       The urn of the asset
+     * @return All the assets directly or indirectly derived from the given asset, ordered so that each asset comes after the assets it is derived from.
+     */
+    public List<TrackedAsset> getDependents(AssetType<?, ?> assetType, ResourceUrn urn) {
+        return getDependents(ImmutableList.of(new TrackedAsset(assetType, urn)));
+    }
+
+    /**
+     * @param assets The assets to obtain the dependents of
+     * @return All the assets directly or indirectly derived from the given assets, excluding the given assets themselves, ordered so that each asset comes after the
+     * assets it is derived from.
+     */
+    public synchronized List<TrackedAsset> getDependents(Collection<TrackedAsset> assets) {
+        Set<TrackedAsset> visited = Sets.newHashSet(assets);
+        List<TrackedAsset> postOrder = Lists.newArrayList();
+        for (TrackedAsset asset : assets) {
+            for (TrackedAsset dependent : dependents.get(asset)) {
+                visit(dependent, visited, postOrder);
+            }
+        }
+        return Lists.reverse(postOrder);
+    }
+
+    private void visit(TrackedAsset asset, Set<TrackedAsset> visited, List<TrackedAsset> postOrder) {
+        if (visited.add(asset)) {
+            for (TrackedAsset dependent : dependents.get(asset)) {
+                visit(dependent, visited, postOrder);
+            }
+            postOrder.add(asset);
+        }
+    }
+
+    /**
+     * @return Whether an asset is being produced on the current thread
+     */
+    boolean isProducing() {
+        return producing.get() != null;
+    }
+
+    /**
+     * Removes all recorded dependencies
+     */
+    public synchronized void clear() {
+        dependencies.clear();
+        dependents.clear();
+    }
+
+    /**
+     * Identifies an asset tracked by an AssetDependencyTracker.
+     */
+    public static final class TrackedAsset {
+        private final AssetType<?, ?> assetType;
+        private final ResourceUrn urn;
+
+        public TrackedAsset(AssetType<?, ?> assetType, ResourceUrn urn) {
+            Preconditions.checkNotNull(assetType);
+            Preconditions.checkNotNull(urn);
+            this.assetType = assetType;
+            this.urn = urn;
+        }
+
+        /**
+         * @return The type of the asset
+         */
+        public AssetType<?, ?> getAssetType() {
+            return assetType;
+        }
+
+        /**
+         * @return The urn of the asset
+         */
+        public ResourceUrn getUrn() {
+            return urn;
+        }
+
+        /**
+         * Reloads the asset, if it is loaded
+         */
+        public void reload() {
+            if (assetType.isLoaded(urn)) {
+                assetType.reload(urn);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof TrackedAsset) {
+                TrackedAsset other = (TrackedAsset) obj;
+                return assetType == other.assetType && urn.equals(other.urn);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(assetType), urn);
+        }
+
+        @Override
+        public String toString() {
+            return assetType + ":" + urn;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AssetDisposalService disposes garbage collected assets in the background, rather than requiring {@link AssetType#processDisposal()} to be called. A single
+ * background thread waits for assets of all the asset types using the service to be garbage collected, and runs their disposal actions on a provided executor -
+ * which allows disposal actions that must occur on a specific thread to be queued to that thread.
+ * <p>
+ * The service tracks how many disposals are awaiting the executor, and how many have completed, so that disposal backlog can be monitored.
+ * </p>
+ * <p>
+ * When the service is closed, assets already awaiting disposal are passed to the executor. Assets of types that used the service which are collected after
+ * it is closed are disposed by {@link AssetType#processDisposal()}, as are assets created while the service is closed.
+ * </p>
+ * <p>
+ * AssetDisposalService is thread safe.
+ * </p>
+ */
+@ThreadSafe
+public final class AssetDisposalService implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetDisposalService.class);
+    private static final long POLL_MILLIS = 500;
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final Executor disposalExecutor;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong disposedCount = new AtomicLong();
+
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a disposal service that runs disposal actions on its background thread.
+     */
+    public AssetDisposalService() {
+        this(MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Creates a disposal service.
+     *
+     * @param disposalExecutor The executor to run disposal actions on
+     */
+    public AssetDisposalService(Executor disposalExecutor) {
+        Preconditions.checkNotNull(disposalExecutor);
+        this.disposalExecutor = disposalExecutor;
+        this.thread = new Thread(this::processQueue, "Asset Disposal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    ReferenceQueue<Object> getQueue() {
+        return queue;
+    }
+
+    /**
+     * @return The number of garbage collected assets whose disposal is awaiting or running on the executor
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * @return The number of assets disposed by this service
+     */
+    public long getDisposedCount() {
+        return disposedCount.get();
+    }
+
+    /**
+     * @return Whether the service is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops the service. Assets already awaiting disposal are passed to the executor; assets collected after this point are disposed through
+     * {@link AssetType#processDisposal()} instead.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Reference<?> ref = queue.poll();
+        while (ref != null) {
+            dispose((AssetType.AssetReference) ref);
+            ref = queue.poll();
+        }
+    }
+
+    /**
+     * Disposes assets collected since the service was closed, on the calling thread. Does nothing while the service is running.
+     */
+    void processDisposalAfterClose() {
+        if (running) {
+            return;
+        }
+        Reference<?> ref = queue.poll();
+        while (ref != null) {
+            try {
+                ((AssetType.AssetReference) ref).dispose();
+                disposedCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                logger.error("Error disposing asset", e);
+            }
+            ref = queue.poll();
+        }
+    }
+
+    private void processQueue() {
+        while (running) {
+            try {
+                Reference<?> ref = queue.remove(POLL_MILLIS);
+                if (ref != null) {
+                    dispose((AssetType.AssetReference) ref);
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    logger.warn("Asset disposal thread interrupted while running");
+                }
+            }
+        }
+    }
+
+    private void dispose(AssetType.AssetReference ref) {
+        backlog.incrementAndGet();
+        try {
+            disposalExecutor.execute(() -> {
+                try {
+                    ref.dispose();
+                    disposedCount.incrementAndGet();
+                } catch (RuntimeException e) {
+                    logger.error("Error disposing asset", e);
+                } finally {
+                    backlog.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backlog.decrementAndGet();
+            logger.error("Disposal executor rejected asset disposal", e);
+        }
+    }
+}
@@ -20,20 +20,18 @@
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 
 import net.jcip.annotations.ThreadSafe;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terasology.gestalt.assets.metrics.AssetMetrics;
 import org.terasology.gestalt.module.sandbox.API;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.gestalt.util.reflection.GenericsUtil;
@@ -43,7 +41,6 @@
 import java.lang.ref.PhantomReference;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
@@ -53,7 +50,12 @@
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * AssetType manages all assets of a particular type/class.  It provides the ability to resolve and load assets by Urn, and caches assets so that there is only
@@ -71,20 +73,43 @@
 
     private static final Logger logger = LoggerFactory.getLogger(AssetType.class);
 
+    private static final int MAX_RESOLUTION_CACHE_SIZE = 8192;
+
     private final Class<T> assetClass;
     private final Class<U> assetDataClass;
     private final AssetFactory<T, U> factory;
     private final List<AssetDataProducer<U>> producers = Lists.newCopyOnWriteArrayList();
     private final Map<ResourceUrn, T> loadedAssets = new MapMaker().concurrencyLevel(4).makeMap();
-    private final ListMultimap<ResourceUrn, WeakReference<T>> instanceAssets = Multimaps.synchronizedListMultimap(ArrayListMultimap.<ResourceUrn, WeakReference<T>>create());
-
-    // Per-asset locks to deal with situations where multiple threads attempt to obtain or create the same unloaded asset concurrently
-    private final Map<ResourceUrn, ResourceLock> locks = new MapMaker().concurrencyLevel(1).makeMap();
-
-    private final Set<AssetReference<? extends Asset<U>>> references = Sets.newConcurrentHashSet();
-    private final ReferenceQueue<Asset<U>> disposalQueue = new ReferenceQueue<>();
+    // Instances by urn. Each set is weakly keyed by identity, so instances that are no longer referenced drop out without needing disposal
+    private final ConcurrentMap<ResourceUrn, Set<T>> instanceAssets = new ConcurrentHashMap<>();
+
+    // Loads in progress, to deal with situations where multiple threads attempt to obtain or create the same unloaded asset concurrently
+    private final ConcurrentMap<ResourceUrn, CompletableFuture<T>> pendingLoads = new ConcurrentHashMap<>();
+
+    private final Set<AssetReference> references = Sets.newConcurrentHashSet();
+    private final ReferenceQueue<Object> disposalQueue = new ReferenceQueue<>();
+    private volatile AssetDisposalService disposalService;
+    // The number of undisposed assets registered with each disposal service, so that assets collected after a service is closed can still be disposed. A
+    // service is dropped once it is no longer in use and all of its assets have been disposed
+    private final ConcurrentMap<AssetDisposalService, AtomicInteger> usedDisposalServices = new ConcurrentHashMap<>();
+    private volatile AssetMetrics metrics = AssetMetrics.NONE;
+
+    // Cache of partial urn resolution results, by module context then urn string. Cleared whenever the assets available from the producers may have changed,
+    // and only used while every producer can report such changes.
+    private final Map<Name, Map<String, Set<ResourceUrn>>> resolutionCache = new ConcurrentHashMap<>();
+    private final AtomicInteger resolutionCacheSize = new AtomicInteger();
+    // Cache of redirect resolution, and of the loaded asset each requested urn resolves to (after redirects). Cleared along with the resolution cache.
+    private final Map<ResourceUrn, ResourceUrn> redirectCache = new ConcurrentHashMap<>();
+    private final Map<ResourceUrn, T> assetLookupCache = new ConcurrentHashMap<>();
+    // The requested urns cached in the asset lookup cache for each loaded asset, by the asset's urn - so all of an asset's entries can be removed when it is disposed
+    private final Map<ResourceUrn, Set<ResourceUrn>> assetLookupKeys = new ConcurrentHashMap<>();
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    private final Runnable producerChangeListener = this::clearCaches;
+    private final Set<AssetDataProducer<U>> unobservableProducers = Sets.newIdentityHashSet();
+    private volatile boolean cachingEnabled = true;
 
     private volatile boolean closed;
+    private volatile AssetDependencyTracker dependencyTracker;
 
     private volatile ResolutionStrategy resolutionStrategy = (modules, context) -> {
         if (modules.contains(context)) {
@@ -129,17 +154,55 @@ public synchronized void close() {
     }
 
     /**
-     * Disposes any assets queued for disposal. This occurs if an asset is no longer referenced by anything.
+     * Disposes any assets queued for disposal. This occurs if an asset is no longer referenced by anything. Assets created while a disposal service is in use
+     * are disposed by that service instead, unless the service has since been closed.
      */
-    @SuppressWarnings("unchecked")
     public void processDisposal() {
-        Reference<? extends Asset<U>> ref = disposalQueue.poll();
+        Reference<?> ref = disposalQueue.poll();
         while (ref != null) {
-            AssetReference<? extends Asset<U>> assetRef = (AssetReference<? extends Asset<U>>) ref;
-            assetRef.dispose();
-            references.remove(assetRef);
+            ((AssetReference) ref).dispose();
             ref = disposalQueue.poll();
         }
+        for (Map.Entry<AssetDisposalService, AtomicInteger> entry : usedDisposalServices.entrySet()) {
+            AssetDisposalService service = entry.getKey();
+            service.processDisposalAfterClose();
+            if (service != disposalService || !service.isRunning()) {
+                usedDisposalServices.computeIfPresent(service, (k, count) -> (count.get() == 0) ? null : count);
+            }
+        }
+    }
+
+    /**
+     * @return The metrics receiving instrumentation events from this asset type
+     */
+    public AssetMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics The metrics to receive instrumentation events from this asset type. Use {@link AssetMetrics#NONE} to record nothing.
+     */
+    public void setMetrics(AssetMetrics metrics) {
+        Preconditions.checkNotNull(metrics);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The service disposing garbage collected assets of this type in the background, if any.
+     */
+    public Optional<AssetDisposalService> getDisposalService() {
+        return Optional.ofNullable(disposalService);
+    }
+
+    /**
+     * Sets a service to dispose garbage collected assets of this type in the background. Only affects assets created after it is set - assets created before
+     * remain disposed through {@link #processDisposal()} or the previous service. Assets registered with a service that is later closed are disposed through
+     * {@link #processDisposal()} once collected.
+     *
+     * @param disposalService The service to use, or null to dispose through {@link #processDisposal()}
+     */
+    public void setDisposalService(@Nullable AssetDisposalService disposalService) {
+        this.disposalService = disposalService;
     }
 
     /**
@@ -155,11 +218,8 @@ public synchronized boolean isClosed() {
     public synchronized void disposeAll() {
         loadedAssets.values().forEach(T::dispose);
 
-        for (WeakReference<T> assetRef : ImmutableList.copyOf(instanceAssets.values())) {
-            T asset = assetRef.get();
-            if (asset != null) {
-                asset.dispose();
-            }
+        for (Set<T> instances : ImmutableList.copyOf(instanceAssets.values())) {
+            ImmutableList.copyOf(instances).forEach(T::dispose);
         }
         processDisposal();
         if (!loadedAssets.isEmpty()) {
@@ -181,15 +241,11 @@ public synchronized void disposeAll() {
      */
     public void refresh() {
         if (!closed) {
+            clearCaches();
             for (T asset : loadedAssets.values()) {
                 if (!followRedirects(asset.getUrn()).equals(asset.getUrn()) || !reloadFromProducers(asset)) {
                     asset.dispose();
-                    for (WeakReference<T> instanceRef : ImmutableList.copyOf(instanceAssets.get(asset.getUrn().getInstanceUrn()))) {
-                        T instance = instanceRef.get();
-                        if (instance != null) {
-                            instance.dispose();
-                        }
-                    }
+                    getInstances(asset.getUrn().getInstanceUrn()).forEach(T::dispose);
                 }
             }
         }
@@ -216,6 +272,42 @@ public Class<U> getAssetDataClass() {
      */
     public void setResolutionStrategy(ResolutionStrategy strategy) {
         this.resolutionStrategy = strategy;
+        clearCaches();
+    }
+
+    /**
+     * Clears cached resolution and redirect results. This is done automatically when producers are added or removed, and when a producer reports a change
+     * through its change listeners. Results are not cached while any producer does not support change listeners, so this only needs to be called if something
+     * else affecting resolution changes.
+     *
+     * @see AssetDataProducer#addChangeListener(Runnable)
+     */
+    public void clearCaches() {
+        cacheGeneration.incrementAndGet();
+        if (!resolutionCache.isEmpty()) {
+            resolutionCache.clear();
+            resolutionCacheSize.set(0);
+        }
+        redirectCache.clear();
+        assetLookupCache.clear();
+        assetLookupKeys.clear();
+    }
+
+    /**
+     * @return The tracker recording which assets the assets of this type are derived from, if any.
+     */
+    public Optional<AssetDependencyTracker> getDependencyTracker() {
+        return Optional.ofNullable(dependencyTracker);
+    }
+
+    /**
+     * Sets the tracker used to record which assets the assets of this type are derived from. Asset types that share a tracker record dependencies between each
+     * other's assets.
+     *
+     * @param dependencyTracker The tracker to use, or null to not track dependencies
+     */
+    public void setDependencyTracker(@Nullable AssetDependencyTracker dependencyTracker) {
+        this.dependencyTracker = dependencyTracker;
     }
 
     /**
@@ -226,6 +318,11 @@ public void setResolutionStrategy(ResolutionStrategy strategy) {
     public synchronized void addProducer(AssetDataProducer<U> producer) {
         if (!closed) {
             producers.add(producer);
+            if (!producer.addChangeListener(producerChangeListener)) {
+                unobservableProducers.add(producer);
+            }
+            cachingEnabled = unobservableProducers.isEmpty();
+            clearCaches();
         }
     }
 
@@ -241,14 +338,27 @@ public List<AssetDataProducer<U>> getProducers() {
      * @return Whether the producer was removed
      */
     public synchronized boolean removeProducer(AssetDataProducer<U> producer) {
-        return producers.remove(producer);
+        boolean removed = producers.remove(producer);
+        if (removed) {
+            producer.removeChangeListener(producerChangeListener);
+            unobservableProducers.remove(producer);
+            cachingEnabled = unobservableProducers.isEmpty();
+        }
+        clearCaches();
+        return removed;
     }
 
     /**
      * Removes all the AssetDataProducers
      */
     public synchronized void clearProducers() {
+        for (AssetDataProducer<U> producer : producers) {
+            producer.removeChangeListener(producerChangeListener);
+        }
         producers.clear();
+        unobservableProducers.clear();
+        cachingEnabled = true;
+        clearCaches();
     }
 
     /**
@@ -272,10 +382,24 @@ public Optional<T> getAsset(ResourceUrn urn) {
      * @param asset The asset that was disposed.
      */
     void onAssetDisposed(Asset<U> asset) {
+        metrics.onAssetDisposed(this, asset.getUrn());
         if (asset.getUrn().isInstance()) {
-            instanceAssets.get(asset.getUrn()).remove(new WeakReference<>(assetClass.cast(asset)));
+            instanceAssets.computeIfPresent(asset.getUrn(), (urn, instances) -> {
+                instances.remove(assetClass.cast(asset));
+                return instances.isEmpty() ? null : instances;
+            });
         } else {
             loadedAssets.remove(asset.getUrn());
+            Set<ResourceUrn> lookupKeys = assetLookupKeys.remove(asset.getUrn());
+            if (lookupKeys != null) {
+                for (ResourceUrn lookupKey : lookupKeys) {
+                    assetLookupCache.remove(lookupKey, asset);
+                }
+            }
+            AssetDependencyTracker tracker = dependencyTracker;
+            if (tracker != null) {
+                tracker.remove(this, asset.getUrn());
+            }
         }
     }
 
@@ -284,17 +408,48 @@ void onAssetDisposed(Asset<U> asset) {
      *
      * @param asset The asset that was created
      */
-    synchronized void registerAsset(Asset<U> asset, DisposalHook disposer) {
+    void registerAsset(Asset<U> asset, DisposalHook disposer) {
         if (closed) {
             throw new IllegalStateException("Cannot create asset for disposed asset type: " + assetClass);
+        }
+        T typedAsset = assetClass.cast(asset);
+        if (asset.getUrn().isInstance()) {
+            instanceAssets.compute(asset.getUrn(), (urn, instances) -> {
+                Set<T> result = (instances != null) ? instances : Collections.newSetFromMap(new MapMaker().weakKeys().<T, Boolean>makeMap());
+                result.add(typedAsset);
+                return result;
+            });
         } else {
-            if (asset.getUrn().isInstance()) {
-                instanceAssets.put(asset.getUrn(), new WeakReference<>(assetClass.cast(asset)));
-            } else {
-                loadedAssets.put(asset.getUrn(), assetClass.cast(asset));
-            }
-            references.add(new AssetReference<>(asset, disposalQueue, disposer));
+            loadedAssets.put(asset.getUrn(), typedAsset);
+        }
+        if (closed) {
+            // Closed while registering - the asset may have been missed by disposeAll
+            onAssetDisposed(asset);
+            throw new IllegalStateException("Cannot create asset for disposed asset type: " + assetClass);
+        }
+        AssetDisposalService service = disposalService;
+        if (service != null && service.isRunning()) {
+            AtomicInteger serviceCount = usedDisposalServices.compute(service, (k, count) -> {
+                AtomicInteger result = (count == null) ? new AtomicInteger() : count;
+                result.incrementAndGet();
+                return result;
+            });
+            references.add(new AssetReference(asset, service.getQueue(), disposer, references, serviceCount));
+        } else {
+            references.add(new AssetReference(asset, disposalQueue, disposer, references, null));
+        }
+    }
+
+    /**
+     * @param instanceUrn The instance urn to obtain the instances of
+     * @return A snapshot of the live instances with the given urn
+     */
+    private List<T> getInstances(ResourceUrn instanceUrn) {
+        Set<T> instances = instanceAssets.get(instanceUrn);
+        if (instances == null) {
+            return Collections.emptyList();
         }
+        return ImmutableList.copyOf(instances);
     }
 
     /**
@@ -329,11 +484,9 @@ Optional<T> createInstance(Asset<U> asset) {
         if (!result.isPresent()) {
             try {
                 return AccessController.doPrivileged((PrivilegedExceptionAction<Optional<T>>) () -> {
-                    for (AssetDataProducer<U> producer : producers) {
-                        Optional<U> data = producer.getAssetData(asset.getUrn());
-                        if (data.isPresent()) {
-                            return Optional.of(loadAsset(asset.getUrn().getInstanceUrn(), data.get()));
-                        }
+                    Optional<U> data = produceData(asset.getUrn());
+                    if (data.isPresent()) {
+                        return Optional.of(loadAsset(asset.getUrn().getInstanceUrn(), data.get()));
                     }
                     return Optional.ofNullable(assetClass.cast(result.get()));
                 });
@@ -356,11 +509,9 @@ public Optional<T> reload(ResourceUrn urn) {
         ResourceUrn redirectUrn = followRedirects(urn);
         try {
             return AccessController.doPrivileged((PrivilegedExceptionAction<Optional<T>>) () -> {
-                for (AssetDataProducer<U> producer : producers) {
-                    Optional<U> data = producer.getAssetData(redirectUrn);
-                    if (data.isPresent()) {
-                        return Optional.of(loadAsset(redirectUrn, data.get()));
-                    }
+                Optional<U> data = produceData(redirectUrn);
+                if (data.isPresent()) {
+                    return Optional.of(loadAsset(redirectUrn, data.get()));
                 }
                 return Optional.ofNullable(loadedAssets.get(redirectUrn));
             });
@@ -374,6 +525,23 @@ public Optional<T> reload(ResourceUrn urn) {
         return Optional.empty();
     }
 
+    /**
+     * Obtains the data for an asset from the producers, without loading it. This allows the production of asset data (which may involve reading and parsing
+     * files) to occur separately from the update of the asset itself through {@link #loadAsset(ResourceUrn, AssetData)}.
+     *
+     * @param urn The urn of the asset to obtain data for. Must not be an instance urn. Redirects are not followed.
+     * @return The asset data, if any producer can provide it
+     * @throws IOException If there is an error producing the asset data
+     */
+    public Optional<U> getAssetData(ResourceUrn urn) throws IOException {
+        Preconditions.checkArgument(!urn.isInstance(), "Cannot obtain data for an asset instance urn");
+        try {
+            return AccessController.doPrivileged((PrivilegedExceptionAction<Optional<U>>) () -> produceData(urn));
+        } catch (PrivilegedActionException e) {
+            throw new IOException("Failed to produce data for asset '" + urn + "'", e.getCause());
+        }
+    }
+
     /**
      * Obtains a non-instance asset
      *
@@ -381,21 +549,108 @@ public Optional<T> reload(ResourceUrn urn) {
      * @return The asset if available
      */
     private Optional<T> getNormalAsset(ResourceUrn urn) {
+        boolean caching = cachingEnabled;
+        T asset = caching ? assetLookupCache.get(urn) : null;
+        if (asset != null && !asset.isDisposed()) {
+            recordAccess(urn, asset.getUrn());
+            metrics.onLookup(this, true);
+            return Optional.of(asset);
+        }
+        metrics.onLookup(this, false);
+
+        long generation = cacheGeneration.get();
         ResourceUrn redirectUrn = followRedirects(urn);
-        T asset = loadedAssets.get(redirectUrn);
+        recordAccess(urn, redirectUrn);
+        asset = loadedAssets.get(redirectUrn);
         if (asset == null) {
-            return reload(redirectUrn);
+            Optional<T> result = reload(redirectUrn);
+            if (!result.isPresent()) {
+                return result;
+            }
+            asset = result.get();
+        }
+        if (!caching) {
+            return Optional.of(asset);
+        }
+        assetLookupKeys.computeIfAbsent(asset.getUrn(), k -> Sets.newConcurrentHashSet()).add(urn);
+        assetLookupCache.put(urn, asset);
+        if (generation != cacheGeneration.get() || asset.isDisposed()) {
+            // Redirects changed or the asset was disposed while looking it up, so the cached entry may be stale
+            assetLookupCache.remove(urn, asset);
+        }
+        return Optional.of(asset);
+    }
+
+    private void recordAccess(ResourceUrn urn, ResourceUrn redirectUrn) {
+        AssetDependencyTracker tracker = dependencyTracker;
+        if (tracker != null) {
+            tracker.recordAccess(this, urn);
+            if (!redirectUrn.equals(urn)) {
+                tracker.recordAccess(this, redirectUrn);
+            }
+        }
+    }
+
+    /**
+     * Obtains the data for an asset from the first producer that can provide it. If dependencies are being tracked, any assets obtained while producing the data are
+     * recorded as dependencies of the asset.
+     *
+     * @param urn The urn of the asset to produce data for
+     * @return The asset data, if any producer can provide it
+     * @throws IOException If there is an error producing the asset data
+     */
+    private Optional<U> produceData(ResourceUrn urn) throws IOException {
+        AssetDependencyTracker tracker = dependencyTracker;
+        if (tracker != null) {
+            tracker.beginProduction(this, urn);
+        }
+        long startTime = System.nanoTime();
+        boolean found = false;
+        try {
+            for (AssetDataProducer<U> producer : producers) {
+                Optional<U> data = producer.getAssetData(urn);
+                if (data.isPresent()) {
+                    found = true;
+                    return data;
+                }
+            }
+            return Optional.empty();
+        } finally {
+            metrics.onDataProduced(this, urn, System.nanoTime() - startTime, found);
+            if (tracker != null) {
+                tracker.endProduction();
+            }
         }
-        return Optional.ofNullable(asset);
     }
 
     /**
-     * Follows any redirects to determine the actual resource urn to use for a given urn
+     * Follows any redirects to determine the actual resource urn to use for a given urn. Results are cached until the producers change.
      *
      * @param urn The urn to resolve redirects for
      * @return The final urn to use
      */
     private ResourceUrn followRedirects(ResourceUrn urn) {
+        if (!cachingEnabled) {
+            return followRedirectsUncached(urn);
+        }
+        ResourceUrn cached = redirectCache.get(urn);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cacheGeneration.get();
+        ResourceUrn finalUrn = followRedirectsUncached(urn);
+        if (redirectCache.size() >= MAX_RESOLUTION_CACHE_SIZE) {
+            redirectCache.clear();
+        }
+        redirectCache.put(urn, finalUrn);
+        if (generation != cacheGeneration.get()) {
+            // Producers changed while following redirects, so the result may be stale
+            redirectCache.remove(urn, finalUrn);
+        }
+        return finalUrn;
+    }
+
+    private ResourceUrn followRedirectsUncached(ResourceUrn urn) {
         ResourceUrn lastUrn;
         ResourceUrn finalUrn = urn;
         do {
@@ -447,15 +702,41 @@ public Set<ResourceUrn> resolve(String urn) {
     }
 
     /**
-     * Resolves a string urn that may be a full or partial urn, providing the available urns that match
+     * Resolves a string urn that may be a full or partial urn, providing the available urns that match. Results are cached until the producers or the assets they
+     * provide change, if all the producers support change listeners.
      *
      * @param urn           The string to resolve
      * @param moduleContext The context to resolve within
      * @return A set of possible matching urns
      */
     public Set<ResourceUrn> resolve(String urn, Name moduleContext) {
+        if (!cachingEnabled) {
+            return ImmutableSet.copyOf(resolveUncached(urn, moduleContext));
+        }
+        Map<String, Set<ResourceUrn>> contextCache = resolutionCache.get(moduleContext);
+        if (contextCache != null) {
+            Set<ResourceUrn> result = contextCache.get(urn);
+            if (result != null) {
+                return result;
+            }
+        }
+        long generation = cacheGeneration.get();
+        Set<ResourceUrn> result = ImmutableSet.copyOf(resolveUncached(urn, moduleContext));
+        if (resolutionCacheSize.incrementAndGet() > MAX_RESOLUTION_CACHE_SIZE) {
+            clearCaches();
+        } else {
+            resolutionCache.computeIfAbsent(moduleContext, k -> new ConcurrentHashMap<>()).put(urn, result);
+            if (generation != cacheGeneration.get()) {
+                // Cache was invalidated while resolving, so the result may be stale
+                clearCaches();
+            }
+        }
+        return result;
+    }
+
+    private Set<ResourceUrn> resolveUncached(String urn, Name moduleContext) {
         if (ResourceUrn.isValid(urn)) {
-            return ImmutableSet.of(new ResourceUrn(urn));
+            return ImmutableSet.of(ResourceUrn.of(urn));
         }
 
         String urnToResolve = urn;
@@ -467,10 +748,10 @@ public Set<ResourceUrn> resolve(String urn, Name moduleContext) {
         final Name fragmentName;
         final Name resourceName;
         if (fragmentSeparatorIndex != -1) {
-            resourceName = new Name(urnToResolve.substring(0, fragmentSeparatorIndex));
-            fragmentName = new Name(urnToResolve.substring(fragmentSeparatorIndex + 1));
+            resourceName = Name.of(urnToResolve.substring(0, fragmentSeparatorIndex));
+            fragmentName = Name.of(urnToResolve.substring(fragmentSeparatorIndex + 1));
         } else {
-            resourceName = new Name(urnToResolve);
+            resourceName = Name.of(urnToResolve);
             fragmentName = Name.EMPTY;
         }
 
@@ -498,19 +779,15 @@ public ResourceUrn apply(Name input) {
      */
     private boolean reloadFromProducers(Asset<U> asset) {
         try {
-            for (AssetDataProducer<U> producer : producers) {
-                Optional<U> data = producer.getAssetData(asset.getUrn());
-
-                if (data.isPresent()) {
-                    asset.reload(data.get());
-                    for (WeakReference<T> assetInstanceRef : instanceAssets.get(asset.getUrn().getInstanceUrn())) {
-                        T assetInstance = assetInstanceRef.get();
-                        if (assetInstance != null) {
-                            assetInstance.reload(data.get());
-                        }
+            Optional<U> data = produceData(asset.getUrn());
+            if (data.isPresent()) {
+                reloadAsset(asset, data.get());
+                for (T assetInstance : getInstances(asset.getUrn().getInstanceUrn())) {
+                    if (!assetInstance.isSharingParentData()) {
+                        reloadAsset(assetInstance, data.get());
                     }
-                    return true;
                 }
+                return true;
             }
         } catch (IOException e) {
             logger.error("Failed to reload asset '{}', disposing", asset.getUrn());
@@ -527,38 +804,72 @@ private boolean reloadFromProducers(Asset<U> asset) {
      */
     public T loadAsset(ResourceUrn urn, U data) {
         if (urn.isInstance()) {
-            return factory.build(urn, this, data);
+            return build(urn, data);
         } else {
-            T asset = loadedAssets.get(urn);
-            if (asset != null) {
-                asset.reload(data);
-            } else {
-                ResourceLock lock;
-                synchronized (locks) {
-                    lock = locks.computeIfAbsent(urn, k -> new ResourceLock(urn));
+            while (true) {
+                T asset = loadedAssets.get(urn);
+                if (asset != null) {
+                    reloadAsset(asset, data);
+                    return asset;
+                }
+                CompletableFuture<T> load = new CompletableFuture<>();
+                CompletableFuture<T> existingLoad = pendingLoads.putIfAbsent(urn, load);
+                if (existingLoad == null) {
+                    return buildAsset(urn, data, load);
                 }
                 try {
-                    lock.lock();
-                    if (!closed) {
-                        asset = loadedAssets.get(urn);
-                        if (asset == null) {
-                            asset = factory.build(urn, this, data);
-                        } else {
-                            asset.reload(data);
-                        }
-                    }
-                    synchronized (locks) {
-                        if (lock.unlock()) {
-                            locks.remove(urn);
-                        }
-                    }
+                    // Another thread is creating the asset - wait for it, then reload it with this data
+                    existingLoad.get();
                 } catch (InterruptedException e) {
-                    logger.error("Failed to load asset - interrupted awaiting lock on resource {}", urn);
+                    Thread.currentThread().interrupt();
+                    logger.error("Failed to load asset - interrupted awaiting load of resource {}", urn);
+                    return null;
+                } catch (ExecutionException e) {
+                    // The other load failed, so try again
                 }
             }
+        }
+    }
 
+    private T buildAsset(ResourceUrn urn, U data, CompletableFuture<T> load) {
+        try {
+            T asset = null;
+            if (!closed) {
+                asset = loadedAssets.get(urn);
+                if (asset == null) {
+                    asset = build(urn, data);
+                } else {
+                    reloadAsset(asset, data);
+                }
+            }
+            load.complete(asset);
             return asset;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLoads.remove(urn, load);
+        }
+    }
+
+    private T build(ResourceUrn urn, U data) {
+        long startTime = System.nanoTime();
+        T asset = factory.build(urn, this, data);
+        metrics.onAssetBuilt(this, urn, System.nanoTime() - startTime);
+        if (asset != null && !urn.isInstance()) {
+            for (T instance : getInstances(urn.getInstanceUrn())) {
+                if (instance.isSharingParentData()) {
+                    instance.shareParentData(asset);
+                }
+            }
         }
+        return asset;
+    }
+
+    private void reloadAsset(Asset<U> asset, U data) {
+        long startTime = System.nanoTime();
+        asset.reload(data);
+        metrics.onAssetReloaded(this, asset.getUrn(), System.nanoTime() - startTime);
     }
 
     /**
@@ -618,41 +929,28 @@ public String toString() {
     }
 
 
-    private static final class ResourceLock {
-        private final ResourceUrn urn;
-        private final Semaphore semaphore = new Semaphore(1);
-
-        public ResourceLock(ResourceUrn urn) {
-            this.urn = urn;
-        }
-
-        public void lock() throws InterruptedException {
-            semaphore.acquire();
-        }
-
-        public boolean unlock() {
-            boolean lockFinished = !semaphore.hasQueuedThreads();
-            semaphore.release();
-            return lockFinished;
-        }
-
-        @Override
-        public String toString() {
-            return "lock(" + urn + ")";
-        }
-    }
-
-    private static final class AssetReference<T> extends PhantomReference<T> {
+    static final class AssetReference extends PhantomReference<Object> {
 
         private final DisposalHook disposalHook;
+        private final Set<AssetReference> owner;
+        private final AtomicInteger serviceCount;
 
-        public AssetReference(T asset, ReferenceQueue<T> queue, DisposalHook hook) {
+        AssetReference(Object asset, ReferenceQueue<Object> queue, DisposalHook hook, Set<AssetReference> owner, @Nullable AtomicInteger serviceCount) {
             super(asset, queue);
             this.disposalHook = hook;
+            this.owner = owner;
+            this.serviceCount = serviceCount;
         }
 
-        public void dispose() {
-            disposalHook.dispose();
+        void dispose() {
+            try {
+                disposalHook.dispose();
+            } finally {
+                owner.remove(this);
+                if (serviceCount != null) {
+                    serviceCount.decrementAndGet();
+                }
+            }
         }
     }
 }
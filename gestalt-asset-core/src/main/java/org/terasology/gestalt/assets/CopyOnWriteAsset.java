@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets;
+
+import com.google.common.base.Preconditions;
+
+import org.terasology.gestalt.module.sandbox.API;
+
+/**
+ * A base for assets whose instances share their parent's state until they are modified. This suits assets with many instances that are rarely changed - such as
+ * per-entity materials - where giving each instance its own copy of the state would dominate memory use.
+ * <p>
+ * The state of the asset is held in an object of type S, produced from AssetData by {@link #loadState(AssetData)}. The state may be shared between an asset
+ * and its instances, so it must only be modified through {@link #getMutableState()} - never through {@link #getState()}. An instance created through
+ * {@link #CopyOnWriteAsset(ResourceUrn, AssetType, CopyOnWriteAsset)} shares its parent's state, and sees any reloads of its parent. The first time an instance is
+ * modified - through {@link #getMutableState()} or by being reloaded itself - it takes a private copy of the state and stops following its parent. If the
+ * parent is disposed and a new parent asset is later created with the same urn, instances still sharing state switch to sharing the new parent's state.
+ * </p>
+ * <p>
+ * Implementing classes should read state through {@link #getState()}, modify it only through {@link #getMutableState()}, and provide
+ * {@link #doCreateCopy(ResourceUrn, AssetType)} by calling the instance constructor. {@link #copyState(Object)} must produce a deep copy, sharing nothing
+ * mutable with the original.
+ * </p>
+ *
+ * @param <T> The type of asset data used by this asset
+ * @param <S> The type of state held by this asset
+ */
+@API
+public abstract class CopyOnWriteAsset<T extends AssetData, S> extends Asset<T> {
+
+    private volatile StateHolder<S> holder;
+    private volatile boolean sharing;
+
+    /**
+     * Constructs an asset that owns its state. Implementing classes should reload the asset with initial data.
+     *
+     * @param urn       The urn identifying the asset.
+     * @param assetType The asset type this asset belongs to.
+     */
+    protected CopyOnWriteAsset(ResourceUrn urn, AssetType<?, T> assetType) {
+        super(urn, assetType);
+        this.holder = new StateHolder<>();
+    }
+
+    /**
+     * Constructs an instance that shares the state of its parent until modified.
+     *
+     * @param urn       The urn identifying the instance.
+     * @param assetType The asset type this asset belongs to.
+     * @param parent    The asset to share state with
+     */
+    protected CopyOnWriteAsset(ResourceUrn urn, AssetType<?, T> assetType, CopyOnWriteAsset<T, S> parent) {
+        super(urn, assetType);
+        Preconditions.checkArgument(urn.isInstance(), "Only instances may share state");
+        this.holder = parent.holder;
+        this.sharing = true;
+    }
+
+    @Override
+    protected final void doReload(T data) {
+        S state = loadState(data);
+        synchronized (this) {
+            if (sharing) {
+                holder = new StateHolder<>();
+                sharing = false;
+            }
+            holder.state = state;
+        }
+    }
+
+    /**
+     * @return The current state of the asset. This may be shared with other assets, so must not be modified - use {@link #getMutableState()} instead.
+     */
+    protected final S getState() {
+        return holder.state;
+    }
+
+    /**
+     * Obtains the state of the asset for modification. If the state is shared with the parent asset, a private copy is made first.
+     *
+     * @return The state of the asset, private to this asset
+     */
+    protected final synchronized S getMutableState() {
+        if (sharing) {
+            StateHolder<S> copy = new StateHolder<>();
+            copy.state = copyState(holder.state);
+            holder = copy;
+            sharing = false;
+        }
+        return holder.state;
+    }
+
+    /**
+     * @return Whether this asset currently shares its state with its parent
+     */
+    public final boolean isSharingState() {
+        return sharing;
+    }
+
+    @Override
+    final boolean isSharingParentData() {
+        return sharing;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    final void shareParentData(Asset<T> parent) {
+        if (parent instanceof CopyOnWriteAsset) {
+            synchronized (this) {
+                if (sharing) {
+                    holder = ((CopyOnWriteAsset<T, S>) parent).holder;
+                }
+            }
+        }
+    }
+
+    /**
+     * Produces the state of the asset from asset data
+     *
+     * @param data The data to load
+     * @return The new state
+     * @throws org.terasology.gestalt.assets.exceptions.InvalidAssetDataException If the asset data is invalid or cannot be loaded
+     */
+    protected abstract S loadState(T data);
+
+    /**
+     * Produces an independent copy of the state, for an instance that is about to modify it. This must be a deep copy - any mutable part of the state shared
+     * with the original would be modified for every asset sharing the original too.
+     *
+     * @param state The state to copy
+     * @return A copy of the state
+     */
+    protected abstract S copyState(S state);
+
+    private static final class StateHolder<S> {
+        private volatile S state;
+    }
+}
@@ -19,11 +19,13 @@
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.MapMaker;
 
 import org.terasology.gestalt.assets.exceptions.InvalidUrnException;
 import org.terasology.gestalt.module.sandbox.API;
 import org.terasology.gestalt.naming.Name;
 
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,7 +37,7 @@
  * <li>fragmentName is an optional identifier for a sub-part of the resource</li>
  * <li>an instance urn indicates a resource that is am independant copy of a resource identified by the rest of the urn</li>
  * </ul>
- * ResourceUrn is immutable and comparable.
+ * ResourceUrn is immutable and comparable. Canonical instances can be obtained from strings through {@link #of(String)}, which avoids reparsing commonly used urns.
  *
  * @author Immortius
  */
@@ -46,11 +48,18 @@ public final class ResourceUrn implements Comparable<ResourceUrn> {
     public static final String FRAGMENT_SEPARATOR = "#";
     public static final String INSTANCE_INDICATOR = "!instance";
     private static final Pattern URN_PATTERN = Pattern.compile("([^:]+):([^#!]+)(?:#([^!]+))?(!instance)?");
+    private static final ConcurrentMap<String, ResourceUrn> INTERNED = new MapMaker().weakValues().makeMap();
 
     private final Name moduleName;
     private final Name resourceName;
     private final Name fragmentName;
     private final boolean instance;
+    private final int hash;
+
+    // Lazily derived urns. These are immutable so racing initialisation is benign.
+    private ResourceUrn rootUrn;
+    private ResourceUrn parentUrn;
+    private ResourceUrn instanceUrn;
 
     /**
      * Creates a urn with the module and resource name from the provided urn, but the fragment name provided. This urn will not be an instance urn.
@@ -95,6 +104,7 @@ public ResourceUrn(ResourceUrn urn, Name fragmentName, boolean instance) {
         this.resourceName = urn.getResourceName();
         this.fragmentName = fragmentName;
         this.instance = instance;
+        this.hash = Objects.hashCode(fragmentName, resourceName, moduleName);
     }
 
     /**
@@ -188,6 +198,7 @@ public ResourceUrn(Name moduleName, Name resourceName, Name fragmentName, boolea
         this.resourceName = resourceName;
         this.fragmentName = fragmentName;
         this.instance = instance;
+        this.hash = Objects.hashCode(fragmentName, resourceName, moduleName);
     }
 
     /**
@@ -199,19 +210,40 @@ public ResourceUrn(Name moduleName, Name resourceName, Name fragmentName, boolea
     public ResourceUrn(String urn) {
         Matcher match = URN_PATTERN.matcher(urn);
         if (match.matches()) {
-            moduleName = new Name(match.group(1));
-            resourceName = new Name(match.group(2));
+            moduleName = Name.of(match.group(1));
+            resourceName = Name.of(match.group(2));
             if (!Strings.isNullOrEmpty(match.group(3))) {
-                fragmentName = new Name(match.group(3));
+                fragmentName = Name.of(match.group(3));
             } else {
                 fragmentName = Name.EMPTY;
             }
             instance = !Strings.isNullOrEmpty(match.group(4));
+            hash = Objects.hashCode(fragmentName, resourceName, moduleName);
         } else {
             throw new InvalidUrnException("Invalid Urn: '" + urn + "'");
         }
     }
 
+    /**
+     * Obtains the canonical ResourceUrn for a string in the format "module:object(#fragment)(!instance)". Repeated calls with the same string return the same
+     * instance for as long as it remains in use, without reparsing the string.
+     *
+     * @param urn The urn to parse
+     * @return The canonical ResourceUrn for the string
+     * @throws org.terasology.gestalt.assets.exceptions.InvalidUrnException if the string is not a valid resource urn
+     */
+    public static ResourceUrn of(String urn) {
+        ResourceUrn result = INTERNED.get(urn);
+        if (result == null) {
+            ResourceUrn newUrn = new ResourceUrn(urn);
+            result = INTERNED.putIfAbsent(urn, newUrn);
+            if (result == null) {
+                result = newUrn;
+            }
+        }
+        return result;
+    }
+
     /**
      * @param urn The string to check for validity
      * @return Whether urn is a valid ResourceUrn
@@ -255,7 +287,12 @@ public ResourceUrn getRootUrn() {
         if (fragmentName.isEmpty() && !isInstance()) {
             return this;
         }
-        return new ResourceUrn(moduleName, resourceName);
+        ResourceUrn result = rootUrn;
+        if (result == null) {
+            result = new ResourceUrn(moduleName, resourceName);
+            rootUrn = result;
+        }
+        return result;
     }
 
     /**
@@ -263,7 +300,12 @@ public ResourceUrn getRootUrn() {
      */
     public ResourceUrn getParentUrn() {
         if (isInstance()) {
-            return new ResourceUrn(moduleName, resourceName, fragmentName);
+            ResourceUrn result = parentUrn;
+            if (result == null) {
+                result = new ResourceUrn(moduleName, resourceName, fragmentName);
+                parentUrn = result;
+            }
+            return result;
         } else {
             return this;
         }
@@ -274,7 +316,12 @@ public ResourceUrn getParentUrn() {
      */
     public ResourceUrn getInstanceUrn() {
         if (!isInstance()) {
-            return new ResourceUrn(moduleName, resourceName, fragmentName, true);
+            ResourceUrn result = instanceUrn;
+            if (result == null) {
+                result = new ResourceUrn(moduleName, resourceName, fragmentName, true);
+                instanceUrn = result;
+            }
+            return result;
         } else {
             return this;
         }
@@ -303,7 +350,7 @@ public boolean equals(Object obj) {
         }
         if (obj instanceof ResourceUrn) {
             ResourceUrn other = (ResourceUrn) obj;
-            return Objects.equal(moduleName, other.moduleName) && Objects.equal(resourceName, other.resourceName)
+            return hash == other.hash && Objects.equal(moduleName, other.moduleName) && Objects.equal(resourceName, other.resourceName)
                     && Objects.equal(fragmentName, other.fragmentName) && instance == other.instance;
         }
         return false;
@@ -311,7 +358,7 @@ public boolean equals(Object obj) {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(fragmentName, resourceName, moduleName);
+        return hash;
     }
 
     @Override
@@ -27,12 +27,15 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.List;
 import java.util.Objects;
+import java.util.OptionalLong;
 
 /**
  * An asset data file. Provides details on the file's name, extension and allows the file to be opened as a stream.
@@ -98,6 +101,28 @@ public InputStream openStream() throws IOException {
         }
     }
 
+    /**
+     * Provides the content of the file as a read-only buffer. Where possible (files in directories, and files stored without compression in archives) the buffer
+     * is memory-mapped over the file rather than copied onto the heap, so formats for large binary assets should prefer this over {@link #openStream()}.
+     *
+     * @return A read-only buffer over the content of the file
+     * @throws IOException If there was an error reading the file
+     */
+    public ByteBuffer map() throws IOException {
+        try {
+            return AccessController.doPrivileged((PrivilegedExceptionAction<ByteBuffer>) file::map);
+        } catch (PrivilegedActionException e) {
+            throw new IOException("Failed to map '" + file + "'", e);
+        }
+    }
+
+    /**
+     * @return The size of the file in bytes, if known without reading it. Can be used to size buffers when reading the file.
+     */
+    public OptionalLong getSize() {
+        return AccessController.doPrivileged((PrivilegedAction<OptionalLong>) file::getSize);
+    }
+
     /**
      * Opens a reader to read the file. It is up to the reader's user to close it after use.
      * It is assumed the file is UTF-8 encoded
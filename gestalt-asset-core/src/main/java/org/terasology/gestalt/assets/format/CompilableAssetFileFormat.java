@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.format;
+
+import org.terasology.gestalt.assets.AssetData;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A CompilableAssetFileFormat is an AssetFileFormat that can additionally write the {@link AssetData} it produces to a compact binary encoding, and read it back.
+ * <p>
+ * When a {@link org.terasology.gestalt.assets.format.producer.CompiledAssetCache CompiledAssetCache} is in use, the fully loaded asset data (after supplements
+ * and deltas have been applied) is compiled and stored, and subsequent loads with unchanged source files read the compiled form instead of the source files.
+ * </p>
+ *
+ * @param <T> The type of asset data this format produces
+ */
+public interface CompilableAssetFileFormat<T extends AssetData> extends AssetFileFormat<T> {
+
+    /**
+     * The version of the compiled encoding. This should be changed whenever the encoding changes, so that previously compiled data is discarded.
+     *
+     * @return The version of the compiled encoding
+     */
+    int getCompiledVersion();
+
+    /**
+     * Writes the asset data in the compiled encoding
+     *
+     * @param data   The asset data to compile
+     * @param output The output to write the compiled data to
+     * @throws IOException If there is an error writing the compiled data
+     */
+    void writeCompiled(T data, DataOutputStream output) throws IOException;
+
+    /**
+     * Reads asset data from the compiled encoding
+     *
+     * @param urn   The urn identifying the asset being loaded.
+     * @param input The input to read the compiled data from
+     * @return The loaded asset data
+     * @throws IOException If there is an error reading the compiled data
+     */
+    T readCompiled(ResourceUrn urn, DataInputStream input) throws IOException;
+}
@@ -16,7 +16,10 @@
 
 package org.terasology.gestalt.assets.format.producer;
 
+import android.support.annotation.Nullable;
+
 import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -37,6 +40,7 @@
 import org.terasology.gestalt.assets.format.AssetAlterationFileFormat;
 import org.terasology.gestalt.assets.format.AssetFileFormat;
 import org.terasology.gestalt.assets.format.FileFormat;
+import org.terasology.gestalt.assets.metrics.AssetMetrics;
 import org.terasology.gestalt.module.resources.FileReference;
 import org.terasology.gestalt.naming.Name;
 
@@ -50,6 +54,7 @@
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * ModuleAssetDataProducer produces asset data from files within modules. In addition to files defining assets, it supports
@@ -108,6 +113,12 @@
     private final SetMultimap<ResourceUrn, ResourceUrn> redirectSourceMap = Multimaps.synchronizedSetMultimap(HashMultimap.create());
     private final SetMultimap<Name, Name> resolutionMap = Multimaps.synchronizedSetMultimap(HashMultimap.<Name, Name>create());
 
+    private final List<Runnable> changeListeners = Lists.newCopyOnWriteArrayList();
+
+    private volatile CompiledAssetCache compiledAssetCache;
+    private volatile AssetMetrics metrics = AssetMetrics.NONE;
+    private volatile Executor prefetchExecutor;
+
     /**
      * Creates a ModuleAssetDataProducer
      *
@@ -200,6 +211,64 @@ public boolean removeDeltaFormat(AssetAlterationFileFormat<U> format) {
         return deltaFormats.remove(format);
     }
 
+    /**
+     * @return The cache of compiled asset data in use, if any
+     */
+    public Optional<CompiledAssetCache> getCompiledAssetCache() {
+        return Optional.ofNullable(compiledAssetCache);
+    }
+
+    /**
+     * Sets the cache of compiled asset data to use when loading assets whose format is a {@link org.terasology.gestalt.assets.format.CompilableAssetFileFormat}.
+     *
+     * @param compiledAssetCache The cache to use, or null to not use a cache
+     */
+    public void setCompiledAssetCache(@Nullable CompiledAssetCache compiledAssetCache) {
+        this.compiledAssetCache = compiledAssetCache;
+    }
+
+    /**
+     * @param metrics The metrics to report the time spent by each file format to. Use {@link AssetMetrics#NONE} to record nothing.
+     */
+    public void setMetrics(AssetMetrics metrics) {
+        Preconditions.checkNotNull(metrics);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the executor used to read supplement and delta files concurrently, ahead of applying them. By default they are read as they are applied.
+     * The executor's threads must be permitted to read module files.
+     *
+     * @param prefetchExecutor The executor to read supplement and delta files with, or null to read them as they are applied
+     */
+    public void setPrefetchExecutor(@Nullable Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * Adds a listener to be notified when the assets this producer can resolve change - such as when a new asset or redirect is discovered. This allows
+     * cached resolution results to be invalidated.
+     *
+     * @param listener The listener to add
+     * @return true, as change listeners are supported
+     */
+    @Override
+    public boolean addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+        return true;
+    }
+
+    @Override
+    public void removeChangeListener(Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    private void notifyChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+
     @Override
     public Set<ResourceUrn> getAvailableAssetUrns() {
         return ImmutableSet.copyOf(unloadedAssetLookup.keySet());
@@ -224,7 +293,7 @@ public Optional<U> getAssetData(ResourceUrn urn) throws IOException {
         if (urn.getFragmentName().isEmpty()) {
             UnloadedAssetData<U> source = unloadedAssetLookup.get(urn);
             if (source != null && source.isValid()) {
-                return source.load();
+                return source.load(compiledAssetCache, metrics, prefetchExecutor);
             }
         }
         return Optional.empty();
@@ -246,7 +315,9 @@ private <V extends FileFormat> Optional<ResourceUrn> registerSource(Name module,
                         UnloadedAssetData<U> source = new UnloadedAssetData<>(urn, dependencyProvider);
                         if (sourceHandler.registerSource(source, providingModule, format, target)) {
                             unloadedAssetLookup.put(urn, source);
-                            resolutionMap.put(urn.getResourceName(), urn.getModuleName());
+                            if (resolutionMap.put(urn.getResourceName(), urn.getModuleName())) {
+                                notifyChanged();
+                            }
                             return Optional.of(urn);
                         }
                     }
@@ -322,12 +393,23 @@ private synchronized void processRedirectFile(FileReference file, Name moduleId)
                 redirectSourceMap.removeAll(fromUrn);
 
                 resolutionMap.put(assetName, moduleId);
+                notifyChanged();
             }
         } catch (IOException e) {
             logger.error("Failed to read redirect '{}:{}'", moduleId, assetName, e);
         }
     }
 
+    private synchronized void removeRedirect(FileReference file, Name moduleId) {
+        Name assetName = new Name(com.google.common.io.Files.getNameWithoutExtension(file.getName()));
+        ResourceUrn fromUrn = new ResourceUrn(moduleId, assetName);
+        ResourceUrn toUrn = redirectMap.remove(fromUrn);
+        if (toUrn != null) {
+            redirectSourceMap.remove(toUrn, fromUrn);
+            notifyChanged();
+        }
+    }
+
     private Optional<ResourceUrn> getResourceUrn(FileReference target, Name module, Collection<? extends FileFormat> formats) {
         for (FileFormat fileFormat : formats) {
             if (fileFormat.getFileMatcher().test(target)) {
@@ -356,6 +438,10 @@ public Optional<ResourceUrn> assetFileModified(FileReference file, Name module,
 
     @Override
     public Optional<ResourceUrn> assetFileDeleted(FileReference file, Name module, Name providingModule) {
+        if (file.getName().endsWith(REDIRECT_EXTENSION)) {
+            removeRedirect(file, module);
+            return Optional.empty();
+        }
         for (AssetFileFormat<U> format : assetFormats) {
             if (format.getFileMatcher().test(file)) {
                 try {
@@ -446,6 +532,7 @@ public void clearAssetFiles() {
         redirectMap.clear();
         redirectSourceMap.clear();
         resolutionMap.clear();
+        notifyChanged();
     }
 
     /**
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.format.producer;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.gestalt.assets.AssetData;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.AssetDataFile;
+import org.terasology.gestalt.assets.format.CompilableAssetFileFormat;
+import org.terasology.gestalt.assets.format.FileFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * CompiledAssetCache stores the compiled form of asset data on disk, so that assets whose source files have not changed can be loaded without
+ * parsing their source, supplement and delta files again.
+ * <p>
+ * Each entry is keyed by a hash of the urn of the asset, the formats involved and the content of every file that contributed to the asset data. Any change to
+ * those files (or to which files contribute) results in a different key, so stale entries are never used. Only assets whose primary format is a
+ * {@link CompilableAssetFileFormat} are cached.
+ * </p>
+ */
+@ThreadSafe
+public class CompiledAssetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledAssetCache.class);
+
+    private static final int MAGIC = 0x47434101;
+    private static final String FILE_EXTENSION = ".bin";
+
+    private final File directory;
+
+    /**
+     * @param directory The directory to store compiled asset data in. It will be created if it does not exist.
+     */
+    public CompiledAssetCache(File directory) {
+        Preconditions.checkNotNull(directory);
+        this.directory = directory;
+    }
+
+    /**
+     * @return The directory compiled asset data is stored in
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Removes all compiled asset data from the cache
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("Failed to delete compiled asset '{}'", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the key for an asset from its contributing files. The formats and files are parallel lists - each file is handled by the format at the same
+     * position.
+     *
+     * @param urn     The urn of the asset
+     * @param formats The formats handling each contributing file
+     * @param files   The contributing files, in the order they are applied
+     * @return The key identifying the compiled asset data
+     * @throws IOException If there is an error reading the contributing files
+     */
+    String computeKey(ResourceUrn urn, List<? extends FileFormat> formats, List<AssetDataFile> files) throws IOException {
+        Preconditions.checkArgument(formats.size() == files.size(), "Each file requires a format");
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(urn.toString(), Charsets.UTF_8);
+        for (int i = 0; i < files.size(); ++i) {
+            AssetDataFile file = files.get(i);
+            hasher.putString(formats.get(i).getClass().getName(), Charsets.UTF_8);
+            for (String part : file.getPath()) {
+                hasher.putString(part, Charsets.UTF_8);
+            }
+            hasher.putString(file.getFilename(), Charsets.UTF_8);
+            try (InputStream stream = file.openStream()) {
+                ByteStreams.copy(stream, Funnels.asOutputStream(hasher));
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Reads compiled asset data from the cache
+     *
+     * @param urn    The urn of the asset being loaded
+     * @param format The format to read the compiled data with
+     * @param key    The key of the compiled asset data
+     * @param <T>    The type of asset data
+     * @return The compiled asset data, if it is available
+     */
+    <T extends AssetData> Optional<T> load(ResourceUrn urn, CompilableAssetFileFormat<T> format, String key) {
+        File file = new File(directory, key + FILE_EXTENSION);
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() == MAGIC && input.readUTF().equals(format.getClass().getName()) && input.readInt() == format.getCompiledVersion()) {
+                return Optional.of(format.readCompiled(urn, input));
+            }
+            logger.debug("Discarding out of date compiled asset for '{}'", urn);
+        } catch (IOException e) {
+            logger.warn("Failed to read compiled asset for '{}', discarding", urn, e);
+        }
+        if (!file.delete()) {
+            logger.warn("Failed to delete compiled asset '{}'", file);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Writes compiled asset data to the cache. Failure to write is logged but otherwise ignored, as the cache is only an optimisation.
+     *
+     * @param urn    The urn of the asset being stored
+     * @param format The format to write the compiled data with
+     * @param key    The key of the compiled asset data
+     * @param data   The asset data to compile
+     * @param <T>    The type of asset data
+     */
+    <T extends AssetData> void store(ResourceUrn urn, CompilableAssetFileFormat<T> format, String key, T data) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.warn("Failed to create compiled asset cache directory '{}'", directory);
+            return;
+        }
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(key, ".tmp", directory);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeUTF(format.getClass().getName());
+                output.writeInt(format.getCompiledVersion());
+                format.writeCompiled(data, output);
+            }
+            File file = new File(directory, key + FILE_EXTENSION);
+            if (!tempFile.renameTo(file) && !file.isFile()) {
+                logger.warn("Failed to store compiled asset for '{}'", urn);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to compile asset '{}'", urn, e);
+        } finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                logger.warn("Failed to delete temporary file '{}'", tempFile);
+            }
+        }
+    }
+}
@@ -16,7 +16,11 @@
 
 package org.terasology.gestalt.assets.format.producer;
 
+import android.support.annotation.Nullable;
+
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 
 import net.jcip.annotations.ThreadSafe;
 
@@ -27,16 +31,28 @@
 import org.terasology.gestalt.assets.format.AssetAlterationFileFormat;
 import org.terasology.gestalt.assets.format.AssetDataFile;
 import org.terasology.gestalt.assets.format.AssetFileFormat;
+import org.terasology.gestalt.assets.format.CompilableAssetFileFormat;
 import org.terasology.gestalt.assets.format.FileFormat;
+import org.terasology.gestalt.assets.metrics.AssetMetrics;
 import org.terasology.gestalt.module.resources.FileReference;
 import org.terasology.gestalt.naming.Name;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Holds the details of an available but unloaded asset data. This includes all primary sources, supplements, deltas and overrides.
@@ -53,6 +69,8 @@
     private final List<Source<AssetFileFormat<T>>> sources = Collections.synchronizedList(Lists.newArrayList());
     private final List<Source<AssetAlterationFileFormat<T>>> supplementSources = Collections.synchronizedList(Lists.newArrayList());
     private final List<Source<AssetAlterationFileFormat<T>>> deltaSources = Collections.synchronizedList(Lists.newArrayList());
+    private final AtomicLong sourceVersion = new AtomicLong();
+    private volatile LoadPlan loadPlan;
 
     /**
      * @param urn                The urn of the asset this unloaded asset data corresponds to.
@@ -93,6 +111,7 @@ public boolean addSource(Name providingModule, AssetFileFormat<T> format, FileRe
             return false;
         } else {
             sources.add(new Source<>(providingModule, format, new AssetDataFile(input)));
+            sourceVersion.incrementAndGet();
             return true;
         }
     }
@@ -106,7 +125,7 @@ public boolean addSource(Name providingModule, AssetFileFormat<T> format, FileRe
      * @return Whether the source was removed - it will not be if it wasn't previously successfully removed.
      */
     public boolean removeSource(Name providingModule, AssetFileFormat<T> format, FileReference input) {
-        return sources.remove(new Source<>(providingModule, format, new AssetDataFile(input)));
+        return removeFrom(sources, new Source<>(providingModule, format, new AssetDataFile(input)));
     }
 
     /**
@@ -123,6 +142,7 @@ public boolean addDeltaSource(Name providingModule, AssetAlterationFileFormat<T>
             return false;
         } else {
             deltaSources.add(new Source<>(providingModule, format, new AssetDataFile(input)));
+            sourceVersion.incrementAndGet();
             return true;
         }
     }
@@ -136,7 +156,7 @@ public boolean addDeltaSource(Name providingModule, AssetAlterationFileFormat<T>
      * @return Whether the source was removed - it will not be if the source was not added previously
      */
     public boolean removeDeltaSource(Name providingModule, AssetAlterationFileFormat<T> format, FileReference input) {
-        return deltaSources.remove(new Source<>(providingModule, format, new AssetDataFile(input)));
+        return removeFrom(deltaSources, new Source<>(providingModule, format, new AssetDataFile(input)));
     }
 
     /**
@@ -153,6 +173,7 @@ public boolean addSupplementSource(Name providingModule, AssetAlterationFileForm
             return false;
         } else {
             supplementSources.add(new Source<>(providingModule, format, new AssetDataFile(input)));
+            sourceVersion.incrementAndGet();
             return true;
         }
     }
@@ -166,7 +187,15 @@ public boolean addSupplementSource(Name providingModule, AssetAlterationFileForm
      * @return Whether the source was removed - it will not be if the source was not added previously
      */
     public boolean removeSupplementSource(Name providingModule, AssetAlterationFileFormat<T> format, FileReference input) {
-        return supplementSources.remove(new Source<>(providingModule, format, new AssetDataFile(input)));
+        return removeFrom(supplementSources, new Source<>(providingModule, format, new AssetDataFile(input)));
+    }
+
+    private <U extends FileFormat> boolean removeFrom(List<Source<U>> list, Source<U> source) {
+        if (list.remove(source)) {
+            sourceVersion.incrementAndGet();
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -177,28 +206,140 @@ public boolean removeSupplementSource(Name providingModule, AssetAlterationFileF
      * @throws IOException If there as an issue loading the asset data.
      */
     public Optional<T> load() throws IOException {
-        AssetSourceResolver assetDataLoader = new AssetSourceResolver();
-        T result = assetDataLoader.load();
-        if (result != null) {
-            Name baseModule = assetDataLoader.getProvidingModule();
-            synchronized (supplementSources) {
-                for (Source<AssetAlterationFileFormat<T>> source : supplementSources) {
-                    if (source.providingModule.equals(baseModule)) {
-                        source.format.apply(source.input, result);
-                    }
-                }
+        return load(null);
+    }
+
+    /**
+     * Loads the asset data from the sources. This determines which primary and supplemental sources to use (taking into account overrides), which deltas to apply
+     * and in which order (again taking into account overrides, as well as the module dependency hierarchy).
+     * <p>
+     * If a compiled asset cache is provided and the primary format is a {@link CompilableAssetFileFormat}, the compiled asset data is used if available, and is
+     * stored otherwise.
+     * </p>
+     *
+     * @param compiledAssetCache The cache of compiled asset data to use, if any
+     * @return An Optional with the asset data if loaded, or absent if the {@link #isValid} is false
+     * @throws IOException If there as an issue loading the asset data.
+     */
+    public Optional<T> load(@Nullable CompiledAssetCache compiledAssetCache) throws IOException {
+        return load(compiledAssetCache, AssetMetrics.NONE);
+    }
+
+    /**
+     * Loads the asset data from the sources, as {@link #load(CompiledAssetCache)}, reporting the time spent by each format to the given metrics.
+     *
+     * @param compiledAssetCache The cache of compiled asset data to use, if any
+     * @param metrics            The metrics to report to
+     * @return An Optional with the asset data if loaded, or absent if the {@link #isValid} is false
+     * @throws IOException If there as an issue loading the asset data.
+     */
+    public Optional<T> load(@Nullable CompiledAssetCache compiledAssetCache, AssetMetrics metrics) throws IOException {
+        return load(compiledAssetCache, metrics, null);
+    }
+
+    /**
+     * Loads the asset data from the sources, as {@link #load(CompiledAssetCache, AssetMetrics)}. If an executor is provided, supplement and delta files are
+     * read into memory concurrently while the primary source is loaded, and then applied in order.
+     *
+     * @param compiledAssetCache The cache of compiled asset data to use, if any
+     * @param metrics            The metrics to report to
+     * @param prefetchExecutor   The executor to read supplement and delta files with, if any
+     * @return An Optional with the asset data if loaded, or absent if the {@link #isValid} is false
+     * @throws IOException If there as an issue loading the asset data.
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<T> load(@Nullable CompiledAssetCache compiledAssetCache, AssetMetrics metrics, @Nullable Executor prefetchExecutor) throws IOException {
+        LoadPlan plan = getLoadPlan();
+        if (plan.providingModule == null) {
+            return Optional.empty();
+        }
+        List<CompletableFuture<Source<AssetAlterationFileFormat<T>>>> prefetchedAlterations = null;
+        if (prefetchExecutor != null && !plan.alterations.isEmpty()) {
+            prefetchedAlterations = prefetch(plan.alterations, prefetchExecutor);
+        }
+
+        if (compiledAssetCache != null && plan.format instanceof CompilableAssetFileFormat) {
+            List<Source<AssetAlterationFileFormat<T>>> alterations = (prefetchedAlterations != null) ? join(prefetchedAlterations) : plan.alterations;
+            CompilableAssetFileFormat<T> compilableFormat = (CompilableAssetFileFormat<T>) plan.format;
+            List<FileFormat> formats = Lists.newArrayList();
+            List<AssetDataFile> files = Lists.newArrayList();
+            for (AssetDataFile input : plan.inputs) {
+                formats.add(compilableFormat);
+                files.add(input);
             }
-            synchronized (deltaSources) {
-                deltaSources.sort(new SourceComparator<>(moduleDependencies.getModulesOrderedByDependency()));
-                for (Source<AssetAlterationFileFormat<T>> source : deltaSources) {
-                    if (source.providingModule.equals(baseModule) || !moduleDependencies.dependencyExists(baseModule, source.providingModule)) {
-                        source.format.apply(source.input, result);
-                    }
-                }
+            for (Source<AssetAlterationFileFormat<T>> source : alterations) {
+                formats.add(source.format);
+                files.add(source.input);
+            }
+            long startTime = System.nanoTime();
+            String key = compiledAssetCache.computeKey(urn, formats, files);
+            Optional<T> compiledData = compiledAssetCache.load(urn, compilableFormat, key);
+            metrics.onCompiledCacheLookup(urn, compiledData.isPresent(), System.nanoTime() - startTime);
+            if (compiledData.isPresent()) {
+                return compiledData;
             }
+            T result = applyAlterations(plan.load(metrics), alterations, plan.supplementCount, metrics);
+            compiledAssetCache.store(urn, compilableFormat, key, result);
             return Optional.of(result);
         }
-        return Optional.empty();
+        T assetData = plan.load(metrics);
+        List<Source<AssetAlterationFileFormat<T>>> alterations = (prefetchedAlterations != null) ? join(prefetchedAlterations) : plan.alterations;
+        return Optional.of(applyAlterations(assetData, alterations, plan.supplementCount, metrics));
+    }
+
+    /**
+     * @return The plan for loading the asset data from the current sources. This is reused until the sources or the module environment change.
+     */
+    private LoadPlan getLoadPlan() {
+        List<Name> moduleOrdering = moduleDependencies.getModulesOrderedByDependency();
+        LoadPlan plan = loadPlan;
+        long version = sourceVersion.get();
+        if (plan == null || plan.sourceVersion != version || plan.moduleOrdering != moduleOrdering) {
+            plan = new LoadPlan(version, moduleOrdering);
+            loadPlan = plan;
+        }
+        return plan;
+    }
+
+    private List<CompletableFuture<Source<AssetAlterationFileFormat<T>>>> prefetch(List<Source<AssetAlterationFileFormat<T>>> alterations, Executor executor) {
+        List<CompletableFuture<Source<AssetAlterationFileFormat<T>>>> futures = Lists.newArrayListWithCapacity(alterations.size());
+        for (Source<AssetAlterationFileFormat<T>> source : alterations) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try (InputStream stream = source.input.openStream()) {
+                    FileReference prefetched = new PrefetchedFileReference(source.input, ByteStreams.toByteArray(stream));
+                    return new Source<>(source.providingModule, source.format, new AssetDataFile(prefetched));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        return futures;
+    }
+
+    private List<Source<AssetAlterationFileFormat<T>>> join(List<CompletableFuture<Source<AssetAlterationFileFormat<T>>>> futures) throws IOException {
+        List<Source<AssetAlterationFileFormat<T>>> result = Lists.newArrayListWithCapacity(futures.size());
+        try {
+            for (CompletableFuture<Source<AssetAlterationFileFormat<T>>> future : futures) {
+                result.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    private T applyAlterations(T assetData, List<Source<AssetAlterationFileFormat<T>>> alterations, int supplementCount, AssetMetrics metrics) throws IOException {
+        for (int i = 0; i < alterations.size(); ++i) {
+            Source<AssetAlterationFileFormat<T>> source = alterations.get(i);
+            long startTime = System.nanoTime();
+            source.format.apply(source.input, assetData);
+            metrics.onFormatOperation(source.format, (i < supplementCount) ? AssetMetrics.FormatOperation.SUPPLEMENT : AssetMetrics.FormatOperation.DELTA,
+                    System.nanoTime() - startTime, source.input.getSize().orElse(0));
+        }
+        return assetData;
     }
 
     @Override
@@ -248,39 +389,93 @@ public String toString() {
 
     /**
      * A comparator for ordering sources by their providing module.
-     *
-     * @param <T> The type of the file format of the sources being ordered
      */
-    private static class SourceComparator<T extends FileFormat> implements Comparator<Source<T>> {
+    private static class SourceComparator implements Comparator<Source<?>> {
 
-        private final List<Name> moduleOrdering;
+        private final Map<Name, Integer> moduleIndices = Maps.newHashMap();
 
         public SourceComparator(List<Name> moduleOrdering) {
-            this.moduleOrdering = moduleOrdering;
+            for (int i = 0; i < moduleOrdering.size(); ++i) {
+                moduleIndices.putIfAbsent(moduleOrdering.get(i), i);
+            }
         }
 
         @Override
-        public int compare(Source<T> o1, Source<T> o2) {
-            return moduleOrdering.indexOf(o1.providingModule) - moduleOrdering.indexOf(o2.providingModule);
+        public int compare(Source<?> o1, Source<?> o2) {
+            return Integer.compare(moduleIndices.getOrDefault(o1.providingModule, -1), moduleIndices.getOrDefault(o2.providingModule, -1));
         }
     }
 
     /**
-     * Determines the module and primary source that will provide the asset data.
+     * A file whose content has been read into memory ahead of being applied.
+     */
+    private static class PrefetchedFileReference implements FileReference {
+        private final AssetDataFile original;
+        private final byte[] content;
+
+        PrefetchedFileReference(AssetDataFile original, byte[] content) {
+            this.original = original;
+            this.content = content;
+        }
+
+        @Override
+        public String getName() {
+            return original.getFilename();
+        }
+
+        @Override
+        public List<String> getPath() {
+            return original.getPath();
+        }
+
+        @Override
+        public InputStream open() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public OptionalLong getSize() {
+            return OptionalLong.of(content.length);
+        }
+
+        @Override
+        public ByteBuffer map() {
+            return ByteBuffer.wrap(content).asReadOnlyBuffer();
+        }
+
+        @Override
+        public String toString() {
+            return original.toString();
+        }
+    }
+
+    /**
+     * Determines the module and primary source that will provide the asset data, and the supplements and deltas to apply to it.
      * <p>
      * The sources are first ordered by the module dependency order - this ensures consistent ordering. The first source determines the initial providing module. As the
      * sources are iterated through, if the module providing the source depends on the current providing module it becomes the new providing module.
+     * Supplements from the providing module are then applied, followed by deltas from all modules the providing module does not depend on, in module
+     * dependency order.
+     * </p>
+     * <p>
+     * A plan is immutable once created, and is reused for as long as the sources and module ordering it was created from are unchanged.
      * </p>
      */
-    private class AssetSourceResolver {
+    private class LoadPlan {
+        private final long sourceVersion;
+        private final List<Name> moduleOrdering;
         private Name providingModule;
         private AssetFileFormat<T> format;
-        private List<AssetDataFile> inputs = Lists.newArrayList();
+        private final List<AssetDataFile> inputs = Lists.newArrayList();
+        private final List<Source<AssetAlterationFileFormat<T>>> alterations = Lists.newArrayList();
+        private int supplementCount;
 
-        public AssetSourceResolver() {
-            final List<Name> moduleOrdering = moduleDependencies.getModulesOrderedByDependency();
+        LoadPlan(long sourceVersion, List<Name> moduleOrdering) {
+            this.sourceVersion = sourceVersion;
+            this.moduleOrdering = moduleOrdering;
+            SourceComparator comparator = new SourceComparator(moduleOrdering);
             synchronized (sources) {
-                sources.sort(new SourceComparator<>(moduleOrdering));
+                sources.sort(comparator);
                 for (Source<AssetFileFormat<T>> source : sources) {
                     if (providingModule == null) {
                         providingModule = source.providingModule;
@@ -300,18 +495,36 @@ public AssetSourceResolver() {
                     }
                 }
             }
+            if (providingModule == null) {
+                return;
+            }
+            synchronized (supplementSources) {
+                for (Source<AssetAlterationFileFormat<T>> source : supplementSources) {
+                    if (source.providingModule.equals(providingModule)) {
+                        alterations.add(source);
+                    }
+                }
+            }
+            supplementCount = alterations.size();
+            synchronized (deltaSources) {
+                deltaSources.sort(comparator);
+                for (Source<AssetAlterationFileFormat<T>> source : deltaSources) {
+                    if (source.providingModule.equals(providingModule) || !moduleDependencies.dependencyExists(providingModule, source.providingModule)) {
+                        alterations.add(source);
+                    }
+                }
+            }
         }
 
-        public Name getProvidingModule() {
-            return providingModule;
-        }
-
-        public T load() throws IOException {
-            if (providingModule != null) {
-                return format.load(urn, inputs);
+        public T load(AssetMetrics metrics) throws IOException {
+            long startTime = System.nanoTime();
+            T result = format.load(urn, inputs);
+            long bytes = 0;
+            for (AssetDataFile input : inputs) {
+                bytes += input.getSize().orElse(0);
             }
-            return null;
+            metrics.onFormatOperation(format, AssetMetrics.FormatOperation.LOAD, System.nanoTime() - startTime, bytes);
+            return result;
         }
     }
 }
-
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.management;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.gestalt.assets.Asset;
+import org.terasology.gestalt.assets.AssetData;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AssetLoadScheduler loads assets on a pool of background threads, ordered by priority.
+ * <p>
+ * Concurrent requests for the same asset share a single load. If an asset is requested again with a higher priority while still queued, the queued load is
+ * raised to that priority. A queued load is dropped once every request for it has been cancelled - loads that have already started run to completion.
+ * </p>
+ * <p>
+ * To keep background loads (such as prefetching) from delaying more important ones, background loads are limited to all but one of the worker threads.
+ * A scheduler with a single worker thread lets background loads use it, as they would otherwise never run.
+ * An asset that is needed immediately can be loaded with {@link #loadNow(ResourceUrn, Class)}, which takes over a queued load of the asset on the calling
+ * thread rather than waiting for a worker.
+ * </p>
+ */
+@ThreadSafe
+public class AssetLoadScheduler implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetLoadScheduler.class);
+
+    /**
+     * The priority of a load request. Higher priority requests are loaded first.
+     */
+    public enum Priority {
+        /**
+         * For assets that are needed to respond to the user
+         */
+        HIGH,
+        /**
+         * For assets that are needed, but not urgently
+         */
+        NORMAL,
+        /**
+         * For assets that may be needed in the future. Background loads never occupy every worker, unless there is only one worker.
+         */
+        BACKGROUND
+    }
+
+    private final AssetManager assetManager;
+    private final Thread[] workers;
+    private final int maxBackgroundLoads;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Object lock = new Object();
+    @GuardedBy("lock")
+    private final PriorityQueue<LoadTask<?>> queue = new PriorityQueue<>(Comparator.<LoadTask<?>, Priority>comparing(task -> task.priority).thenComparingLong(task -> task.sequence));
+    @GuardedBy("lock")
+    private final Map<LoadKey, LoadTask<?>> tasks = Maps.newHashMap();
+    @GuardedBy("lock")
+    private int runningBackgroundLoads;
+    @GuardedBy("lock")
+    private boolean closed;
+
+    /**
+     * @param assetManager The asset manager to load assets through
+     * @param threads      The number of worker threads to load assets with
+     */
+    public AssetLoadScheduler(AssetManager assetManager, int threads) {
+        Preconditions.checkNotNull(assetManager);
+        Preconditions.checkArgument(threads > 0, "At least one worker thread is required");
+        this.assetManager = assetManager;
+        this.maxBackgroundLoads = Math.max(1, threads - 1);
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; ++i) {
+            workers[i] = new Thread(this::processLoads, "Asset Loader " + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Requests an asset be loaded. If the asset is already loaded the returned future is already complete.
+     * <p>
+     * Cancelling the returned future withdraws this request. The load itself is dropped if it has not started and no other request for the asset remains.
+     * </p>
+     *
+     * @param urn      The urn of the asset to load
+     * @param type     The type of the asset to load
+     * @param priority The priority of the request
+     * @param <T>      The type of the asset
+     * @param <U>      The type of the asset data
+     * @return A future providing the asset, or Optional.empty() if it could not be loaded
+     */
+    public <T extends Asset<U>, U extends AssetData> CompletableFuture<Optional<T>> load(ResourceUrn urn, Class<T> type, Priority priority) {
+        Preconditions.checkNotNull(urn);
+        Preconditions.checkNotNull(type);
+        Preconditions.checkNotNull(priority);
+        if (assetManager.isLoaded(urn, type)) {
+            return CompletableFuture.completedFuture(assetManager.getAsset(urn, type));
+        }
+        CompletableFuture<Optional<T>> request = new CompletableFuture<>();
+        LoadTask<T> task;
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Asset load scheduler is closed");
+            }
+            task = getOrCreateTask(urn, type, priority);
+            task.requests++;
+        }
+        task.result.whenComplete((result, exception) -> {
+            if (exception != null) {
+                request.completeExceptionally(exception);
+            } else {
+                request.complete(result);
+            }
+        });
+        request.whenComplete((result, exception) -> {
+            if (request.isCancelled()) {
+                withdraw(task);
+            }
+        });
+        return request;
+    }
+
+    /**
+     * Loads an asset on the calling thread. If a load of the asset is queued it is taken over; if one is already running, this waits for it to complete.
+     *
+     * @param urn  The urn of the asset to load
+     * @param type The type of the asset to load
+     * @param <T>  The type of the asset
+     * @param <U>  The type of the asset data
+     * @return The asset, or Optional.empty() if it could not be loaded
+     */
+    public <T extends Asset<U>, U extends AssetData> Optional<T> loadNow(ResourceUrn urn, Class<T> type) {
+        LoadTask<T> task;
+        synchronized (lock) {
+            task = getTask(new LoadKey(urn, type));
+            if (task == null) {
+                return assetManager.getAsset(urn, type);
+            }
+            if (!task.started) {
+                queue.remove(task);
+                task.started = true;
+            }
+        }
+        if (task.takenOverBy(Thread.currentThread())) {
+            run(task);
+        }
+        return task.result.join();
+    }
+
+    /**
+     * @return The number of loads waiting for a worker
+     */
+    public int getQueueSize() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Stops the worker threads. Loads that have not started are cancelled.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            for (LoadTask<?> task : queue) {
+                tasks.remove(task.key);
+                task.result.cancel(false);
+            }
+            queue.clear();
+            lock.notifyAll();
+        }
+    }
+
+    @GuardedBy("lock")
+    private <T extends Asset<U>, U extends AssetData> LoadTask<T> getOrCreateTask(ResourceUrn urn, Class<T> type, Priority priority) {
+        LoadKey key = new LoadKey(urn, type);
+        LoadTask<T> task = getTask(key);
+        if (task == null) {
+            task = new LoadTask<>(key, urn, type, priority, sequence.getAndIncrement());
+            tasks.put(key, task);
+            queue.add(task);
+            lock.notifyAll();
+        } else if (!task.started && priority.compareTo(task.priority) < 0) {
+            queue.remove(task);
+            task.priority = priority;
+            queue.add(task);
+            lock.notifyAll();
+        }
+        return task;
+    }
+
+    @GuardedBy("lock")
+    @SuppressWarnings("unchecked")
+    private <T extends Asset<?>> LoadTask<T> getTask(LoadKey key) {
+        return (LoadTask<T>) tasks.get(key);
+    }
+
+    private void withdraw(LoadTask<?> task) {
+        synchronized (lock) {
+            task.requests--;
+            if (task.requests == 0 && !task.started && !task.result.isDone()) {
+                queue.remove(task);
+                tasks.remove(task.key, task);
+                task.result.cancel(false);
+            }
+        }
+    }
+
+    private void processLoads() {
+        while (true) {
+            LoadTask<?> task;
+            synchronized (lock) {
+                task = nextTask();
+                if (task == null) {
+                    return;
+                }
+            }
+            if (task.takenOverBy(Thread.currentThread())) {
+                run(task);
+            }
+            if (task.priority == Priority.BACKGROUND) {
+                synchronized (lock) {
+                    runningBackgroundLoads--;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the next task a worker is permitted to run, and marks it as started.
+     *
+     * @return The next task, or null if the scheduler has been closed
+     */
+    @GuardedBy("lock")
+    private LoadTask<?> nextTask() {
+        while (!closed) {
+            LoadTask<?> task = queue.peek();
+            if (task != null && (task.priority != Priority.BACKGROUND || runningBackgroundLoads < maxBackgroundLoads)) {
+                queue.poll();
+                task.started = true;
+                if (task.priority == Priority.BACKGROUND) {
+                    runningBackgroundLoads++;
+                }
+                return task;
+            }
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private <T extends Asset<?>> void run(LoadTask<T> task) {
+        try {
+            task.result.complete(getAsset(task.urn, task.type));
+        } catch (Throwable e) {
+            logger.error("Failed to load asset '{}'", task.urn, e);
+            task.result.completeExceptionally(e);
+        } finally {
+            synchronized (lock) {
+                tasks.remove(task.key, task);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T extends Asset<?>> Optional<T> getAsset(ResourceUrn urn, Class<T> type) {
+        return assetManager.getAsset(urn, (Class) type);
+    }
+
+    /**
+     * Identifies a load by the urn and type of asset
+     */
+    private static final class LoadKey {
+        private final ResourceUrn urn;
+        private final Class<?> type;
+
+        LoadKey(ResourceUrn urn, Class<?> type) {
+            this.urn = urn;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof LoadKey) {
+                LoadKey other = (LoadKey) obj;
+                return urn.equals(other.urn) && type == other.type;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(urn, type);
+        }
+    }
+
+    /**
+     * A load shared by all requests for an asset
+     *
+     * @param <T> The type of the asset
+     */
+    private static final class LoadTask<T extends Asset<?>> {
+        private final LoadKey key;
+        private final ResourceUrn urn;
+        private final Class<T> type;
+        private final long sequence;
+        private final CompletableFuture<Optional<T>> result = new CompletableFuture<>();
+        private volatile Thread runner;
+        private Priority priority;
+        private int requests;
+        private boolean started;
+
+        LoadTask(LoadKey key, ResourceUrn urn, Class<T> type, Priority priority, long sequence) {
+            this.key = key;
+            this.urn = urn;
+            this.type = type;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @param thread The thread that would run the task
+         * @return Whether the thread should run the task - only one thread may
+         */
+        synchronized boolean takenOverBy(Thread thread) {
+            if (runner == null && !result.isDone()) {
+                runner = thread;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.terasology.gestalt.assets.management;
 
+import android.support.annotation.Nullable;
+
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ArrayListMultimap;
@@ -30,8 +32,11 @@
 import org.reflections.ReflectionUtils;
 import org.terasology.gestalt.assets.Asset;
 import org.terasology.gestalt.assets.AssetData;
+import org.terasology.gestalt.assets.AssetDependencyTracker;
+import org.terasology.gestalt.assets.AssetDisposalService;
 import org.terasology.gestalt.assets.AssetFactory;
 import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.metrics.AssetMetrics;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -51,6 +56,9 @@ public final class MapAssetTypeManager implements AssetTypeManager {
     private final Map<Class<? extends Asset>, AssetType<?, ?>> assetTypes = new MapMaker().concurrencyLevel(1).makeMap();
     private final ListMultimap<Class<? extends Asset>, Class<? extends Asset>> subtypes =
             Multimaps.synchronizedListMultimap(ArrayListMultimap.<Class<? extends Asset>, Class<? extends Asset>>create());
+    private final AssetDependencyTracker dependencyTracker = new AssetDependencyTracker();
+    private volatile AssetDisposalService disposalService;
+    private volatile AssetMetrics metrics = AssetMetrics.NONE;
 
     @Override
     @SuppressWarnings("unchecked")
@@ -73,6 +81,49 @@ public <T extends Asset<U>, U extends AssetData> Optional<AssetType<T, U>> getAs
         return Collections.unmodifiableCollection(assetTypes.values());
     }
 
+    /**
+     * @return The tracker shared by all asset types of this manager, recording which assets are derived from which
+     */
+    public AssetDependencyTracker getDependencyTracker() {
+        return dependencyTracker;
+    }
+
+    /**
+     * Sets a service to dispose garbage collected assets of all asset types in the background, instead of through {@link #disposedUnusedAssets()}. Applies to
+     * assets created after it is set.
+     *
+     * @param disposalService The service to use, or null to not use one
+     */
+    public synchronized void setDisposalService(@Nullable AssetDisposalService disposalService) {
+        this.disposalService = disposalService;
+        assetTypes.values().forEach(type -> type.setDisposalService(disposalService));
+    }
+
+    /**
+     * Sets the metrics to receive instrumentation events from all asset types, current and future.
+     *
+     * @param metrics The metrics to use. Use {@link AssetMetrics#NONE} to record nothing.
+     */
+    public synchronized void setMetrics(AssetMetrics metrics) {
+        Preconditions.checkNotNull(metrics);
+        this.metrics = metrics;
+        assetTypes.values().forEach(type -> type.setMetrics(metrics));
+    }
+
+    /**
+     * @return The metrics receiving instrumentation events from the asset types
+     */
+    public AssetMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return The service disposing garbage collected assets in the background, if any
+     */
+    public Optional<AssetDisposalService> getDisposalService() {
+        return Optional.ofNullable(disposalService);
+    }
+
     @Override
     public void disposedUnusedAssets() {
         assetTypes.values().forEach(type -> type.processDisposal());
@@ -109,6 +160,9 @@ public synchronized void addAssetType(AssetType<?, ?> assetType) {
         Preconditions.checkState(assetTypes.get(assetType.getAssetClass()) == null, "Asset type already registered for - " + assetType.getAssetClass().getSimpleName());
 
         assetTypes.put(assetType.getAssetClass(), assetType);
+        assetType.setDependencyTracker(dependencyTracker);
+        assetType.setDisposalService(disposalService);
+        assetType.setMetrics(metrics);
         for (Class<?> parentType : ReflectionUtils.getAllSuperTypes(assetType.getAssetClass(), (Predicate<Class<?>>) input -> Asset.class.isAssignableFrom(input) && input != Asset.class)) {
             subtypes.put((Class<? extends Asset>) parentType, assetType.getAssetClass());
             (subtypes.get((Class<? extends Asset>) parentType)).sort(Comparator.comparing(Class::getSimpleName));
@@ -144,6 +198,7 @@ public synchronized void clear() {
         }
         assetTypes.clear();
         subtypes.clear();
+        dependencyTracker.clear();
     }
 
 
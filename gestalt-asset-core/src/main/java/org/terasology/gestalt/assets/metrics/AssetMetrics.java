@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.metrics;
+
+import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.FileFormat;
+
+/**
+ * AssetMetrics receives instrumentation events from the asset system, allowing the time spent on each stage of asset loading to be measured. All methods default
+ * to doing nothing, so implementations need only override the events they are interested in.
+ * <p>
+ * Implementations must be thread safe, and should be fast - events are raised on the threads doing the loading, including during asset lookup.
+ * </p>
+ */
+public interface AssetMetrics {
+
+    /**
+     * AssetMetrics that records nothing. This is the default.
+     */
+    AssetMetrics NONE = new AssetMetrics() {
+    };
+
+    /**
+     * The operations performed by file formats
+     */
+    enum FormatOperation {
+        /**
+         * Loading asset data from its primary source files
+         */
+        LOAD,
+        /**
+         * Applying a supplement to asset data
+         */
+        SUPPLEMENT,
+        /**
+         * Applying a delta to asset data
+         */
+        DELTA
+    }
+
+    /**
+     * Called when an asset type has requested data for an asset from its producers
+     *
+     * @param assetType The asset type
+     * @param urn       The urn of the asset
+     * @param nanos     The time taken to produce the data, in nanoseconds
+     * @param found     Whether any producer provided the data
+     */
+    default void onDataProduced(AssetType<?, ?> assetType, ResourceUrn urn, long nanos, boolean found) {
+    }
+
+    /**
+     * Called when an asset has been built from asset data by its asset type's factory
+     *
+     * @param assetType The asset type
+     * @param urn       The urn of the asset
+     * @param nanos     The time taken to build the asset, in nanoseconds
+     */
+    default void onAssetBuilt(AssetType<?, ?> assetType, ResourceUrn urn, long nanos) {
+    }
+
+    /**
+     * Called when an existing asset has been reloaded with new asset data
+     *
+     * @param assetType The asset type
+     * @param urn       The urn of the asset
+     * @param nanos     The time taken to reload the asset, in nanoseconds
+     */
+    default void onAssetReloaded(AssetType<?, ?> assetType, ResourceUrn urn, long nanos) {
+    }
+
+    /**
+     * Called when an asset has been disposed
+     *
+     * @param assetType The asset type
+     * @param urn       The urn of the asset
+     */
+    default void onAssetDisposed(AssetType<?, ?> assetType, ResourceUrn urn) {
+    }
+
+    /**
+     * Called when an asset is looked up by urn
+     *
+     * @param assetType The asset type
+     * @param cached    Whether the asset was found in the lookup cache
+     */
+    default void onLookup(AssetType<?, ?> assetType, boolean cached) {
+    }
+
+    /**
+     * Called when a file format has loaded or altered asset data
+     *
+     * @param format    The file format
+     * @param operation The operation performed
+     * @param nanos     The time taken, in nanoseconds
+     * @param bytes     The size of the files read, or 0 if unknown
+     */
+    default void onFormatOperation(FileFormat format, FormatOperation operation, long nanos, long bytes) {
+    }
+
+    /**
+     * Called when the compiled asset cache has been checked for asset data
+     *
+     * @param urn   The urn of the asset
+     * @param hit   Whether the compiled data was available
+     * @param nanos The time taken to check for and read the compiled data, in nanoseconds
+     */
+    default void onCompiledCacheLookup(ResourceUrn urn, boolean hit, long nanos) {
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.metrics;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * A snapshot of the statistics recorded for a single kind of asset event by {@link RecordingAssetMetrics}.
+ */
+@Immutable
+public final class AssetStatistic {
+
+    static final int BUCKETS = 64;
+
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long bytes;
+    private final long[] histogram;
+
+    AssetStatistic(long count, long totalNanos, long maxNanos, long bytes, long[] histogram) {
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.bytes = bytes;
+        this.histogram = histogram;
+    }
+
+    static int bucketFor(long nanos) {
+        return (nanos <= 0) ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * @return The number of events recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The total time taken by the events, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return The mean time taken by an event, in nanoseconds
+     */
+    public long getMeanNanos() {
+        return (count == 0) ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @return The longest time taken by an event, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return The total bytes read by the events
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Provides an approximate percentile of the time taken by events. This is the upper bound of the power of two histogram bucket containing the percentile.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The approximate time taken, in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0;
+        for (long bucketCount : histogram) {
+            total += bucketCount;
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; ++i) {
+            seen += histogram[i];
+            if (seen >= target && seen > 0) {
+                return (i == 0) ? 0 : Math.min(maxNanos, (i >= 63) ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%dns, p99=%dns, max=%dns, bytes=%d", count, getMeanNanos(), getPercentileNanos(99), maxNanos, bytes);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.metrics;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.FileFormat;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An implementation of AssetMetrics that records counts, timings and bytes read for each kind of event, and can provide a snapshot of them at any time.
+ * <p>
+ * Statistics are recorded under keys of the form "{category}/{name}/{event}", such as "assetType/Texture/build", "format/PngFormat/load" or
+ * "compiledCache/all/hit". Timings are recorded in a histogram with power of two buckets, from which approximate percentiles can be obtained.
+ * </p>
+ */
+@ThreadSafe
+public class RecordingAssetMetrics implements AssetMetrics {
+
+    private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+    @Override
+    public void onDataProduced(AssetType<?, ?> assetType, ResourceUrn urn, long nanos, boolean found) {
+        record(typeKey(assetType, found ? "produce" : "produceMissing"), nanos, 0);
+    }
+
+    @Override
+    public void onAssetBuilt(AssetType<?, ?> assetType, ResourceUrn urn, long nanos) {
+        record(typeKey(assetType, "build"), nanos, 0);
+    }
+
+    @Override
+    public void onAssetReloaded(AssetType<?, ?> assetType, ResourceUrn urn, long nanos) {
+        record(typeKey(assetType, "reload"), nanos, 0);
+    }
+
+    @Override
+    public void onAssetDisposed(AssetType<?, ?> assetType, ResourceUrn urn) {
+        record(typeKey(assetType, "dispose"), 0, 0);
+    }
+
+    @Override
+    public void onLookup(AssetType<?, ?> assetType, boolean cached) {
+        recorder(typeKey(assetType, cached ? "lookupHit" : "lookupMiss")).count.increment();
+    }
+
+    @Override
+    public void onFormatOperation(FileFormat format, FormatOperation operation, long nanos, long bytes) {
+        record("format/" + format.getClass().getSimpleName() + "/" + operation.name().toLowerCase(Locale.ENGLISH), nanos, bytes);
+    }
+
+    @Override
+    public void onCompiledCacheLookup(ResourceUrn urn, boolean hit, long nanos) {
+        record(hit ? "compiledCache/all/hit" : "compiledCache/all/miss", nanos, 0);
+    }
+
+    /**
+     * @return A snapshot of all statistics recorded so far, by key
+     */
+    public Map<String, AssetStatistic> snapshot() {
+        ImmutableSortedMap.Builder<String, AssetStatistic> builder = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Discards all recorded statistics
+     */
+    public void reset() {
+        recorders.clear();
+    }
+
+    private static String typeKey(AssetType<?, ?> assetType, String event) {
+        return "assetType/" + assetType.getAssetClass().getSimpleName() + "/" + event;
+    }
+
+    private Recorder recorder(String key) {
+        Recorder recorder = recorders.get(key);
+        if (recorder == null) {
+            recorder = recorders.computeIfAbsent(key, k -> new Recorder());
+        }
+        return recorder;
+    }
+
+    private void record(String key, long nanos, long bytes) {
+        Recorder recorder = recorder(key);
+        recorder.count.increment();
+        recorder.totalNanos.add(nanos);
+        recorder.maxNanos.accumulate(nanos);
+        recorder.bytes.add(bytes);
+        recorder.histogram.incrementAndGet(AssetStatistic.bucketFor(nanos));
+    }
+
+    private static final class Recorder {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(AssetStatistic.BUCKETS);
+
+        AssetStatistic snapshot() {
+            long[] buckets = new long[AssetStatistic.BUCKETS];
+            for (int i = 0; i < buckets.length; ++i) {
+                buckets[i] = histogram.get(i);
+            }
+            return new AssetStatistic(count.sum(), totalNanos.sum(), maxNanos.get(), bytes.sum(), buckets);
+        }
+    }
+}
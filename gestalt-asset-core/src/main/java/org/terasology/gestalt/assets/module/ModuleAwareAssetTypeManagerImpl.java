@@ -35,6 +35,7 @@
 import org.terasology.gestalt.assets.format.producer.AssetFileDataProducer;
 import org.terasology.gestalt.assets.management.AssetManager;
 import org.terasology.gestalt.assets.management.MapAssetTypeManager;
+import org.terasology.gestalt.assets.metrics.AssetMetrics;
 import org.terasology.gestalt.assets.module.annotations.RegisterAssetDataProducer;
 import org.terasology.gestalt.assets.module.annotations.RegisterAssetDeltaFileFormat;
 import org.terasology.gestalt.assets.module.annotations.RegisterAssetFileFormat;
@@ -86,9 +87,22 @@ public <T> Optional<T> get(Class<T> type) {
         });
     }
 
+    /**
+     * Sets the metrics to receive instrumentation events from all asset types and their file producers, current and future.
+     *
+     * @param metrics The metrics to use. Use {@link AssetMetrics#NONE} to record nothing.
+     */
+    public synchronized void setMetrics(AssetMetrics metrics) {
+        assetTypeManager.setMetrics(metrics);
+        for (AssetTypeInfo info : assetTypeInfo.values()) {
+            info.getFileProducer().setMetrics(metrics);
+        }
+    }
+
     @Override
     public void clearAvailableAssetCache() {
         assetScanner.clearCache();
+        assetTypeManager.getAssetTypes().forEach(AssetType::clearCaches);
     }
 
     /**
@@ -155,6 +169,7 @@ private <T extends Asset<U>, U extends AssetData> AssetType<T, U> addAssetType(A
         AssetTypeInfo info = new AssetTypeInfo(assetType, extension);
         AssetFileDataProducer<U> producer = new AssetFileDataProducer<>(dependencyProvider, subfolderNames);
         info.setFileProducer(producer);
+        producer.setMetrics(assetTypeManager.getMetrics());
         assetType.addProducer(producer);
         assetTypeInfo.put(assetType, info);
         return assetType;
@@ -66,7 +66,7 @@ public void setModuleEnvironment(@Nullable ModuleEnvironment moduleEnvironment)
     @Override
     public boolean dependencyExists(Name fromModule, Name onModule) {
         ModuleEnvironment currentEnvironment = moduleEnvironment;
-        return currentEnvironment != null && currentEnvironment.getDependencyNamesOf(fromModule).contains(onModule);
+        return currentEnvironment != null && currentEnvironment.dependencyExists(fromModule, onModule);
     }
 
     @Override
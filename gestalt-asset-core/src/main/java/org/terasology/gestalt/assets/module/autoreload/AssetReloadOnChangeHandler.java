@@ -19,10 +19,19 @@
 import android.support.annotation.RequiresApi;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terasology.gestalt.assets.Asset;
+import org.terasology.gestalt.assets.AssetData;
+import org.terasology.gestalt.assets.AssetDependencyTracker;
+import org.terasology.gestalt.assets.AssetDependencyTracker.TrackedAsset;
 import org.terasology.gestalt.assets.AssetType;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.assets.format.producer.AssetFileDataProducer;
@@ -30,11 +39,30 @@
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * AssetReloadOnChangeHandler sets up a watcher over asset files in a module environment. When these files change the relevant ModuleAssetDataProducer is notified and the
  * asset is reloaded. The poll method must be called to process file system change event and reload assets.
+ * <p>
+ * Optionally the handler can be started in background mode with {@link #start(long, long, TimeUnit, ExecutorService)}. In this mode a background thread watches
+ * for file system events, waiting until no further events have occurred for a debounce period (or a maximum delay has passed) so that bursts of changes (such as
+ * saving many files or switching branches) are coalesced. The background thread only collects the events - the next call to poll processes them, notifying the
+ * producers of the changes on the polling thread, and then produces the data of each changed asset in parallel. Once all of the data of a batch has been
+ * produced it is published to the assets by a later call to poll, so the caller sees all of a batch's changes at once. Further changes are not processed
+ * while a batch is being produced, so the producers are never changed while being read to produce a batch.
+ * </p>
+ * <p>
+ * Poll should always be called from the same thread.
+ * </p>
  * <p>AssetReloadOnChangeHandler should be closed when no longer needed - such as when the module environment is being shut down - so that its file system handles can
  * be cleaned up</p>
  */
@@ -43,7 +71,16 @@ public class AssetReloadOnChangeHandler implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(AssetReloadOnChangeHandler.class);
 
+    private static final long MAX_WAIT_MILLIS = 500;
+    private static final int DEFAULT_MAX_DELAY_DEBOUNCE_MULTIPLE = 10;
+
     private final ModuleEnvironmentWatcher watcher;
+    private final AtomicBoolean changesReady = new AtomicBoolean();
+
+    private Thread backgroundThread;
+    private volatile boolean running;
+    private ExecutorService executor;
+    private List<Future<Optional<PreparedReload<?, ?>>>> preparingBatch;
 
     /**
      * @param environment The module environment to monitor for changes
@@ -75,25 +112,196 @@ public void removeAssetType(AssetType<?, ?> assetType) {
     }
 
     /**
-     * Processes and change events and reloads modified assets.
+     * Starts watching for changes on a background thread, with a maximum delay of ten times the debounce period.
+     *
+     * @param debounce     How long to wait after a change for further changes before reloading
+     * @param unit         The unit of the debounce period
+     * @param loadExecutor The executor to produce asset data with. If null, asset data is produced sequentially when polled.
+     * @throws IllegalStateException if the AssetReloadOnChangeHandler has been closed or already started.
+     * @see #start(long, long, TimeUnit, ExecutorService)
+     */
+    public void start(long debounce, TimeUnit unit, ExecutorService loadExecutor) {
+        start(debounce, debounce * DEFAULT_MAX_DELAY_DEBOUNCE_MULTIPLE, unit, loadExecutor);
+    }
+
+    /**
+     * Starts watching for changes on a background thread. Once started, changes are collected and debounced in the background, and {@link #poll()} processes
+     * them, produces the data of the changed assets with the load executor and publishes it to the assets.
+     *
+     * @param debounce     How long to wait after a change for further changes before reloading
+     * @param maxDelay     The longest to wait after a change before reloading, even if further changes keep occurring
+     * @param unit         The unit of the debounce period and maximum delay
+     * @param loadExecutor The executor to produce asset data with. If null, asset data is produced sequentially when polled.
+     * @throws IllegalStateException if the AssetReloadOnChangeHandler has been closed or already started.
+     */
+    public synchronized void start(long debounce, long maxDelay, TimeUnit unit, ExecutorService loadExecutor) {
+        Preconditions.checkState(!watcher.isClosed(), "AutoReloadOnChangeManager has been closed");
+        Preconditions.checkState(backgroundThread == null, "AutoReloadOnChangeManager already started");
+        ChangeDebouncer debouncer = new ChangeDebouncer(unit.toMillis(debounce), unit.toMillis(maxDelay));
+        executor = (loadExecutor != null) ? loadExecutor : MoreExecutors.newDirectExecutorService();
+        running = true;
+        backgroundThread = new Thread(() -> watchForChanges(debouncer), "Asset Reload Watcher");
+        backgroundThread.setDaemon(true);
+        backgroundThread.start();
+    }
+
+    /**
+     * @return Whether changes are being watched for on a background thread
+     */
+    public synchronized boolean isStarted() {
+        return backgroundThread != null;
+    }
+
+    /**
+     * Processes and change events and reloads modified assets. If the handler has been started in background mode, this instead publishes the batch of
+     * asset data being produced if it is complete, and otherwise processes the changes collected in the background once they have settled and starts
+     * producing the asset data for them.
      *
      * @throws IllegalStateException if the AssetReloadOnChangeHandler has been closed.
      */
     public void poll() {
         Preconditions.checkState(!watcher.isClosed(), "AutoReloadOnChangeManager has been closed");
-        SetMultimap<AssetType<?, ?>, ResourceUrn> changes = watcher.checkForChanges();
-        for (Map.Entry<AssetType<?, ?>, ResourceUrn> entry : changes.entries()) {
-            if (entry.getKey().isLoaded(entry.getValue())) {
-                AssetType<?, ?> assetType = entry.getKey();
-                ResourceUrn changedUrn = entry.getValue();
-                logger.info("Reloading changed asset '{}'", changedUrn);
-                assetType.reload(changedUrn);
+        if (isStarted()) {
+            if (preparingBatch == null && changesReady.getAndSet(false)) {
+                preparingBatch = prepareBatch(watcher.checkForChanges());
+            }
+            if (preparingBatch != null && preparingBatch.stream().allMatch(Future::isDone)) {
+                List<PreparedReload<?, ?>> batch = collectBatch(preparingBatch);
+                preparingBatch = null;
+                batch.forEach(PreparedReload::publish);
+                reloadDependents(Lists.transform(batch, reload -> new TrackedAsset(reload.assetType, reload.urn)));
+            }
+        } else {
+            SetMultimap<AssetType<?, ?>, ResourceUrn> changes = watcher.checkForChanges();
+            for (Map.Entry<AssetType<?, ?>, ResourceUrn> entry : changes.entries()) {
+                if (entry.getKey().isLoaded(entry.getValue())) {
+                    AssetType<?, ?> assetType = entry.getKey();
+                    ResourceUrn changedUrn = entry.getValue();
+                    logger.info("Reloading changed asset '{}'", changedUrn);
+                    assetType.reload(changedUrn);
+                }
+            }
+            reloadDependents(Collections2.transform(changes.entries(), entry -> new TrackedAsset(entry.getKey(), entry.getValue())));
+        }
+    }
+
+    /**
+     * Reloads the assets derived from changed assets - such as fragments of a changed root asset - in dependency order.
+     *
+     * @param changedAssets The assets that have changed
+     */
+    private void reloadDependents(Collection<TrackedAsset> changedAssets) {
+        ListMultimap<AssetDependencyTracker, TrackedAsset> changesByTracker = ArrayListMultimap.create();
+        for (TrackedAsset changedAsset : changedAssets) {
+            changedAsset.getAssetType().getDependencyTracker().ifPresent(tracker -> changesByTracker.put(tracker, changedAsset));
+        }
+        for (AssetDependencyTracker tracker : changesByTracker.keySet()) {
+            for (TrackedAsset dependent : tracker.getDependents(changesByTracker.get(tracker))) {
+                if (dependent.getAssetType().isLoaded(dependent.getUrn())) {
+                    logger.info("Reloading asset '{}' derived from changed assets", dependent.getUrn());
+                    dependent.reload();
+                }
             }
         }
     }
 
     @Override
     public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = backgroundThread;
+        }
         watcher.shutdown();
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(MAX_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (preparingBatch != null) {
+            preparingBatch.forEach(future -> future.cancel(false));
+            preparingBatch = null;
+        }
+    }
+
+    /**
+     * Collects file system events on the background thread, flagging them as ready to process once they have settled.
+     */
+    private void watchForChanges(ChangeDebouncer debouncer) {
+        try {
+            while (running) {
+                long waitMillis = debouncer.getWaitMillis(System.currentTimeMillis(), MAX_WAIT_MILLIS);
+                if (watcher.awaitEvents(waitMillis, TimeUnit.MILLISECONDS)) {
+                    debouncer.onChange(System.currentTimeMillis());
+                }
+                if (debouncer.release(System.currentTimeMillis())) {
+                    changesReady.set(true);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("Asset reload watcher interrupted, stopping");
+        }
+    }
+
+    private List<Future<Optional<PreparedReload<?, ?>>>> prepareBatch(SetMultimap<AssetType<?, ?>, ResourceUrn> changes) {
+        List<Future<Optional<PreparedReload<?, ?>>>> pending = Lists.newArrayListWithCapacity(changes.size());
+        for (Map.Entry<AssetType<?, ?>, ResourceUrn> entry : changes.entries()) {
+            if (entry.getKey().isLoaded(entry.getValue())) {
+                pending.add(executor.submit(() -> prepare(entry.getKey(), entry.getValue())));
+            }
+        }
+        return pending;
+    }
+
+    private List<PreparedReload<?, ?>> collectBatch(List<Future<Optional<PreparedReload<?, ?>>>> pending) {
+        List<PreparedReload<?, ?>> batch = Lists.newArrayListWithCapacity(pending.size());
+        for (Future<Optional<PreparedReload<?, ?>>> future : pending) {
+            try {
+                future.get().ifPresent(batch::add);
+            } catch (ExecutionException e) {
+                logger.error("Failed to prepare asset reload", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return batch;
+    }
+
+    private <T extends Asset<U>, U extends AssetData> Optional<PreparedReload<?, ?>> prepare(AssetType<T, U> assetType, ResourceUrn urn) {
+        try {
+            Optional<U> data = assetType.getAssetData(urn);
+            if (data.isPresent()) {
+                return Optional.of(new PreparedReload<>(assetType, urn, data.get()));
+            }
+        } catch (IOException e) {
+            logger.error("Failed to reload changed asset '{}'", urn, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The data for a changed asset, ready to be published to the asset.
+     */
+    private static final class PreparedReload<T extends Asset<U>, U extends AssetData> {
+        private final AssetType<T, U> assetType;
+        private final ResourceUrn urn;
+        private final U data;
+
+        PreparedReload(AssetType<T, U> assetType, ResourceUrn urn, U data) {
+            this.assetType = assetType;
+            this.urn = urn;
+            this.data = data;
+        }
+
+        void publish() {
+            if (assetType.isLoaded(urn)) {
+                logger.info("Reloading changed asset '{}'", urn);
+                assetType.loadAsset(urn, data);
+            }
+        }
     }
 }
@@ -35,6 +35,8 @@
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Wrapper around ModuleAwareAssetTypeManager that integrates auto asset reloading
@@ -47,6 +49,12 @@ public class AutoReloadAssetTypeManager implements ModuleAwareAssetTypeManager {
     private ModuleAwareAssetTypeManager assetTypeManager;
     private AssetReloadOnChangeHandler reloadOnChangeHandler;
 
+    private boolean backgroundReload;
+    private long reloadDebounce;
+    private long reloadMaxDelay;
+    private TimeUnit reloadDebounceUnit;
+    private ExecutorService reloadExecutor;
+
     public AutoReloadAssetTypeManager() {
         this.assetTypeManager = new ModuleAwareAssetTypeManagerImpl();
     }
@@ -71,6 +79,35 @@ public synchronized void reloadChangedAssets() {
         }
     }
 
+    /**
+     * Enables background reloading, with a maximum delay of ten times the debounce period.
+     *
+     * @param debounce How long to wait after a change for further changes before reloading
+     * @param unit     The unit of the debounce period
+     * @param executor The executor to produce asset data with. If null, asset data is produced by {@link #reloadChangedAssets()}.
+     * @see #setBackgroundReload(long, long, TimeUnit, ExecutorService)
+     */
+    public synchronized void setBackgroundReload(long debounce, TimeUnit unit, ExecutorService executor) {
+        setBackgroundReload(debounce, debounce * 10, unit, executor);
+    }
+
+    /**
+     * Enables background reloading. Changes are detected and debounced on a background thread, and {@link #reloadChangedAssets()} starts producing the data
+     * for changed assets using the given executor, publishing it once complete. Takes effect the next time the environment is switched.
+     *
+     * @param debounce How long to wait after a change for further changes before reloading
+     * @param maxDelay The longest to wait after a change before reloading, even if further changes keep occurring
+     * @param unit     The unit of the debounce period and maximum delay
+     * @param executor The executor to produce asset data with. If null, asset data is produced by {@link #reloadChangedAssets()}.
+     */
+    public synchronized void setBackgroundReload(long debounce, long maxDelay, TimeUnit unit, ExecutorService executor) {
+        this.backgroundReload = true;
+        this.reloadDebounce = debounce;
+        this.reloadMaxDelay = maxDelay;
+        this.reloadDebounceUnit = unit;
+        this.reloadExecutor = executor;
+    }
+
     private <U extends AssetData, T extends Asset<U>> void registerAssetType(AssetType<T, U> assetType) {
         if (reloadOnChangeHandler != null) {
             reloadOnChangeHandler.addAssetType(assetType, assetTypeManager.getAssetFileDataProducer(assetType));
@@ -83,6 +120,9 @@ private void openReloadOnChangeHandler(ModuleEnvironment newEnvironment) {
             for (AssetType<?, ?> assetType : getAssetTypes()) {
                 reloadOnChangeHandler.addAssetType(assetType, getAssetFileDataProducer(assetType));
             }
+            if (backgroundReload) {
+                reloadOnChangeHandler.start(reloadDebounce, reloadMaxDelay, reloadDebounceUnit, reloadExecutor);
+            }
         } catch (IOException e) {
             logger.error("Failed to instantiate asset reload on change handler", e);
         }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.module.autoreload;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Tracks when a burst of changes has settled. A burst is ready once no further change has occurred for the debounce period, or once the maximum delay has
+ * passed since the first change of the burst - so that a file which is changed continuously is still reloaded periodically.
+ * <p>
+ * Times are supplied by the caller, in milliseconds.
+ * </p>
+ */
+final class ChangeDebouncer {
+
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+
+    private boolean pending;
+    private long firstChangeTime;
+    private long lastChangeTime;
+
+    /**
+     * @param debounceMillis How long to wait after a change for further changes
+     * @param maxDelayMillis The longest to wait after the first change of a burst, regardless of further changes
+     */
+    ChangeDebouncer(long debounceMillis, long maxDelayMillis) {
+        Preconditions.checkArgument(debounceMillis >= 0, "debounceMillis must not be negative");
+        Preconditions.checkArgument(maxDelayMillis >= debounceMillis, "maxDelayMillis must not be less than debounceMillis");
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Records a change
+     *
+     * @param now The current time
+     */
+    void onChange(long now) {
+        if (!pending) {
+            pending = true;
+            firstChangeTime = now;
+        }
+        lastChangeTime = now;
+    }
+
+    /**
+     * @return Whether there are changes that have not yet been released
+     */
+    boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * @param now The current time
+     * @param idleWaitMillis How long to wait if there are no pending changes
+     * @return How long to wait before the pending changes may be ready
+     */
+    long getWaitMillis(long now, long idleWaitMillis) {
+        if (!pending) {
+            return idleWaitMillis;
+        }
+        long readyTime = Math.min(lastChangeTime + debounceMillis, firstChangeTime + maxDelayMillis);
+        return Math.max(0, readyTime - now);
+    }
+
+    /**
+     * Releases the pending changes if they are ready
+     *
+     * @param now The current time
+     * @return Whether there were pending changes, and they are ready
+     */
+    boolean release(long now) {
+        if (pending && (now - lastChangeTime >= debounceMillis || now - firstChangeTime >= maxDelayMillis)) {
+            pending = false;
+            return true;
+        }
+        return false;
+    }
+}
@@ -41,6 +41,7 @@
 import org.terasology.gestalt.naming.Name;
 
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -56,6 +57,8 @@
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ModuleEnvironmentWatcher detects of changes to asset files (creation, modification, deletion), to inform ModuleAssetDataProducers of the changes
@@ -79,6 +82,7 @@ class ModuleEnvironmentWatcher {
     private final Map<Path, WatchKey> watchKeys = new MapMaker().concurrencyLevel(1).makeMap();
     private final ListMultimap<String, SubscriberInfo> subscribers = Multimaps.synchronizedListMultimap(ArrayListMultimap.create());
     private final BlockingDeque<DelayedEvent> unreadyEvents = Queues.newLinkedBlockingDeque();
+    private final BlockingQueue<CollectedEvents> collectedEvents = Queues.newLinkedBlockingQueue();
 
     private boolean closed;
 
@@ -141,6 +145,7 @@ synchronized void shutdown() throws IOException {
         if (!closed) {
             pathWatchers.clear();
             watchKeys.clear();
+            collectedEvents.clear();
             service.close();
             closed = true;
         }
@@ -155,7 +160,45 @@ synchronized void shutdown() throws IOException {
         if (closed) {
             return LinkedHashMultimap.create();
         }
+        return processChanges(service.poll());
+    }
+
+    /**
+     * Waits for file system events, up to the given timeout. The events are only collected - subscribers are not notified until the next call to
+     * {@link #checkForChanges()}, which processes the collected events. This allows a background thread to wait for changes while subscribers are only
+     * notified on the thread that checks for changes.
+     *
+     * @param timeout The maximum time to wait for an event
+     * @param unit    The unit of the timeout
+     * @return Whether any events were collected
+     * @throws InterruptedException If interrupted while waiting
+     */
+    boolean awaitEvents(long timeout, TimeUnit unit) throws InterruptedException {
+        boolean collected = false;
+        try {
+            WatchKey key = service.poll(timeout, unit);
+            while (key != null) {
+                List<WatchEvent<?>> events = key.pollEvents();
+                key.reset();
+                if (!events.isEmpty()) {
+                    collectedEvents.add(new CollectedEvents(key, events));
+                    collected = true;
+                }
+                key = service.poll();
+            }
+        } catch (ClosedWatchServiceException e) {
+            return false;
+        }
+        return collected;
+    }
 
+    /**
+     * Processes delayed events, the given watch key (if any) and any further available watch keys
+     *
+     * @param firstKey The first watch key to process, or null if none
+     * @return A set of ResourceUrns of changed assets.
+     */
+    private SetMultimap<AssetType<?, ?>, ResourceUrn> processChanges(WatchKey firstKey) {
         SetMultimap<AssetType<?, ?>, ResourceUrn> changed = LinkedHashMultimap.create();
 
         List<DelayedEvent> events = Lists.newArrayList();
@@ -164,10 +207,21 @@ synchronized void shutdown() throws IOException {
             changed.putAll(event.replay());
         }
 
-        WatchKey key = service.poll();
+        List<CollectedEvents> collected = Lists.newArrayList();
+        collectedEvents.drainTo(collected);
+        for (CollectedEvents collectedEvent : collected) {
+            PathWatcher pathWatcher = pathWatchers.get(collectedEvent.key);
+            if (pathWatcher != null) {
+                changed.putAll(pathWatcher.update(collectedEvent.events, unreadyEvents));
+            }
+        }
+
+        WatchKey key = firstKey;
         while (key != null) {
             PathWatcher pathWatcher = pathWatchers.get(key);
-            changed.putAll(pathWatcher.update(key.pollEvents(), unreadyEvents));
+            if (pathWatcher != null) {
+                changed.putAll(pathWatcher.update(key.pollEvents(), unreadyEvents));
+            }
             key.reset();
             key = service.poll();
         }
@@ -264,6 +318,19 @@ private static class DelayedEvent {
         }
     }
 
+    /**
+     * Events collected from a watch key by {@link #awaitEvents(long, TimeUnit)}, awaiting processing.
+     */
+    private static class CollectedEvents {
+        private final WatchKey key;
+        private final List<WatchEvent<?>> events;
+
+        CollectedEvents(WatchKey key, List<WatchEvent<?>> events) {
+            this.key = key;
+            this.events = events;
+        }
+    }
+
     /**
      * A PathWatcher watches a path for changes, and reacts to those changes.
      */
@@ -35,6 +35,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -87,5 +88,40 @@ public void resolvePartialFragmentUrn() throws Exception {
         assertEquals(ImmutableSet.of(FRAGMENT_URN), textType.resolve(FRAGMENT_URN.getResourceName() + "#" + FRAGMENT_URN.getFragmentName()));
     }
 
+    @Test
+    public void partialFragmentResolutionFollowsRootProducerChanges() throws Exception {
+        AssetDataProducer<BookData> bookProducer = mock(AssetDataProducer.class);
+        when(bookProducer.addChangeListener(any(Runnable.class))).thenReturn(true);
+        bookType.addProducer(bookProducer);
+        AssetType<Text, TextData> textType = new AssetType<>(Text.class, new TextFactory());
+        textType.addProducer(bookFragmentProducer);
+        String partialUrn = FRAGMENT_URN.getResourceName() + "#" + FRAGMENT_URN.getFragmentName();
+        assertTrue(textType.resolve(partialUrn).isEmpty());
+
+        when(bookProducer.getModulesProviding(FRAGMENT_URN.getResourceName())).thenReturn(ImmutableSet.of(FRAGMENT_URN.getModuleName()));
+        bookType.clearCaches();
+
+        assertEquals(ImmutableSet.of(FRAGMENT_URN), textType.resolve(partialUrn));
+    }
+
+    @Test
+    public void fragmentDependsOnRootAsset() throws Exception {
+        AssetDependencyTracker tracker = new AssetDependencyTracker();
+        bookType.setDependencyTracker(tracker);
+        bookType.loadAsset(FRAGMENT_URN.getRootUrn(), new BookData(LINE_0, LINE_1));
+
+        AssetType<Text, TextData> textType = new AssetType<>(Text.class, new TextFactory());
+        textType.setDependencyTracker(tracker);
+        textType.addProducer(bookFragmentProducer);
+        Text fragment = textType.getAsset(FRAGMENT_URN).get();
+
+        assertEquals(ImmutableSet.of(new AssetDependencyTracker.TrackedAsset(bookType, FRAGMENT_URN.getRootUrn())), tracker.getDependencies(textType, FRAGMENT_URN));
+        assertEquals(ImmutableList.of(new AssetDependencyTracker.TrackedAsset(textType, FRAGMENT_URN)), tracker.getDependents(bookType, FRAGMENT_URN.getRootUrn()));
+
+        bookType.loadAsset(FRAGMENT_URN.getRootUrn(), new BookData(LINE_1, LINE_0));
+        tracker.getDependents(bookType, FRAGMENT_URN.getRootUrn()).forEach(AssetDependencyTracker.TrackedAsset::reload);
+        assertEquals(LINE_1, fragment.getValue());
+    }
+
 
 }
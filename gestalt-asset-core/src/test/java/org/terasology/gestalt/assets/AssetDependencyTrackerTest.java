@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import org.junit.Test;
+import org.terasology.gestalt.naming.Name;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import virtualModules.test.stubs.text.Text;
+import virtualModules.test.stubs.text.TextData;
+import virtualModules.test.stubs.text.TextFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AssetDependencyTrackerTest {
+
+    private static final ResourceUrn OUTER = new ResourceUrn("test", "outer");
+    private static final ResourceUrn MIDDLE = new ResourceUrn("test", "middle");
+    private static final ResourceUrn INNER = new ResourceUrn("test", "inner");
+    private static final ResourceUrn SIBLING = new ResourceUrn("test", "sibling");
+    private static final ResourceUrn FAILING = new ResourceUrn("test", "failing");
+
+    private final AssetDependencyTracker tracker = new AssetDependencyTracker();
+    private final AssetType<Text, TextData> textType = new AssetType<>(Text.class, new TextFactory());
+    private final Map<ResourceUrn, List<ResourceUrn>> uses = Maps.newHashMap();
+
+    public AssetDependencyTrackerTest() {
+        uses.put(OUTER, ImmutableList.of(MIDDLE, SIBLING));
+        uses.put(MIDDLE, ImmutableList.of(INNER));
+        uses.put(FAILING, ImmutableList.of(INNER));
+        textType.setDependencyTracker(tracker);
+        textType.addProducer(new AssetDataProducer<TextData>() {
+            @Override
+            public Set<ResourceUrn> getAvailableAssetUrns() {
+                return Collections.emptySet();
+            }
+
+            @Override
+            public Set<Name> getModulesProviding(Name resourceName) {
+                return Collections.emptySet();
+            }
+
+            @Override
+            public ResourceUrn redirect(ResourceUrn urn) {
+                return urn;
+            }
+
+            @Override
+            public Optional<TextData> getAssetData(ResourceUrn urn) throws IOException {
+                StringBuilder value = new StringBuilder(urn.getResourceName().toString());
+                for (ResourceUrn used : uses.getOrDefault(urn, Collections.emptyList())) {
+                    textType.getAsset(used).ifPresent(text -> value.append(',').append(text.getValue()));
+                }
+                if (urn.equals(FAILING)) {
+                    throw new IOException("Failed to produce " + urn);
+                }
+                return Optional.of(new TextData(value.toString()));
+            }
+        });
+    }
+
+    @Test
+    public void nestedLoadsRecordDirectDependencies() {
+        assertEquals("outer,middle,inner,sibling", textType.getAsset(OUTER).get().getValue());
+
+        assertEquals(ImmutableSet.of(tracked(MIDDLE), tracked(SIBLING)), tracker.getDependencies(textType, OUTER));
+        assertEquals(ImmutableSet.of(tracked(INNER)), tracker.getDependencies(textType, MIDDLE));
+        assertTrue(tracker.getDependencies(textType, INNER).isEmpty());
+        assertTrue(tracker.getDependencies(textType, SIBLING).isEmpty());
+        assertFalse(tracker.isProducing());
+    }
+
+    @Test
+    public void dependentsOrderedAfterTheirDependencies() {
+        textType.getAsset(OUTER);
+
+        assertEquals(ImmutableList.of(tracked(MIDDLE), tracked(OUTER)), tracker.getDependents(textType, INNER));
+        assertEquals(ImmutableList.of(tracked(OUTER)), tracker.getDependents(textType, SIBLING));
+    }
+
+    @Test
+    public void failedLoadEndsProduction() {
+        assertFalse(textType.getAsset(FAILING).isPresent());
+
+        assertFalse(tracker.isProducing());
+        assertEquals(ImmutableSet.of(tracked(INNER)), tracker.getDependencies(textType, FAILING));
+
+        textType.getAsset(SIBLING);
+        assertTrue(tracker.getDependents(textType, SIBLING).isEmpty());
+    }
+
+    @Test
+    public void reproducingReplacesDependencies() {
+        textType.getAsset(OUTER);
+        uses.put(OUTER, ImmutableList.of(SIBLING));
+
+        textType.reload(OUTER);
+
+        assertEquals(ImmutableSet.of(tracked(SIBLING)), tracker.getDependencies(textType, OUTER));
+        assertTrue(tracker.getDependents(textType, MIDDLE).isEmpty());
+    }
+
+    @Test
+    public void obtainingAssetsOutsideProductionRecordsNothing() {
+        textType.loadAsset(INNER, new TextData("inner"));
+
+        textType.getAsset(INNER);
+
+        assertFalse(tracker.isProducing());
+        assertTrue(tracker.getDependents(textType, INNER).isEmpty());
+    }
+
+    private AssetDependencyTracker.TrackedAsset tracked(ResourceUrn urn) {
+        return new AssetDependencyTracker.TrackedAsset(textType, urn);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import virtualModules.test.stubs.text.TextData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AssetDisposalServiceTest {
+
+    private static final ResourceUrn URN = new ResourceUrn("test", "example");
+
+    private final AtomicInteger disposed = new AtomicInteger();
+    private final AssetType<TrackedAsset, TextData> assetType = new AssetType<>(TrackedAsset.class,
+            (urn, type, data) -> new TrackedAsset(urn, type, disposed));
+    private final AssetDisposalService service = new AssetDisposalService();
+
+    @After
+    public void cleanup() {
+        service.close();
+        assetType.close();
+    }
+
+    @Test
+    public void disposesCollectedAssets() throws InterruptedException {
+        assetType.setDisposalService(service);
+        createInstance();
+
+        awaitDisposal(() -> {
+        });
+        assertEquals(1, disposed.get());
+        assertEquals(1, service.getDisposedCount());
+    }
+
+    @Test
+    public void assetCollectedAfterCloseDisposedByProcessDisposal() throws InterruptedException {
+        assetType.setDisposalService(service);
+        TrackedAsset asset = createInstance();
+        service.close();
+        assertEquals(0, disposed.get());
+
+        asset = null;
+        awaitDisposal(assetType::processDisposal);
+        assertEquals(1, disposed.get());
+    }
+
+    @Test
+    public void assetCreatedAfterCloseDisposedByProcessDisposal() throws InterruptedException {
+        assetType.setDisposalService(service);
+        service.close();
+        createInstance();
+
+        awaitDisposal(assetType::processDisposal);
+        assertEquals(1, disposed.get());
+    }
+
+    @Test
+    public void assetOfReplacedServiceDisposedAfterServiceClosed() throws InterruptedException {
+        assetType.setDisposalService(service);
+        TrackedAsset asset = createInstance();
+        assetType.setDisposalService(null);
+        service.close();
+
+        asset = null;
+        awaitDisposal(assetType::processDisposal);
+        assertEquals(1, disposed.get());
+    }
+
+    @Test
+    public void closedServiceReleasedOnceDrained() throws InterruptedException {
+        AssetDisposalService closedService = new AssetDisposalService();
+        WeakReference<AssetDisposalService> serviceRef = new WeakReference<>(closedService);
+        assetType.setDisposalService(closedService);
+        TrackedAsset asset = createInstance();
+        assetType.setDisposalService(null);
+        closedService.close();
+        closedService = null;
+
+        asset = null;
+        awaitDisposal(assetType::processDisposal);
+        for (int i = 0; i < 100 && serviceRef.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("Closed service was still referenced after draining", serviceRef.get());
+    }
+
+    private TrackedAsset createInstance() {
+        return new TrackedAsset(URN.getInstanceUrn(), assetType, disposed);
+    }
+
+    private void awaitDisposal(Runnable processDisposal) throws InterruptedException {
+        for (int i = 0; i < 100 && disposed.get() == 0; ++i) {
+            System.gc();
+            Thread.sleep(20);
+            processDisposal.run();
+        }
+        assertTrue("Asset was not disposed", disposed.get() > 0);
+    }
+
+    public static class TrackedAsset extends Asset<TextData> {
+
+        public TrackedAsset(ResourceUrn urn, AssetType<?, TextData> type, AtomicInteger disposed) {
+            super(urn, type, disposed::incrementAndGet);
+        }
+
+        @Override
+        protected Optional<? extends Asset<TextData>> doCreateCopy(ResourceUrn copyUrn, AssetType<?, TextData> parentAssetType) {
+            return Optional.empty();
+        }
+
+        @Override
+        protected void doReload(TextData data) {
+        }
+    }
+}
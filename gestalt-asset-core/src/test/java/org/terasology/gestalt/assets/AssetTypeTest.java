@@ -17,13 +17,21 @@
 package org.terasology.gestalt.assets;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.terasology.gestalt.naming.Name;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import virtualModules.test.stubs.text.Text;
 import virtualModules.test.stubs.text.TextData;
@@ -32,10 +40,12 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -159,6 +169,53 @@ public void resolvePartialWithContextCallsResolutionStrategy() {
         verify(strategy).resolve(ImmutableSet.of(URN.getModuleName()), URN.getModuleName());
     }
 
+    @Test
+    public void resolvePartialIsCached() {
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        when(producer.addChangeListener(any(Runnable.class))).thenReturn(true);
+        assetType.addProducer(producer);
+        when(producer.getModulesProviding(URN.getResourceName())).thenReturn(ImmutableSet.of(URN.getModuleName()));
+        assertEquals(ImmutableSet.of(URN), assetType.resolve(URN.getResourceName().toString()));
+        assertEquals(ImmutableSet.of(URN), assetType.resolve(URN.getResourceName().toString()));
+        verify(producer, times(1)).getModulesProviding(URN.getResourceName());
+    }
+
+    @Test
+    public void resolvePartialNotCachedForProducersWithoutChangeListeners() {
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        assetType.addProducer(producer);
+        when(producer.getModulesProviding(URN.getResourceName())).thenReturn(ImmutableSet.of(URN.getModuleName()));
+        assertEquals(ImmutableSet.of(URN), assetType.resolve(URN.getResourceName().toString()));
+        when(producer.getModulesProviding(URN.getResourceName())).thenReturn(ImmutableSet.of());
+        assertTrue(assetType.resolve(URN.getResourceName().toString()).isEmpty());
+    }
+
+    @Test
+    public void resolveCacheClearedWhenProducerReportsChange() {
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        when(producer.addChangeListener(listener.capture())).thenReturn(true);
+        assetType.addProducer(producer);
+        assertTrue(assetType.resolve(URN.getResourceName().toString()).isEmpty());
+
+        when(producer.getModulesProviding(URN.getResourceName())).thenReturn(ImmutableSet.of(URN.getModuleName()));
+        assertTrue(assetType.resolve(URN.getResourceName().toString()).isEmpty());
+        listener.getValue().run();
+        assertEquals(ImmutableSet.of(URN), assetType.resolve(URN.getResourceName().toString()));
+
+        assetType.removeProducer(producer);
+        verify(producer).removeChangeListener(listener.getValue());
+    }
+
+    @Test
+    public void resolveCacheClearedWhenProducerAdded() {
+        assertTrue(assetType.resolve(URN.getResourceName().toString()).isEmpty());
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        when(producer.getModulesProviding(URN.getResourceName())).thenReturn(ImmutableSet.of(URN.getModuleName()));
+        assetType.addProducer(producer);
+        assertEquals(ImmutableSet.of(URN), assetType.resolve(URN.getResourceName().toString()));
+    }
+
     @Test
     public void getUnknownAsset() {
         assertFalse(assetType.getAsset(URN).isPresent());
@@ -204,6 +261,83 @@ public void followRedirectsGettingAssets() throws Exception {
         assertEquals(TEXT_VALUE_2, asset.get().getValue());
     }
 
+    @Test
+    public void redirectsAreCached() throws Exception {
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        when(producer.addChangeListener(any(Runnable.class))).thenReturn(true);
+        ResourceUrn realUrn = new ResourceUrn("engine:real");
+        when(producer.redirect(any(ResourceUrn.class))).thenAnswer(Return.firstArgument());
+        when(producer.redirect(URN)).thenReturn(realUrn);
+        when(producer.getAssetData(realUrn)).thenReturn(Optional.of(new TextData(TEXT_VALUE_2)));
+        assetType.addProducer(producer);
+
+        Text asset = assetType.getAsset(URN).get();
+        assertSame(asset, assetType.getAsset(URN).get());
+        verify(producer, times(1)).redirect(URN);
+    }
+
+    @Test
+    public void redirectCacheClearedOnClearCaches() throws Exception {
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        ResourceUrn realUrn = new ResourceUrn("engine:real");
+        when(producer.redirect(any(ResourceUrn.class))).thenAnswer(Return.firstArgument());
+        when(producer.getAssetData(URN)).thenReturn(Optional.of(new TextData(TEXT_VALUE)));
+        when(producer.getAssetData(realUrn)).thenReturn(Optional.of(new TextData(TEXT_VALUE_2)));
+        assetType.addProducer(producer);
+        assertEquals(URN, assetType.getAsset(URN).get().getUrn());
+
+        when(producer.redirect(URN)).thenReturn(realUrn);
+        assetType.clearCaches();
+        assertEquals(realUrn, assetType.getAsset(URN).get().getUrn());
+    }
+
+    @Test
+    public void disposedAssetReleasedByAllRedirectLookups() throws Exception {
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        when(producer.addChangeListener(any(Runnable.class))).thenReturn(true);
+        ResourceUrn realUrn = new ResourceUrn("engine:real");
+        ResourceUrn otherUrn = new ResourceUrn("engine:other");
+        when(producer.redirect(any(ResourceUrn.class))).thenAnswer(Return.firstArgument());
+        when(producer.redirect(URN)).thenReturn(realUrn);
+        when(producer.redirect(otherUrn)).thenReturn(realUrn);
+        when(producer.getAssetData(realUrn)).thenAnswer(invocation -> Optional.of(new TextData(TEXT_VALUE_2)));
+        assetType.addProducer(producer);
+
+        WeakReference<Text> assetRef = new WeakReference<>(loadThroughRedirects(URN, otherUrn, realUrn));
+        assetRef.get().dispose();
+        for (int i = 0; i < 10 && assetRef.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(assetRef.get());
+
+        Text reloaded = assetType.getAsset(otherUrn).get();
+        assertFalse(reloaded.isDisposed());
+        assertSame(reloaded, assetType.getAsset(URN).get());
+    }
+
+    private Text loadThroughRedirects(ResourceUrn... urns) {
+        Text asset = assetType.getAsset(urns[0]).get();
+        for (ResourceUrn urn : urns) {
+            assertSame(asset, assetType.getAsset(urn).get());
+        }
+        return asset;
+    }
+
+    @Test
+    public void disposedAssetNotReturnedFromCache() throws Exception {
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        when(producer.redirect(any(ResourceUrn.class))).thenAnswer(Return.firstArgument());
+        when(producer.getAssetData(URN)).thenReturn(Optional.of(new TextData(TEXT_VALUE)));
+        assetType.addProducer(producer);
+
+        Text asset = assetType.getAsset(URN).get();
+        asset.dispose();
+        Text reloaded = assetType.getAsset(URN).get();
+        assertNotSame(asset, reloaded);
+        assertFalse(reloaded.isDisposed());
+    }
+
     @Test
     public void redirectsChainForMultipleProducers() throws Exception {
         ResourceUrn realUrn = new ResourceUrn("engine:real");
@@ -386,4 +520,67 @@ public void instancesDisposedWhenTypeClosed() {
         assertTrue(newText.get().isDisposed());
     }
 
+    @Test
+    public void disposedInstanceNotReloadedWithParent() throws Exception {
+        Text loadedText = assetType.loadAsset(URN, new TextData(TEXT_VALUE));
+        Text instance = assetType.getAsset(URN.getInstanceUrn()).get();
+        Text disposedInstance = assetType.getAsset(URN.getInstanceUrn()).get();
+        disposedInstance.dispose();
+
+        AssetDataProducer producer = mock(AssetDataProducer.class);
+        when(producer.redirect(any(ResourceUrn.class))).thenAnswer(Return.firstArgument());
+        when(producer.getAssetData(URN)).thenReturn(Optional.of(new TextData(TEXT_VALUE_2)));
+        assetType.addProducer(producer);
+        assetType.refresh();
+
+        assertEquals(TEXT_VALUE_2, instance.getValue());
+        assertEquals(TEXT_VALUE, disposedInstance.getValue());
+    }
+
+    @Test
+    public void concurrentLoadsCreateSingleAsset() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Text>> results = Lists.newArrayList();
+            for (int i = 0; i < 64; ++i) {
+                results.add(executor.submit(() -> assetType.loadAsset(URN, new TextData(TEXT_VALUE))));
+            }
+            Text first = results.get(0).get();
+            for (Future<Text> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void interruptedWaitForConcurrentLoadRestoresInterrupt() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AssetType<Text, TextData> blockingType = new AssetType<>(Text.class, (urn, type, data) -> {
+            building.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Text(urn, data, type);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Text> firstLoad = executor.submit(() -> blockingType.loadAsset(URN, new TextData(TEXT_VALUE)));
+            building.await();
+
+            Thread.currentThread().interrupt();
+            assertNull(blockingType.loadAsset(URN, new TextData(TEXT_VALUE_2)));
+            assertTrue(Thread.interrupted());
+
+            release.countDown();
+            assertEquals(TEXT_VALUE, firstLoad.get().getValue());
+        } finally {
+            Thread.interrupted();
+            executor.shutdown();
+        }
+    }
 }
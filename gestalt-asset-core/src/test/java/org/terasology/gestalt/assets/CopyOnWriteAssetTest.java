@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import virtualModules.test.stubs.text.TextData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CopyOnWriteAssetTest {
+
+    private static final ResourceUrn URN = new ResourceUrn("test", "example");
+
+    private AssetType<SharedText, TextData> assetType = new AssetType<>(SharedText.class, SharedText::new);
+
+    @Test
+    public void instanceSharesParentState() {
+        SharedText parent = assetType.loadAsset(URN, new TextData("hello"));
+        SharedText instance = assetType.getAsset(URN.getInstanceUrn()).get();
+
+        assertTrue(instance.isSharingState());
+        assertSame(parent.getState(), instance.getState());
+    }
+
+    @Test
+    public void instanceFollowsParentReload() {
+        SharedText parent = assetType.loadAsset(URN, new TextData("hello"));
+        SharedText instance = assetType.getAsset(URN.getInstanceUrn()).get();
+
+        assetType.loadAsset(URN, new TextData("world"));
+        assertEquals("world", parent.getValue());
+        assertEquals("world", instance.getValue());
+    }
+
+    @Test
+    public void mutationCopiesState() {
+        SharedText parent = assetType.loadAsset(URN, new TextData("hello"));
+        SharedText instance = assetType.getAsset(URN.getInstanceUrn()).get();
+
+        instance.append(" world");
+        assertFalse(instance.isSharingState());
+        assertEquals("hello world", instance.getValue());
+        assertEquals("hello", parent.getValue());
+
+        assetType.loadAsset(URN, new TextData("goodbye"));
+        assertEquals("hello world", instance.getValue());
+    }
+
+    @Test
+    public void reloadingInstanceStopsSharing() {
+        SharedText parent = assetType.loadAsset(URN, new TextData("hello"));
+        SharedText instance = assetType.getAsset(URN.getInstanceUrn()).get();
+
+        instance.reload(new TextData("world"));
+        assertFalse(instance.isSharingState());
+        assertEquals("hello", parent.getValue());
+        assertEquals("world", instance.getValue());
+    }
+
+    @Test
+    public void instanceFollowsRecreatedParent() {
+        SharedText parent = assetType.loadAsset(URN, new TextData("hello"));
+        SharedText instance = assetType.getAsset(URN.getInstanceUrn()).get();
+
+        parent.dispose();
+        SharedText newParent = assetType.loadAsset(URN, new TextData("world"));
+        assertTrue(instance.isSharingState());
+        assertSame(newParent.getState(), instance.getState());
+        assertEquals("world", instance.getValue());
+
+        assetType.loadAsset(URN, new TextData("goodbye"));
+        assertEquals("goodbye", instance.getValue());
+    }
+
+    @Test
+    public void modifiedInstanceKeepsStateWhenParentRecreated() {
+        SharedText parent = assetType.loadAsset(URN, new TextData("hello"));
+        SharedText instance = assetType.getAsset(URN.getInstanceUrn()).get();
+        instance.append(" there");
+
+        parent.dispose();
+        assetType.loadAsset(URN, new TextData("world"));
+        assertEquals("hello there", instance.getValue());
+    }
+
+    public static class SharedText extends CopyOnWriteAsset<TextData, StringBuilder> {
+
+        public SharedText(ResourceUrn urn, AssetType<?, TextData> type, TextData data) {
+            super(urn, type);
+            reload(data);
+        }
+
+        private SharedText(ResourceUrn urn, AssetType<?, TextData> type, SharedText parent) {
+            super(urn, type, parent);
+        }
+
+        @Override
+        protected Optional<? extends Asset<TextData>> doCreateCopy(ResourceUrn copyUrn, AssetType<?, TextData> parentAssetType) {
+            return Optional.of(new SharedText(copyUrn, parentAssetType, this));
+        }
+
+        @Override
+        protected StringBuilder loadState(TextData data) {
+            return new StringBuilder(data.getValue());
+        }
+
+        @Override
+        protected StringBuilder copyState(StringBuilder state) {
+            return new StringBuilder(state);
+        }
+
+        public void append(String text) {
+            getMutableState().append(text);
+        }
+
+        public String getValue() {
+            return getState().toString();
+        }
+    }
+}
@@ -23,6 +23,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -140,5 +141,17 @@ public void getInstanceResourceUrn() {
         assertTrue(instanceUrn.isInstance());
     }
 
+    @Test
+    public void ofReturnsCanonicalInstance() {
+        ResourceUrn urn = ResourceUrn.of("engine:test#fragment");
+        assertSame(urn, ResourceUrn.of("engine:test#fragment"));
+        assertEquals(new ResourceUrn("engine", "test", "fragment"), urn);
+    }
 
+    @Test
+    public void derivedUrnsAreReused() {
+        ResourceUrn urn = new ResourceUrn(TEST_MODULE, TEST_RESOURCE, TEST_FRAGMENT, false);
+        assertSame(urn.getInstanceUrn(), urn.getInstanceUrn());
+        assertSame(urn.getRootUrn(), urn.getRootUrn());
+    }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.management;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Test;
+import org.terasology.gestalt.assets.AssetDataProducer;
+import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.naming.Name;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import virtualModules.test.stubs.text.Text;
+import virtualModules.test.stubs.text.TextData;
+import virtualModules.test.stubs.text.TextFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AssetLoadSchedulerTest {
+
+    private static final ResourceUrn BLOCKER_URN = new ResourceUrn("test", "blocker");
+    private static final ResourceUrn FIRST_URN = new ResourceUrn("test", "first");
+    private static final ResourceUrn SECOND_URN = new ResourceUrn("test", "second");
+    private static final ResourceUrn ERROR_URN = new ResourceUrn("test", "error");
+
+    private final CountDownLatch blockerStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseBlocker = new CountDownLatch(1);
+    private final List<ResourceUrn> produced = Collections.synchronizedList(Lists.newArrayList());
+
+    private MapAssetTypeManager assetTypeManager = new MapAssetTypeManager();
+    private AssetManager assetManager = new AssetManager(assetTypeManager);
+    private AssetLoadScheduler scheduler = new AssetLoadScheduler(assetManager, 1);
+
+    public AssetLoadSchedulerTest() {
+        AssetType<Text, TextData> assetType = assetTypeManager.createAssetType(Text.class, new TextFactory());
+        assetType.addProducer(new GatedProducer());
+    }
+
+    @After
+    public void cleanup() {
+        releaseBlocker.countDown();
+        scheduler.close();
+    }
+
+    @Test
+    public void loadAsset() throws Exception {
+        releaseBlocker.countDown();
+        Optional<Text> result = scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.NORMAL).get(5, TimeUnit.SECONDS);
+        assertTrue(result.isPresent());
+        assertEquals(FIRST_URN.toString(), result.get().getValue());
+    }
+
+    @Test
+    public void alreadyLoadedAssetCompletesImmediately() throws Exception {
+        releaseBlocker.countDown();
+        Text asset = assetManager.getAsset(FIRST_URN, Text.class).get();
+        CompletableFuture<Optional<Text>> request = scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.BACKGROUND);
+        assertTrue(request.isDone());
+        assertSame(asset, request.get().get());
+    }
+
+    @Test
+    public void concurrentRequestsShareLoad() throws Exception {
+        occupyWorker();
+        CompletableFuture<Optional<Text>> first = scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.NORMAL);
+        CompletableFuture<Optional<Text>> second = scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.HIGH);
+        assertEquals(1, scheduler.getQueueSize());
+        releaseBlocker.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS).get(), second.get(5, TimeUnit.SECONDS).get());
+        assertEquals(1, Collections.frequency(produced, FIRST_URN));
+    }
+
+    @Test
+    public void higherPriorityLoadedFirst() throws Exception {
+        occupyWorker();
+        CompletableFuture<Optional<Text>> normal = scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.NORMAL);
+        CompletableFuture<Optional<Text>> high = scheduler.load(SECOND_URN, Text.class, AssetLoadScheduler.Priority.HIGH);
+        releaseBlocker.countDown();
+
+        normal.get(5, TimeUnit.SECONDS);
+        high.get(5, TimeUnit.SECONDS);
+        assertEquals(Lists.newArrayList(BLOCKER_URN, SECOND_URN, FIRST_URN), produced);
+    }
+
+    @Test
+    public void cancelledRequestIsDropped() throws Exception {
+        occupyWorker();
+        CompletableFuture<Optional<Text>> request = scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.BACKGROUND);
+        request.cancel(false);
+        assertEquals(0, scheduler.getQueueSize());
+        releaseBlocker.countDown();
+
+        scheduler.load(SECOND_URN, Text.class, AssetLoadScheduler.Priority.NORMAL).get(5, TimeUnit.SECONDS);
+        assertEquals(Lists.newArrayList(BLOCKER_URN, SECOND_URN), produced);
+    }
+
+    @Test
+    public void loadNowTakesOverQueuedLoad() throws Exception {
+        occupyWorker();
+        CompletableFuture<Optional<Text>> request = scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.BACKGROUND);
+
+        Optional<Text> result = scheduler.loadNow(FIRST_URN, Text.class);
+        assertTrue(result.isPresent());
+        assertTrue(request.isDone());
+        assertSame(result.get(), request.get().get());
+        assertEquals(0, scheduler.getQueueSize());
+    }
+
+    @Test
+    public void errorDuringLoadCompletesRequestExceptionally() throws Exception {
+        CompletableFuture<Optional<Text>> request = scheduler.load(ERROR_URN, Text.class, AssetLoadScheduler.Priority.NORMAL);
+        try {
+            request.get(5, TimeUnit.SECONDS);
+            fail("Expected load to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+
+        releaseBlocker.countDown();
+        assertTrue(scheduler.load(FIRST_URN, Text.class, AssetLoadScheduler.Priority.NORMAL).get(5, TimeUnit.SECONDS).isPresent());
+    }
+
+    private void occupyWorker() throws InterruptedException {
+        scheduler.load(BLOCKER_URN, Text.class, AssetLoadScheduler.Priority.HIGH);
+        assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+    }
+
+    private class GatedProducer implements AssetDataProducer<TextData> {
+
+        @Override
+        public Set<ResourceUrn> getAvailableAssetUrns() {
+            return ImmutableSet.of(BLOCKER_URN, FIRST_URN, SECOND_URN, ERROR_URN);
+        }
+
+        @Override
+        public Set<Name> getModulesProviding(Name resourceName) {
+            return ImmutableSet.of(new Name("test"));
+        }
+
+        @Override
+        public ResourceUrn redirect(ResourceUrn urn) {
+            return urn;
+        }
+
+        @Override
+        public Optional<TextData> getAssetData(ResourceUrn urn) {
+            if (urn.equals(BLOCKER_URN)) {
+                blockerStarted.countDown();
+                try {
+                    releaseBlocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (urn.equals(ERROR_URN)) {
+                throw new AssertionError("Failed to produce " + urn);
+            }
+            produced.add(urn);
+            return Optional.of(new TextData(urn.toString()));
+        }
+    }
+}
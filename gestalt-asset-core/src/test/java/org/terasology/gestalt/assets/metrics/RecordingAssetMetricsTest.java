@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.metrics;
+
+import org.junit.Test;
+import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.Map;
+
+import virtualModules.test.stubs.text.Text;
+import virtualModules.test.stubs.text.TextData;
+import virtualModules.test.stubs.text.TextFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecordingAssetMetricsTest {
+
+    private static final ResourceUrn URN = new ResourceUrn("test", "example");
+
+    private RecordingAssetMetrics metrics = new RecordingAssetMetrics();
+    private AssetType<Text, TextData> assetType = new AssetType<>(Text.class, new TextFactory());
+
+    public RecordingAssetMetricsTest() {
+        assetType.setMetrics(metrics);
+    }
+
+    @Test
+    public void recordsBuildReloadAndDisposal() {
+        Text text = assetType.loadAsset(URN, new TextData("a"));
+        assetType.loadAsset(URN, new TextData("b"));
+        text.dispose();
+
+        Map<String, AssetStatistic> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.get("assetType/Text/build").getCount());
+        assertEquals(1, snapshot.get("assetType/Text/reload").getCount());
+        assertEquals(1, snapshot.get("assetType/Text/dispose").getCount());
+    }
+
+    @Test
+    public void recordsLookupCacheHits() {
+        assetType.loadAsset(URN, new TextData("a"));
+        assetType.getAsset(URN);
+        assetType.getAsset(URN);
+
+        Map<String, AssetStatistic> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.get("assetType/Text/lookupMiss").getCount());
+        assertEquals(1, snapshot.get("assetType/Text/lookupHit").getCount());
+    }
+
+    @Test
+    public void percentilesBoundedByMax() {
+        for (int i = 1; i <= 100; ++i) {
+            metrics.onAssetBuilt(assetType, URN, i * 1000);
+        }
+        AssetStatistic statistic = metrics.snapshot().get("assetType/Text/build");
+        assertEquals(100, statistic.getCount());
+        assertEquals(100000, statistic.getMaxNanos());
+        assertTrue(statistic.getPercentileNanos(50) >= 50000);
+        assertTrue(statistic.getPercentileNanos(50) <= statistic.getPercentileNanos(99));
+        assertTrue(statistic.getPercentileNanos(99) <= statistic.getMaxNanos());
+    }
+
+    @Test
+    public void resetDiscardsStatistics() {
+        assetType.loadAsset(URN, new TextData("a"));
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+}
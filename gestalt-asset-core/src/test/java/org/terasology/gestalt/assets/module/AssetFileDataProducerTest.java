@@ -16,14 +16,21 @@
 
 package org.terasology.gestalt.assets.module;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.assets.format.producer.AssetFileDataProducer;
+import org.terasology.gestalt.assets.format.producer.CompiledAssetCache;
 import org.terasology.gestalt.module.ModuleEnvironment;
 import org.terasology.gestalt.naming.Name;
 
+import java.io.File;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import virtualModules.test.stubs.text.TextData;
 import virtualModules.test.stubs.text.TextDeltaFileFormat;
@@ -41,6 +48,9 @@ public class AssetFileDataProducerTest {
     private static final String FOLDER_NAME = "text";
     private static final ResourceUrn URN = new ResourceUrn("test", "example");
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private ModuleAssetScanner scanner = new ModuleAssetScanner();
 
     private AssetFileDataProducer<TextData> createProducer(ModuleEnvironment environment) {
@@ -138,6 +148,31 @@ public void loadWithDelta() throws Exception {
         assertEquals("Example frumple", assetData.get().getValue());
     }
 
+    @Test
+    public void loadWithPrefetchedDelta() throws Exception {
+        ModuleEnvironment environment = TestModulesUtil.createEnvironment("test", "overrideA", "deltaA");
+        AssetFileDataProducer<TextData> moduleProducer = createProducer(environment);
+        moduleProducer.addDeltaFormat(new TextDeltaFileFormat());
+        scanner.scan(environment, moduleProducer);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicInteger submitted = new AtomicInteger();
+        try {
+            moduleProducer.setPrefetchExecutor(task -> {
+                submitted.incrementAndGet();
+                executor.execute(task);
+            });
+            for (int i = 0; i < 2; ++i) {
+                Optional<TextData> assetData = moduleProducer.getAssetData(URN);
+                assertTrue(assetData.isPresent());
+                assertEquals("Override frumple", assetData.get().getValue());
+                // The single delta is read through the prefetch executor on each load
+                assertEquals(i + 1, submitted.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void loadWithDeltaUnrelatedToOverride() throws Exception {
         ModuleEnvironment environment = TestModulesUtil.createEnvironment("test",
@@ -223,4 +258,40 @@ public void orphanOverrideSupplementIgnored() throws Exception {
         assertEquals("", data.get().getMetadata());
     }
 
+    @Test
+    public void loadWithCompiledAssetCache() throws Exception {
+        ModuleEnvironment environment = TestModulesUtil.createEnvironment("test", "deltaA");
+        AssetFileDataProducer<TextData> moduleProducer = createProducer(environment);
+        moduleProducer.addDeltaFormat(new TextDeltaFileFormat());
+        scanner.scan(environment, moduleProducer);
+        CompiledAssetCache cache = new CompiledAssetCache(tempFolder.newFolder("compiled"));
+        moduleProducer.setCompiledAssetCache(cache);
+
+        Optional<TextData> assetData = moduleProducer.getAssetData(URN);
+        assertTrue(assetData.isPresent());
+        assertEquals("Example frumple", assetData.get().getValue());
+        File[] compiledFiles = cache.getDirectory().listFiles();
+        assertEquals(1, compiledFiles.length);
+
+        Optional<TextData> compiledData = moduleProducer.getAssetData(URN);
+        assertTrue(compiledData.isPresent());
+        assertEquals("Example frumple", compiledData.get().getValue());
+        assertEquals(1, cache.getDirectory().listFiles().length);
+    }
+
+    @Test
+    public void compiledAssetCacheKeyedByContributingFiles() throws Exception {
+        CompiledAssetCache cache = new CompiledAssetCache(tempFolder.newFolder("compiled"));
+        AssetFileDataProducer<TextData> plainProducer = createProducer(TestModulesUtil.createEnvironment());
+        plainProducer.setCompiledAssetCache(cache);
+        assertEquals("Example text", plainProducer.getAssetData(URN).get().getValue());
+
+        ModuleEnvironment environment = TestModulesUtil.createEnvironment("test", "deltaA");
+        AssetFileDataProducer<TextData> deltaProducer = createProducer(environment);
+        deltaProducer.addDeltaFormat(new TextDeltaFileFormat());
+        scanner.scan(environment, deltaProducer);
+        deltaProducer.setCompiledAssetCache(cache);
+        assertEquals("Example frumple", deltaProducer.getAssetData(URN).get().getValue());
+        assertEquals(2, cache.getDirectory().listFiles().length);
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.module.autoreload;
+
+import com.google.common.collect.Sets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.producer.AssetFileDataProducer;
+import org.terasology.gestalt.assets.module.ModuleAssetScanner;
+import org.terasology.gestalt.assets.module.ModuleEnvironmentDependencyProvider;
+import org.terasology.gestalt.module.Module;
+import org.terasology.gestalt.module.ModuleEnvironment;
+import org.terasology.gestalt.module.ModuleFactory;
+import org.terasology.gestalt.module.ModuleMetadata;
+import org.terasology.gestalt.module.resources.FileReference;
+import org.terasology.gestalt.module.sandbox.PermitAllPermissionProviderFactory;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.gestalt.naming.Version;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import virtualModules.test.stubs.text.Text;
+import virtualModules.test.stubs.text.TextData;
+import virtualModules.test.stubs.text.TextFactory;
+import virtualModules.test.stubs.text.TextFileFormat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AssetReloadOnChangeHandlerTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final ResourceUrn URN = new ResourceUrn("test", "example");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Set<Thread> notifiedThreads = Sets.newConcurrentHashSet();
+    private Path assetFile;
+    private ModuleEnvironment environment;
+    private AssetType<Text, TextData> assetType;
+    private AssetFileDataProducer<TextData> producer;
+    private AssetReloadOnChangeHandler handler;
+
+    @Before
+    public void setup() throws IOException {
+        File moduleRoot = tempFolder.newFolder("test");
+        Path textFolder = moduleRoot.toPath().resolve("assets").resolve("text");
+        Files.createDirectories(textFolder);
+        assetFile = textFolder.resolve("example.txt");
+        write("Original text");
+
+        Module module = new ModuleFactory().createDirectoryModule(new ModuleMetadata(new Name("test"), Version.DEFAULT), moduleRoot);
+        environment = new ModuleEnvironment(Collections.singletonList(module), new PermitAllPermissionProviderFactory());
+        producer = new AssetFileDataProducer<TextData>(new ModuleEnvironmentDependencyProvider(environment), "text") {
+            @Override
+            public Optional<ResourceUrn> assetFileModified(FileReference file, Name module, Name providingModule) {
+                notifiedThreads.add(Thread.currentThread());
+                return super.assetFileModified(file, module, providingModule);
+            }
+        };
+        producer.addAssetFormat(new TextFileFormat());
+        new ModuleAssetScanner().scan(environment, producer);
+        assetType = new AssetType<>(Text.class, new TextFactory());
+        assetType.addProducer(producer);
+        handler = new AssetReloadOnChangeHandler(environment);
+        handler.addAssetType(assetType, producer);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        handler.close();
+        environment.close();
+    }
+
+    @Test
+    public void backgroundReloadNotifiesProducersOnPollingThread() throws Exception {
+        Text text = assetType.getAsset(URN).get();
+        handler.start(50, TimeUnit.MILLISECONDS, null);
+
+        write("Changed text");
+        pollUntil(text, "Changed text");
+
+        assertEquals(Collections.singleton(Thread.currentThread()), notifiedThreads);
+    }
+
+    @Test
+    public void backgroundReloadWithLoadExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Text text = assetType.getAsset(URN).get();
+            handler.start(50, TimeUnit.MILLISECONDS, executor);
+
+            write("Changed text");
+            pollUntil(text, "Changed text");
+            write("Changed again");
+            pollUntil(text, "Changed again");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void changesAreNotProcessedUntilPolled() throws Exception {
+        Text text = assetType.getAsset(URN).get();
+        handler.start(10, TimeUnit.MILLISECONDS, null);
+
+        write("Changed text");
+        Thread.sleep(200);
+
+        assertTrue(notifiedThreads.isEmpty());
+        assertEquals("Original text", text.getValue());
+        pollUntil(text, "Changed text");
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(assetFile, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void pollUntil(Text text, String expected) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!expected.equals(text.getValue()) && System.currentTimeMillis() < end) {
+            handler.poll();
+            Thread.sleep(20);
+        }
+        assertEquals(expected, text.getValue());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.assets.module.autoreload;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeDebouncerTest {
+
+    private final ChangeDebouncer debouncer = new ChangeDebouncer(100, 300);
+
+    @Test
+    public void nothingReleasedWithoutChanges() {
+        assertFalse(debouncer.release(1000));
+        assertEquals(500, debouncer.getWaitMillis(1000, 500));
+    }
+
+    @Test
+    public void releasedAfterDebouncePeriod() {
+        debouncer.onChange(1000);
+        assertEquals(100, debouncer.getWaitMillis(1000, 500));
+        assertFalse(debouncer.release(1099));
+        assertTrue(debouncer.release(1100));
+        assertFalse(debouncer.isPending());
+        assertFalse(debouncer.release(1200));
+    }
+
+    @Test
+    public void furtherChangesExtendDebounce() {
+        debouncer.onChange(1000);
+        debouncer.onChange(1050);
+        assertFalse(debouncer.release(1100));
+        assertEquals(50, debouncer.getWaitMillis(1100, 500));
+        assertTrue(debouncer.release(1150));
+    }
+
+    @Test
+    public void continuousChangesReleasedAfterMaxDelay() {
+        for (long time = 1000; time < 1300; time += 50) {
+            debouncer.onChange(time);
+            assertFalse(debouncer.release(time));
+        }
+        debouncer.onChange(1300);
+        assertEquals(0, debouncer.getWaitMillis(1300, 500));
+        assertTrue(debouncer.release(1300));
+
+        debouncer.onChange(1350);
+        assertFalse(debouncer.release(1350));
+        assertEquals(100, debouncer.getWaitMillis(1350, 500));
+    }
+}
@@ -23,7 +23,10 @@
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.assets.format.AbstractAssetFileFormat;
 import org.terasology.gestalt.assets.format.AssetDataFile;
+import org.terasology.gestalt.assets.format.CompilableAssetFileFormat;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.List;
@@ -31,7 +34,7 @@
 /**
  * @author Immortius
  */
-public class TextFileFormat extends AbstractAssetFileFormat<TextData> {
+public class TextFileFormat extends AbstractAssetFileFormat<TextData> implements CompilableAssetFileFormat<TextData> {
     private static final String TXT_EXTENSION = "txt";
 
     public TextFileFormat() {
@@ -48,4 +51,22 @@ public TextData load(ResourceUrn urn, List<AssetDataFile> inputs) throws IOExcep
         }
         return data;
     }
+
+    @Override
+    public int getCompiledVersion() {
+        return 1;
+    }
+
+    @Override
+    public void writeCompiled(TextData data, DataOutputStream output) throws IOException {
+        output.writeUTF(data.getValue());
+        output.writeUTF(data.getMetadata());
+    }
+
+    @Override
+    public TextData readCompiled(ResourceUrn urn, DataInputStream input) throws IOException {
+        TextData data = new TextData(input.readUTF());
+        data.setMetadata(input.readUTF());
+        return data;
+    }
 }
@@ -39,11 +39,13 @@
 public class ComponentTypeIndex {
 
     private transient Map<ResourceUrn, Class<? extends Component>> componentIndexByUrn;
+    private transient Map<Class<?>, ResourceUrn> urnIndexByComponent;
     private transient SetMultimap<Name, Name> modulesProvidingComponentsIndex;
     private final ResolutionStrategy resolutionStrategy;
 
     public ComponentTypeIndex(ResolutionStrategy resolutionStrategy) {
         componentIndexByUrn = ImmutableMap.of();
+        urnIndexByComponent = ImmutableMap.of();
         modulesProvidingComponentsIndex = ImmutableSetMultimap.of();
         this.resolutionStrategy = resolutionStrategy;
     }
@@ -88,6 +90,9 @@ public void changeEnvironment(ModuleEnvironment environment) {
             }
         }
         this.componentIndexByUrn = componentByUrnBuilder.build();
+        ImmutableMap.Builder<Class<?>, ResourceUrn> urnByComponentBuilder = ImmutableMap.builder();
+        componentIndexByUrn.forEach((urn, componentType) -> urnByComponentBuilder.put(componentType, urn));
+        this.urnIndexByComponent = urnByComponentBuilder.build();
         this.modulesProvidingComponentsIndex = modulesProvidingComponentsBuilder.build();
     }
 
@@ -99,6 +104,14 @@ public Optional<Class<? extends Component>> find(ResourceUrn urn) {
         return Optional.ofNullable(componentIndexByUrn.get(urn));
     }
 
+    /**
+     * @param componentType The component type to find the urn of
+     * @return The urn identifying the component type, or Optional#empty if the component type is not part of the environment
+     */
+    public Optional<ResourceUrn> getUrn(Class<?> componentType) {
+        return Optional.ofNullable(urnIndexByComponent.get(componentType));
+    }
+
     /**
      * @param name          The name of the component
      * @param moduleContext The module context to resolve within, or Name#EMPTY
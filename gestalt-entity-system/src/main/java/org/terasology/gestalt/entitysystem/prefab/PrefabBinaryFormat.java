@@ -0,0 +1,565 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.entitysystem.prefab;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.primitives.Primitives;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.AbstractAssetFileFormat;
+import org.terasology.gestalt.assets.format.AssetDataFile;
+import org.terasology.gestalt.assets.management.AssetManager;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.gestalt.entitysystem.component.management.ComponentManager;
+import org.terasology.gestalt.entitysystem.component.management.ComponentType;
+import org.terasology.gestalt.entitysystem.component.management.ComponentTypeIndex;
+import org.terasology.gestalt.entitysystem.component.management.PropertyAccessor;
+import org.terasology.gestalt.entitysystem.entity.EntityRef;
+import org.terasology.gestalt.entitysystem.entity.NullEntityRef;
+import org.terasology.gestalt.util.collection.TypeKeyedMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An {@link org.terasology.gestalt.assets.format.AssetFileFormat} for loading prefab assets from a compact binary encoding. Binary prefabs are produced
+ * from json prefabs by {@link PrefabJsonConverter}, and load without resolving component names or parsing json.
+ * <p>
+ * The encoding consists of a table of the component types used (by urn, along with their property names in declaration order), the names of the entity
+ * recipes, and then the properties of each component of each recipe. References to entity recipes within the prefab are stored as recipe indices. Property
+ * values that are not primitives, strings, enums or entity references are stored as json, using Gson.
+ * </p>
+ * <p>
+ * As a binary prefab is a snapshot of the prefab's data, any parent prefab the source prefab inherited from is already applied.
+ * </p>
+ */
+public class PrefabBinaryFormat extends AbstractAssetFileFormat<PrefabData> {
+
+    public static final String FILE_EXTENSION = "bprefab";
+
+    private static final Logger logger = LoggerFactory.getLogger(PrefabBinaryFormat.class);
+
+    private static final int MAGIC = 0x47505242;
+    private static final int VERSION = 1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_BOOLEAN = 1;
+    private static final byte TAG_BYTE = 2;
+    private static final byte TAG_SHORT = 3;
+    private static final byte TAG_INT = 4;
+    private static final byte TAG_LONG = 5;
+    private static final byte TAG_FLOAT = 6;
+    private static final byte TAG_DOUBLE = 7;
+    private static final byte TAG_CHAR = 8;
+    private static final byte TAG_STRING = 9;
+    private static final byte TAG_ENUM = 10;
+    private static final byte TAG_NULL_ENTITY = 11;
+    private static final byte TAG_RECIPE_REF = 12;
+    private static final byte TAG_EXTERNAL_RECIPE_REF = 13;
+    private static final byte TAG_PREFAB_REF = 14;
+    private static final byte TAG_JSON = 15;
+
+    private static final String THIS = "this";
+
+    private final ComponentTypeIndex componentIndex;
+    private final ComponentManager componentManager;
+    private final AssetManager assetManager;
+    private final Gson gson;
+    // Weakly keyed so that the bindings don't keep component classes from unloaded modules alive
+    private final Map<Class<?>, ComponentBinding<?>> componentBindings = CacheBuilder.newBuilder().weakKeys().softValues().<Class<?>, ComponentBinding<?>>build().asMap();
+    private final ThreadLocal<Deque<RecipeContext>> contextStack = new ThreadLocal<Deque<RecipeContext>>() {
+        @Override
+        protected Deque<RecipeContext> initialValue() {
+            return Queues.newArrayDeque();
+        }
+    };
+
+    /**
+     * @param componentIndex   The component type index, used to identify component types
+     * @param componentManager The manager for components, used to construct and work with components
+     * @param assetManager     The asset manager, used to look up referenced prefabs
+     */
+    public PrefabBinaryFormat(ComponentTypeIndex componentIndex, ComponentManager componentManager, AssetManager assetManager) {
+        this(componentIndex, componentManager, assetManager, new GsonBuilder().enableComplexMapKeySerialization());
+    }
+
+    /**
+     * @param componentIndex   The component type index, used to identify component types
+     * @param componentManager The manager for components, used to construct and work with components
+     * @param assetManager     The asset manager, used to look up referenced prefabs
+     * @param gsonBuilder      The builder for the Gson used to store property values that have no binary encoding. This should have the same type adapters
+     *                         as used when loading json prefabs.
+     */
+    public PrefabBinaryFormat(ComponentTypeIndex componentIndex, ComponentManager componentManager, AssetManager assetManager, GsonBuilder gsonBuilder) {
+        super(FILE_EXTENSION);
+        this.componentIndex = componentIndex;
+        this.componentManager = componentManager;
+        this.assetManager = assetManager;
+        gsonBuilder.registerTypeAdapter(EntityRef.class, new EntityRefTypeHandler());
+        this.gson = gsonBuilder.create();
+    }
+
+    @Override
+    public PrefabData load(ResourceUrn urn, List<AssetDataFile> inputs) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(inputs.get(0).openStream()))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a binary prefab");
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary prefab version " + version);
+            }
+
+            List<ComponentTable<?>> componentTables = readComponentTables(input);
+
+            PrefabData prefabData = new PrefabData();
+            List<EntityRecipe> recipes = Lists.newArrayList();
+            int recipeCount = input.readInt();
+            for (int i = 0; i < recipeCount; ++i) {
+                EntityRecipe recipe = new EntityRecipe(new ResourceUrn(urn, input.readUTF()));
+                recipes.add(recipe);
+                prefabData.addEntityRecipe(recipe);
+            }
+            int rootIndex = input.readInt();
+
+            RecipeContext context = new RecipeContext(recipes);
+            contextStack.get().push(context);
+            try {
+                for (EntityRecipe recipe : recipes) {
+                    int componentCount = input.readInt();
+                    for (int i = 0; i < componentCount; ++i) {
+                        componentTables.get(input.readInt()).read(input, recipe);
+                    }
+                }
+            } finally {
+                contextStack.get().pop();
+                if (contextStack.get().isEmpty()) {
+                    contextStack.remove();
+                }
+            }
+
+            if (rootIndex >= 0) {
+                prefabData.setRootEntityId(recipes.get(rootIndex).getIdentifier());
+            }
+            return prefabData;
+        }
+    }
+
+    /**
+     * Writes prefab data in the binary encoding
+     *
+     * @param data   The prefab data to write
+     * @param output The stream to write to. This is not closed.
+     * @throws IOException If there was an error writing the prefab, or the prefab contains a component that is not part of the component type index
+     */
+    public void write(PrefabData data, OutputStream output) throws IOException {
+        List<EntityRecipe> recipes = ImmutableList.copyOf(data.getRecipes().values());
+        Map<Class<?>, Integer> componentTypeIndices = Maps.newLinkedHashMap();
+        for (EntityRecipe recipe : recipes) {
+            for (Class<? extends Component> componentClass : recipe.getComponents().keySet()) {
+                componentTypeIndices.putIfAbsent(componentClass, componentTypeIndices.size());
+            }
+        }
+
+        DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(output));
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeInt(VERSION);
+
+        dataOutput.writeInt(componentTypeIndices.size());
+        for (Class<?> componentClass : componentTypeIndices.keySet()) {
+            writeComponentTable(getBinding(componentClass.asSubclass(Component.class)), dataOutput);
+        }
+
+        dataOutput.writeInt(recipes.size());
+        for (EntityRecipe recipe : recipes) {
+            dataOutput.writeUTF(recipe.getIdentifier().getFragmentName().toString());
+        }
+        dataOutput.writeInt(data.getRootEntityId() != null ? recipes.indexOf(data.getRecipes().get(data.getRootEntityId())) : -1);
+
+        RecipeContext context = new RecipeContext(recipes);
+        contextStack.get().push(context);
+        try {
+            for (EntityRecipe recipe : recipes) {
+                TypeKeyedMap<Component> components = recipe.getComponents();
+                dataOutput.writeInt(components.size());
+                for (Class<? extends Component> componentClass : components.keySet()) {
+                    dataOutput.writeInt(componentTypeIndices.get(componentClass));
+                    writeComponent(getBinding(componentClass), components.get(componentClass), dataOutput);
+                }
+            }
+        } finally {
+            contextStack.get().pop();
+            if (contextStack.get().isEmpty()) {
+                contextStack.remove();
+            }
+        }
+        dataOutput.flush();
+    }
+
+    private void writeComponentTable(ComponentBinding<?> binding, DataOutputStream output) throws IOException {
+        Class<?> componentClass = binding.type.getComponentClass();
+        ResourceUrn componentUrn = componentIndex.getUrn(binding.type.getComponentClass())
+                .orElseThrow(() -> new IOException("Component type '" + componentClass + "' is not available in the component type index"));
+        output.writeUTF(componentUrn.toString());
+        output.writeInt(binding.properties.size());
+        for (PropertyBinding<?, ?> property : binding.properties) {
+            output.writeUTF(property.accessor.getName());
+        }
+    }
+
+    private <T extends Component> void writeComponent(ComponentBinding<T> binding, Component<?> component, DataOutputStream output) throws IOException {
+        T typedComponent = binding.type.getComponentClass().cast(component);
+        for (PropertyBinding<T, ?> property : binding.properties) {
+            property.write(typedComponent, output);
+        }
+    }
+
+    private List<ComponentTable<?>> readComponentTables(DataInputStream input) throws IOException {
+        int componentTypeCount = input.readInt();
+        List<ComponentTable<?>> componentTables = Lists.newArrayListWithCapacity(componentTypeCount);
+        for (int i = 0; i < componentTypeCount; ++i) {
+            String componentUrn = input.readUTF();
+            Class<? extends Component> componentClass = componentIndex.find(new ResourceUrn(componentUrn))
+                    .orElseThrow(() -> new IOException("Unable to resolve component '" + componentUrn + "'"));
+            componentTables.add(createComponentTable(getBinding(componentClass), input));
+        }
+        return componentTables;
+    }
+
+    private <T extends Component> ComponentTable<T> createComponentTable(ComponentBinding<T> binding, DataInputStream input) throws IOException {
+        int propertyCount = input.readInt();
+        List<PropertyBinding<T, ?>> properties = Lists.newArrayListWithCapacity(propertyCount);
+        for (int i = 0; i < propertyCount; ++i) {
+            properties.add(binding.propertiesByName.get(input.readUTF()));
+        }
+        return new ComponentTable<>(binding.type, properties);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Component> ComponentBinding<T> getBinding(Class<T> componentClass) {
+        return (ComponentBinding<T>) componentBindings.computeIfAbsent(componentClass, key -> new ComponentBinding<>(componentManager.getType(componentClass)));
+    }
+
+    /**
+     * Adds a component to a recipe. Component types are not bound to their own type by the component manager, so the component cannot be added directly.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Component<T>> void addComponent(EntityRecipe recipe, Component<?> component) {
+        recipe.add((T) component);
+    }
+
+    private void writeValue(Object value, Type type, DataOutputStream output) throws IOException {
+        if (value == null) {
+            output.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TAG_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            output.writeByte(TAG_BYTE);
+            output.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            output.writeByte(TAG_SHORT);
+            output.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TAG_INT);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TAG_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            output.writeByte(TAG_FLOAT);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TAG_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Character) {
+            output.writeByte(TAG_CHAR);
+            output.writeChar((Character) value);
+        } else if (value instanceof String) {
+            output.writeByte(TAG_STRING);
+            writeString((String) value, output);
+        } else if (value instanceof Enum && type instanceof Class && ((Class<?>) type).isEnum()) {
+            output.writeByte(TAG_ENUM);
+            output.writeUTF(((Enum<?>) value).name());
+        } else if (value instanceof EntityRef) {
+            writeEntityRef((EntityRef) value, output);
+        } else {
+            output.writeByte(TAG_JSON);
+            writeString(gson.toJson(value, type), output);
+        }
+    }
+
+    private void writeEntityRef(EntityRef ref, DataOutputStream output) throws IOException {
+        if (ref instanceof EntityRecipeRef) {
+            EntityRecipe recipe = ((EntityRecipeRef) ref).getRecipe();
+            int index = contextStack.get().peek().recipes.indexOf(recipe);
+            if (index != -1) {
+                output.writeByte(TAG_RECIPE_REF);
+                output.writeInt(index);
+            } else {
+                output.writeByte(TAG_EXTERNAL_RECIPE_REF);
+                output.writeUTF(recipe.getIdentifier().toString());
+            }
+        } else if (ref instanceof PrefabRef) {
+            output.writeByte(TAG_PREFAB_REF);
+            output.writeUTF(((PrefabRef) ref).getPrefab().getUrn().toString());
+        } else {
+            output.writeByte(TAG_NULL_ENTITY);
+        }
+    }
+
+    private Object readValue(Type type, DataInputStream input) throws IOException {
+        byte tag = input.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_BOOLEAN:
+                return input.readBoolean();
+            case TAG_BYTE:
+                return input.readByte();
+            case TAG_SHORT:
+                return input.readShort();
+            case TAG_INT:
+                return input.readInt();
+            case TAG_LONG:
+                return input.readLong();
+            case TAG_FLOAT:
+                return input.readFloat();
+            case TAG_DOUBLE:
+                return input.readDouble();
+            case TAG_CHAR:
+                return input.readChar();
+            case TAG_STRING:
+                return readString(input);
+            case TAG_ENUM:
+                return readEnum(type, input.readUTF());
+            case TAG_NULL_ENTITY:
+                return NullEntityRef.get();
+            case TAG_RECIPE_REF:
+                return contextStack.get().peek().recipes.get(input.readInt()).getReference();
+            case TAG_EXTERNAL_RECIPE_REF:
+                return resolveExternalRecipe(new ResourceUrn(input.readUTF()));
+            case TAG_PREFAB_REF:
+                return resolvePrefab(input.readUTF());
+            case TAG_JSON: {
+                String json = readString(input);
+                return (type != null) ? gson.fromJson(json, type) : null;
+            }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private Object readEnum(Type type, String name) {
+        if (type instanceof Class && ((Class<?>) type).isEnum()) {
+            for (Object value : ((Class<?>) type).getEnumConstants()) {
+                if (((Enum<?>) value).name().equals(name)) {
+                    return value;
+                }
+            }
+            logger.error("Unable to resolve enum value {} of {}", name, type);
+        }
+        return null;
+    }
+
+    private EntityRef resolvePrefab(String prefabUrn) {
+        Optional<Prefab> prefab = assetManager.getAsset(prefabUrn, Prefab.class);
+        if (prefab.isPresent()) {
+            return new PrefabRef(prefab.get());
+        }
+        logger.error("Unable to resolve prefab reference {}", prefabUrn);
+        return NullEntityRef.get();
+    }
+
+    private EntityRef resolveExternalRecipe(ResourceUrn recipeUrn) {
+        Optional<Prefab> prefab = assetManager.getAsset(recipeUrn.getRootUrn(), Prefab.class);
+        if (prefab.isPresent()) {
+            EntityRecipe recipe = prefab.get().getEntityRecipes().get(recipeUrn);
+            if (recipe != null) {
+                return recipe.getReference();
+            }
+        }
+        logger.error("Unable to resolve entity reference {}", recipeUrn);
+        return NullEntityRef.get();
+    }
+
+    private static void writeString(String value, DataOutputStream output) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * The recipes of the prefab currently being read or written, used to resolve references to recipes.
+     */
+    private static class RecipeContext {
+        private final List<EntityRecipe> recipes;
+
+        RecipeContext(List<EntityRecipe> recipes) {
+            this.recipes = recipes;
+        }
+    }
+
+    /**
+     * The properties of a component type, in declaration order.
+     *
+     * @param <T> The type of component
+     */
+    private class ComponentBinding<T extends Component> {
+        private final ComponentType<T> type;
+        private final List<PropertyBinding<T, ?>> properties;
+        private final Map<String, PropertyBinding<T, ?>> propertiesByName;
+
+        ComponentBinding(ComponentType<T> type) {
+            this.type = type;
+            this.properties = Lists.newArrayList();
+            this.propertiesByName = Maps.newHashMap();
+            for (PropertyAccessor<T, ?> accessor : type.getPropertyInfo().getProperties().values()) {
+                PropertyBinding<T, ?> property = new PropertyBinding<>(accessor);
+                properties.add(property);
+                propertiesByName.put(accessor.getName(), property);
+            }
+        }
+    }
+
+    /**
+     * The properties of a component type as stored in a binary prefab. A property that the component type no longer has is read and discarded.
+     *
+     * @param <T> The type of component
+     */
+    private class ComponentTable<T extends Component> {
+        private final ComponentType<T> type;
+        private final List<PropertyBinding<T, ?>> properties;
+
+        ComponentTable(ComponentType<T> type, List<PropertyBinding<T, ?>> properties) {
+            this.type = type;
+            this.properties = properties;
+        }
+
+        void read(DataInputStream input, EntityRecipe recipe) throws IOException {
+            T component = type.create();
+            for (PropertyBinding<T, ?> property : properties) {
+                if (property != null) {
+                    property.read(component, input);
+                } else {
+                    readValue(null, input);
+                }
+            }
+            addComponent(recipe, component);
+        }
+    }
+
+    private class PropertyBinding<T, U> {
+        private final PropertyAccessor<T, U> accessor;
+        private final Class<U> boxedClass;
+
+        PropertyBinding(PropertyAccessor<T, U> accessor) {
+            this.accessor = accessor;
+            this.boxedClass = Primitives.wrap(accessor.getPropertyClass());
+        }
+
+        void write(T component, DataOutputStream output) throws IOException {
+            writeValue(accessor.get(component), accessor.getPropertyType(), output);
+        }
+
+        void read(T component, DataInputStream input) throws IOException {
+            Object value = readValue(accessor.getPropertyType(), input);
+            if (value == null) {
+                if (!accessor.getPropertyClass().isPrimitive()) {
+                    accessor.set(component, null);
+                }
+            } else if (boxedClass.isInstance(value)) {
+                accessor.set(component, boxedClass.cast(value));
+            } else {
+                logger.warn("Discarding value of property {} of {}, as it is not a {}", accessor.getName(), accessor.getOwningClass(), accessor.getPropertyType());
+            }
+        }
+    }
+
+    /**
+     * Handles entity references inside values stored as json. References to recipes of the prefab are written as "this:recipe", references to
+     * recipes of other prefabs by recipe urn and references to prefabs by prefab urn.
+     */
+    private class EntityRefTypeHandler extends TypeAdapter<EntityRef> {
+
+        @Override
+        public void write(JsonWriter out, EntityRef value) throws IOException {
+            if (value instanceof EntityRecipeRef) {
+                EntityRecipe recipe = ((EntityRecipeRef) value).getRecipe();
+                if (contextStack.get().peek().recipes.contains(recipe)) {
+                    out.value(THIS + ResourceUrn.RESOURCE_SEPARATOR + recipe.getIdentifier().getFragmentName());
+                } else {
+                    out.value(recipe.getIdentifier().toString());
+                }
+            } else if (value instanceof PrefabRef) {
+                out.value(((PrefabRef) value).getPrefab().getUrn().toString());
+            } else {
+                out.nullValue();
+            }
+        }
+
+        @Override
+        public EntityRef read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ResourceUrn urn = new ResourceUrn(in.nextString());
+            if (THIS.equals(urn.getModuleName().toString())) {
+                for (EntityRecipe recipe : contextStack.get().peek().recipes) {
+                    if (recipe.getIdentifier().getFragmentName().equals(urn.getResourceName())) {
+                        return recipe.getReference();
+                    }
+                }
+                logger.error("Unable to resolve entity reference {}", urn);
+                return NullEntityRef.get();
+            } else if (!urn.getFragmentName().isEmpty()) {
+                return resolveExternalRecipe(urn);
+            }
+            return resolvePrefab(urn.toString());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.entitysystem.prefab;
+
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.AssetDataFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+/**
+ * Converts json prefabs to binary prefabs, for use at build time. Shipping the converted prefabs with {@link PrefabBinaryFormat} avoids parsing json
+ * when they are loaded.
+ * <p>
+ * Any prefabs referenced or inherited by the prefabs being converted are resolved through the asset manager of the formats, so the formats should be set up
+ * against the module environment the prefabs belong to.
+ * </p>
+ */
+public class PrefabJsonConverter {
+
+    private final PrefabJsonFormat jsonFormat;
+    private final PrefabBinaryFormat binaryFormat;
+
+    /**
+     * @param jsonFormat   The format to read json prefabs with
+     * @param binaryFormat The format to write binary prefabs with
+     */
+    public PrefabJsonConverter(PrefabJsonFormat jsonFormat, PrefabBinaryFormat binaryFormat) {
+        this.jsonFormat = jsonFormat;
+        this.binaryFormat = binaryFormat;
+    }
+
+    /**
+     * Converts a json prefab file to a binary prefab.
+     *
+     * @param urn    The urn of the prefab
+     * @param input  The json prefab file
+     * @param output The stream to write the binary prefab to. This is not closed.
+     * @throws IOException If there was an error reading the json prefab or writing the binary prefab
+     */
+    public void convert(ResourceUrn urn, AssetDataFile input, OutputStream output) throws IOException {
+        binaryFormat.write(jsonFormat.load(urn, Collections.singletonList(input)), output);
+    }
+
+    /**
+     * Converts an already loaded prefab to a binary prefab.
+     *
+     * @param prefab The prefab to convert
+     * @param output The stream to write the binary prefab to. This is not closed.
+     * @throws IOException If there was an error writing the binary prefab
+     */
+    public void convert(Prefab prefab, OutputStream output) throws IOException {
+        PrefabData data = new PrefabData();
+        prefab.getEntityRecipes().values().forEach(data::addEntityRecipe);
+        if (prefab.getRootEntityUrn() != null) {
+            data.setRootEntityId(prefab.getRootEntityUrn());
+        }
+        binaryFormat.write(data, output);
+    }
+}
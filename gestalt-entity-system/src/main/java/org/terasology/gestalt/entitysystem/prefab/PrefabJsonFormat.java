@@ -16,17 +16,19 @@
 
 package org.terasology.gestalt.entitysystem.prefab;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,17 +49,21 @@
 import org.terasology.gestalt.naming.Name;
 import org.terasology.gestalt.util.collection.TypeKeyedMap;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 /**
  * An {@link org.terasology.gestalt.assets.format.AssetFileFormat} for loading prefab assets from json files.
+ * <p>
+ * Prefab files are streamed rather than parsed into a json tree - components are read directly into component instances. Most prefabs are loaded in a
+ * single pass, with references to entities that are declared later in the file resolved once the file has been read. Prefabs that can't be - because
+ * they inherit after declaring entities, or declare entities through both "entity" and "entities" - are skimmed for their header and then read a second
+ * time.
  */
 public class PrefabJsonFormat extends AbstractAssetFileFormat<PrefabData> {
 
@@ -69,6 +75,8 @@ public class PrefabJsonFormat extends AbstractAssetFileFormat<PrefabData> {
     private final ComponentManager componentManager;
     private final AssetManager assetManager;
     private final Gson gson;
+    // Weakly keyed so that the bindings don't keep component classes from unloaded modules alive
+    private final Map<Class<?>, ComponentBinding<?>> componentBindings = CacheBuilder.newBuilder().weakKeys().softValues().<Class<?>, ComponentBinding<?>>build().asMap();
     private final ThreadLocal<Deque<PrefabLoader>> loaderStack = new ThreadLocal<Deque<PrefabLoader>>() {
         @Override
         protected Deque<PrefabLoader> initialValue() {
@@ -88,22 +96,78 @@ public PrefabJsonFormat(ComponentTypeIndex componentIndex, ComponentManager comp
     @Override
     public PrefabData load(ResourceUrn urn, List<AssetDataFile> inputs) throws IOException {
         try (Context ignored = ContextManager.beginContext(urn.getModuleName())) {
-            try (JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(inputs.get(0).openStream())))) {
-                reader.setLenient(true);
-                JsonParser parser = new JsonParser();
-                JsonElement assetRoot = parser.parse(reader);
-                PrefabLoader loader = new PrefabLoader();
-                loaderStack.get().push(loader);
-                try {
-                    return loader.load(assetRoot.getAsJsonObject(), urn);
-                } finally {
-                    loaderStack.get().pop();
-                    if (loaderStack.get().isEmpty()) {
-                        loaderStack.remove();
-                    }
+            PrefabLoader loader = new PrefabLoader(urn, null);
+            PrefabData result = load(loader, inputs.get(0));
+            if (loader.requiresHeader) {
+                result = load(new PrefabLoader(urn, scanHeader(inputs.get(0))), inputs.get(0));
+            }
+            return result;
+        }
+    }
+
+    private PrefabData load(PrefabLoader loader, AssetDataFile input) throws IOException {
+        loaderStack.get().push(loader);
+        try (JsonReader reader = openReader(input)) {
+            return loader.load(reader);
+        } finally {
+            loaderStack.get().pop();
+            if (loaderStack.get().isEmpty()) {
+                loaderStack.remove();
+            }
+        }
+    }
+
+    private JsonReader openReader(AssetDataFile input) throws IOException {
+        JsonReader reader = new JsonReader(input.openReader());
+        reader.setLenient(true);
+        return reader;
+    }
+
+    /**
+     * Skims the top level of a prefab file, skipping over the content of entities. This provides the parent prefab and the names of all entities
+     * before any components are read, for prefabs that could not be loaded in a single pass.
+     *
+     * @param input The prefab file
+     * @return The header of the prefab file
+     * @throws IOException If the file could not be read
+     */
+    private PrefabHeader scanHeader(AssetDataFile input) throws IOException {
+        PrefabHeader header = new PrefabHeader();
+        try (JsonReader reader = openReader(input)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case PrefabHeader.INHERIT:
+                        header.inherit = reader.nextString();
+                        break;
+                    case PrefabHeader.ROOT:
+                        header.root = reader.nextString();
+                        break;
+                    case PrefabHeader.ENTITIES:
+                        header.entityNames = Lists.newArrayList();
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            header.entityNames.add(reader.nextName());
+                            reader.skipValue();
+                        }
+                        reader.endObject();
+                        break;
+                    case PrefabHeader.ENTITY:
+                        header.singleEntity = true;
+                        reader.skipValue();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
                 }
             }
         }
+        return header;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Component<T>> ComponentBinding<T> getBinding(Class<T> componentClass) {
+        return (ComponentBinding<T>) componentBindings.computeIfAbsent(componentClass, key -> new ComponentBinding<>(componentManager.getType(componentClass)));
     }
 
     /**
@@ -174,11 +238,26 @@ public PrefabJsonFormat create() {
         }
     }
 
-    private class EntityRefTypeHandler implements JsonDeserializer<EntityRef> {
+    private class EntityRefTypeHandler extends TypeAdapter<EntityRef> {
+
+        @Override
+        public void write(JsonWriter out, EntityRef value) throws IOException {
+            if (value instanceof EntityRecipeRef) {
+                out.value(THIS + ResourceUrn.RESOURCE_SEPARATOR + ((EntityRecipeRef) value).getRecipe().getIdentifier().getFragmentName());
+            } else if (value instanceof PrefabRef) {
+                out.value(((PrefabRef) value).getPrefab().getUrn().toString());
+            } else {
+                out.nullValue();
+            }
+        }
 
         @Override
-        public EntityRef deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            String refString = json.getAsJsonPrimitive().getAsString();
+        public EntityRef read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String refString = in.nextString();
             if (ResourceUrn.isValid(refString)) {
                 return readUrnRef(refString);
             } else {
@@ -189,9 +268,13 @@ public EntityRef deserialize(JsonElement json, Type typeOfT, JsonDeserialization
         private EntityRef readSimpleRef(String refString) {
             PrefabLoader loader = loaderStack.get().peek();
             EntityRef ref = null;
-            EntityRecipe recipe = loader.prefabData.getRecipes().get(new ResourceUrn(loader.prefabUrn, refString));
+            ResourceUrn entityUrn = new ResourceUrn(loader.prefabUrn, refString);
+            EntityRecipe recipe = loader.prefabData.getRecipes().get(entityUrn);
             if (recipe != null) {
                 ref = recipe.getReference();
+            } else if (loader.header == null) {
+                // May be an entity declared later in the file, which takes precedence over a prefab of the same name - resolved once the file is read
+                return loader.simpleForwardRecipes.computeIfAbsent(entityUrn, EntityRecipe::new).getReference();
             } else {
                 Optional<Prefab> refPrefab = assetManager.getAsset(refString, Prefab.class);
                 if (refPrefab.isPresent()) {
@@ -221,7 +304,11 @@ private EntityRef readUrnRef(String refString) {
 
         private EntityRef readEntityRecipeRef(String refString) {
             PrefabLoader loader = loaderStack.get().peek();
-            EntityRecipe recipe = loader.prefabData.getRecipes().get(new ResourceUrn(loader.prefabUrn, refString));
+            ResourceUrn entityUrn = new ResourceUrn(loader.prefabUrn, refString);
+            EntityRecipe recipe = loader.prefabData.getRecipes().get(entityUrn);
+            if (recipe == null && loader.header == null) {
+                recipe = loader.forwardRecipes.computeIfAbsent(entityUrn, EntityRecipe::new);
+            }
             if (recipe == null) {
                 logger.error("Unable to resolve entity reference {}", refString);
                 return NullEntityRef.get();
@@ -231,52 +318,248 @@ private EntityRef readEntityRecipeRef(String refString) {
         }
     }
 
+    /**
+     * The top level information of a prefab file, gathered before its entities are loaded when the file can't be loaded in a single pass.
+     */
+    private static class PrefabHeader {
+        static final String INHERIT = "inherit";
+        static final String ENTITIES = "entities";
+        static final String ENTITY = "entity";
+        static final String ROOT = "root";
+
+        private String inherit;
+        private String root;
+        private List<String> entityNames;
+        private boolean singleEntity;
+    }
+
+    /**
+     * The properties of a component type, along with the type adapter used to read each. Type adapters are thread safe, so bindings are shared
+     * between all loads.
+     *
+     * @param <T> The type of component
+     */
+    private class ComponentBinding<T extends Component<T>> {
+        private final ComponentType<T> type;
+        private final Map<String, PropertyBinding<T, ?>> properties;
+
+        ComponentBinding(ComponentType<T> type) {
+            this.type = type;
+            ImmutableMap.Builder<String, PropertyBinding<T, ?>> builder = ImmutableMap.builder();
+            for (Map.Entry<String, PropertyAccessor<T, ?>> entry : type.getPropertyInfo().getProperties().entrySet()) {
+                builder.put(entry.getKey(), createPropertyBinding(entry.getValue()));
+            }
+            this.properties = builder.build();
+        }
+
+        private <U> PropertyBinding<T, U> createPropertyBinding(PropertyAccessor<T, U> accessor) {
+            @SuppressWarnings("unchecked")
+            TypeAdapter<U> adapter = (TypeAdapter<U>) gson.getAdapter(TypeToken.get(accessor.getPropertyType()));
+            return new PropertyBinding<>(accessor, adapter);
+        }
+
+        /**
+         * Reads the properties of a component from a json object, skipping any that are not properties of the component.
+         *
+         * @param reader    The reader, positioned at the start of the component's json object
+         * @param component The component to read into
+         * @throws IOException If there was an error reading the component
+         */
+        void read(JsonReader reader, T component) throws IOException {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                PropertyBinding<T, ?> property = properties.get(reader.nextName());
+                if (property != null) {
+                    property.read(reader, component);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+    }
+
+    private static class PropertyBinding<T, U> {
+        private final PropertyAccessor<T, U> accessor;
+        private final TypeAdapter<U> adapter;
+
+        PropertyBinding(PropertyAccessor<T, U> accessor, TypeAdapter<U> adapter) {
+            this.accessor = accessor;
+            this.adapter = adapter;
+        }
+
+        void read(JsonReader reader, T component) throws IOException {
+            accessor.set(component, adapter.read(reader));
+        }
+    }
+
+    /**
+     * Loads a prefab. Without a header the prefab is loaded in a single pass, and requiresHeader is set if the file turns out to need one.
+     */
     private class PrefabLoader {
-        public static final String INHERIT = "inherit";
-        public static final String ENTITIES = "entities";
-        public static final String ENTITY = "entity";
-        public static final String ROOT = "root";
-        private PrefabData prefabData;
-        private ResourceUrn prefabUrn;
-
-        public PrefabData load(JsonObject prefabDataObject, ResourceUrn prefabUrn) throws IOException {
+        private final PrefabData prefabData;
+        private final ResourceUrn prefabUrn;
+        private final PrefabHeader header;
+        // Entities referenced through "this:" before they are declared, during a single pass load
+        private final Map<ResourceUrn, EntityRecipe> forwardRecipes = Maps.newHashMap();
+        // Placeholders for simple names that did not match an entity when read, during a single pass load. These refer to an entity if one is declared
+        // later, otherwise to a prefab
+        private final Map<ResourceUrn, EntityRecipe> simpleForwardRecipes = Maps.newHashMap();
+        private boolean requiresHeader;
+
+        PrefabLoader(ResourceUrn prefabUrn, PrefabHeader header) {
             this.prefabUrn = prefabUrn;
+            this.header = header;
             this.prefabData = new PrefabData();
+        }
 
-            if (prefabDataObject.has(INHERIT)) {
-                inheritPrefab(prefabDataObject.getAsJsonPrimitive(INHERIT).getAsString());
+        /**
+         * @param reader The reader to load the prefab from
+         * @return The loaded prefab data, or null if the prefab requires a header to load
+         * @throws IOException If there was an error loading the prefab
+         */
+        public PrefabData load(JsonReader reader) throws IOException {
+            boolean hasEntities = false;
+            boolean entityLoaded = false;
+            String root = null;
+            if (header != null) {
+                if (header.inherit != null) {
+                    inheritPrefab(header.inherit);
+                }
+                if (header.entityNames != null) {
+                    hasEntities = true;
+                    for (String entityName : header.entityNames) {
+                        addEntityRecipeIfMissing(new ResourceUrn(prefabUrn, entityName));
+                    }
+                } else if (header.singleEntity) {
+                    addEntityRecipeIfMissing(new ResourceUrn(prefabUrn, DEFAULT_ROOT_ENTITY_NAME));
+                }
             }
 
-            if (prefabDataObject.has(ENTITIES)) {
-                loadEntitiesFromJson(prefabUrn, prefabDataObject.getAsJsonObject(ENTITIES));
-            } else if (prefabDataObject.has(ENTITY)) {
-                loadEntityFromJson(prefabUrn, prefabDataObject.getAsJsonObject(ENTITY));
-            } else {
-                throw new IOException("Prefab file missing entity definition");
+            reader.beginObject();
+            while (reader.hasNext() && !requiresHeader) {
+                switch (reader.nextName()) {
+                    case PrefabHeader.INHERIT:
+                        String parent = reader.nextString();
+                        if (header == null) {
+                            if (entityLoaded) {
+                                requiresHeader = true;
+                            } else {
+                                inheritPrefab(parent);
+                            }
+                        }
+                        break;
+                    case PrefabHeader.ROOT:
+                        root = reader.nextString();
+                        break;
+                    case PrefabHeader.ENTITIES:
+                        if (entityLoaded && !hasEntities) {
+                            // An entity was loaded from "entity", which "entities" overrides
+                            requiresHeader = true;
+                        } else {
+                            hasEntities = true;
+                            entityLoaded = true;
+                            loadEntities(reader);
+                        }
+                        break;
+                    case PrefabHeader.ENTITY:
+                        if (hasEntities) {
+                            reader.skipValue();
+                        } else {
+                            entityLoaded = true;
+                            loadEntityRecipe(declareEntityRecipe(new ResourceUrn(prefabUrn, DEFAULT_ROOT_ENTITY_NAME)), reader);
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            if (requiresHeader) {
+                return null;
             }
+            reader.endObject();
+            resolveForwardReferences();
 
-            if (prefabDataObject.has(ROOT)) {
-                prefabData.setRootEntityId(new ResourceUrn(prefabUrn, prefabDataObject.getAsJsonPrimitive(ROOT).getAsString()));
+            if (!entityLoaded) {
+                throw new IOException("Prefab file missing entity definition");
+            }
+            if (root != null) {
+                prefabData.setRootEntityId(new ResourceUrn(prefabUrn, root));
             } else if (prefabData.getRecipes().containsKey(new ResourceUrn(prefabUrn, DEFAULT_ROOT_ENTITY_NAME))) {
                 prefabData.setRootEntityId(new ResourceUrn(prefabUrn, DEFAULT_ROOT_ENTITY_NAME));
             }
             return prefabData;
         }
 
-        private void loadEntitiesFromJson(ResourceUrn prefabUrn, JsonObject entities) throws IOException {
-            for (Map.Entry<String, JsonElement> entry : entities.entrySet()) {
-                addEntityRecipeIfMissing(new ResourceUrn(prefabUrn, entry.getKey()));
+        private void loadEntities(JsonReader reader) throws IOException {
+            reader.beginObject();
+            while (reader.hasNext() && !requiresHeader) {
+                ResourceUrn entityUrn = new ResourceUrn(prefabUrn, reader.nextName());
+                loadEntityRecipe(declareEntityRecipe(entityUrn), reader);
+            }
+            if (!requiresHeader) {
+                reader.endObject();
+            }
+        }
+
+        /**
+         * Resolves the references read before the entities they refer to were declared, now that the whole prefab has been read. As when instantiating
+         * prefabs, only entity reference properties of components - and lists of them - are updated.
+         */
+        private void resolveForwardReferences() {
+            if (simpleForwardRecipes.isEmpty() && forwardRecipes.isEmpty()) {
+                return;
+            }
+            Map<EntityRef, EntityRef> replacements = new IdentityHashMap<>();
+            for (Map.Entry<ResourceUrn, EntityRecipe> entry : simpleForwardRecipes.entrySet()) {
+                replacements.put(entry.getValue().getReference(), resolveSimpleName(entry.getKey()));
+            }
+            for (ResourceUrn entityUrn : forwardRecipes.keySet()) {
+                logger.error("Unable to resolve entity reference {}", entityUrn.getFragmentName());
+                replacements.put(forwardRecipes.get(entityUrn).getReference(), NullEntityRef.get());
+            }
+            for (EntityRecipe recipe : prefabData.getRecipes().values()) {
+                recipe.getComponents().forEach(new TypeKeyedMap.EntryConsumer<Component>() {
+
+                    @Override
+                    public <U extends Component> void accept(Class<U> type, U value) {
+                        for (PropertyAccessor<U, ?> property : componentManager.getType(type).getPropertyInfo().getProperties().values()) {
+                            replaceReferences(property, value, replacements);
+                        }
+                    }
+                });
+            }
+        }
+
+        private EntityRef resolveSimpleName(ResourceUrn entityUrn) {
+            EntityRecipe recipe = prefabData.getRecipes().get(entityUrn);
+            if (recipe != null) {
+                return recipe.getReference();
             }
-            for (Map.Entry<String, JsonElement> entry : entities.entrySet()) {
-                ResourceUrn entityUrn = new ResourceUrn(prefabUrn, entry.getKey());
-                loadEntityRecipe(prefabData.getRecipes().get(entityUrn), entry.getValue().getAsJsonObject());
+            String refString = entityUrn.getFragmentName().toString();
+            Optional<Prefab> refPrefab = assetManager.getAsset(refString, Prefab.class);
+            if (refPrefab.isPresent()) {
+                return new PrefabRef(refPrefab.get());
             }
+            logger.error("Unable to resolve entity or prefab reference {}", refString);
+            return NullEntityRef.get();
         }
 
-        private void loadEntityFromJson(ResourceUrn prefabUrn, JsonObject entity) throws IOException {
-            ResourceUrn entityUrn = new ResourceUrn(prefabUrn, DEFAULT_ROOT_ENTITY_NAME);
-            addEntityRecipeIfMissing(entityUrn);
-            loadEntityRecipe(prefabData.getRecipes().get(entityUrn), entity);
+        @SuppressWarnings("unchecked")
+        private <T, U> void replaceReferences(PropertyAccessor<T, U> property, T component, Map<EntityRef, EntityRef> replacements) {
+            U value = property.get(component);
+            if (value instanceof EntityRef) {
+                EntityRef replacement = replacements.get(value);
+                if (replacement != null) {
+                    property.set(component, (U) replacement);
+                }
+            } else if (value instanceof List && ((List<?>) value).stream().anyMatch(replacements::containsKey)) {
+                // Components may expose their lists as unmodifiable, so a replacement list is set instead
+                List<Object> items = Lists.newArrayList((List<?>) value);
+                items.replaceAll(item -> replacements.containsKey(item) ? replacements.get(item) : item);
+                property.set(component, (U) items);
+            }
         }
 
         private void addEntityRecipeIfMissing(ResourceUrn entityUrn) {
@@ -285,6 +568,20 @@ private void addEntityRecipeIfMissing(ResourceUrn entityUrn) {
             }
         }
 
+        /**
+         * @param entityUrn The urn of the entity being declared
+         * @return The recipe of the entity, adopting the recipe created for any references to it that were read before it was declared
+         */
+        private EntityRecipe declareEntityRecipe(ResourceUrn entityUrn) {
+            EntityRecipe forwardRecipe = forwardRecipes.remove(entityUrn);
+            if (forwardRecipe != null && !prefabData.getRecipes().containsKey(entityUrn)) {
+                prefabData.addEntityRecipe(forwardRecipe);
+            } else {
+                addEntityRecipeIfMissing(entityUrn);
+            }
+            return prefabData.getRecipes().get(entityUrn);
+        }
+
         private void inheritPrefab(String parentPrefabUrn) throws IOException {
             Prefab parentPrefab = assetManager.getAsset(parentPrefabUrn, Prefab.class).orElseThrow(() -> new IOException("Unable to resolve parent prefab " + parentPrefabUrn + " for prefab " + prefabUrn));
             for (EntityRecipe recipe : parentPrefab.getEntityRecipes().values()) {
@@ -301,29 +598,24 @@ public <U extends Component> void accept(Class<U> type, U value) {
             }
         }
 
-        private void loadEntityRecipe(EntityRecipe entityRecipe, JsonObject entityPrefabData) throws IOException {
-            for (Map.Entry<String, JsonElement> componentData : entityPrefabData.entrySet()) {
-                Class<? extends Component> componentClass = componentIndex.find(componentData.getKey()).orElseThrow(() -> new IOException("Unable to resolve component '" + componentData.getKey() + "'"));
-                loadComponent(entityRecipe, componentClass, componentData.getValue().getAsJsonObject());
+        private void loadEntityRecipe(EntityRecipe entityRecipe, JsonReader reader) throws IOException {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String componentName = reader.nextName();
+                Class<? extends Component> componentClass = componentIndex.find(componentName).orElseThrow(() -> new IOException("Unable to resolve component '" + componentName + "'"));
+                loadComponent(entityRecipe, componentClass, reader);
             }
+            reader.endObject();
         }
 
-        private <T extends Component<T>> void loadComponent(EntityRecipe entityRecipe, Class<T> componentClass, JsonObject value) {
-            ComponentType<T> type = componentManager.getType(componentClass);
+        private <T extends Component<T>> void loadComponent(EntityRecipe entityRecipe, Class<T> componentClass, JsonReader reader) throws IOException {
+            ComponentBinding<T> binding = getBinding(componentClass);
             T component = entityRecipe.getComponent(componentClass).orElseGet(() -> {
-                T newComp = type.create();
+                T newComp = binding.type.create();
                 entityRecipe.add(newComp);
                 return newComp;
             });
-
-            type.getPropertyInfo().getProperties().entrySet().stream().filter(properties -> value.has(properties.getKey())).forEach(properties -> {
-                PropertyAccessor<T, ?> propertyAccessor = properties.getValue();
-                readProperty(properties.getKey(), value, component, propertyAccessor);
-            });
-        }
-
-        private <T extends Component, U> void readProperty(String name, JsonObject value, T component, PropertyAccessor<T, U> propertyAccessor) {
-            propertyAccessor.set(component, gson.fromJson(value.get(name), propertyAccessor.getPropertyType()));
+            binding.read(reader, component);
         }
 
     }
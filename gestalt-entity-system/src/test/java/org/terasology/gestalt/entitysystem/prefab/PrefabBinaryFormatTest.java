@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.entitysystem.prefab;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terasology.gestalt.assets.AssetType;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.AssetDataFile;
+import org.terasology.gestalt.assets.format.producer.AssetFileDataProducer;
+import org.terasology.gestalt.assets.management.AssetManager;
+import org.terasology.gestalt.assets.module.ModuleAwareAssetTypeManager;
+import org.terasology.gestalt.assets.module.ModuleAwareAssetTypeManagerImpl;
+import org.terasology.gestalt.assets.module.ModuleDependencyResolutionStrategy;
+import org.terasology.gestalt.assets.module.ModuleEnvironmentDependencyProvider;
+import org.terasology.gestalt.entitysystem.component.management.ComponentManager;
+import org.terasology.gestalt.entitysystem.component.management.ComponentTypeIndex;
+import org.terasology.gestalt.module.Module;
+import org.terasology.gestalt.module.ModuleEnvironment;
+import org.terasology.gestalt.module.ModuleFactory;
+import org.terasology.gestalt.module.resources.DirectoryFileSource;
+import org.terasology.gestalt.module.sandbox.PermitAllPermissionProviderFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import modules.test.components.Reference;
+import modules.test.components.Sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PrefabBinaryFormatTest {
+
+    private static final ResourceUrn BINARY_URN = new ResourceUrn("test:binary");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private ModuleAwareAssetTypeManager assetTypeManager = new ModuleAwareAssetTypeManagerImpl();
+    private AssetManager assetManager = new AssetManager(assetTypeManager);
+    private PrefabBinaryFormat binaryFormat;
+    private PrefabJsonConverter converter;
+    private Module module;
+
+    public PrefabBinaryFormatTest() throws Exception {
+        ModuleFactory factory = new ModuleFactory();
+        module = factory.createPackageModule("modules.test");
+        ModuleEnvironment moduleEnvironment = new ModuleEnvironment(Collections.singletonList(module), new PermitAllPermissionProviderFactory());
+
+        ComponentManager componentManager = new ComponentManager();
+        AssetType<Prefab, PrefabData> prefabAssetType = assetTypeManager.createAssetType(Prefab.class, Prefab::new, "prefabs");
+        AssetFileDataProducer<PrefabData> prefabDataProducer = assetTypeManager.getAssetFileDataProducer(prefabAssetType);
+        ComponentTypeIndex componentTypeIndex = new ComponentTypeIndex(moduleEnvironment, new ModuleDependencyResolutionStrategy(new ModuleEnvironmentDependencyProvider(moduleEnvironment)));
+        PrefabJsonFormat jsonFormat = new PrefabJsonFormat.Builder(componentTypeIndex, componentManager, assetManager).create();
+        prefabDataProducer.addAssetFormat(jsonFormat);
+        binaryFormat = new PrefabBinaryFormat(componentTypeIndex, componentManager, assetManager);
+        converter = new PrefabJsonConverter(jsonFormat, binaryFormat);
+        assetTypeManager.switchEnvironment(moduleEnvironment);
+    }
+
+    @Test
+    public void roundTripMultiEntityPrefab() throws IOException {
+        PrefabData data = convertAndLoad(new ResourceUrn("test:multi"));
+
+        ResourceUrn rootUrn = new ResourceUrn(BINARY_URN, "root");
+        ResourceUrn secondUrn = new ResourceUrn(BINARY_URN, "second");
+        assertEquals(rootUrn, data.getRootEntityId());
+        assertEquals(2, data.getRecipes().size());
+
+        EntityRecipe root = data.getRecipes().get(rootUrn);
+        EntityRecipe second = data.getRecipes().get(secondUrn);
+        assertEquals("Test Name", root.getComponent(Sample.class).get().getName());
+        assertEquals("Second Entity", second.getComponent(Sample.class).get().getName());
+        assertSame(second, ((EntityRecipeRef) root.getComponent(Reference.class).get().getReference()).getRecipe());
+    }
+
+    @Test
+    public void roundTripInheritedPrefab() throws IOException {
+        PrefabData data = convertAndLoad(new ResourceUrn("test:inheritance"));
+
+        Sample sample = data.getRecipes().get(data.getRootEntityId()).getComponent(Sample.class).get();
+        assertEquals("Test Name", sample.getName());
+        assertEquals("New Description", sample.getDescription());
+    }
+
+    @Test
+    public void roundTripPrefabReferences() throws IOException {
+        PrefabData data = convertAndLoad(new ResourceUrn("test:reference-list"));
+
+        Reference reference = data.getRecipes().get(data.getRootEntityId()).getComponent(Reference.class).get();
+        assertEquals(3, reference.getReferences().size());
+        assertTrue(reference.getReferences().get(0) instanceof PrefabRef);
+        assertEquals(new ResourceUrn("test:single"), ((PrefabRef) reference.getReferences().get(0)).getPrefab().getUrn());
+        assertEquals(new ResourceUrn("test:multi"), ((PrefabRef) reference.getReferences().get(2)).getPrefab().getUrn());
+    }
+
+    @Test
+    public void roundTripJsonPrefabFile() throws IOException {
+        AssetDataFile jsonFile = new AssetDataFile(module.getResources().getFile("assets", "prefabs", "multi.prefab")
+                .orElseThrow(() -> new RuntimeException("Expected json prefab file")));
+        File binaryFile = getBinaryFile();
+        try (OutputStream output = new FileOutputStream(binaryFile)) {
+            converter.convert(BINARY_URN, jsonFile, output);
+        }
+        PrefabData data = load(binaryFile);
+
+        ResourceUrn rootUrn = new ResourceUrn(BINARY_URN, "root");
+        ResourceUrn secondUrn = new ResourceUrn(BINARY_URN, "second");
+        assertEquals(rootUrn, data.getRootEntityId());
+        assertEquals(2, data.getRecipes().size());
+
+        EntityRecipe root = data.getRecipes().get(rootUrn);
+        EntityRecipe second = data.getRecipes().get(secondUrn);
+        assertEquals("Test Name", root.getComponent(Sample.class).get().getName());
+        assertEquals("Second Entity", second.getComponent(Sample.class).get().getName());
+        assertSame(second, ((EntityRecipeRef) root.getComponent(Reference.class).get().getReference()).getRecipe());
+    }
+
+    private PrefabData convertAndLoad(ResourceUrn sourceUrn) throws IOException {
+        Prefab prefab = assetManager.getAsset(sourceUrn, Prefab.class).orElseThrow(() -> new RuntimeException("Expected prefab " + sourceUrn));
+        File binaryFile = getBinaryFile();
+        try (OutputStream output = new FileOutputStream(binaryFile)) {
+            converter.convert(prefab, output);
+        }
+        return load(binaryFile);
+    }
+
+    private File getBinaryFile() {
+        return new File(tempFolder.getRoot(), BINARY_URN.getResourceName() + "." + PrefabBinaryFormat.FILE_EXTENSION);
+    }
+
+    private PrefabData load(File binaryFile) throws IOException {
+        DirectoryFileSource fileSource = new DirectoryFileSource(tempFolder.getRoot());
+        AssetDataFile input = new AssetDataFile(fileSource.getFile(binaryFile.getName()).orElseThrow(() -> new RuntimeException("Expected binary file")));
+        return binaryFormat.load(BINARY_URN, Collections.singletonList(input));
+    }
+}
@@ -19,6 +19,7 @@
 import org.junit.Test;
 import org.terasology.gestalt.assets.AssetType;
 import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.assets.format.AssetDataFile;
 import org.terasology.gestalt.assets.format.producer.AssetFileDataProducer;
 import org.terasology.gestalt.assets.management.AssetManager;
 import org.terasology.gestalt.assets.module.ModuleAwareAssetTypeManager;
@@ -30,15 +31,22 @@
 import org.terasology.gestalt.module.Module;
 import org.terasology.gestalt.module.ModuleEnvironment;
 import org.terasology.gestalt.module.ModuleFactory;
+import org.terasology.gestalt.module.resources.FileReference;
 import org.terasology.gestalt.module.sandbox.PermitAllPermissionProviderFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import modules.test.components.Reference;
 import modules.test.components.Sample;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -54,7 +62,9 @@ public class PrefabJsonFormatTest {
     private static final ResourceUrn MULTI_EXPLICT_ROOT_URN = new ResourceUrn("test:multi-explicit-root");
     private static final ResourceUrn EXTERNAL_COMPOSITION_URN = new ResourceUrn("test:external-composition");
     private static final ResourceUrn INHERITANCE_URN = new ResourceUrn("test:inheritance");
+    private static final ResourceUrn INHERITANCE_LAST_URN = new ResourceUrn("test:inheritance-last");
     private static final ResourceUrn REFERENCE_LIST_URN = new ResourceUrn("test:reference-list");
+    private static final ResourceUrn SIMPLE_FORWARD_REFERENCE_URN = new ResourceUrn("test:simple-forward-reference");
 
     private static final String ROOT_FRAGMENT = "root";
     private static final String SECOND_FRAGMENT = "second";
@@ -66,6 +76,8 @@ public class PrefabJsonFormatTest {
 
     private ComponentManager componentManager;
 
+    private PrefabJsonFormat prefabFormat;
+
     private ModuleAwareAssetTypeManager assetTypeManager = new ModuleAwareAssetTypeManagerImpl();
     private AssetManager assetManager = new AssetManager(assetTypeManager);
 
@@ -78,7 +90,8 @@ public PrefabJsonFormatTest() throws Exception {
         AssetType<Prefab, PrefabData> prefabAssetType = assetTypeManager.createAssetType(Prefab.class, Prefab::new, "prefabs");
         AssetFileDataProducer<PrefabData> prefabDataProducer = assetTypeManager.getAssetFileDataProducer(prefabAssetType);
         ComponentTypeIndex componentTypeIndex = new ComponentTypeIndex(moduleEnvironment, new ModuleDependencyResolutionStrategy(new ModuleEnvironmentDependencyProvider(moduleEnvironment)));
-        prefabDataProducer.addAssetFormat(new PrefabJsonFormat.Builder(componentTypeIndex, componentManager, assetManager).create());
+        prefabFormat = new PrefabJsonFormat.Builder(componentTypeIndex, componentManager, assetManager).create();
+        prefabDataProducer.addAssetFormat(prefabFormat);
         assetTypeManager.switchEnvironment(moduleEnvironment);
     }
 
@@ -186,6 +199,16 @@ public void loadEntityWithInheritance() {
         assertEquals("New Description", sample.getDescription());
     }
 
+    @Test
+    public void loadEntityWithInheritanceDeclaredLast() {
+        Optional<Prefab> result = assetManager.getAsset(INHERITANCE_LAST_URN, Prefab.class);
+        assertTrue(result.isPresent());
+        Prefab prefab = result.get();
+        Sample sample = prefab.getRootEntity().getComponent(Sample.class).orElseThrow(() -> new RuntimeException("Expected Sample"));
+        assertEquals(TEST_NAME, sample.getName());
+        assertEquals("New Description", sample.getDescription());
+    }
+
     @Test
     public void loadEntityWithReferenceList() {
         Optional<Prefab> result = assetManager.getAsset(REFERENCE_LIST_URN, Prefab.class);
@@ -196,5 +219,47 @@ public void loadEntityWithReferenceList() {
         assertEquals(3, component.getReferences().size());
     }
 
+    @Test
+    public void loadWithForwardReferenceReadsFileOnce() throws IOException {
+        AtomicInteger opened = new AtomicInteger();
+        PrefabData data = prefabFormat.load(MULTI_URN, Collections.singletonList(new AssetDataFile(countingFile("multi.prefab", opened))));
+        EntityRecipe rootEntity = data.getRecipes().get(new ResourceUrn(MULTI_URN, ROOT_FRAGMENT));
+        EntityRecipe secondEntity = data.getRecipes().get(new ResourceUrn(MULTI_URN, SECOND_FRAGMENT));
+        assertEquals(secondEntity.getReference(), rootEntity.getComponent(Reference.class).get().getReference());
+        assertEquals(1, opened.get());
+    }
 
+    @Test
+    public void loadWithSimpleNameForwardReferenceReadsFileOnce() throws IOException {
+        AtomicInteger opened = new AtomicInteger();
+        PrefabData data = prefabFormat.load(SIMPLE_FORWARD_REFERENCE_URN, Collections.singletonList(new AssetDataFile(countingFile("simple-forward-reference.prefab", opened))));
+        EntityRecipe rootEntity = data.getRecipes().get(new ResourceUrn(SIMPLE_FORWARD_REFERENCE_URN, ROOT_FRAGMENT));
+        EntityRecipe secondEntity = data.getRecipes().get(new ResourceUrn(SIMPLE_FORWARD_REFERENCE_URN, SECOND_FRAGMENT));
+        Reference reference = rootEntity.getComponent(Reference.class).get();
+        assertSame(secondEntity.getReference(), reference.getReference());
+        assertSame(secondEntity.getReference(), reference.getReferences().get(0));
+        assertTrue(reference.getReferences().get(1) instanceof PrefabRef);
+        assertEquals(SINGLE_URN, ((PrefabRef) reference.getReferences().get(1)).getPrefab().getUrn());
+        assertEquals(1, opened.get());
+    }
+
+    private FileReference countingFile(String name, AtomicInteger opened) {
+        return new FileReference() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public List<String> getPath() {
+                return Arrays.asList("assets", "prefabs");
+            }
+
+            @Override
+            public InputStream open() {
+                opened.incrementAndGet();
+                return getClass().getResourceAsStream("/modules/test/assets/prefabs/" + name);
+            }
+        };
+    }
 }
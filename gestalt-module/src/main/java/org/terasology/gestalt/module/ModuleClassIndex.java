@@ -0,0 +1,531 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.reflections.Reflections;
+import org.reflections.Store;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.scanners.TypeAnnotationsScanner;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.reflections.util.Utils.index;
+
+/**
+ * ModuleClassIndex records the supertypes and annotations of a set of classes by name, so that subtypes and annotated types can be discovered without loading
+ * classes or holding the full Reflections stores of every module.
+ * <p>
+ * Names are interned into a single table, and the relationships between them are held as compact int tables. An index can be built from module manifests
+ * or directly from class files, and can be written to and read from a stream.
+ * </p>
+ * <p>
+ * Immutable.
+ * </p>
+ */
+public final class ModuleClassIndex {
+
+    private static final int MAGIC = 0x47434958;
+    private static final int VERSION = 1;
+    private static final int[] NO_IDS = new int[0];
+
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int[] subtypeOffsets;
+    private final int[] subtypes;
+    private final int[] annotatedOffsets;
+    private final int[] annotated;
+
+    private ModuleClassIndex(String[] names, int[] subtypeOffsets, int[] subtypes, int[] annotatedOffsets, int[] annotated) {
+        this.names = names;
+        this.ids = Maps.newHashMapWithExpectedSize(names.length);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+        this.subtypeOffsets = subtypeOffsets;
+        this.subtypes = subtypes;
+        this.annotatedOffsets = annotatedOffsets;
+        this.annotated = annotated;
+    }
+
+    /**
+     * @return A new builder for a ModuleClassIndex
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads an index previously written with {@link #write(OutputStream)}.
+     *
+     * @param stream The stream to read from. It is not closed.
+     * @return The index
+     * @throws IOException If there was an error reading the stream, or it does not contain an index
+     */
+    public static ModuleClassIndex read(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Stream does not contain a class index");
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported class index version " + version);
+        }
+        String[] names = new String[input.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = input.readUTF();
+        }
+        int[] subtypeOffsets = readIds(input, names.length + 1);
+        int[] subtypes = readIds(input, subtypeOffsets[names.length]);
+        int[] annotatedOffsets = readIds(input, names.length + 1);
+        int[] annotated = readIds(input, annotatedOffsets[names.length]);
+        return new ModuleClassIndex(names, subtypeOffsets, subtypes, annotatedOffsets, annotated);
+    }
+
+    private static int[] readIds(DataInputStream input, int count) throws IOException {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = input.readInt();
+        }
+        return result;
+    }
+
+    /**
+     * Writes the index to a stream, in a form that can be read back with {@link #read(InputStream)}.
+     *
+     * @param stream The stream to write to. It is flushed but not closed.
+     * @throws IOException If there was an error writing to the stream
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(names.length);
+        for (String name : names) {
+            output.writeUTF(name);
+        }
+        writeIds(output, subtypeOffsets);
+        writeIds(output, subtypes);
+        writeIds(output, annotatedOffsets);
+        writeIds(output, annotated);
+        output.flush();
+    }
+
+    private static void writeIds(DataOutputStream output, int[] values) throws IOException {
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    /**
+     * @return The number of distinct type names in the index
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param typeName The name of the type to find the subtypes of
+     * @return The names of all direct and indirect subtypes of the given type
+     */
+    public Set<String> getSubtypeNames(String typeName) {
+        Integer id = ids.get(typeName);
+        if (id == null) {
+            return Collections.emptySet();
+        }
+        boolean[] visited = new boolean[names.length];
+        visited[id] = true;
+        Set<String> result = Sets.newLinkedHashSet();
+        int[] open = new int[16];
+        int openCount = 0;
+        open[openCount++] = id;
+        while (openCount > 0) {
+            int current = open[--openCount];
+            for (int i = subtypeOffsets[current]; i < subtypeOffsets[current + 1]; i++) {
+                int subtype = subtypes[i];
+                if (!visited[subtype]) {
+                    visited[subtype] = true;
+                    result.add(names[subtype]);
+                    if (openCount == open.length) {
+                        open = Arrays.copyOf(open, open.length * 2);
+                    }
+                    open[openCount++] = subtype;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param annotationName The name of the annotation of interest
+     * @return The names of the types directly annotated with the given annotation
+     */
+    public Set<String> getAnnotatedTypeNames(String annotationName) {
+        Integer id = ids.get(annotationName);
+        if (id == null) {
+            return Collections.emptySet();
+        }
+        Set<String> result = Sets.newLinkedHashSetWithExpectedSize(annotatedOffsets[id + 1] - annotatedOffsets[id]);
+        for (int i = annotatedOffsets[id]; i < annotatedOffsets[id + 1]; i++) {
+            result.add(names[annotated[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Builder for a ModuleClassIndex. Relationships may be added in any order, and duplicates are ignored.
+     */
+    public static final class Builder {
+
+        private final List<String> names = Lists.newArrayList();
+        private final Map<String, Integer> ids = Maps.newHashMap();
+        private final EdgeList supertypeEdges = new EdgeList();
+        private final EdgeList annotationEdges = new EdgeList();
+
+        private Builder() {
+        }
+
+        /**
+         * Records that a type directly extends or implements another.
+         *
+         * @param typeName      The name of the type
+         * @param supertypeName The name of the class or interface it directly extends or implements
+         * @return This builder
+         */
+        public Builder addSupertype(String typeName, String supertypeName) {
+            supertypeEdges.add(intern(supertypeName), intern(typeName));
+            return this;
+        }
+
+        /**
+         * Records that a type is directly annotated with an annotation.
+         *
+         * @param typeName       The name of the type
+         * @param annotationName The name of the annotation
+         * @return This builder
+         */
+        public Builder addAnnotation(String typeName, String annotationName) {
+            annotationEdges.add(intern(annotationName), intern(typeName));
+            return this;
+        }
+
+        /**
+         * Adds the subtype and type annotation information held in a module manifest.
+         *
+         * @param manifest The manifest to add
+         * @return This builder
+         */
+        public Builder addManifest(Reflections manifest) {
+            Store store = manifest.getStore();
+            Set<String> indices = store.keySet();
+            String subTypesIndex = index(SubTypesScanner.class);
+            if (indices.contains(subTypesIndex)) {
+                for (String supertype : store.keys(subTypesIndex)) {
+                    for (String type : store.get(subTypesIndex, supertype)) {
+                        addSupertype(type, supertype);
+                    }
+                }
+            }
+            String annotationsIndex = index(TypeAnnotationsScanner.class);
+            if (indices.contains(annotationsIndex)) {
+                for (String annotation : store.keys(annotationsIndex)) {
+                    for (String type : store.get(annotationsIndex, annotation)) {
+                        addAnnotation(type, annotation);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Adds all the information held in another index.
+         *
+         * @param index The index to add
+         * @return This builder
+         */
+        public Builder addIndex(ModuleClassIndex index) {
+            for (int supertype = 0; supertype < index.names.length; supertype++) {
+                for (int i = index.subtypeOffsets[supertype]; i < index.subtypeOffsets[supertype + 1]; i++) {
+                    addSupertype(index.names[index.subtypes[i]], index.names[supertype]);
+                }
+                for (int i = index.annotatedOffsets[supertype]; i < index.annotatedOffsets[supertype + 1]; i++) {
+                    addAnnotation(index.names[index.annotated[i]], index.names[supertype]);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Adds the superclass, interfaces and runtime visible annotations of a class file. Only the constant pool and class level structures are read -
+         * the class is not loaded.
+         *
+         * @param classFile A stream over the class file. It is not closed.
+         * @return This builder
+         * @throws IOException If there was an error reading the stream, or it does not contain a class file
+         */
+        public Builder addClassFile(InputStream classFile) throws IOException {
+            new ClassFileReader(new DataInputStream(classFile)).read(this);
+            return this;
+        }
+
+        /**
+         * @return The index
+         */
+        public ModuleClassIndex build() {
+            int[] subtypeOffsets = new int[names.size() + 1];
+            int[] subtypes = supertypeEdges.toTable(subtypeOffsets);
+            int[] annotatedOffsets = new int[names.size() + 1];
+            int[] annotated = annotationEdges.toTable(annotatedOffsets);
+            return new ModuleClassIndex(names.toArray(new String[0]), subtypeOffsets, subtypes, annotatedOffsets, annotated);
+        }
+
+        private int intern(String name) {
+            Preconditions.checkNotNull(name);
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * A growable list of (from, to) pairs of ids, that can be packed into an offset table and a value table.
+     */
+    private static final class EdgeList {
+        private long[] edges = new long[64];
+        private int size;
+
+        void add(int from, int to) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+            edges[size++] = ((long) from << 32) | to;
+        }
+
+        int[] toTable(int[] offsets) {
+            long[] sorted = Arrays.copyOf(edges, size);
+            Arrays.sort(sorted);
+            int[] values = new int[size];
+            int count = 0;
+            long previous = -1;
+            for (long edge : sorted) {
+                if (edge != previous) {
+                    offsets[(int) (edge >>> 32) + 1]++;
+                    values[count++] = (int) edge;
+                    previous = edge;
+                }
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+            return count == size ? values : (count == 0 ? NO_IDS : Arrays.copyOf(values, count));
+        }
+    }
+
+    /**
+     * A minimal class file reader, reading only the constant pool and the class level information needed by the index.
+     */
+    private static final class ClassFileReader {
+        private static final int CLASS_MAGIC = 0xCAFEBABE;
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_LONG = 5;
+        private static final int CONSTANT_DOUBLE = 6;
+        private static final int CONSTANT_CLASS = 7;
+        private static final String ANNOTATIONS_ATTRIBUTE = "RuntimeVisibleAnnotations";
+
+        private final DataInputStream input;
+        private String[] utf8Entries;
+        private int[] classEntries;
+
+        ClassFileReader(DataInputStream input) {
+            this.input = input;
+        }
+
+        void read(Builder builder) throws IOException {
+            if (input.readInt() != CLASS_MAGIC) {
+                throw new IOException("Stream does not contain a class file");
+            }
+            input.readUnsignedShort();
+            input.readUnsignedShort();
+            readConstantPool();
+            input.readUnsignedShort();
+            String typeName = className(input.readUnsignedShort());
+            int superclass = input.readUnsignedShort();
+            if (superclass != 0) {
+                builder.addSupertype(typeName, className(superclass));
+            }
+            int interfaceCount = input.readUnsignedShort();
+            for (int i = 0; i < interfaceCount; i++) {
+                builder.addSupertype(typeName, className(input.readUnsignedShort()));
+            }
+            skipMembers();
+            skipMembers();
+            int attributeCount = input.readUnsignedShort();
+            for (int i = 0; i < attributeCount; i++) {
+                String attributeName = utf8(input.readUnsignedShort());
+                int length = input.readInt();
+                if (ANNOTATIONS_ATTRIBUTE.equals(attributeName)) {
+                    int annotationCount = input.readUnsignedShort();
+                    for (int j = 0; j < annotationCount; j++) {
+                        builder.addAnnotation(typeName, descriptorToName(utf8(input.readUnsignedShort())));
+                        skipAnnotationBody();
+                    }
+                } else {
+                    skip(length);
+                }
+            }
+        }
+
+        private void readConstantPool() throws IOException {
+            int count = input.readUnsignedShort();
+            utf8Entries = new String[count];
+            classEntries = new int[count];
+            for (int i = 1; i < count; i++) {
+                int tag = input.readUnsignedByte();
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        utf8Entries[i] = input.readUTF();
+                        break;
+                    case CONSTANT_CLASS:
+                        classEntries[i] = input.readUnsignedShort();
+                        break;
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        skip(2);
+                        break;
+                    case 15: // MethodHandle
+                        skip(3);
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        skip(4);
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        skip(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+        }
+
+        private void skipMembers() throws IOException {
+            int memberCount = input.readUnsignedShort();
+            for (int i = 0; i < memberCount; i++) {
+                skip(6);
+                int attributeCount = input.readUnsignedShort();
+                for (int j = 0; j < attributeCount; j++) {
+                    skip(2);
+                    skip(input.readInt());
+                }
+            }
+        }
+
+        private void skipAnnotationBody() throws IOException {
+            int pairCount = input.readUnsignedShort();
+            for (int i = 0; i < pairCount; i++) {
+                skip(2);
+                skipElementValue();
+            }
+        }
+
+        private void skipElementValue() throws IOException {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 'e':
+                    skip(4);
+                    break;
+                case '@':
+                    skip(2);
+                    skipAnnotationBody();
+                    break;
+                case '[':
+                    int count = input.readUnsignedShort();
+                    for (int i = 0; i < count; i++) {
+                        skipElementValue();
+                    }
+                    break;
+                default:
+                    skip(2);
+                    break;
+            }
+        }
+
+        private void skip(int count) throws IOException {
+            int remaining = count;
+            while (remaining > 0) {
+                int skipped = input.skipBytes(remaining);
+                if (skipped == 0) {
+                    // skipBytes may skip nothing without reaching the end of the stream, so fall back to reading
+                    if (input.read() == -1) {
+                        throw new EOFException("Unexpected end of class file");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        private String utf8(int index) throws IOException {
+            if (index <= 0 || index >= utf8Entries.length || utf8Entries[index] == null) {
+                throw new IOException("Invalid constant pool reference " + index);
+            }
+            return utf8Entries[index];
+        }
+
+        private String className(int index) throws IOException {
+            if (index <= 0 || index >= classEntries.length || classEntries[index] == 0) {
+                throw new IOException("Invalid class reference " + index);
+            }
+            return utf8(classEntries[index]).replace('/', '.');
+        }
+
+        private static String descriptorToName(String descriptor) {
+            if (descriptor.startsWith("L") && descriptor.endsWith(";")) {
+                return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+            }
+            return descriptor.replace('/', '.');
+        }
+    }
+}
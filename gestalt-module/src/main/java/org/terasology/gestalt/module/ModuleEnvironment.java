@@ -18,6 +18,7 @@
 
 import android.support.annotation.NonNull;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
@@ -26,11 +27,9 @@
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 
-import org.reflections.Reflections;
-import org.reflections.ReflectionsException;
 import org.reflections.scanners.SubTypesScanner;
-import org.reflections.util.ConfigurationBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.gestalt.module.dependencyresolution.DependencyInfo;
@@ -41,18 +40,24 @@
 import org.terasology.gestalt.module.sandbox.ObtainClassloader;
 import org.terasology.gestalt.module.sandbox.PermissionProvider;
 import org.terasology.gestalt.module.sandbox.PermissionProviderFactory;
+import org.terasology.gestalt.module.sandbox.SharedModuleClassLoader;
 import org.terasology.gestalt.naming.Name;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -76,11 +81,21 @@ public class ModuleEnvironment implements AutoCloseable, Iterable<Module> {
     private final ClassLoader apiClassLoader;
     private final ClassLoader finalClassLoader;
     private final ImmutableList<ModuleClassLoader> managedClassLoaders;
+    private final ImmutableList<ImmutableList<Module>> classLoaderModules;
     private final ImmutableSetMultimap<Name, Name> moduleDependencies;
-    private final Reflections fullReflections;
+    private final ImmutableMap<Name, Integer> moduleIndices;
+    private final BitSet[] dependencyMatrix;
+    private final Map<Class<?>, Optional<Name>> providingModuleCache = new ConcurrentHashMap<>();
+    private final ModuleClassIndex classIndex;
     private final ImmutableList<Module> modulesOrderByDependencies;
     private final ImmutableList<Name> moduleIdsOrderedByDependencies;
     private final ModuleFileSource resources;
+    private final PermissionProviderFactory permissionProviderFactory;
+    private final ClassLoaderSupplier classLoaderSupplier;
+    private final Predicate<Module> trustedModules;
+    private final SharedClassLoaderSupplier sharedClassLoaderSupplier;
+    private final Set<ModuleClassLoader> handedOverClassLoaders = Sets.newConcurrentHashSet();
+    private volatile boolean closed;
 
     /**
      * @param modules                   The modules this environment should encompass.
@@ -109,32 +124,141 @@ public ModuleEnvironment(Iterable<Module> modules, PermissionProviderFactory per
      * @throws java.lang.IllegalArgumentException if the Iterable contains multiple modules with the same id.
      */
     public ModuleEnvironment(Iterable<Module> modules, final PermissionProviderFactory permissionProviderFactory, ClassLoaderSupplier classLoaderSupplier, ClassLoader apiClassLoader) {
-        Map<Name, Reflections> reflectionsByModule = Maps.newLinkedHashMap();
+        this(modules, permissionProviderFactory, classLoaderSupplier, apiClassLoader, x -> false, SharedModuleClassLoader::create, null);
+    }
+
+    /**
+     * Creates an environment where trusted modules are not sandboxed. Rather than each having its own class loader, modules that are trusted and adjacent in
+     * the dependency order share a single class loader, shortening the chain of class loaders that must be searched when loading classes.
+     *
+     * @param modules                   The modules this environment should encompass.
+     * @param permissionProviderFactory A factory for producing a PermissionProvider for each loaded module
+     * @param classLoaderSupplier       A supplier for producing a ModuleClassLoader for a module
+     * @param apiClassLoader            The base classloader the module environment should build upon.
+     * @param trustedModules            A predicate determining which modules are trusted, and can share a class loader without a sandbox
+     * @param sharedClassLoaderSupplier A supplier for producing a ModuleClassLoader shared by a group of trusted modules
+     * @throws java.lang.IllegalArgumentException if the Iterable contains multiple modules with the same id.
+     */
+    public ModuleEnvironment(Iterable<Module> modules, final PermissionProviderFactory permissionProviderFactory, ClassLoaderSupplier classLoaderSupplier, ClassLoader apiClassLoader,
+                             Predicate<Module> trustedModules, SharedClassLoaderSupplier sharedClassLoaderSupplier) {
+        this(modules, permissionProviderFactory, classLoaderSupplier, apiClassLoader, trustedModules, sharedClassLoaderSupplier, null);
+    }
+
+    /**
+     * @param modules                   The modules this environment should encompass.
+     * @param permissionProviderFactory A factory for producing a PermissionProvider for each loaded module
+     * @param classLoaderSupplier       A supplier for producing a ModuleClassLoader for a module
+     * @param apiClassLoader            The base classloader the module environment should build upon.
+     * @param trustedModules            A predicate determining which modules are trusted, and can share a class loader without a sandbox
+     * @param sharedClassLoaderSupplier A supplier for producing a ModuleClassLoader shared by a group of trusted modules
+     * @param base                      An environment to take the class loaders of the unchanged modules from, or null to create all class loaders
+     */
+    private ModuleEnvironment(Iterable<Module> modules, final PermissionProviderFactory permissionProviderFactory, ClassLoaderSupplier classLoaderSupplier,
+                              ClassLoader apiClassLoader, Predicate<Module> trustedModules, SharedClassLoaderSupplier sharedClassLoaderSupplier, ModuleEnvironment base) {
+        ModuleClassIndex.Builder classIndexBuilder = ModuleClassIndex.builder();
         this.modules = buildModuleMap(modules);
         this.apiClassLoader = apiClassLoader;
+        this.permissionProviderFactory = permissionProviderFactory;
+        this.classLoaderSupplier = classLoaderSupplier;
+        this.trustedModules = trustedModules;
+        this.sharedClassLoaderSupplier = sharedClassLoaderSupplier;
         this.modulesOrderByDependencies = calculateModulesOrderedByDependencies();
         this.moduleIdsOrderedByDependencies = ImmutableList.copyOf(Collections2.transform(modulesOrderByDependencies, Module::getId));
 
-        ImmutableList.Builder<ModuleClassLoader> managedClassLoaderListBuilder = ImmutableList.builder();
-        ClassLoader lastClassLoader = apiClassLoader;
         List<Module> orderedModules = getModulesOrderedByDependencies();
+        int reusedModuleCount = (base != null) ? calculateReusableModuleCount(base) : 0;
         Predicate<Class<?>> classpathModuleClassesPredicate = orderedModules.stream().map(Module::getClassPredicate).reduce(x -> false, Predicate::or);
-        for (final Module module : orderedModules) {
-            if (!module.getClasspaths().isEmpty() && !hasClassContent(module)) {
-                ModuleClassLoader classLoader = buildModuleClassLoader(module, lastClassLoader, permissionProviderFactory, classLoaderSupplier, classpathModuleClassesPredicate);
-                managedClassLoaderListBuilder.add(classLoader);
-                lastClassLoader = classLoader.getClassLoader();
+        ClassLoaderChainBuilder classLoaderChainBuilder = new ClassLoaderChainBuilder(base, reusedModuleCount, classpathModuleClassesPredicate);
+        try {
+            for (int i = 0; i < orderedModules.size(); i++) {
+                Module module = orderedModules.get(i);
+                if (requiresClassLoader(module)) {
+                    classLoaderChainBuilder.add(module, i);
+                }
+                classIndexBuilder.addManifest(module.getModuleManifest());
+            }
+            classLoaderChainBuilder.flushTrustedModules();
+            this.finalClassLoader = classLoaderChainBuilder.lastClassLoader;
+            this.classIndex = classIndexBuilder.build();
+            this.managedClassLoaders = classLoaderChainBuilder.classLoaders.build();
+            this.classLoaderModules = classLoaderChainBuilder.classLoaderModules.build();
+            this.moduleDependencies = buildModuleDependencies((base != null) ? base.moduleDependencies : ImmutableSetMultimap.of(), reusedModuleCount);
+            this.moduleIndices = buildModuleIndices();
+            this.dependencyMatrix = buildDependencyMatrix();
+            this.resources = new CompositeFileSource(getModulesOrderedByDependencies().stream().map(Module::getResources).collect(Collectors.toList()));
+        } catch (RuntimeException | Error e) {
+            classLoaderChainBuilder.abandon();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new environment from this environment with some modules added or removed. The class loaders of the leading modules whose position in the
+     * dependency order is unchanged are carried over to the new environment rather than being recreated, so changing a few modules late in the dependency
+     * order is much cheaper than constructing a new environment.
+     * <p>
+     * Class loaders that are carried over are owned by the new environment - closing this environment afterwards only closes the class loaders that were not
+     * carried over. This environment should not be used after the new environment is closed.
+     * </p>
+     * <p>
+     * Each class loader is only carried over once. Deriving from this environment again creates new class loaders in place of any that have already been
+     * carried over, so environments derived from the same base never share class loaders and can be closed independently.
+     * </p>
+     * <p>
+     * Class loaders can only be carried over if the added and removed modules all have their own class loader, as the permissions of the class loaders depend
+     * on the set of modules whose classes are on the classpath. A class loader shared by trusted modules is only carried over if the same modules share it in
+     * the new environment.
+     * </p>
+     *
+     * @param addedModules     The modules to add to the environment. These replace any existing modules with the same id.
+     * @param removedModuleIds The ids of the modules to remove from the environment.
+     * @return The new environment
+     * @throws IllegalStateException if this environment has been closed
+     */
+    public ModuleEnvironment derive(Iterable<Module> addedModules, Iterable<Name> removedModuleIds) {
+        Preconditions.checkState(!closed, "Cannot derive from a closed environment");
+        Map<Name, Module> newModules = Maps.newLinkedHashMap(modules);
+        for (Name removedModuleId : removedModuleIds) {
+            newModules.remove(removedModuleId);
+        }
+        for (Module addedModule : addedModules) {
+            newModules.put(addedModule.getId(), addedModule);
+        }
+        return new ModuleEnvironment(newModules.values(), permissionProviderFactory, classLoaderSupplier, apiClassLoader, trustedModules, sharedClassLoaderSupplier, this);
+    }
+
+    /**
+     * Determines how many of the leading modules of this environment can reuse the class loaders of a base environment - the modules must appear in the same
+     * order in both, and any module in only one of the environments must have a class loader of its own.
+     */
+    private int calculateReusableModuleCount(ModuleEnvironment base) {
+        Set<Module> changedModules = Sets.newHashSet();
+        for (Module module : modulesOrderByDependencies) {
+            if (base.modules.get(module.getId()) != module) {
+                changedModules.add(module);
+            }
+        }
+        for (Module module : base.modulesOrderByDependencies) {
+            if (modules.get(module.getId()) != module) {
+                changedModules.add(module);
             }
-            reflectionsByModule.put(module.getId(), module.getModuleManifest());
         }
-        this.finalClassLoader = lastClassLoader;
-        this.fullReflections = buildFullReflections(reflectionsByModule);
-        this.managedClassLoaders = managedClassLoaderListBuilder.build();
-        this.moduleDependencies = buildModuleDependencies();
-        this.resources = new CompositeFileSource(getModulesOrderedByDependencies().stream().map(Module::getResources).collect(Collectors.toList()));
+        if (!changedModules.stream().allMatch(ModuleEnvironment::requiresClassLoader)) {
+            return 0;
+        }
+        int count = 0;
+        int limit = Math.min(modulesOrderByDependencies.size(), base.modulesOrderByDependencies.size());
+        while (count < limit && modulesOrderByDependencies.get(count) == base.modulesOrderByDependencies.get(count)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean requiresClassLoader(Module module) {
+        return !module.getClasspaths().isEmpty() && !hasClassContent(module);
     }
 
-    private boolean hasClassContent(Module module) {
+    private static boolean hasClassContent(Module module) {
         return module.getModuleManifest().getStore().getAll(index(SubTypesScanner.class), Object.class.getName()).iterator().hasNext();
     }
 
@@ -167,23 +291,26 @@ private ModuleClassLoader buildModuleClassLoader(final Module module, final Clas
     }
 
     /**
-     * Builds Reflections information over the entire module environment, combining the information of all individual modules
-     *
-     * @param reflectionsByModule A map of reflection information for each module
+     * @param trustedModules The group of trusted modules to build a shared classloader for, in dependency order
+     * @param parent         The classloader to parent the new classloader off of
+     * @return The new classloader to use for the group of modules
      */
-    private Reflections buildFullReflections(Map<Name, Reflections> reflectionsByModule) {
-        ConfigurationBuilder fullBuilder = new ConfigurationBuilder()
-                .addClassLoader(finalClassLoader);
-        Reflections reflections = new Reflections(fullBuilder);
-        for (Reflections moduleReflection : reflectionsByModule.values()) {
-            reflections.merge(moduleReflection);
-        }
-        return reflections;
+    private ModuleClassLoader buildSharedClassLoader(final List<Module> trustedModules, final ClassLoader parent) {
+        return AccessController.doPrivileged((PrivilegedAction<ModuleClassLoader>) () -> sharedClassLoaderSupplier.create(trustedModules, parent));
     }
 
-    private ImmutableSetMultimap<Name, Name> buildModuleDependencies() {
+    /**
+     * @param baseDependencies  The dependencies calculated by a base environment
+     * @param reusedModuleCount The number of leading modules that are unchanged from the base environment, and can use its dependencies
+     */
+    private ImmutableSetMultimap<Name, Name> buildModuleDependencies(ImmutableSetMultimap<Name, Name> baseDependencies, int reusedModuleCount) {
         SetMultimap<Name, Name> moduleDependenciesBuilder = HashMultimap.create();
-        for (Module module : getModulesOrderedByDependencies()) {
+        List<Module> orderedModules = getModulesOrderedByDependencies();
+        for (int i = 0; i < reusedModuleCount; i++) {
+            Name moduleId = orderedModules.get(i).getId();
+            moduleDependenciesBuilder.putAll(moduleId, baseDependencies.get(moduleId));
+        }
+        for (Module module : orderedModules.subList(reusedModuleCount, orderedModules.size())) {
             for (DependencyInfo dependency : module.getMetadata().getDependencies()) {
                 moduleDependenciesBuilder.put(module.getId(), dependency.getId());
                 moduleDependenciesBuilder.putAll(module.getId(), moduleDependenciesBuilder.get(dependency.getId()));
@@ -192,32 +319,64 @@ private ImmutableSetMultimap<Name, Name> buildModuleDependencies() {
         return ImmutableSetMultimap.copyOf(moduleDependenciesBuilder);
     }
 
+    private ImmutableMap<Name, Integer> buildModuleIndices() {
+        ImmutableMap.Builder<Name, Integer> builder = ImmutableMap.builder();
+        for (int i = 0; i < moduleIdsOrderedByDependencies.size(); i++) {
+            builder.put(moduleIdsOrderedByDependencies.get(i), i);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a row for each module, with a bit set for each module in the environment it depends on directly or indirectly.
+     */
+    private BitSet[] buildDependencyMatrix() {
+        BitSet[] matrix = new BitSet[moduleIdsOrderedByDependencies.size()];
+        for (int i = 0; i < matrix.length; i++) {
+            BitSet row = new BitSet(matrix.length);
+            for (Name dependency : moduleDependencies.get(moduleIdsOrderedByDependencies.get(i))) {
+                Integer index = moduleIndices.get(dependency);
+                if (index != null) {
+                    row.set(index);
+                }
+            }
+            matrix[i] = row;
+        }
+        return matrix;
+    }
+
     private ImmutableList<Module> calculateModulesOrderedByDependencies() {
-        List<Module> result = Lists.newArrayList();
+        List<Module> result = Lists.newArrayListWithCapacity(modules.size());
+        Set<Module> added = Sets.newHashSetWithExpectedSize(modules.size());
         List<Module> alphabeticallyOrderedModules = Lists.newArrayList(modules.values());
         alphabeticallyOrderedModules.sort(Comparator.comparing(Module::getId));
 
         for (Module module : alphabeticallyOrderedModules) {
-            addModuleAfterDependencies(module, result);
+            addModuleAfterDependencies(module, result, added);
         }
         return ImmutableList.copyOf(result);
     }
 
-    private void addModuleAfterDependencies(Module module, List<Module> out) {
-        if (!out.contains(module)) {
+    private void addModuleAfterDependencies(Module module, List<Module> out, Set<Module> added) {
+        if (!added.contains(module)) {
             module.getMetadata().getDependencies().stream().filter(Objects::nonNull).map(DependencyInfo::getId).sorted().forEach(dependency -> {
                 Module dependencyModule = modules.get(dependency);
                 if (dependencyModule != null) {
-                    addModuleAfterDependencies(dependencyModule, out);
+                    addModuleAfterDependencies(dependencyModule, out, added);
                 }
             });
+            added.add(module);
             out.add(module);
         }
     }
 
     @Override
     public void close() {
+        closed = true;
         for (ModuleClassLoader classLoader : managedClassLoaders) {
+            if (handedOverClassLoaders.contains(classLoader)) {
+                continue;
+            }
             try {
                 classLoader.close();
             } catch (IOException e) {
@@ -258,9 +417,21 @@ public final List<Name> getModuleIdsOrderedByDependencies() {
      * @return The module providing the class, or null if it doesn't come from a module.
      */
     public Name getModuleProviding(Class<?> type) {
+        Optional<Name> providingModule = providingModuleCache.get(type);
+        if (providingModule == null) {
+            providingModule = Optional.ofNullable(findModuleProviding(type));
+            providingModuleCache.put(type, providingModule);
+        }
+        return providingModule.orElse(null);
+    }
+
+    private Name findModuleProviding(Class<?> type) {
         ClassLoader classLoader = AccessController.doPrivileged(new ObtainClassloader(type));
         if (classLoader instanceof ModuleClassLoader) {
-            return ((ModuleClassLoader) classLoader).getModuleId();
+            Name moduleId = ((ModuleClassLoader) classLoader).getModuleProviding(type);
+            if (moduleId != null) {
+                return moduleId;
+            }
         }
         for (Module module : modulesOrderByDependencies) {
             if (module.getClassPredicate().test(type)) {
@@ -278,6 +449,46 @@ public Set<Name> getDependencyNamesOf(Name moduleId) {
         return moduleDependencies.get(moduleId);
     }
 
+    /**
+     * Determines whether one module depends on another, directly or indirectly. This is equivalent to checking whether {@link #getDependencyNamesOf(Name)}
+     * contains the dependency, but is a constant time lookup for modules in the environment.
+     *
+     * @param moduleId     The id of the dependant module
+     * @param dependencyId The id of the possible dependency
+     * @return Whether the module depends on the dependency
+     */
+    public boolean dependencyExists(Name moduleId, Name dependencyId) {
+        Integer moduleIndex = moduleIndices.get(moduleId);
+        if (moduleIndex == null) {
+            return false;
+        }
+        Integer dependencyIndex = moduleIndices.get(dependencyId);
+        if (dependencyIndex == null) {
+            return moduleDependencies.containsEntry(moduleId, dependencyId);
+        }
+        return dependencyMatrix[moduleIndex].get(dependencyIndex);
+    }
+
+    /**
+     * @param moduleId The id of the module
+     * @return The position of the module in {@link #getModuleIdsOrderedByDependencies()}, or -1 if the module is not part of the environment
+     */
+    public int getModuleIndex(Name moduleId) {
+        Integer index = moduleIndices.get(moduleId);
+        return (index != null) ? index : -1;
+    }
+
+    /**
+     * Determines whether one module depends on another, directly or indirectly, using the indices of the modules within the environment.
+     *
+     * @param moduleIndex     The index of the dependant module, as given by {@link #getModuleIndex(Name)}
+     * @param dependencyIndex The index of the possible dependency, as given by {@link #getModuleIndex(Name)}
+     * @return Whether the module depends on the dependency
+     */
+    public boolean dependencyExists(int moduleIndex, int dependencyIndex) {
+        return dependencyMatrix[moduleIndex].get(dependencyIndex);
+    }
+
     /**
      * @return The available resources across all modules
      */
@@ -286,26 +497,28 @@ public ModuleFileSource getResources() {
     }
 
     /**
+     * Subtypes that cannot be loaded - such as a subclass without permission to use a class it depends on - are logged and left out of the result, rather
+     * than failing the whole query.
+     *
      * @param type The type to find subtypes of
      * @param <U>  The type to find subtypes of
-     * @return A Iterable over all subtypes of type that appear in the module environment
+     * @return A Iterable over all subtypes of type that appear in the module environment and can be loaded
      */
     public <U> Iterable<Class<? extends U>> getSubtypesOf(Class<U> type) {
-        try {
-            return fullReflections.getSubTypesOf(type);
-        } catch (ReflectionsException e) {
-            throw new ReflectionsException("Could not obtain subtypes of '" + type + "' - possible subclass without permission", e);
-        }
+        return loadTypes(classIndex.getSubtypeNames(type.getName()));
     }
 
     /**
+     * Subtypes that cannot be loaded are logged and left out of the result, as with {@link #getSubtypesOf(Class)}.
+     *
      * @param type   The type to find subtypes of
      * @param <U>    The type to find subtypes of
      * @param filter A filter to apply to the returned subtypes
      * @return A Iterable over all subtypes of type that appear in the module environment
      */
     public <U> Iterable<Class<? extends U>> getSubtypesOf(Class<U> type, Predicate<Class<?>> filter) {
-        return fullReflections.getSubTypesOf(type).stream().filter(filter).collect(Collectors.toSet());
+        Set<Class<? extends U>> subtypes = loadTypes(classIndex.getSubtypeNames(type.getName()));
+        return subtypes.stream().filter(filter).collect(Collectors.toSet());
     }
 
     /**
@@ -314,7 +527,7 @@ public <U> Iterable<Class<? extends U>> getSubtypesOf(Class<U> type, Predicate<C
      * as @Inherited
      */
     public Iterable<Class<?>> getTypesAnnotatedWith(Class<? extends Annotation> annotation) {
-        return fullReflections.getTypesAnnotatedWith(annotation, true);
+        return findTypesAnnotatedWith(annotation);
     }
 
     /**
@@ -324,7 +537,44 @@ public Iterable<Class<?>> getTypesAnnotatedWith(Class<? extends Annotation> anno
      * as @Inherited
      */
     public Iterable<Class<?>> getTypesAnnotatedWith(Class<? extends Annotation> annotation, Predicate<Class<?>> filter) {
-        return fullReflections.getTypesAnnotatedWith(annotation, true).stream().filter(filter).collect(Collectors.toSet());
+        return findTypesAnnotatedWith(annotation).stream().filter(filter).collect(Collectors.toSet());
+    }
+
+    /**
+     * @return The index of the supertypes and annotations of the classes across all modules in the environment
+     */
+    public ModuleClassIndex getClassIndex() {
+        return classIndex;
+    }
+
+    private Set<Class<?>> findTypesAnnotatedWith(Class<? extends Annotation> annotation) {
+        Set<Class<?>> annotatedTypes = loadTypes(classIndex.getAnnotatedTypeNames(annotation.getName()));
+        if (!annotation.isAnnotationPresent(Inherited.class)) {
+            return annotatedTypes;
+        }
+        Set<Class<?>> result = Sets.newLinkedHashSet(annotatedTypes);
+        for (Class<?> annotatedType : annotatedTypes) {
+            if (!annotatedType.isInterface()) {
+                result.addAll(loadTypes(classIndex.getSubtypeNames(annotatedType.getName())));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the named types through the final class loader of the environment. Types that cannot be loaded are logged and skipped.
+     */
+    @SuppressWarnings("unchecked")
+    private <U> Set<Class<? extends U>> loadTypes(Set<String> typeNames) {
+        Set<Class<? extends U>> result = Sets.newLinkedHashSetWithExpectedSize(typeNames.size());
+        for (String typeName : typeNames) {
+            try {
+                result.add((Class<? extends U>) Class.forName(typeName, false, finalClassLoader));
+            } catch (ClassNotFoundException | LinkageError | SecurityException e) {
+                logger.warn("Could not load type '{}' from the module environment", typeName, e);
+            }
+        }
+        return result;
     }
 
     @NonNull
@@ -338,4 +588,111 @@ public Iterator<Module> iterator() {
     public interface ClassLoaderSupplier {
         ModuleClassLoader create(Module module, ClassLoader parent, PermissionProvider permissionProvider);
     }
+
+    @FunctionalInterface
+    public interface SharedClassLoaderSupplier {
+        ModuleClassLoader create(List<Module> modules, ClassLoader parent);
+    }
+
+    /**
+     * Builds the chain of class loaders for the modules of the environment. Each untrusted module gets a class loader of its own, while runs of trusted modules
+     * that are adjacent in the dependency order are gathered into a single shared class loader. Leading class loaders are taken from the base environment
+     * while they serve the same modules.
+     */
+    private final class ClassLoaderChainBuilder {
+        private final ModuleEnvironment base;
+        private final int reusedModuleCount;
+        private final Predicate<Class<?>> classpathModuleClassesPredicate;
+        private final ImmutableList.Builder<ModuleClassLoader> classLoaders = ImmutableList.builder();
+        private final ImmutableList.Builder<ImmutableList<Module>> classLoaderModules = ImmutableList.builder();
+        private final List<Module> pendingTrustedModules = Lists.newArrayList();
+        private int pendingTrustedModulesLastIndex;
+        private ClassLoader lastClassLoader = apiClassLoader;
+        private final List<ModuleClassLoader> carriedOverClassLoaders = Lists.newArrayList();
+        private final List<ModuleClassLoader> createdClassLoaders = Lists.newArrayList();
+        private int classLoaderCount;
+        private boolean reusing;
+
+        ClassLoaderChainBuilder(ModuleEnvironment base, int reusedModuleCount, Predicate<Class<?>> classpathModuleClassesPredicate) {
+            this.base = base;
+            this.reusedModuleCount = reusedModuleCount;
+            this.classpathModuleClassesPredicate = classpathModuleClassesPredicate;
+            this.reusing = base != null && reusedModuleCount > 0;
+        }
+
+        /**
+         * @param module The next module requiring a class loader
+         * @param index  The index of the module in the dependency order
+         */
+        void add(Module module, int index) {
+            if (trustedModules.test(module)) {
+                pendingTrustedModules.add(module);
+                pendingTrustedModulesLastIndex = index;
+            } else {
+                flushTrustedModules();
+                addClassLoader(ImmutableList.of(module), index, parent -> buildModuleClassLoader(module, parent, permissionProviderFactory, classLoaderSupplier, classpathModuleClassesPredicate));
+            }
+        }
+
+        /**
+         * Adds a shared class loader for any trusted modules gathered since the last class loader was added
+         */
+        void flushTrustedModules() {
+            if (!pendingTrustedModules.isEmpty()) {
+                ImmutableList<Module> group = ImmutableList.copyOf(pendingTrustedModules);
+                pendingTrustedModules.clear();
+                addClassLoader(group, pendingTrustedModulesLastIndex, parent -> buildSharedClassLoader(group, parent));
+            }
+        }
+
+        private void addClassLoader(ImmutableList<Module> classLoaderModuleGroup, int lastModuleIndex, Function<ClassLoader, ModuleClassLoader> classLoaderFactory) {
+            reusing = reusing && lastModuleIndex < reusedModuleCount && classLoaderCount < base.classLoaderModules.size()
+                    && sameModules(base.classLoaderModules.get(classLoaderCount), classLoaderModuleGroup);
+            if (reusing) {
+                // A class loader already carried over by an earlier derive is recreated, along with every class loader after it
+                reusing = base.handedOverClassLoaders.add(base.managedClassLoaders.get(classLoaderCount));
+            }
+            ModuleClassLoader classLoader;
+            if (reusing) {
+                classLoader = base.managedClassLoaders.get(classLoaderCount);
+                carriedOverClassLoaders.add(classLoader);
+            } else {
+                classLoader = classLoaderFactory.apply(lastClassLoader);
+                createdClassLoaders.add(classLoader);
+            }
+            classLoaders.add(classLoader);
+            classLoaderModules.add(classLoaderModuleGroup);
+            lastClassLoader = classLoader.getClassLoader();
+            classLoaderCount++;
+        }
+
+        /**
+         * Undoes the building of the chain after the environment failed to construct - class loaders carried over are handed back to the base environment, so
+         * that it closes them, and class loaders created for the chain are closed.
+         */
+        void abandon() {
+            if (base != null) {
+                base.handedOverClassLoaders.removeAll(carriedOverClassLoaders);
+            }
+            for (ModuleClassLoader classLoader : createdClassLoaders) {
+                try {
+                    classLoader.close();
+                } catch (IOException e) {
+                    logger.error("Failed to close classLoader for module '" + classLoader.getModuleId() + "'", e);
+                }
+            }
+        }
+
+        private boolean sameModules(List<Module> a, List<Module> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i) != b.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
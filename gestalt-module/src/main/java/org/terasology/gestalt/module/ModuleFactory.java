@@ -59,6 +59,7 @@
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -74,12 +75,14 @@ public class ModuleFactory {
     private static final Configuration EMPTY_CONFIG = new ConfigurationBuilder();
     private static final String STANDARD_CODE_SUBPATH = "build/classes";
     private static final String STANDARD_LIBS_SUBPATH = "libs";
+    private static final String SCAN_SCOPE = "resources,subtypes,typeAnnotations";
     private final Map<String, ModuleMetadataLoader> moduleMetadataLoaderMap = Maps.newLinkedHashMap();
     private final Map<String, Serializer> manifestSerializersByFilename = Maps.newLinkedHashMap();
     private final ClassLoader classLoader;
     private String defaultCodeSubpath;
     private String defaultLibsSubpath;
     private boolean scanningForClasses = true;
+    private volatile ModuleManifestCache manifestCache;
 
     public ModuleFactory() {
         this(ClasspathHelper.contextClassLoader());
@@ -160,6 +163,23 @@ public void setDefaultLibsSubpath(String defaultLibsSubpath) {
         this.defaultLibsSubpath = defaultLibsSubpath;
     }
 
+    /**
+     * @return The cache of manifests generated by scanning modules that don't provide their own manifest, if any
+     */
+    public Optional<ModuleManifestCache> getManifestCache() {
+        return Optional.ofNullable(manifestCache);
+    }
+
+    /**
+     * Sets a cache to store the manifests generated by scanning module archives and directories that don't provide their own manifest. Modules that have not
+     * changed since they were last scanned use the cached manifest instead of being scanned again.
+     *
+     * @param manifestCache The cache to use, or null to always scan
+     */
+    public void setManifestCache(ModuleManifestCache manifestCache) {
+        this.manifestCache = manifestCache;
+    }
+
     /**
      * Adds a deserializer for a manifest file.
      *
@@ -234,8 +254,12 @@ private Reflections scanOrLoadDirectoryManifest(File directory) {
     private void scanContents(File directory, Reflections manifest) throws MalformedURLException {
         if (scanningForClasses) {
             Configuration config = new ConfigurationBuilder().addScanners(new ResourcesScanner(), new SubTypesScanner(false), new TypeAnnotationsScanner()).addUrls(directory.toURI().toURL());
-            Reflections reflections = new Reflections(config);
-            manifest.merge(reflections);
+            ModuleManifestCache cache = manifestCache;
+            if (cache != null) {
+                manifest.merge(cache.loadOrScan(directory, SCAN_SCOPE, () -> new Reflections(config)));
+            } else {
+                manifest.merge(new Reflections(config));
+            }
         }
     }
 
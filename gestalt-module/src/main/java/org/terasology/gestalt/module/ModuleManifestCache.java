@@ -0,0 +1,219 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.reflections.Reflections;
+import org.reflections.serializers.JsonSerializer;
+import org.reflections.serializers.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * ModuleManifestCache stores the class manifests generated by scanning module code, so that modules that don't provide their own manifest only need to be scanned
+ * when they change.
+ * <p>
+ * Each manifest is stored in a file named after the absolute path of the scanned archive or directory, so there is at most one manifest per path. The file
+ * begins with a fingerprint of the scan scope and the size and last modified time of every file within the path, and the manifest is only used while the
+ * fingerprint still matches - a change to the module's code results in a new scan, which replaces the manifest. Manifests of paths that are no longer used
+ * are not removed automatically - {@link #clear()} can be used to discard them.
+ * </p>
+ * <p>
+ * Thread safe.
+ * </p>
+ */
+public class ModuleManifestCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModuleManifestCache.class);
+    private static final String FILE_EXTENSION = ".manifest.json";
+
+    private final File directory;
+    private final Serializer serializer = new JsonSerializer();
+
+    /**
+     * @param directory The directory to store manifests in. It will be created if it does not exist.
+     */
+    public ModuleManifestCache(File directory) {
+        Preconditions.checkNotNull(directory);
+        this.directory = directory;
+    }
+
+    /**
+     * @return The directory manifests are stored in
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Retrieves the cached manifest for a path.
+     *
+     * @param path      The archive or directory that was scanned
+     * @param scanScope An identifier of how the path was scanned. Manifests are only reused for scans with the same scope.
+     * @return The cached manifest, if there is one for the current contents of the path
+     */
+    public Optional<Reflections> load(File path, String scanScope) {
+        return loadMatching(path, fingerprint(path, scanScope));
+    }
+
+    /**
+     * Stores the manifest for a path, replacing any previous manifest for it. Failure to store the manifest is logged but otherwise ignored, as the cache is
+     * only an optimisation.
+     *
+     * @param path      The archive or directory that was scanned
+     * @param scanScope An identifier of how the path was scanned
+     * @param manifest  The manifest produced by scanning the path
+     */
+    public void store(File path, String scanScope, Reflections manifest) {
+        storeWithFingerprint(path, fingerprint(path, scanScope), manifest);
+    }
+
+    /**
+     * Retrieves the cached manifest for a path, or scans the path and caches the result if there is no manifest for its current contents. The contents of
+     * the path are only fingerprinted once. As the fingerprint is taken before scanning, a change made during the scan results in a new scan next time.
+     *
+     * @param path      The archive or directory to scan
+     * @param scanScope An identifier of how the path is scanned
+     * @param scanner   Scans the path
+     * @return The manifest of the path
+     */
+    public Reflections loadOrScan(File path, String scanScope, Supplier<Reflections> scanner) {
+        String fingerprint = fingerprint(path, scanScope);
+        Optional<Reflections> cached = loadMatching(path, fingerprint);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Reflections manifest = scanner.get();
+        storeWithFingerprint(path, fingerprint, manifest);
+        return manifest;
+    }
+
+    private Optional<Reflections> loadMatching(File path, String fingerprint) {
+        File file = getManifestFile(path);
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            if (!fingerprint.equals(readLine(stream))) {
+                return Optional.empty();
+            }
+            return Optional.of(serializer.read(stream));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read cached manifest for '{}', discarding", path, e);
+            if (!file.delete()) {
+                logger.warn("Failed to delete cached manifest '{}'", file);
+            }
+            return Optional.empty();
+        }
+    }
+
+    private void storeWithFingerprint(File path, String fingerprint, Reflections manifest) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.warn("Failed to create module manifest cache directory '{}'", directory);
+            return;
+        }
+        File file = getManifestFile(path);
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), Charsets.UTF_8))) {
+                writer.write(fingerprint);
+                writer.write('\n');
+                writer.write(serializer.toString(manifest));
+            }
+            // Renaming over an existing file fails on some platforms
+            if (!tempFile.renameTo(file) && (!file.delete() || !tempFile.renameTo(file))) {
+                logger.warn("Failed to store cached manifest for '{}'", path);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to store cached manifest for '{}'", path, e);
+        } finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                logger.warn("Failed to delete temporary file '{}'", tempFile);
+            }
+        }
+    }
+
+    /**
+     * Removes all cached manifests
+     */
+    public void clear() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("Failed to delete cached manifest '{}'", file);
+                }
+            }
+        }
+    }
+
+    private File getManifestFile(File path) {
+        return new File(directory, Hashing.sha256().hashString(path.getAbsolutePath(), Charsets.UTF_8).toString() + FILE_EXTENSION);
+    }
+
+    private String fingerprint(File path, String scanScope) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(scanScope, Charsets.UTF_8);
+        hashContents(path, "", hasher);
+        return hasher.hash().toString();
+    }
+
+    private static String readLine(InputStream stream) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int next = stream.read();
+        while (next != -1 && next != '\n') {
+            line.append((char) next);
+            next = stream.read();
+        }
+        return line.toString();
+    }
+
+    private void hashContents(File file, String relativePath, Hasher hasher) {
+        hasher.putString(relativePath, Charsets.UTF_8);
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children, Comparator.comparing(File::getName));
+                for (File child : children) {
+                    hashContents(child, relativePath + "/" + child.getName(), hasher);
+                }
+            }
+        } else {
+            hasher.putLong(file.length());
+            hasher.putLong(file.lastModified());
+        }
+    }
+}
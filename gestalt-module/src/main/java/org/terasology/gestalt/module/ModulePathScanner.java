@@ -16,6 +16,9 @@
 
 package org.terasology.gestalt.module;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.gestalt.util.Varargs;
@@ -23,7 +26,13 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A scanner for reading modules off of the filesystem. These modules may either be archives (zip or jar) or directories. To qualify as a module they must contain a
@@ -34,6 +43,8 @@
 public class ModulePathScanner {
     private static final Logger logger = LoggerFactory.getLogger(ModulePathScanner.class);
     private final ModuleFactory moduleFactory;
+    private volatile Executor discoveryExecutor;
+    private volatile DiscoveryListener discoveryListener;
 
     public ModulePathScanner() {
         this.moduleFactory = new ModuleFactory();
@@ -60,6 +71,26 @@ public void scan(ModuleRegistry registry, File path, File... additionalPaths) {
         scan(registry, discoveryPaths);
     }
 
+    /**
+     * Sets the executor used to create modules. When set, the modules found by a scan are created concurrently - reading their metadata and scanning their
+     * classes - and then added to the registry in the same order as a sequential scan, so the first copy of a module found is still used. The module factory
+     * must not be reconfigured while a scan is in progress.
+     *
+     * @param discoveryExecutor The executor to create modules with, or null to create them sequentially on the scanning thread
+     */
+    public void setDiscoveryExecutor(Executor discoveryExecutor) {
+        this.discoveryExecutor = discoveryExecutor;
+    }
+
+    /**
+     * Sets a listener to be informed of each module created during scans, along with how long it took to create.
+     *
+     * @param discoveryListener The listener to inform, or null for none
+     */
+    public void setDiscoveryListener(DiscoveryListener discoveryListener) {
+        this.discoveryListener = discoveryListener;
+    }
+
     /**
      * Scans a collection of paths for modules.
      * Paths are scanned in order, with directories scanned before files. If a module is discovered multiple times (same id and version), the first copy of the module
@@ -69,52 +100,111 @@ public void scan(ModuleRegistry registry, File path, File... additionalPaths) {
      * @param paths    The paths to scan
      */
     public void scan(ModuleRegistry registry, Collection<File> paths) {
+        List<File> modulePaths = Lists.newArrayList();
         for (File discoveryPath : paths) {
-            scanModuleDirectories(registry, discoveryPath);
-            scanModuleArchives(registry, discoveryPath);
+            addModuleDirectories(modulePaths, discoveryPath);
+            addModuleArchives(modulePaths, discoveryPath);
+        }
+
+        Executor executor = discoveryExecutor;
+        if (executor == null) {
+            for (File modulePath : modulePaths) {
+                addModule(registry, createModule(modulePath));
+            }
+        } else {
+            List<CompletableFuture<DiscoveredModule>> discoveredModules = Lists.newArrayListWithCapacity(modulePaths.size());
+            for (File modulePath : modulePaths) {
+                discoveredModules.add(CompletableFuture.supplyAsync(() -> createModule(modulePath), executor));
+            }
+            try {
+                for (CompletableFuture<DiscoveredModule> discoveredModule : discoveredModules) {
+                    addModule(registry, discoveredModule.join());
+                }
+            } catch (CompletionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw e;
+            }
         }
     }
 
     /**
-     * Scans a directory for module archives (jar or zip)
+     * Adds the module archives (jar or zip) in a directory to the list of module paths
      *
-     * @param registry      The registry to populate with discovered modules
+     * @param modulePaths   The list of module paths to add to
      * @param discoveryPath The directory to scan
      */
-    private void scanModuleArchives(ModuleRegistry registry, File discoveryPath) {
+    private void addModuleArchives(List<File> modulePaths, File discoveryPath) {
         File[] files = discoveryPath.listFiles(x -> !x.isDirectory() && (x.getName().endsWith(".jar") || x.getName().endsWith(".zip")));
         if (files != null) {
-            for (File modulePath : files) {
-                loadModule(registry, modulePath);
-            }
+            Collections.addAll(modulePaths, files);
         }
     }
 
     /**
-     * Scans a directory for module directories
+     * Adds the module directories in a directory to the list of module paths
      *
-     * @param registry      The registry to populate with discovered modules
+     * @param modulePaths   The list of module paths to add to
      * @param discoveryPath The directory to scan
      */
-    private void scanModuleDirectories(ModuleRegistry registry, File discoveryPath) {
+    private void addModuleDirectories(List<File> modulePaths, File discoveryPath) {
         File[] files = discoveryPath.listFiles(File::isDirectory);
         if (files != null) {
-            for (File modulePath : files) {
-                loadModule(registry, modulePath);
-            }
+            Collections.addAll(modulePaths, files);
         }
     }
 
-    private void loadModule(ModuleRegistry registry, File modulePath) {
+    private DiscoveredModule createModule(File modulePath) {
+        long startTime = System.nanoTime();
+        Module module = null;
         try {
-            Module module = moduleFactory.createModule(modulePath);
-            if (registry.add(module)) {
-                logger.info("Discovered module: {}", module);
-            } else {
-                logger.info("Discovered duplicate module: {}-{}, skipping", module.getId(), module.getVersion());
-            }
+            module = moduleFactory.createModule(modulePath);
         } catch (IOException e) {
             logger.warn("Failed to load module at '{}'", modulePath, e);
         }
+        long nanos = System.nanoTime() - startTime;
+        DiscoveryListener listener = discoveryListener;
+        if (listener != null) {
+            listener.moduleCreated(modulePath, module, nanos);
+        }
+        return new DiscoveredModule(module, nanos);
+    }
+
+    private void addModule(ModuleRegistry registry, DiscoveredModule discovered) {
+        Module module = discovered.module;
+        if (module == null) {
+            return;
+        }
+        if (registry.add(module)) {
+            logger.info("Discovered module: {} ({} ms)", module, TimeUnit.NANOSECONDS.toMillis(discovered.nanos));
+        } else {
+            logger.info("Discovered duplicate module: {}-{}, skipping", module.getId(), module.getVersion());
+        }
+    }
+
+    /**
+     * A listener informed of each module created while scanning.
+     */
+    @FunctionalInterface
+    public interface DiscoveryListener {
+
+        /**
+         * Called when a module has been created from a path, or failed to be created. When scanning with a discovery executor this is called on the
+         * executor's threads, and before the module is added to the registry.
+         *
+         * @param path   The path the module was created from
+         * @param module The created module, or null if the path could not be loaded as a module
+         * @param nanos  The time taken to create the module, in nanoseconds
+         */
+        void moduleCreated(File path, Module module, long nanos);
+    }
+
+    private static final class DiscoveredModule {
+        private final Module module;
+        private final long nanos;
+
+        DiscoveredModule(Module module, long nanos) {
+            this.module = module;
+            this.nanos = nanos;
+        }
     }
 }
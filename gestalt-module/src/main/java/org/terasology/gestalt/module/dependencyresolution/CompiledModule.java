@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.dependencyresolution;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.terasology.gestalt.module.Module;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.gestalt.naming.Version;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The versions of a module available in a registry, compiled into the form used by {@link ResolutionAttempt}.
+ * <p>
+ * The versions are sorted in ascending order, and a set of possible versions (a domain) is represented as a BitSet where bit 0 is the module being absent
+ * and bit i + 1 is the i-th version. The highest set bit is then always the latest possible version, and absence sorts below every version.
+ * </p>
+ * <p>
+ * Constraints against the modules this module depends on are compiled lazily and cached, and reused for as long as the dependency's compiled versions
+ * remain current.
+ * </p>
+ */
+final class CompiledModule {
+    static final int ABSENT = 0;
+
+    private final Name id;
+    private final Module[] versions;
+    private final Map<Version, Integer> versionIndices;
+    private final Name[] dependencies;
+    private final ConcurrentMap<Name, DependencyConstraint> constraints = new ConcurrentHashMap<>();
+
+    CompiledModule(Name id, Collection<Module> moduleVersions) {
+        this.id = id;
+        this.versions = moduleVersions.toArray(new Module[0]);
+        Arrays.sort(versions, Comparator.comparing(Module::getVersion));
+        this.versionIndices = Maps.newHashMapWithExpectedSize(versions.length);
+        Set<Name> dependencyIds = Sets.newLinkedHashSet();
+        for (int i = 0; i < versions.length; i++) {
+            versionIndices.put(versions[i].getVersion(), i);
+            for (DependencyInfo dependency : versions[i].getMetadata().getDependencies()) {
+                dependencyIds.add(dependency.getId());
+            }
+        }
+        this.dependencies = dependencyIds.toArray(new Name[0]);
+    }
+
+    /**
+     * @param moduleVersions The versions of the module currently available in the registry
+     * @return Whether this compiled module is made up of exactly the given module versions
+     */
+    boolean isCurrent(Collection<Module> moduleVersions) {
+        if (moduleVersions.size() != versions.length) {
+            return false;
+        }
+        for (Module module : moduleVersions) {
+            Integer index = versionIndices.get(module.getVersion());
+            if (index == null || versions[index] != module) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Name getId() {
+        return id;
+    }
+
+    /**
+     * @return The number of available versions of the module
+     */
+    int getVersionCount() {
+        return versions.length;
+    }
+
+    /**
+     * @param bit The domain bit of a version
+     * @return The module version represented by the bit
+     */
+    Module getVersion(int bit) {
+        return versions[bit - 1];
+    }
+
+    /**
+     * @return The ids of all the modules that any version of this module depends on
+     */
+    Name[] getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * @param dependency       The compiled module of the dependency
+     * @param optionalStrategy The strategy for handling optional dependencies
+     * @return The constraint between this module and the dependency
+     */
+    DependencyConstraint getConstraint(CompiledModule dependency, OptionalResolutionStrategy optionalStrategy) {
+        DependencyConstraint constraint = constraints.get(dependency.id);
+        if (constraint == null || constraint.dependency != dependency) {
+            constraint = new DependencyConstraint(this, dependency, optionalStrategy);
+            constraints.put(dependency.id, constraint);
+        }
+        return constraint;
+    }
+
+    /**
+     * The compiled form of the dependency of one module on another: for each version of the dependant, the domain of dependency versions it is compatible with.
+     */
+    static final class DependencyConstraint {
+        private final CompiledModule dependency;
+        private final BitSet[] compatibleVersions;
+        private final BitSet unconstrainedVersions;
+
+        private DependencyConstraint(CompiledModule dependant, CompiledModule dependency, OptionalResolutionStrategy optionalStrategy) {
+            this.dependency = dependency;
+            this.compatibleVersions = new BitSet[dependant.versions.length];
+            this.unconstrainedVersions = new BitSet(dependant.versions.length + 1);
+            unconstrainedVersions.set(ABSENT);
+            for (int i = 0; i < dependant.versions.length; i++) {
+                DependencyInfo info = dependant.versions[i].getMetadata().getDependencyInfo(dependency.id);
+                if (info == null) {
+                    unconstrainedVersions.set(i + 1);
+                } else {
+                    BitSet compatible = new BitSet(dependency.versions.length + 1);
+                    if (info.isOptional() && !optionalStrategy.isRequired()) {
+                        compatible.set(ABSENT);
+                    }
+                    for (int j = 0; j < dependency.versions.length; j++) {
+                        if (info.versionRange().contains(dependency.versions[j].getVersion())) {
+                            compatible.set(j + 1);
+                        }
+                    }
+                    compatibleVersions[i] = compatible;
+                }
+            }
+        }
+
+        /**
+         * Removes any dependant versions that have no compatible version of the dependency available.
+         *
+         * @param dependantDomain  The possible versions of the dependant, updated in place
+         * @param dependencyDomain The possible versions of the dependency
+         * @return Whether the dependant domain was changed
+         */
+        boolean constrainDependant(BitSet dependantDomain, BitSet dependencyDomain) {
+            boolean changed = false;
+            for (int bit = dependantDomain.nextSetBit(ABSENT + 1); bit >= 0; bit = dependantDomain.nextSetBit(bit + 1)) {
+                BitSet compatible = compatibleVersions[bit - 1];
+                if (compatible != null && !compatible.intersects(dependencyDomain)) {
+                    dependantDomain.clear(bit);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Removes any dependency versions that no possible version of the dependant is compatible with. If the dependant may be absent, or has a possible
+         * version without this dependency, then every dependency version remains possible.
+         *
+         * @param dependantDomain  The possible versions of the dependant
+         * @param dependencyDomain The possible versions of the dependency, updated in place
+         * @return Whether the dependency domain was changed
+         */
+        boolean constrainDependency(BitSet dependantDomain, BitSet dependencyDomain) {
+            if (dependantDomain.intersects(unconstrainedVersions)) {
+                return false;
+            }
+            BitSet allowed = new BitSet(dependencyDomain.length());
+            for (int bit = dependantDomain.nextSetBit(ABSENT + 1); bit >= 0; bit = dependantDomain.nextSetBit(bit + 1)) {
+                allowed.or(compatibleVersions[bit - 1]);
+            }
+            int previousCount = dependencyDomain.cardinality();
+            dependencyDomain.and(allowed);
+            return dependencyDomain.cardinality() != previousCount;
+        }
+    }
+}
@@ -16,15 +16,26 @@
 
 package org.terasology.gestalt.module.dependencyresolution;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import org.terasology.gestalt.module.Module;
 import org.terasology.gestalt.module.ModuleRegistry;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.gestalt.naming.Version;
 import org.terasology.gestalt.naming.VersionRange;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 /**
  * Dependency Resolver determines a working set of modules for a given set of desired modules. Where multiple versions are compatible, they are resolved in favour of the
@@ -33,12 +44,18 @@
  * <p>
  * The algorithm used is based on Arc Consistency Algorithm #3.
  * </p>
+ * <p>
+ * The versions and dependencies of each module in the registry are compiled on first use and reused by later resolutions, for as long as the versions of the
+ * module in the registry are unchanged. Modules should not have their dependencies altered once they are in the registry. Resolutions may be performed
+ * concurrently, as long as the registry is not modified at the same time.
+ * </p>
  *
  * @author Immortius
  */
 public class DependencyResolver {
     private final OptionalResolutionStrategy optionalStrategy;
     private final ModuleRegistry registry;
+    private final ConcurrentMap<Name, CompiledModule> compiledModules = new ConcurrentHashMap<>();
 
     /**
      * Creates a DependencyResolver using the {@link org.terasology.gestalt.module.dependencyresolution.OptionalResolutionStrategy#INCLUDE_IF_REQUIRED}.
@@ -75,6 +92,30 @@ public ResolutionResult resolve(Iterable<Name> moduleIds) {
         return builder().requireAll(moduleIds).build();
     }
 
+    /**
+     * Resolves multiple independent sets of modules, using the given executor to resolve them in parallel.
+     *
+     * @param moduleIdSets The sets of module ids to each build a set of compatible modules from
+     * @param executor     The executor to resolve the sets with
+     * @return The results of resolving each set of module ids, in the same order as the sets
+     */
+    public List<ResolutionResult> resolveAll(Collection<? extends Iterable<Name>> moduleIdSets, Executor executor) {
+        List<CompletableFuture<ResolutionResult>> futures = Lists.newArrayListWithCapacity(moduleIdSets.size());
+        for (Iterable<Name> moduleIds : moduleIdSets) {
+            futures.add(CompletableFuture.supplyAsync(() -> resolve(moduleIds), executor));
+        }
+        List<ResolutionResult> results = Lists.newArrayListWithCapacity(futures.size());
+        try {
+            for (CompletableFuture<ResolutionResult> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+        return results;
+    }
+
     /**
      * @return A builder to resolve a set of compatible modules based on the required modules.
      */
@@ -164,9 +205,19 @@ public ResolutionBuilder requireAll(Iterable<Name> moduleIds) {
          * @return the result of the process.
          */
         public ResolutionResult build() {
-            ResolutionAttempt attempt = new ResolutionAttempt(registry, optionalStrategy);
+            ResolutionAttempt attempt = new ResolutionAttempt(DependencyResolver.this::getCompiledModule, optionalStrategy);
             return attempt.resolve(validVersions);
         }
 
     }
+
+    private CompiledModule getCompiledModule(Name id) {
+        Collection<Module> versions = registry.getModuleVersions(id);
+        CompiledModule compiledModule = compiledModules.get(id);
+        if (compiledModule == null || !compiledModule.isCurrent(versions)) {
+            compiledModule = new CompiledModule(id, versions);
+            compiledModules.put(id, compiledModule);
+        }
+        return compiledModule;
+    }
 }
@@ -16,45 +16,48 @@
 
 package org.terasology.gestalt.module.dependencyresolution;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
-import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 
 import org.terasology.gestalt.module.Module;
-import org.terasology.gestalt.module.ModuleRegistry;
 import org.terasology.gestalt.naming.Name;
-import org.terasology.gestalt.naming.Version;
 import org.terasology.gestalt.naming.VersionRange;
-import org.terasology.gestalt.util.collection.UniqueQueue;
 
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+
+import static org.terasology.gestalt.module.dependencyresolution.CompiledModule.ABSENT;
 
 class ResolutionAttempt {
     private final OptionalResolutionStrategy optionalStrategy;
-    private final ModuleRegistry registry;
+    private final Function<Name, CompiledModule> compiledModules;
 
     private Set<Name> rootModules;
-    private SetMultimap<Name, PossibleVersion> moduleVersionPool;
-    private ListMultimap<Name, Constraint> constraints;
-    private UniqueQueue<Constraint> constraintQueue;
+    private int[] rootIndices;
+    private List<CompiledModule> involvedModules;
+    private Map<Name, Integer> moduleIndices;
+    private List<BitSet> domains;
+    private List<Constraint> constraints;
+    private List<List<Constraint>> constraintsByModule;
+    private Deque<Constraint> constraintQueue;
+    private boolean[] queued;
 
-    ResolutionAttempt(ModuleRegistry registry, OptionalResolutionStrategy optionalStrategy) {
-        this.registry = registry;
+    /**
+     * @param compiledModules  Provides the compiled form of the versions of a module available in the registry
+     * @param optionalStrategy The strategy for handling optional dependencies
+     */
+    ResolutionAttempt(Function<Name, CompiledModule> compiledModules, OptionalResolutionStrategy optionalStrategy) {
+        this.compiledModules = compiledModules;
         this.optionalStrategy = optionalStrategy;
     }
 
@@ -62,15 +65,18 @@ ResolutionResult resolve(Map<Name, Optional<VersionRange>> validVersions) {
         rootModules = ImmutableSet.copyOf(validVersions.keySet());
         populateDomains(validVersions);
         populateConstraints();
-        if (!includesModules(rootModules)) {
+        if (!includesRootModules()) {
             return new ResolutionResult(false, Collections.<Module>emptySet());
         }
 
-        constraintQueue = UniqueQueue.createWithExpectedSize(constraints.size());
-        constraintQueue.addAll(constraints.values());
+        constraintQueue = new ArrayDeque<>(constraints.size());
+        queued = new boolean[constraints.size()];
+        for (Constraint constraint : constraints) {
+            enqueue(constraint);
+        }
         processConstraints();
 
-        if (!includesModules(rootModules)) {
+        if (!includesRootModules()) {
             return new ResolutionResult(false, Collections.<Module>emptySet());
         }
 
@@ -81,24 +87,30 @@ ResolutionResult resolve(Map<Name, Optional<VersionRange>> validVersions) {
      * Populates the domains (modules of interest) for resolution. Includes all versions of all modules depended on by any version of a module of interest, recursively.
      */
     private void populateDomains(Map<Name, Optional<VersionRange>> validVersions) {
-        moduleVersionPool = HashMultimap.create();
-        Set<Name> involvedModules = Sets.newHashSet();
+        involvedModules = Lists.newArrayList();
+        moduleIndices = Maps.newHashMap();
+        domains = Lists.newArrayList();
         Deque<Name> moduleQueue = Queues.newArrayDeque();
+        rootIndices = new int[rootModules.size()];
+        int rootCount = 0;
         for (Name rootModule : rootModules) {
-            involvedModules.add(rootModule);
+            rootIndices[rootCount++] = addInvolvedModule(rootModule, false);
             moduleQueue.push(rootModule);
         }
 
         while (!moduleQueue.isEmpty()) {
             Name id = moduleQueue.pop();
-            for (Module version : registry.getModuleVersions(id)) {
-                Optional<VersionRange> range = validVersions.getOrDefault(version.getId(), Optional.empty());
+            int index = moduleIndices.get(id);
+            CompiledModule module = involvedModules.get(index);
+            Optional<VersionRange> range = validVersions.getOrDefault(id, Optional.empty());
+            for (int bit = 1; bit <= module.getVersionCount(); bit++) {
+                Module version = module.getVersion(bit);
                 if (!range.isPresent() || range.get().contains(version.getVersion())) {
-                    moduleVersionPool.put(id, new PossibleVersion(version.getVersion()));
+                    domains.get(index).set(bit);
                     for (DependencyInfo dependency : version.getMetadata().getDependencies()) {
-                        if (involvedModules.add(dependency.getId())) {
+                        if (!moduleIndices.containsKey(dependency.getId())) {
+                            addInvolvedModule(dependency.getId(), true);
                             moduleQueue.push(dependency.getId());
-                            moduleVersionPool.put(dependency.getId(), PossibleVersion.OPTIONAL_VERSION);
                         }
                     }
                 }
@@ -106,96 +118,91 @@ private void populateDomains(Map<Name, Optional<VersionRange>> validVersions) {
         }
     }
 
+    private int addInvolvedModule(Name id, boolean canBeAbsent) {
+        CompiledModule module = compiledModules.apply(id);
+        int index = involvedModules.size();
+        involvedModules.add(module);
+        moduleIndices.put(id, index);
+        BitSet domain = new BitSet(module.getVersionCount() + 1);
+        if (canBeAbsent) {
+            domain.set(ABSENT);
+        }
+        domains.add(domain);
+        return index;
+    }
+
     /**
      * Populates the constraints between the domains. For each module, any dependency that at least one version of the module has becomes a constraint
-     * between the two, with a mapping of version to version-range.
+     * between the two, with a mapping of version to version-range. Dependencies that are not involved in the resolution are skipped, as no possible
+     * version of the module can depend on them.
      */
     private void populateConstraints() {
-        constraints = ArrayListMultimap.create();
-        for (Name name : moduleVersionPool.keySet()) {
-            Set<Name> dependencies = Sets.newLinkedHashSet();
-            for (Module module : registry.getModuleVersions(name)) {
-                dependencies.addAll(module.getMetadata().getDependencies().stream().map(DependencyInfo::getId).collect(Collectors.toList()));
+        constraints = Lists.newArrayList();
+        constraintsByModule = Lists.newArrayListWithCapacity(involvedModules.size());
+        for (int i = 0; i < involvedModules.size(); i++) {
+            constraintsByModule.add(Lists.newArrayList());
+        }
+        for (int from = 0; from < involvedModules.size(); from++) {
+            if (domains.get(from).isEmpty()) {
+                continue;
             }
-
-            for (Name dependency : dependencies) {
-                Map<Version, CompatibleVersions> constraintTable = Maps.newHashMapWithExpectedSize(moduleVersionPool.get(name).size());
-                for (PossibleVersion version : moduleVersionPool.get(name)) {
-                    if (version.getVersion().isPresent()) {
-                        Module versionedModule = registry.getModule(name, version.getVersion().get());
-                        DependencyInfo info = versionedModule.getMetadata().getDependencyInfo(dependency);
-                        if (info != null) {
-                            constraintTable.put(version.getVersion().get(), new CompatibleVersions(info.versionRange(), info.isOptional() && !optionalStrategy.isRequired()));
-                        }
-                    }
+            CompiledModule module = involvedModules.get(from);
+            for (Name dependency : module.getDependencies()) {
+                Integer to = moduleIndices.get(dependency);
+                if (to != null) {
+                    Constraint constraint = new Constraint(constraints.size(), from, to, module.getConstraint(involvedModules.get(to), optionalStrategy));
+                    constraints.add(constraint);
+                    constraintsByModule.get(from).add(constraint);
+                    constraintsByModule.get(to).add(constraint);
                 }
-                Constraint constraint = new VersionConstraint(name, dependency, constraintTable);
-                constraints.put(name, constraint);
-                constraints.put(dependency, constraint);
             }
         }
     }
 
-    private boolean includesModules(Set<Name> modules) {
-        for (Name module : modules) {
-            if (moduleVersionPool.get(module).isEmpty()) {
+    private boolean includesRootModules() {
+        for (int rootIndex : rootIndices) {
+            if (domains.get(rootIndex).isEmpty()) {
                 return false;
             }
         }
         return true;
     }
 
+    private void enqueue(Constraint constraint) {
+        if (!queued[constraint.id]) {
+            queued[constraint.id] = true;
+            constraintQueue.add(constraint);
+        }
+    }
+
     /**
      * Processes queued constraints, until the queue is exhausted.
      */
     private void processConstraints() {
-        while (!constraintQueue.isEmpty() && includesModules(rootModules)) {
+        while (!constraintQueue.isEmpty() && includesRootModules()) {
             Constraint constraint = constraintQueue.remove();
-
-            if (applyConstraintToDependency(constraint)) {
-                for (Constraint relatedConstraint : constraints.get(constraint.getTo())) {
-                    if (!Objects.equals(relatedConstraint, constraint)) {
-                        constraintQueue.add(relatedConstraint);
+            queued[constraint.id] = false;
+            BitSet fromDomain = domains.get(constraint.from);
+            BitSet toDomain = domains.get(constraint.to);
+
+            if (constraint.compiled.constrainDependency(fromDomain, toDomain)) {
+                for (Constraint relatedConstraint : constraintsByModule.get(constraint.to)) {
+                    if (relatedConstraint != constraint) {
+                        enqueue(relatedConstraint);
                     }
                 }
             }
 
-            if (applyConstraintToDependant(constraint)) {
-                for (Constraint relatedConstraint : constraints.get(constraint.getFrom())) {
-                    constraintQueue.add(relatedConstraint);
+            if (constraint.compiled.constrainDependant(fromDomain, toDomain)) {
+                for (Constraint relatedConstraint : constraintsByModule.get(constraint.from)) {
+                    enqueue(relatedConstraint);
                 }
             }
         }
     }
 
     /**
-     * Applies a constraint on dependencies based on the available versions of the dependant. A dependency version is removed if there is
-     * no dependant that it is compatible with.
-     * <p>
-     * Example: if core-1.0.0 depends on child [1.0.0-2.0.0), then child-3.0.0 will be removed unless there is either another version of core that it is compatible with,
-     * or a version of core with no dependency on it at all.
-     * </p>
-     *
-     * @param constraint The constraint to process
-     * @return Whether a change was applied the "to" domain of the constraint.
-     */
-    private boolean applyConstraintToDependency(Constraint constraint) {
-        return constraint.constrainTo(Collections.unmodifiableSet(moduleVersionPool.get(constraint.getFrom())), moduleVersionPool.get(constraint.getTo()));
-    }
-
-    /**
-     * Applies a constraint on a dependant based on available versions of the dependencies. A dependant version is removed if there is no compatible dependency version
-     * available to support it.
-     *
-     * @param constraint The constraint to process
-     * @return Whether a change was applied to the "from" domain of the constraint
-     */
-    private boolean applyConstraintToDependant(Constraint constraint) {
-        return constraint.constrainFrom(moduleVersionPool.get(constraint.getFrom()), Collections.unmodifiableSet(moduleVersionPool.get(constraint.getTo())));
-    }
-
-    /**
-     * Taking the already constrained moduleVersionPool, works through the remaining possibilities restricting down to the latest possible versions.
+     * Taking the already constrained domains, works through the remaining possibilities restricting down to the latest possible versions.
      * <p>
      * Root modules are restricted first and in order, to keep their versions as recent as possible.
      * Dependencies are then followed, restricted them to latest as needed.
@@ -205,11 +212,10 @@ private boolean applyConstraintToDependant(Constraint constraint) {
      * @return The final set of compatible modules.
      */
     private Set<Module> finaliseModules() {
-        Set<Module> finalModuleSet = Sets.newLinkedHashSetWithExpectedSize(moduleVersionPool.keySet().size());
+        Set<Module> finalModuleSet = Sets.newLinkedHashSetWithExpectedSize(involvedModules.size());
         Deque<Module> moduleQueue = Queues.newArrayDeque();
         for (Name rootModule : rootModules) {
-            Version latestVersion = reduceToFinalVersion(rootModule, true).get();
-            Module module = registry.getModule(rootModule, latestVersion);
+            Module module = reduceToFinalVersion(rootModule, true).get();
             finalModuleSet.add(module);
             moduleQueue.push(module);
         }
@@ -217,12 +223,9 @@ private Set<Module> finaliseModules() {
         while (!moduleQueue.isEmpty()) {
             Module module = moduleQueue.pop();
             for (DependencyInfo dependency : module.getMetadata().getDependencies()) {
-                Optional<Version> latestVersion = reduceToFinalVersion(dependency.getId(), optionalStrategy.isDesired());
-                if (latestVersion.isPresent()) {
-                    Module dependencyModule = registry.getModule(dependency.getId(), latestVersion.get());
-                    if (finalModuleSet.add(dependencyModule)) {
-                        moduleQueue.push(dependencyModule);
-                    }
+                Optional<Module> dependencyModule = reduceToFinalVersion(dependency.getId(), optionalStrategy.isDesired());
+                if (dependencyModule.isPresent() && finalModuleSet.add(dependencyModule.get())) {
+                    moduleQueue.push(dependencyModule.get());
                 }
             }
         }
@@ -234,211 +237,53 @@ private Set<Module> finaliseModules() {
      * and then processes constraints affected by this reduction. Should only be called of there is at least
      * one version available.
      *
-     * @param module The module to limit to the latest version
+     * @param moduleId The module to limit to the latest version
      * @return The latest version of the module.
      */
-    private Optional<Version> reduceToFinalVersion(Name module, boolean includeIfOptional) {
-        switch (moduleVersionPool.get(module).size()) {
+    private Optional<Module> reduceToFinalVersion(Name moduleId, boolean includeIfOptional) {
+        Integer index = moduleIndices.get(moduleId);
+        if (index == null) {
+            return Optional.empty();
+        }
+        BitSet domain = domains.get(index);
+        int bit;
+        switch (domain.cardinality()) {
             case 0:
                 return Optional.empty();
             case 1:
-                return moduleVersionPool.get(module).iterator().next().getVersion();
+                bit = domain.nextSetBit(0);
+                break;
             default:
-                PossibleVersion version;
-                if (!includeIfOptional && moduleVersionPool.get(module).contains(PossibleVersion.OPTIONAL_VERSION)) {
-                    version = PossibleVersion.OPTIONAL_VERSION;
+                if (!includeIfOptional && domain.get(ABSENT)) {
+                    bit = ABSENT;
                 } else {
-                    List<PossibleVersion> versions = Lists.newArrayList(moduleVersionPool.get(module));
-                    Collections.sort(versions);
-                    version = versions.get(versions.size() - 1);
+                    bit = domain.length() - 1;
+                }
+                domain.clear();
+                domain.set(bit);
+                for (Constraint constraint : constraintsByModule.get(index)) {
+                    enqueue(constraint);
                 }
-                moduleVersionPool.replaceValues(module, Arrays.asList(version));
-                constraintQueue.addAll(constraints.get(module));
                 processConstraints();
-                return version.getVersion();
+                break;
         }
+        return (bit == ABSENT) ? Optional.empty() : Optional.of(involvedModules.get(index).getVersion(bit));
     }
 
     /**
-     * Describes a constraint, in the form of a mapping of Versions of the "from" module to allowed ranges of the "to" modules.
-     */
-    private interface Constraint {
-
-        Name getFrom();
-
-        Name getTo();
-
-        boolean constrainFrom(Set<PossibleVersion> fromVersions, Set<PossibleVersion> toVersions);
-
-        boolean constrainTo(Set<PossibleVersion> fromVersions, Set<PossibleVersion> toVersions);
-
-    }
-
-    /**
-     * Describes a constraint, in the form of a mapping of Versions of the "from" module to allowed ranges of the "to" modules.
+     * A constraint between two of the involved modules in this resolution attempt.
      */
-    private static final class VersionConstraint implements Constraint {
-        private final Name from;
-        private final Name to;
-        private final Map<Version, CompatibleVersions> versionCompatibilities;
-
-        private VersionConstraint(Name from, Name to, Map<Version, CompatibleVersions> versionCompatibilities) {
+    private static final class Constraint {
+        private final int id;
+        private final int from;
+        private final int to;
+        private final CompiledModule.DependencyConstraint compiled;
+
+        private Constraint(int id, int from, int to, CompiledModule.DependencyConstraint compiled) {
+            this.id = id;
             this.from = from;
             this.to = to;
-            this.versionCompatibilities = versionCompatibilities;
-        }
-
-        @Override
-        public Name getFrom() {
-            return from;
+            this.compiled = compiled;
         }
-
-        @Override
-        public Name getTo() {
-            return to;
-        }
-
-        @Override
-        public boolean constrainFrom(Set<PossibleVersion> fromVersions, Set<PossibleVersion> toVersions) {
-            boolean changed = false;
-            Iterator<PossibleVersion> validVersions = fromVersions.iterator();
-            while (validVersions.hasNext()) {
-                PossibleVersion version = validVersions.next();
-                if (version.getVersion().isPresent()) {
-                    CompatibleVersions compatibility = versionCompatibilities.get(version.getVersion().get());
-                    if (compatibility != null) {
-                        boolean valid = false;
-                        for (PossibleVersion dependencyVersion : toVersions) {
-                            if (compatibility.isCompatible(dependencyVersion)) {
-                                valid = true;
-                                break;
-                            }
-                        }
-                        if (!valid) {
-                            validVersions.remove();
-                            changed = true;
-                        }
-                    }
-                }
-            }
-            return changed;
-        }
-
-        @Override
-        public boolean constrainTo(Set<PossibleVersion> fromVersions, Set<PossibleVersion> toVersions) {
-            boolean changed = false;
-            Iterator<PossibleVersion> dependencyVersions = toVersions.iterator();
-            while (dependencyVersions.hasNext()) {
-                PossibleVersion dependencyVersion = dependencyVersions.next();
-                boolean valid = false;
-                for (PossibleVersion version : fromVersions) {
-                    if (version.getVersion().isPresent()) {
-                        CompatibleVersions compatibility = versionCompatibilities.get(version.getVersion().get());
-                        if (compatibility == null || compatibility.isCompatible(dependencyVersion)) {
-                            valid = true;
-                            break;
-                        }
-                    } else {
-                        valid = true;
-                    }
-                }
-                if (!valid) {
-                    dependencyVersions.remove();
-                    changed = true;
-                }
-            }
-            return changed;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
-            if (obj instanceof VersionConstraint) {
-                VersionConstraint other = (VersionConstraint) obj;
-                return Objects.equals(from, other.from) && Objects.equals(to, other.to);
-            }
-            return false;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(from, to);
-        }
-
-        @Override
-        public String toString() {
-            return from + "==>" + to;
-        }
-
-
     }
-
-    private static class CompatibleVersions {
-        private final VersionRange versionRange;
-        private final boolean missingAllowed;
-
-        public CompatibleVersions(VersionRange versionRange, boolean missingAllowed) {
-            this.versionRange = versionRange;
-            this.missingAllowed = missingAllowed;
-        }
-
-        public boolean isCompatible(PossibleVersion version) {
-            if (version.getVersion().isPresent()) {
-                return versionRange.contains(version.getVersion().get());
-            } else {
-                return missingAllowed;
-            }
-        }
-    }
-
-    private static class PossibleVersion implements Comparable<PossibleVersion> {
-        public static final PossibleVersion OPTIONAL_VERSION = new PossibleVersion();
-        private final Optional<Version> version;
-
-        private PossibleVersion() {
-            version = Optional.empty();
-        }
-
-        public PossibleVersion(Version version) {
-            this.version = Optional.of(version);
-        }
-
-        public Optional<Version> getVersion() {
-            return version;
-        }
-
-        @Override
-        public int compareTo(PossibleVersion o) {
-            if (!version.isPresent()) {
-                if (o.version.isPresent()) {
-                    return -1;
-                }
-                return 0;
-            } else {
-                if (o.version.isPresent()) {
-                    return version.get().compareTo(o.version.get());
-                }
-                return 1;
-            }
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj instanceof PossibleVersion) {
-                return compareTo((PossibleVersion) obj) == 0;
-            }
-            return false;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(version);
-        }
-    }
-
 }
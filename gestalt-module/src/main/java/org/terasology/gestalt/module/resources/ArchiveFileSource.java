@@ -24,9 +24,9 @@
 import com.google.common.collect.SetMultimap;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,11 +36,11 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 /**
  * ModuleFileSource that exposes the content of an archive file (zip/jar, etc)
@@ -49,9 +49,12 @@ public class ArchiveFileSource implements ModuleFileSource {
 
     private static final String PATH_SEPARATOR = "/";
     private static final Joiner PATH_JOINER = Joiner.on(PATH_SEPARATOR);
+    private static final int MAX_IDLE_ARCHIVES = 32;
+    private static final ZipFilePool ZIP_FILE_POOL = new ZipFilePool(MAX_IDLE_ARCHIVES);
 
     private final Map<String, FileReference> contents = Maps.newLinkedHashMap();
     private final SetMultimap<List<String>, String> subpaths = HashMultimap.create();
+    private final ArchiveMapping mapping;
 
     /**
      * Creates an archive file source over the given archive file. All .class files in the archive
@@ -75,7 +78,8 @@ public ArchiveFileSource(File file, String... subpath) throws IOException {
      */
     public ArchiveFileSource(File file, Predicate<String> contentsFilter, String... subpath) throws IOException {
         String basePath = buildPathString(Arrays.asList(subpath));
-        try (ZipFile zip = new ZipFile(file)) {
+        mapping = new ArchiveMapping(file);
+        ZIP_FILE_POOL.readEntries(file, zip -> {
             Enumeration<? extends ZipEntry> entries = zip.entries();
             while (entries.hasMoreElements()) {
                 ZipEntry entry = entries.nextElement();
@@ -85,13 +89,13 @@ public ArchiveFileSource(File file, Predicate<String> contentsFilter, String...
                         subpaths.put(pathParts.subList(0, pathParts.size() - 1), pathParts.get(pathParts.size() - 1));
                     }
                 } else if (entry.getName().startsWith(basePath)) {
-                    ArchiveFileReference archiveFile = new ArchiveFileReference(file, entry.getName(), basePath);
+                    ArchiveFileReference archiveFile = new ArchiveFileReference(file, entry.getName(), basePath, entry.getSize(), entry.getMethod() == ZipEntry.STORED, mapping);
                     if (contentsFilter.test(archiveFile.getName())) {
                         contents.put(entry.getName().substring(basePath.length()), archiveFile);
                     }
                 }
             }
-        }
+        });
     }
 
     private String buildPathString(List<String> subpath) {
@@ -137,11 +141,17 @@ private static class ArchiveFileReference implements FileReference {
         private File zipFile;
         private String internalFile;
         private String basePath;
+        private long size;
+        private boolean stored;
+        private ArchiveMapping mapping;
 
-        ArchiveFileReference(File zipFile, String internalFile, String basePath) {
+        ArchiveFileReference(File zipFile, String internalFile, String basePath, long size, boolean stored, ArchiveMapping mapping) {
             this.zipFile = zipFile;
             this.internalFile = internalFile;
             this.basePath = basePath;
+            this.size = size;
+            this.stored = stored;
+            this.mapping = mapping;
         }
 
         @Override
@@ -161,15 +171,26 @@ public List<String> getPath() {
 
         @Override
         public InputStream open() throws IOException {
-            ZipFile zip = new ZipFile(zipFile);
-            Enumeration<? extends ZipEntry> entries = zip.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                if (entry.getName().equals(internalFile)) {
-                    return zip.getInputStream(entry);
+            return ZIP_FILE_POOL.open(zipFile, internalFile);
+        }
+
+        @Override
+        public OptionalLong getSize() {
+            if (size >= 0) {
+                return OptionalLong.of(size);
+            }
+            return OptionalLong.empty();
+        }
+
+        @Override
+        public ByteBuffer map() throws IOException {
+            if (stored) {
+                Optional<ByteBuffer> buffer = mapping.map(internalFile);
+                if (buffer.isPresent()) {
+                    return buffer.get();
                 }
             }
-            throw new FileNotFoundException("Could not find file " + internalFile + " in " + zipFile.getPath());
+            return FileReference.super.map();
         }
 
         @Override
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.resources;
+
+import com.google.common.collect.Maps;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Provides memory-mapped access to the entries of an archive that are stored without compression. The central directory of the archive is read once on
+ * first use to determine the location of the data of each stored entry, and each entry is then mapped individually when requested - the archive itself is
+ * never mapped as a whole, so no mapping of it outlives the buffers handed out for its entries.
+ * <p>
+ * Compressed entries, and entries that cannot be mapped (such as those in zip64 archives), are not supported - {@link #map(String)} returns
+ * {@link Optional#empty()} for them so that callers can fall back to reading the entry through a stream.
+ * </p>
+ */
+final class ArchiveMapping {
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int STORED = 0;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    private final File file;
+    private Map<String, StoredEntry> storedEntries;
+
+    ArchiveMapping(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @param entryName The full name of the entry within the archive
+     * @return A read-only buffer mapped over the entry's data, if the entry is stored without compression
+     * @throws IOException If there is an error reading or mapping the archive
+     */
+    Optional<ByteBuffer> map(String entryName) throws IOException {
+        StoredEntry entry = getStoredEntries().get(entryName);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer localHeader = read(channel, entry.localHeaderOffset, LOCAL_FILE_HEADER_SIZE);
+            if (localHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+                throw new IOException("Invalid local file header for " + entryName + " in " + file.getPath());
+            }
+            long dataStart = entry.localHeaderOffset + LOCAL_FILE_HEADER_SIZE + unsignedShort(localHeader, 26) + unsignedShort(localHeader, 28);
+            if (dataStart + entry.size > channel.size()) {
+                throw new IOException("Truncated entry " + entryName + " in " + file.getPath());
+            }
+            return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, dataStart, entry.size));
+        }
+    }
+
+    private synchronized Map<String, StoredEntry> getStoredEntries() throws IOException {
+        if (storedEntries == null) {
+            storedEntries = readCentralDirectory();
+        }
+        return storedEntries;
+    }
+
+    private Map<String, StoredEntry> readCentralDirectory() throws IOException {
+        Map<String, StoredEntry> result = Maps.newHashMap();
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            int tailSize = (int) Math.min(channel.size(), END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+            long tailStart = channel.size() - tailSize;
+            ByteBuffer tail = read(channel, tailStart, tailSize);
+            int endOfCentralDirectory = findEndOfCentralDirectory(tail);
+            if (endOfCentralDirectory < 0) {
+                return result;
+            }
+            int entryCount = unsignedShort(tail, endOfCentralDirectory + 10);
+            long centralDirectorySize = unsignedInt(tail, endOfCentralDirectory + 12);
+            long centralDirectoryOffset = unsignedInt(tail, endOfCentralDirectory + 16);
+            if (centralDirectoryOffset + centralDirectorySize > tailStart + endOfCentralDirectory) {
+                return result;
+            }
+            ByteBuffer centralDirectory = read(channel, centralDirectoryOffset, (int) centralDirectorySize);
+
+            int position = 0;
+            for (int i = 0; i < entryCount && position + CENTRAL_DIRECTORY_HEADER_SIZE <= centralDirectory.limit(); ++i) {
+                if (centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                    return result;
+                }
+                int method = unsignedShort(centralDirectory, position + 10);
+                long compressedSize = unsignedInt(centralDirectory, position + 20);
+                long size = unsignedInt(centralDirectory, position + 24);
+                int nameLength = unsignedShort(centralDirectory, position + 28);
+                int extraLength = unsignedShort(centralDirectory, position + 30);
+                int commentLength = unsignedShort(centralDirectory, position + 32);
+                long localHeaderOffset = unsignedInt(centralDirectory, position + 42);
+
+                if (method == STORED && compressedSize == size && size != ZIP64_MARKER && localHeaderOffset != ZIP64_MARKER
+                        && position + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength <= centralDirectory.limit()) {
+                    byte[] name = new byte[nameLength];
+                    ByteBuffer nameBuffer = centralDirectory.duplicate();
+                    nameBuffer.position(position + CENTRAL_DIRECTORY_HEADER_SIZE);
+                    nameBuffer.get(name);
+                    result.put(new String(name, StandardCharsets.UTF_8), new StoredEntry(localHeaderOffset, size));
+                }
+                position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+            }
+        }
+        return result;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; --position) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static int unsignedShort(ByteBuffer buffer, int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    private static long unsignedInt(ByteBuffer buffer, int position) {
+        return buffer.getInt(position) & 0xFFFFFFFFL;
+    }
+
+    private static final class StoredEntry {
+        private final long localHeaderOffset;
+        private final long size;
+
+        StoredEntry(long localHeaderOffset, long size) {
+            this.localHeaderOffset = localHeaderOffset;
+            this.size = size;
+        }
+    }
+}
@@ -22,13 +22,17 @@
 
 import org.reflections.Reflections;
 
+import java.io.File;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -147,6 +151,19 @@ public InputStream open() {
             return classLoader.getResourceAsStream(path);
         }
 
+        @Override
+        public OptionalLong getSize() {
+            URL url = classLoader.getResource(path);
+            if (url != null && "file".equals(url.getProtocol())) {
+                try {
+                    return OptionalLong.of(new File(url.toURI()).length());
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    return OptionalLong.empty();
+                }
+            }
+            return OptionalLong.empty();
+        }
+
         @Override
         public String toString() {
             return getName();
@@ -32,6 +32,8 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
@@ -41,6 +43,7 @@
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
@@ -185,6 +188,19 @@ public InputStream open() throws IOException {
             return new BufferedInputStream(new FileInputStream(file));
         }
 
+        @Override
+        public OptionalLong getSize() {
+            return OptionalLong.of(file.length());
+        }
+
+        @Override
+        public ByteBuffer map() throws IOException {
+            try (FileInputStream stream = new FileInputStream(file)) {
+                FileChannel channel = stream.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
         @Override
         public String toString() {
             return getName();
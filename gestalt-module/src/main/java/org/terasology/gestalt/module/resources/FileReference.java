@@ -16,9 +16,13 @@
 
 package org.terasology.gestalt.module.resources;
 
+import com.google.common.io.ByteStreams;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.OptionalLong;
 
 /**
  * A handle describing and providing access to a file from a {@link ModuleFileSource}
@@ -41,4 +45,24 @@ public interface FileReference {
      */
     InputStream open() throws IOException;
 
+    /**
+     * @return The size of the file in bytes, if it is known without reading the file
+     */
+    default OptionalLong getSize() {
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Provides the content of the file as a read-only buffer. Where the file source supports it the buffer is memory-mapped directly
+     * over the file, avoiding copying the content onto the heap; otherwise the content is read into a heap buffer.
+     *
+     * @return A read-only buffer over the content of the file
+     * @throws IOException If there is an exception reading the file
+     */
+    default ByteBuffer map() throws IOException {
+        try (InputStream stream = open()) {
+            return ByteBuffer.wrap(ByteStreams.toByteArray(stream)).asReadOnlyBuffer();
+        }
+    }
+
 }
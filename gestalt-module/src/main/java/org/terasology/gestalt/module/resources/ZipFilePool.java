@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.resources;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A pool of open ZipFiles, shared between all the readers of an archive. This avoids re-reading the central directory of an archive each time a file is opened
+ * from it, and allows entries to be looked up directly by name.
+ * <p>
+ * Each ZipFile is reference counted - it remains open while any stream opened from it remains open. Once it is no longer in use it is kept open as idle until
+ * more than a fixed number of archives are idle, at which point the least recently used is closed. This bounds the number of file handles held by the pool.
+ * </p>
+ * <p>
+ * The size and last modified time of an archive are checked each time it is acquired. If the archive has been replaced on disk, it is reopened - the old
+ * ZipFile is closed once the streams still reading from it are closed.
+ * </p>
+ */
+final class ZipFilePool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZipFilePool.class);
+
+    private final int maxIdle;
+    private final Map<File, PooledZipFile> openFiles = Maps.newHashMap();
+    private final Set<PooledZipFile> idleFiles = Sets.newLinkedHashSet();
+    // Archives that were replaced on disk while streams were still open from them
+    private final Set<PooledZipFile> replacedFiles = Sets.newHashSet();
+
+    /**
+     * @param maxIdle The maximum number of archives to keep open while they are not in use
+     */
+    ZipFilePool(int maxIdle) {
+        Preconditions.checkArgument(maxIdle >= 0, "maxIdle must not be negative");
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Opens a stream over an entry of an archive. The archive is held open at least until the stream is closed.
+     *
+     * @param archive   The archive containing the entry
+     * @param entryName The full name of the entry within the archive
+     * @return A new InputStream for reading the entry.
+     * @throws IOException If there is an error opening the archive or the entry
+     */
+    InputStream open(File archive, String entryName) throws IOException {
+        PooledZipFile pooledFile = acquire(archive);
+        try {
+            ZipEntry entry = pooledFile.zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new FileNotFoundException("Could not find file " + entryName + " in " + archive.getPath());
+            }
+            return new PooledEntryInputStream(pooledFile.zipFile.getInputStream(entry), pooledFile);
+        } catch (IOException | RuntimeException e) {
+            release(pooledFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Provides the entries of an archive to the given consumer, while holding the archive open.
+     *
+     * @param archive  The archive to read the entries of
+     * @param consumer The consumer of the entries
+     * @throws IOException If there is an error opening the archive
+     */
+    void readEntries(File archive, EntryConsumer consumer) throws IOException {
+        PooledZipFile pooledFile = acquire(archive);
+        try {
+            consumer.accept(pooledFile.zipFile);
+        } finally {
+            release(pooledFile);
+        }
+    }
+
+    /**
+     * @return The number of archives currently held open by the pool
+     */
+    synchronized int getOpenCount() {
+        return openFiles.size() + replacedFiles.size();
+    }
+
+    /**
+     * Closes all archives that are not currently in use
+     */
+    synchronized void closeIdle() {
+        for (PooledZipFile idleFile : idleFiles) {
+            close(idleFile);
+        }
+        idleFiles.clear();
+    }
+
+    private PooledZipFile acquire(File archive) throws IOException {
+        long length = archive.length();
+        long lastModified = archive.lastModified();
+        synchronized (this) {
+            PooledZipFile pooledFile = openFiles.get(archive);
+            if (pooledFile != null) {
+                if (pooledFile.matches(length, lastModified)) {
+                    idleFiles.remove(pooledFile);
+                    pooledFile.references++;
+                    return pooledFile;
+                }
+                discard(pooledFile);
+            }
+        }
+        ZipFile zipFile = new ZipFile(archive);
+        synchronized (this) {
+            PooledZipFile pooledFile = openFiles.get(archive);
+            if (pooledFile != null && !pooledFile.matches(length, lastModified)) {
+                discard(pooledFile);
+                pooledFile = null;
+            }
+            if (pooledFile == null) {
+                pooledFile = new PooledZipFile(archive, zipFile, length, lastModified);
+                openFiles.put(archive, pooledFile);
+            } else {
+                // Another thread opened the archive concurrently, use theirs
+                idleFiles.remove(pooledFile);
+                closeQuietly(zipFile);
+            }
+            pooledFile.references++;
+            return pooledFile;
+        }
+    }
+
+    private synchronized void release(PooledZipFile pooledFile) {
+        pooledFile.references--;
+        if (pooledFile.references == 0 && replacedFiles.remove(pooledFile)) {
+            closeQuietly(pooledFile.zipFile);
+        } else if (pooledFile.references == 0) {
+            idleFiles.add(pooledFile);
+            Iterator<PooledZipFile> iterator = idleFiles.iterator();
+            while (idleFiles.size() > maxIdle) {
+                PooledZipFile leastRecentlyUsed = iterator.next();
+                iterator.remove();
+                close(leastRecentlyUsed);
+            }
+        }
+    }
+
+    private void close(PooledZipFile pooledFile) {
+        openFiles.remove(pooledFile.archive, pooledFile);
+        closeQuietly(pooledFile.zipFile);
+    }
+
+    /**
+     * Stops serving an archive that has been replaced on disk, closing it now if it is idle or once it is released otherwise.
+     */
+    private void discard(PooledZipFile pooledFile) {
+        openFiles.remove(pooledFile.archive, pooledFile);
+        if (idleFiles.remove(pooledFile)) {
+            closeQuietly(pooledFile.zipFile);
+        } else {
+            replacedFiles.add(pooledFile);
+        }
+    }
+
+    private void closeQuietly(ZipFile zipFile) {
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close archive '{}'", zipFile.getName(), e);
+        }
+    }
+
+    /**
+     * Consumer of the entries of an archive
+     */
+    interface EntryConsumer {
+        void accept(ZipFile zipFile) throws IOException;
+    }
+
+    private static final class PooledZipFile {
+        private final File archive;
+        private final ZipFile zipFile;
+        private final long length;
+        private final long lastModified;
+        private int references;
+
+        PooledZipFile(File archive, ZipFile zipFile, long length, long lastModified) {
+            this.archive = archive;
+            this.zipFile = zipFile;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        boolean matches(long currentLength, long currentLastModified) {
+            return length == currentLength && lastModified == currentLastModified;
+        }
+    }
+
+    /**
+     * Releases the archive it was opened from when closed.
+     */
+    private final class PooledEntryInputStream extends FilterInputStream {
+        private final PooledZipFile pooledFile;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        PooledEntryInputStream(InputStream in, PooledZipFile pooledFile) {
+            super(in);
+            this.pooledFile = pooledFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    super.close();
+                } finally {
+                    release(pooledFile);
+                }
+            }
+        }
+    }
+}
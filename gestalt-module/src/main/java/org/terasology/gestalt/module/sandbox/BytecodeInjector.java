@@ -16,6 +16,8 @@
 
 package org.terasology.gestalt.module.sandbox;
 
+import java.util.Optional;
+
 import javassist.CtClass;
 
 /**
@@ -29,4 +31,14 @@ public interface BytecodeInjector {
      * @param cc The class being loaded.
      */
     void inject(CtClass cc);
+
+    /**
+     * Provides a key identifying exactly what this injector does, including its version and any configuration affecting the injected code. Classes are only
+     * cached by an {@link InjectedBytecodeCache} if every injector applied to them has a key, and cached classes are only reused while the keys are unchanged.
+     *
+     * @return The key of this injector, or empty if classes it has modified should not be cached
+     */
+    default Optional<String> getCacheKey() {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.sandbox;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.gestalt.module.Module;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+
+/**
+ * InjectedBytecodeCache stores the bytecode of module classes after they have been modified by {@link BytecodeInjector BytecodeInjectors}, so that a
+ * {@link JavaModuleClassLoader} can define unchanged classes directly rather than running them through javassist on every start.
+ * <p>
+ * Each class is keyed by its name, a hash of its original bytecode and the {@link BytecodeInjector#getCacheKey() cache keys} of the injectors applied to it.
+ * Classes are not cached if any injector does not provide a key. Unused entries are not removed automatically - {@link #clear()} can be used to discard them.
+ * </p>
+ * <p>
+ * Each entry stores the length and CRC32 checksum of the injected bytecode alongside it. Entries that do not match their checksum, such as those truncated
+ * by a crash while being written, are discarded rather than defined.
+ * </p>
+ * <p>
+ * Thread safe.
+ * </p>
+ */
+public class InjectedBytecodeCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(InjectedBytecodeCache.class);
+    private static final String FILE_EXTENSION = ".injected";
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    // The length and CRC32 checksum of the injected bytecode
+    private static final int HEADER_LENGTH = Integer.BYTES + Long.BYTES;
+
+    private final File directory;
+
+    /**
+     * @param directory The directory to store injected classes in. It will be created if it does not exist.
+     */
+    public InjectedBytecodeCache(File directory) {
+        Preconditions.checkNotNull(directory);
+        this.directory = directory;
+    }
+
+    /**
+     * @return The directory injected classes are stored in
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param injectors The injectors applied to classes
+     * @return The combined cache key of the injectors, or empty if any of them cannot be cached
+     */
+    public static Optional<String> getCacheKey(Iterable<BytecodeInjector> injectors) {
+        StringBuilder key = new StringBuilder();
+        for (BytecodeInjector injector : injectors) {
+            Optional<String> injectorKey = injector.getCacheKey();
+            if (!injectorKey.isPresent()) {
+                return Optional.empty();
+            }
+            key.append(injectorKey.get()).append('\n');
+        }
+        return Optional.of(key.toString());
+    }
+
+    /**
+     * Retrieves the cached injected bytecode of a class.
+     *
+     * @param className         The name of the class
+     * @param originalBytecode  The bytecode of the class before injection
+     * @param injectorsCacheKey The combined cache key of the injectors applied to the class
+     * @return The injected bytecode, if it is cached
+     */
+    public Optional<byte[]> load(String className, byte[] originalBytecode, String injectorsCacheKey) {
+        File file = getCacheFile(className, originalBytecode, injectorsCacheKey);
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        try {
+            byte[] entry = readFile(file);
+            if (entry.length >= HEADER_LENGTH) {
+                ByteBuffer header = ByteBuffer.wrap(entry, 0, HEADER_LENGTH);
+                int length = header.getInt();
+                long checksum = header.getLong();
+                if (length == entry.length - HEADER_LENGTH && checksum == checksum(entry, HEADER_LENGTH, length)) {
+                    return Optional.of(Arrays.copyOfRange(entry, HEADER_LENGTH, entry.length));
+                }
+            }
+            logger.warn("Cached class '{}' is corrupt, discarding", className);
+        } catch (IOException e) {
+            logger.warn("Failed to read cached class '{}', discarding", className, e);
+        }
+        if (!file.delete()) {
+            logger.warn("Failed to delete cached class '{}'", file);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Stores the injected bytecode of a class. Failure to store the class is logged but otherwise ignored, as the cache is only an optimisation.
+     *
+     * @param className         The name of the class
+     * @param originalBytecode  The bytecode of the class before injection
+     * @param injectorsCacheKey The combined cache key of the injectors applied to the class
+     * @param injectedBytecode  The bytecode of the class after injection
+     */
+    public void store(String className, byte[] originalBytecode, String injectorsCacheKey, byte[] injectedBytecode) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.warn("Failed to create injected bytecode cache directory '{}'", directory);
+            return;
+        }
+        File file = getCacheFile(className, originalBytecode, injectorsCacheKey);
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(injectedBytecode.length);
+            header.putLong(checksum(injectedBytecode, 0, injectedBytecode.length));
+            try (OutputStream output = new FileOutputStream(tempFile)) {
+                output.write(header.array());
+                output.write(injectedBytecode);
+            }
+            if (!tempFile.renameTo(file) && !file.isFile()) {
+                logger.warn("Failed to store cached class '{}'", className);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to store cached class '{}'", className, e);
+        } finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                logger.warn("Failed to delete temporary file '{}'", tempFile);
+            }
+        }
+    }
+
+    /**
+     * Removes all cached classes
+     */
+    public void clear() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("Failed to delete cached class '{}'", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Injects and caches every class of a module that is not already cached, so that the module's classes can be loaded directly from the cache. This can be
+     * used when a module is installed or updated, to avoid paying the cost of injection the first time it is loaded.
+     * <p>
+     * The classes are divided between the given number of tasks, each with its own class pool, which are run on the executor.
+     * </p>
+     *
+     * @param module      The module whose classes should be cached
+     * @param injectors   The injectors that the module's class loader will use
+     * @param executor    The executor to run the tasks on
+     * @param parallelism The number of tasks to divide the classes between
+     * @return A future that completes when all classes have been processed
+     */
+    public CompletableFuture<Void> warm(Module module, Iterable<BytecodeInjector> injectors, Executor executor, int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be greater than 0");
+        Optional<String> injectorsCacheKey = getCacheKey(injectors);
+        if (!injectorsCacheKey.isPresent()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<ClassFile> classFiles = Lists.newArrayList();
+        try {
+            for (File classpath : module.getClasspaths()) {
+                gatherClassFiles(classpath, classFiles);
+            }
+        } catch (IOException e) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        List<CompletableFuture<Void>> tasks = Lists.newArrayListWithCapacity(parallelism);
+        int chunkSize = (classFiles.size() + parallelism - 1) / parallelism;
+        for (int start = 0; start < classFiles.size(); start += chunkSize) {
+            List<ClassFile> chunk = classFiles.subList(start, Math.min(start + chunkSize, classFiles.size()));
+            tasks.add(CompletableFuture.runAsync(() -> warmClasses(module, chunk, injectors, injectorsCacheKey.get()), executor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private void warmClasses(Module module, List<ClassFile> classFiles, Iterable<BytecodeInjector> injectors, String injectorsCacheKey) {
+        ClassPool pool = new ClassPool(ClassPool.getDefault());
+        try {
+            for (File classpath : module.getClasspaths()) {
+                pool.appendClassPath(classpath.getAbsolutePath());
+            }
+            for (ClassFile classFile : classFiles) {
+                if (getCacheFile(classFile.name, classFile.bytecode, injectorsCacheKey).isFile()) {
+                    continue;
+                }
+                CtClass cc = pool.makeClass(new ByteArrayInputStream(classFile.bytecode));
+                for (BytecodeInjector injector : injectors) {
+                    injector.inject(cc);
+                }
+                store(classFile.name, classFile.bytecode, injectorsCacheKey, cc.toBytecode());
+                cc.detach();
+            }
+        } catch (NotFoundException | IOException | CannotCompileException e) {
+            throw new CompletionException("Failed to inject classes of module '" + module.getId() + "'", e);
+        }
+    }
+
+    private static void gatherClassFiles(File classpath, List<ClassFile> out) throws IOException {
+        if (classpath.isDirectory()) {
+            gatherClassFiles(classpath, "", out);
+        } else if (classpath.isFile()) {
+            try (ZipFile zipFile = new ZipFile(classpath)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().endsWith(CLASS_FILE_EXTENSION)) {
+                        try (InputStream stream = zipFile.getInputStream(entry)) {
+                            out.add(new ClassFile(toClassName(entry.getName()), ByteStreams.toByteArray(stream)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void gatherClassFiles(File directory, String path, List<ClassFile> out) throws IOException {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                String childPath = path + child.getName();
+                if (child.isDirectory()) {
+                    gatherClassFiles(child, childPath + "/", out);
+                } else if (childPath.endsWith(CLASS_FILE_EXTENSION)) {
+                    out.add(new ClassFile(toClassName(childPath), readFile(child)));
+                }
+            }
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        try (InputStream stream = new FileInputStream(file)) {
+            return ByteStreams.toByteArray(stream);
+        }
+    }
+
+    private static String toClassName(String path) {
+        return path.substring(0, path.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+    }
+
+    private static long checksum(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return crc.getValue();
+    }
+
+    private File getCacheFile(String className, byte[] originalBytecode, String injectorsCacheKey) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(className, Charsets.UTF_8);
+        hasher.putBytes(originalBytecode);
+        hasher.putString(injectorsCacheKey, Charsets.UTF_8);
+        return new File(directory, hasher.hash().toString() + FILE_EXTENSION);
+    }
+
+    private static final class ClassFile {
+        private final String name;
+        private final byte[] bytecode;
+
+        private ClassFile(String name, byte[] bytecode) {
+            this.name = name;
+            this.bytecode = bytecode;
+        }
+    }
+}
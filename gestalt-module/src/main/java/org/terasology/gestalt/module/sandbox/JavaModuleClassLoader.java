@@ -16,23 +16,30 @@
 package org.terasology.gestalt.module.sandbox;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.gestalt.module.Module;
+import org.terasology.gestalt.module.ModuleEnvironment;
 import org.terasology.gestalt.naming.Name;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import javassist.ClassPool;
 import javassist.CtClass;
@@ -48,17 +55,29 @@
  * <p>
  * Additionally, the ModuleClassLoader provides hooks for any injection that needs to be done to module classes as they are loaded, via javassist.
  * </p>
+ * <p>
+ * The class loader is parallel capable. Access decisions for classes from outside the modules are made by the permission provider on every load, so
+ * changes to the provider apply to classes that have already been loaded - {@link PermissionSet} caches its decisions until it is changed.
+ * </p>
  *
  * @author Immortius
  */
 public class JavaModuleClassLoader extends URLClassLoader implements ModuleClassLoader {
 
     private static final Logger logger = LoggerFactory.getLogger(JavaModuleClassLoader.class);
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     private final PermissionProvider permissionProvider;
     private final ClassPool pool;
+    private final ClassLoader baseClassLoader;
 
     private final Name moduleId;
     private final List<BytecodeInjector> bytecodeInjectors;
+    private final InjectedBytecodeCache bytecodeCache;
+    private final String injectorsCacheKey;
 
     /**
      * @param module             The name of the module this classloader belongs to
@@ -78,10 +97,26 @@ public JavaModuleClassLoader(Name module, URL[] urls, ClassLoader parent, Permis
      * @param injectors          A collection of byte code injectors to pass all loaded module code through
      */
     public JavaModuleClassLoader(Name module, URL[] urls, ClassLoader parent, PermissionProvider permissionProvider, Iterable<BytecodeInjector> injectors) {
+        this(module, urls, parent, permissionProvider, injectors, null);
+    }
+
+    /**
+     * @param module             The name of the module this classloader belongs to
+     * @param urls               The urls where the module classes can be found
+     * @param parent             The parent classloader, where the API classes can be found
+     * @param permissionProvider The security manager that sandboxes the classes
+     * @param injectors          A collection of byte code injectors to pass all loaded module code through
+     * @param bytecodeCache      A cache of classes that have already been passed through the injectors, or null to inject every class as it is loaded
+     */
+    public JavaModuleClassLoader(Name module, URL[] urls, ClassLoader parent, PermissionProvider permissionProvider, Iterable<BytecodeInjector> injectors,
+                                 InjectedBytecodeCache bytecodeCache) {
         super(urls, parent);
         this.moduleId = module;
         this.permissionProvider = permissionProvider;
         this.bytecodeInjectors = ImmutableList.copyOf(injectors);
+        this.bytecodeCache = bytecodeCache;
+        this.injectorsCacheKey = (bytecodeCache != null) ? InjectedBytecodeCache.getCacheKey(bytecodeInjectors).orElse(null) : null;
+        this.baseClassLoader = (parent instanceof ModuleClassLoader) ? ((ModuleClassLoader) parent).getBaseClassLoader() : parent;
         if (!bytecodeInjectors.isEmpty()) {
             pool = new ClassPool(ClassPool.getDefault());
             for (URL url : urls) {
@@ -98,7 +133,36 @@ public JavaModuleClassLoader(Name module, URL[] urls, ClassLoader parent, Permis
     }
 
     public static ModuleClassLoader create(Module module, ClassLoader parent, PermissionProvider permissionProvider) {
-        URL[] urls = module.getClasspaths().stream().map(x -> {
+        return new JavaModuleClassLoader(module.getId(), getUrls(module), parent, permissionProvider);
+    }
+
+    /**
+     * @param module             The module the classloader is for
+     * @param parent             The parent classloader, where the API classes can be found
+     * @param permissionProvider The security manager that sandboxes the classes
+     * @param injectors          A collection of byte code injectors to pass all loaded module code through
+     * @param bytecodeCache      A cache of classes that have already been passed through the injectors, or null to inject every class as it is loaded
+     * @return A classloader for the module
+     */
+    public static ModuleClassLoader create(Module module, ClassLoader parent, PermissionProvider permissionProvider, Iterable<BytecodeInjector> injectors,
+                                           InjectedBytecodeCache bytecodeCache) {
+        return new JavaModuleClassLoader(module.getId(), getUrls(module), parent, permissionProvider, injectors, bytecodeCache);
+    }
+
+    /**
+     * Provides a supplier for {@link ModuleEnvironment} that creates classloaders passing module code through injectors, using a cache of injected classes.
+     *
+     * @param injectors     A collection of byte code injectors to pass all loaded module code through
+     * @param bytecodeCache A cache of classes that have already been passed through the injectors, or null to inject every class as it is loaded
+     * @return A supplier of module classloaders
+     */
+    public static ModuleEnvironment.ClassLoaderSupplier supplier(Iterable<BytecodeInjector> injectors, InjectedBytecodeCache bytecodeCache) {
+        List<BytecodeInjector> injectorList = ImmutableList.copyOf(injectors);
+        return (module, parent, permissionProvider) -> create(module, parent, permissionProvider, injectorList, bytecodeCache);
+    }
+
+    private static URL[] getUrls(Module module) {
+        return module.getClasspaths().stream().map(x -> {
             try {
                 return x.toURI().toURL();
             } catch (MalformedURLException e) {
@@ -106,7 +170,6 @@ public static ModuleClassLoader create(Module module, ClassLoader parent, Permis
                 return null;
             }
         }).filter(Objects::nonNull).toArray(URL[]::new);
-        return new JavaModuleClassLoader(module.getId(), urls, parent, permissionProvider);
     }
 
     /**
@@ -122,6 +185,11 @@ public ClassLoader getClassLoader() {
         return this;
     }
 
+    @Override
+    public ClassLoader getBaseClassLoader() {
+        return baseClassLoader;
+    }
+
     /**
      * @return The permission provider for this ModuleClassLoader
      */
@@ -130,33 +198,22 @@ public PermissionProvider getPermissionProvider() {
         return permissionProvider;
     }
 
-    /**
-     * @return The non-ModuleClassLoader that the module classloader chain is based on
-     */
-    private ClassLoader getBaseClassLoader() {
-        if (getParent() instanceof ModuleClassLoader) {
-            return ((JavaModuleClassLoader) getParent()).getBaseClassLoader();
-        }
-        return getParent();
-    }
-
     @Override
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
         Class<?> clazz;
         try {
-            clazz = getBaseClassLoader().loadClass(name);
+            clazz = baseClassLoader.loadClass(name);
         } catch (ClassNotFoundException e) {
             clazz = super.loadClass(name, resolve);
         }
 
         ClassLoader parentLoader = AccessController.doPrivileged(new ObtainClassloader(clazz));
-        if (parentLoader != this && !(parentLoader instanceof ModuleClassLoader)) {
-            if (permissionProvider.isPermitted(clazz)) {
-                return clazz;
-            } else {
-                logger.error("Denied access to class (not allowed with this module's permissions): {}", name);
-                return null;
-            }
+        if (parentLoader == this || parentLoader instanceof ModuleClassLoader) {
+            return clazz;
+        }
+        if (!permissionProvider.isPermitted(clazz)) {
+            logger.error("Denied access to class (not allowed with this module's permissions): {}", name);
+            return null;
         }
         return clazz;
     }
@@ -169,12 +226,27 @@ protected Class<?> findClass(final String name) throws ClassNotFoundException {
         try {
             if (pool != null) {
                 return AccessController.doPrivileged((PrivilegedExceptionAction<Class<?>>) () -> {
-                    CtClass cc = pool.get(name);
+                    byte[] originalBytecode = (injectorsCacheKey != null) ? readOriginalBytecode(name) : null;
+                    if (originalBytecode != null) {
+                        Optional<byte[]> cachedBytecode = bytecodeCache.load(name, originalBytecode, injectorsCacheKey);
+                        if (cachedBytecode.isPresent()) {
+                            return defineClass(name, cachedBytecode.get(), 0, cachedBytecode.get().length);
+                        }
+                    }
+                    byte[] b;
+                    // The class pool is shared by all classes of the module, which may now be loaded in parallel
+                    synchronized (pool) {
+                        // Reuse the bytecode already read for the cache lookup rather than having the pool read it again
+                        CtClass cc = (originalBytecode != null) ? pool.makeClassIfNew(new ByteArrayInputStream(originalBytecode)) : pool.get(name);
 
-                    for (BytecodeInjector injector : bytecodeInjectors) {
-                        injector.inject(cc);
+                        for (BytecodeInjector injector : bytecodeInjectors) {
+                            injector.inject(cc);
+                        }
+                        b = cc.toBytecode();
+                    }
+                    if (originalBytecode != null) {
+                        bytecodeCache.store(name, originalBytecode, injectorsCacheKey, b);
                     }
-                    byte[] b = cc.toBytecode();
                     return defineClass(name, b, 0, b.length);
                 });
             } else {
@@ -185,4 +257,21 @@ protected Class<?> findClass(final String name) throws ClassNotFoundException {
             throw new ClassNotFoundException("Failed to find or load class " + name, e.getCause());
         }
     }
+
+    /**
+     * @param name The name of a class
+     * @return The bytecode of the class from this module's own urls, or null if it is not provided by them
+     */
+    private byte[] readOriginalBytecode(String name) throws IOException {
+        URL resource = findResource(name.replace('.', '/') + ".class");
+        if (resource == null) {
+            return null;
+        }
+        // Cached jar connections would hold the module's archive open, and may serve stale content if the archive is replaced
+        URLConnection connection = resource.openConnection();
+        connection.setUseCaches(false);
+        try (InputStream stream = connection.getInputStream()) {
+            return ByteStreams.toByteArray(stream);
+        }
+    }
 }
@@ -31,11 +31,28 @@ public interface ModuleClassLoader {
      */
     Name getModuleId();
 
+    /**
+     * @param type A class loaded by this class loader
+     * @return The id of the module providing the class, or null if it cannot be determined. For class loaders serving a single module, this is always
+     * {@link #getModuleId()}.
+     */
+    default Name getModuleProviding(Class<?> type) {
+        return getModuleId();
+    }
+
     /**
      * @return The class loader itself
      */
     ClassLoader getClassLoader();
 
+    /**
+     * @return The first class loader below this one that is not a module class loader - the chain of module class loaders is based on it
+     */
+    default ClassLoader getBaseClassLoader() {
+        ClassLoader parent = getClassLoader().getParent();
+        return (parent instanceof ModuleClassLoader) ? ((ModuleClassLoader) parent).getBaseClassLoader() : parent;
+    }
+
     /**
      * Closes this class loader (when relevant)
      *
@@ -93,9 +93,14 @@ private boolean checkModuleDeniedAccess(Permission perm) {
      * @return Whether the permission has been granted to any of the API classes involved.
      */
     private boolean checkAPIPermissionsFor(Permission permission, int moduleDepth, Class<?>[] stack, PermissionProvider permissionProvider) {
+        Class<?> previousContext = null;
         for (int i = moduleDepth - 1; i >= 0; i--) {
-            if (permissionProvider.isPermitted(permission, stack[i])) {
-                return true;
+            // Consecutive frames from the same class (recursion, overloads delegating to each other) share a decision
+            if (stack[i] != previousContext) {
+                if (permissionProvider.isPermitted(permission, stack[i])) {
+                    return true;
+                }
+                previousContext = stack[i];
             }
         }
         return false;
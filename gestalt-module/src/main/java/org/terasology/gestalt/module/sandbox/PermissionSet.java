@@ -28,9 +28,17 @@
 import java.security.Permission;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A permission set is a group of Permissions and class access that can be granted together to a module.
+ * <p>
+ * Decisions on whether a type of permission is granted to a context class are cached, as the same checks are repeated for every permission check made
+ * through an API class. Likewise decisions on access to classes are cached, as they are shared by every module class loader using this set. The caches
+ * are discarded whenever a permission or API class is granted or revoked. Only classes between a module and the permission check are
+ * used as contexts by the {@link ModuleSecurityManager}, so module classes are not retained by the cache.
+ * </p>
  *
  * @author Immortius
  */
@@ -46,6 +54,8 @@ public class PermissionSet implements PermissionProvider {
     private final SetMultimap<Permission, Class<?>> allowedPermissionInstances = HashMultimap.create();
     private final SetMultimap<Class<? extends Permission>, String> allowedPackagePermissionsTypes = HashMultimap.create();
     private final SetMultimap<Permission, String> allowedPackagePermissionInstances = HashMultimap.create();
+    private volatile ConcurrentMap<Class<? extends Permission>, ConcurrentMap<Class<?>, Boolean>> permissionTypeDecisions = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<Class<?>, Boolean> classDecisions = new ConcurrentHashMap<>();
 
     /**
      * @param type The type to check whether access is permitted to
@@ -53,7 +63,13 @@ public class PermissionSet implements PermissionProvider {
      */
     @Override
     public boolean isPermitted(Class<?> type) {
-        return apiClasses.contains(type) || apiPackages.contains(Reflection.getPackageName(type));
+        ConcurrentMap<Class<?>, Boolean> decisions = classDecisions;
+        Boolean decision = decisions.get(type);
+        if (decision == null) {
+            decision = apiClasses.contains(type) || apiPackages.contains(Reflection.getPackageName(type));
+            decisions.put(type, decision);
+        }
+        return decision;
     }
 
     /**
@@ -63,11 +79,42 @@ public boolean isPermitted(Class<?> type) {
      */
     @Override
     public boolean isPermitted(Permission permission, Class<?> context) {
-        return globallyAllowedPermissionsTypes.contains(permission.getClass()) || globallyAllowedPermissionsInstances.contains(permission)
+        return isPermissionTypePermitted(permission.getClass(), context) || isPermissionInstancePermitted(permission, context);
+    }
+
+    private boolean isPermissionTypePermitted(Class<? extends Permission> permissionType, Class<?> context) {
+        ConcurrentMap<Class<?>, Boolean> decisions = permissionTypeDecisions.computeIfAbsent(permissionType, type -> new ConcurrentHashMap<>());
+        Boolean decision = decisions.get(context);
+        if (decision == null) {
+            decision = globallyAllowedPermissionsTypes.contains(permissionType)
+                    || allowedPermissionsTypes.get(permissionType).contains(context)
+                    || allowedPackagePermissionsTypes.get(permissionType).contains(Reflection.getPackageName(context));
+            decisions.put(context, decision);
+        }
+        return decision;
+    }
+
+    private boolean isPermissionInstancePermitted(Permission permission, Class<?> context) {
+        if (globallyAllowedPermissionsInstances.isEmpty() && allowedPermissionInstances.isEmpty() && allowedPackagePermissionInstances.isEmpty()) {
+            return false;
+        }
+        return globallyAllowedPermissionsInstances.contains(permission)
                 || allowedPermissionInstances.get(permission).contains(context)
-                || allowedPermissionsTypes.get(permission.getClass()).contains(context)
-                || allowedPackagePermissionInstances.get(permission).contains(Reflection.getPackageName(context))
-                || allowedPackagePermissionsTypes.get(permission.getClass()).contains(Reflection.getPackageName(context));
+                || allowedPackagePermissionInstances.get(permission).contains(Reflection.getPackageName(context));
+    }
+
+    /**
+     * Discards all cached permission decisions. A check already in progress may still store a decision, but only into the discarded cache.
+     */
+    private void clearPermissionDecisions() {
+        permissionTypeDecisions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Discards all cached class access decisions.
+     */
+    private void clearClassDecisions() {
+        classDecisions = new ConcurrentHashMap<>();
     }
 
     /**
@@ -81,6 +128,7 @@ public void grantPermission(Class<? extends Permission> permission) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         globallyAllowedPermissionsTypes.add(permission);
+        clearPermissionDecisions();
         logger.debug("Globally granted permission '{}'", permission);
     }
 
@@ -95,6 +143,7 @@ public void grantPermission(Permission permission) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         globallyAllowedPermissionsInstances.add(permission);
+        clearPermissionDecisions();
         logger.debug("Globally granted permission '{}'", permission);
     }
 
@@ -111,6 +160,7 @@ public void grantPermission(Class<?> apiType, Class<? extends Permission> permis
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         allowedPermissionsTypes.put(permission, apiType);
+        clearPermissionDecisions();
         logger.debug("Granted permission '{}' to '{}'", permission, apiType);
     }
 
@@ -127,6 +177,7 @@ public void grantPermission(Class<?> apiType, Permission permission) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         allowedPermissionInstances.put(permission, apiType);
+        clearPermissionDecisions();
         logger.debug("Granted permission '{}' to '{}'", permission, apiType);
     }
 
@@ -143,6 +194,7 @@ public void grantPermission(String packageName, Class<? extends Permission> perm
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         allowedPackagePermissionsTypes.put(permission, packageName);
+        clearPermissionDecisions();
         logger.debug("Granted permission '{}' to '{}.*'", permission, packageName);
     }
 
@@ -159,6 +211,7 @@ public void grantPermission(String packageName, Permission permission) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         allowedPackagePermissionInstances.put(permission, packageName);
+        clearPermissionDecisions();
         logger.debug("Granted permission '{}' to '{}.*'", permission, packageName);
     }
 
@@ -173,6 +226,7 @@ public void addAPIClass(Class<?> clazz) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_API_CLASSES);
         }
         apiClasses.add(clazz);
+        clearClassDecisions();
         logger.debug("Added API class '{}'", clazz);
     }
 
@@ -187,6 +241,7 @@ public void addAPIPackage(String packageName) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         apiPackages.add(packageName);
+        clearClassDecisions();
         logger.debug("Added API classes '{}.*'", packageName);
     }
 
@@ -202,7 +257,9 @@ public boolean revokePermission(Class<? extends Permission> permission) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         logger.debug("Revoking global permission '{}'", permission);
-        return globallyAllowedPermissionsTypes.remove(permission);
+        boolean revoked = globallyAllowedPermissionsTypes.remove(permission);
+        clearPermissionDecisions();
+        return revoked;
     }
 
     /**
@@ -217,7 +274,9 @@ public boolean revokePermission(Permission permission) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         logger.debug("Revoking global permission '{}'", permission);
-        return globallyAllowedPermissionsInstances.remove(permission);
+        boolean revoked = globallyAllowedPermissionsInstances.remove(permission);
+        clearPermissionDecisions();
+        return revoked;
     }
 
     /**
@@ -235,7 +294,9 @@ public boolean revokePermission(Class<?> apiType, Class<? extends Permission> pe
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         logger.debug("Revoking permission '{}' from '{}'", permission, apiType);
-        return allowedPermissionsTypes.remove(permission, apiType);
+        boolean revoked = allowedPermissionsTypes.remove(permission, apiType);
+        clearPermissionDecisions();
+        return revoked;
     }
 
     /**
@@ -253,7 +314,9 @@ public boolean revokePermission(Class<?> apiType, Permission permission) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_ALLOWED_PERMISSIONS);
         }
         logger.debug("Revoking permission '{}' from '{}'", permission, apiType);
-        return allowedPermissionInstances.remove(permission, apiType);
+        boolean revoked = allowedPermissionInstances.remove(permission, apiType);
+        clearPermissionDecisions();
+        return revoked;
     }
 
     /**
@@ -279,6 +342,7 @@ public void revokePermission(String packageName, Class<? extends Permission> per
                 iterator.remove();
             }
         }
+        clearPermissionDecisions();
 
     }
 
@@ -305,6 +369,7 @@ public void revokePermission(String packageName, Permission permission) {
                 iterator.remove();
             }
         }
+        clearPermissionDecisions();
     }
 
     /**
@@ -320,7 +385,9 @@ public boolean revokeAPIClass(Class<?> clazz) {
             System.getSecurityManager().checkPermission(ModuleSecurityManager.UPDATE_API_CLASSES);
         }
         logger.debug("Removing from API '{}'", clazz);
-        return apiClasses.remove(clazz);
+        boolean revoked = apiClasses.remove(clazz);
+        clearClassDecisions();
+        return revoked;
     }
 
     /**
@@ -343,5 +410,6 @@ public void revokeAPIPackage(String packageName) {
                 iterator.remove();
             }
         }
+        clearClassDecisions();
     }
 }
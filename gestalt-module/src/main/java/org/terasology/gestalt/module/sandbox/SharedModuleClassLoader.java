@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.sandbox;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.gestalt.module.Module;
+import org.terasology.gestalt.naming.Name;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A class loader shared by a group of trusted modules, used in place of a chain of {@link JavaModuleClassLoader JavaModuleClassLoaders} for modules that do
+ * not need to be sandboxed.
+ * <p>
+ * The classes of all the modules are indexed when the class loader is created, recording which module provides each class. This allows the providing module
+ * of each class to be determined, and lookups of classes that none of the modules provide to fail without searching every module's code locations.
+ * </p>
+ * <p>
+ * Classes loaded by this class loader are granted all permissions and have access to all classes. Module class loaders parented by this class loader are
+ * based on the same class loader as it is, so they load API classes from there with their own permissions rather than through the modules below them.
+ * </p>
+ */
+public class SharedModuleClassLoader extends URLClassLoader implements ModuleClassLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedModuleClassLoader.class);
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private static final PermissionProvider PERMIT_ALL = new PermissionProvider() {
+        @Override
+        public boolean isPermitted(Class<?> type) {
+            return true;
+        }
+
+        @Override
+        public boolean isPermitted(Permission permission, Class<?> context) {
+            return true;
+        }
+    };
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final ImmutableList<Name> moduleIds;
+    private final Map<String, Name> classModules;
+    private final ClassLoader baseClassLoader;
+
+    /**
+     * @param moduleIds    The ids of the modules sharing this class loader, in dependency order
+     * @param urls         The urls where the module classes can be found
+     * @param parent       The parent classloader
+     * @param classModules A map of the name of each class in the modules to the module providing it
+     */
+    public SharedModuleClassLoader(List<Name> moduleIds, URL[] urls, ClassLoader parent, Map<String, Name> classModules) {
+        super(urls, parent);
+        Preconditions.checkArgument(!moduleIds.isEmpty(), "At least one module must share the class loader");
+        this.moduleIds = ImmutableList.copyOf(moduleIds);
+        this.classModules = classModules;
+        this.baseClassLoader = (parent instanceof ModuleClassLoader) ? ((ModuleClassLoader) parent).getBaseClassLoader() : parent;
+    }
+
+    /**
+     * Creates a shared class loader for a group of modules, indexing the classes in their code locations.
+     *
+     * @param modules The modules to share the class loader, in dependency order
+     * @param parent  The parent classloader
+     * @return The new class loader
+     */
+    public static ModuleClassLoader create(List<Module> modules, ClassLoader parent) {
+        List<URL> urls = Lists.newArrayList();
+        Map<String, Name> classModules = Maps.newHashMap();
+        for (Module module : modules) {
+            for (File classpath : module.getClasspaths()) {
+                try {
+                    urls.add(classpath.toURI().toURL());
+                    indexClasses(classpath, module.getId(), classModules);
+                } catch (MalformedURLException e) {
+                    logger.error("Failed to code location {} to URL", classpath, e);
+                } catch (IOException e) {
+                    logger.error("Failed to index classes of code location {}", classpath, e);
+                }
+            }
+        }
+        return new SharedModuleClassLoader(ImmutableList.copyOf(modules.stream().map(Module::getId).iterator()), urls.toArray(new URL[0]), parent, classModules);
+    }
+
+    private static void indexClasses(File classpath, Name moduleId, Map<String, Name> out) throws IOException {
+        if (classpath.isDirectory()) {
+            indexClasses(classpath, "", moduleId, out);
+        } else if (classpath.isFile()) {
+            try (ZipFile zipFile = new ZipFile(classpath)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().endsWith(CLASS_FILE_EXTENSION)) {
+                        out.putIfAbsent(toClassName(entry.getName()), moduleId);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void indexClasses(File directory, String path, Name moduleId, Map<String, Name> out) {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                String childPath = path + child.getName();
+                if (child.isDirectory()) {
+                    indexClasses(child, childPath + "/", moduleId, out);
+                } else if (childPath.endsWith(CLASS_FILE_EXTENSION)) {
+                    out.putIfAbsent(toClassName(childPath), moduleId);
+                }
+            }
+        }
+    }
+
+    private static String toClassName(String path) {
+        return path.substring(0, path.length() - CLASS_FILE_EXTENSION.length()).replace('/', '.');
+    }
+
+    /**
+     * @return The id of the first module sharing this class loader
+     */
+    @Override
+    public Name getModuleId() {
+        return moduleIds.get(0);
+    }
+
+    /**
+     * @return The ids of all the modules sharing this class loader
+     */
+    public List<Name> getModuleIds() {
+        return moduleIds;
+    }
+
+    /**
+     * @param type A class loaded by this class loader
+     * @return The id of the module providing the class, or null if the class is not in the index of the modules' classes
+     */
+    @Override
+    public Name getModuleProviding(Class<?> type) {
+        return classModules.get(type.getName());
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return this;
+    }
+
+    @Override
+    public ClassLoader getBaseClassLoader() {
+        return baseClassLoader;
+    }
+
+    @Override
+    public PermissionProvider getPermissionProvider() {
+        return PERMIT_ALL;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (!classModules.containsKey(name)) {
+            throw new ClassNotFoundException(name);
+        }
+        return super.findClass(name);
+    }
+}
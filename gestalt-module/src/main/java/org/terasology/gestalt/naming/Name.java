@@ -17,8 +17,10 @@
 package org.terasology.gestalt.naming;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
 
 import java.util.Locale;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.concurrent.Immutable;
 
@@ -27,7 +29,7 @@
  * <p>
  * The original case-sensitive name is retained and available for display purposes, since it may use camel casing for readability.
  * </p><p>
- * This class is immutable.
+ * This class is immutable. Canonical instances can be obtained through {@link #of(String)}, which avoids repeatedly normalising commonly used names.
  * </p>
  *
  * @author Immortius
@@ -39,6 +41,8 @@ public final class Name implements Comparable<Name> {
      */
     public static final Name EMPTY = new Name("");
 
+    private static final ConcurrentMap<String, Name> INTERNED = new MapMaker().weakValues().makeMap();
+
     private final String originalName;
     private final String normalisedName;
 
@@ -48,6 +52,30 @@ public Name(String name) {
         this.normalisedName = name.toLowerCase(Locale.ENGLISH);
     }
 
+    /**
+     * Obtains a shared Name for a string. Repeated calls with the same string return the same instance for as long as it remains in use, avoiding repeated
+     * allocation and normalisation. Names must still be compared with {@link #equals(Object)} - strings differing only in case, and names created through the
+     * constructor, give distinct instances that are equal.
+     *
+     * @param name The string to obtain the Name of
+     * @return The shared Name for the string
+     */
+    public static Name of(String name) {
+        Preconditions.checkNotNull(name);
+        if (name.isEmpty()) {
+            return EMPTY;
+        }
+        Name result = INTERNED.get(name);
+        if (result == null) {
+            Name newName = new Name(name);
+            result = INTERNED.putIfAbsent(name, newName);
+            if (result == null) {
+                result = newName;
+            }
+        }
+        return result;
+    }
+
     /**
      * @return Whether this name is empty (equivalent to an empty string)
      */
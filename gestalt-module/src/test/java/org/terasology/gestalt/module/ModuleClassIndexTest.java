@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Test;
+import org.reflections.Reflections;
+import org.reflections.util.ConfigurationBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModuleClassIndexTest {
+
+    @Test
+    public void subtypesAreTransitive() {
+        ModuleClassIndex index = ModuleClassIndex.builder()
+                .addSupertype("test.Impl", "test.Base")
+                .addSupertype("test.SubImpl", "test.Impl")
+                .addSupertype("test.Other", "test.Unrelated")
+                .build();
+
+        assertEquals(ImmutableSet.of("test.Impl", "test.SubImpl"), index.getSubtypeNames("test.Base"));
+        assertEquals(ImmutableSet.of("test.SubImpl"), index.getSubtypeNames("test.Impl"));
+        assertTrue(index.getSubtypeNames("test.Missing").isEmpty());
+    }
+
+    @Test
+    public void annotatedTypes() {
+        ModuleClassIndex index = ModuleClassIndex.builder()
+                .addAnnotation("test.Impl", "test.Marker")
+                .addAnnotation("test.Impl", "test.Marker")
+                .addAnnotation("test.Other", "test.Marker")
+                .build();
+
+        assertEquals(ImmutableSet.of("test.Impl", "test.Other"), index.getAnnotatedTypeNames("test.Marker"));
+    }
+
+    @Test
+    public void addManifest() {
+        Reflections manifest = new Reflections(new ConfigurationBuilder());
+        manifest.getStore().put("SubTypesScanner", "test.Base", "test.Impl");
+        manifest.getStore().put("TypeAnnotationsScanner", "test.Marker", "test.Impl");
+
+        ModuleClassIndex index = ModuleClassIndex.builder().addManifest(manifest).build();
+
+        assertEquals(ImmutableSet.of("test.Impl"), index.getSubtypeNames("test.Base"));
+        assertEquals(ImmutableSet.of("test.Impl"), index.getAnnotatedTypeNames("test.Marker"));
+    }
+
+    @Test
+    public void readClassFile() throws IOException {
+        ModuleClassIndex.Builder builder = ModuleClassIndex.builder();
+        try (InputStream stream = IndexedType.class.getResourceAsStream("ModuleClassIndexTest$IndexedType.class")) {
+            builder.addClassFile(stream);
+        }
+        ModuleClassIndex index = builder.build();
+
+        assertEquals(ImmutableSet.of(IndexedType.class.getName()), index.getSubtypeNames(Object.class.getName()));
+        assertEquals(ImmutableSet.of(IndexedType.class.getName()), index.getSubtypeNames(Serializable.class.getName()));
+        assertEquals(ImmutableSet.of(IndexedType.class.getName()), index.getAnnotatedTypeNames(Deprecated.class.getName()));
+    }
+
+    @Test
+    public void readClassFileFromStreamThatDoesNotSkip() throws IOException {
+        ModuleClassIndex.Builder builder = ModuleClassIndex.builder();
+        try (InputStream stream = new FilterInputStream(IndexedType.class.getResourceAsStream("ModuleClassIndexTest$IndexedType.class")) {
+            @Override
+            public long skip(long n) {
+                return 0;
+            }
+        }) {
+            builder.addClassFile(stream);
+        }
+        ModuleClassIndex index = builder.build();
+
+        assertEquals(ImmutableSet.of(IndexedType.class.getName()), index.getSubtypeNames(Serializable.class.getName()));
+        assertEquals(ImmutableSet.of(IndexedType.class.getName()), index.getAnnotatedTypeNames(Deprecated.class.getName()));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        ModuleClassIndex index = ModuleClassIndex.builder()
+                .addSupertype("test.Impl", "test.Base")
+                .addAnnotation("test.Impl", "test.Marker")
+                .build();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.write(output);
+
+        ModuleClassIndex readIndex = ModuleClassIndex.read(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(index.size(), readIndex.size());
+        assertEquals(ImmutableSet.of("test.Impl"), readIndex.getSubtypeNames("test.Base"));
+        assertEquals(ImmutableSet.of("test.Impl"), readIndex.getAnnotatedTypeNames("test.Marker"));
+    }
+
+    @Deprecated
+    private static class IndexedType implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String value = "value";
+    }
+}
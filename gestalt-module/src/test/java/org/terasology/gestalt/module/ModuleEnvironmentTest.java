@@ -0,0 +1,273 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.junit.Test;
+import org.reflections.Reflections;
+import org.reflections.util.ConfigurationBuilder;
+import org.terasology.gestalt.module.dependencyresolution.DependencyInfo;
+import org.terasology.gestalt.module.resources.EmptyFileSource;
+import org.terasology.gestalt.module.sandbox.ModuleClassLoader;
+import org.terasology.gestalt.module.sandbox.PermissionProvider;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.gestalt.naming.Version;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModuleEnvironmentTest {
+
+    private final List<StubClassLoader> createdClassLoaders = Lists.newArrayList();
+    private final Map<StubClassLoader, List<Name>> sharedClassLoaderModules = Maps.newHashMap();
+    private Name failingModule;
+
+    @Test
+    public void deriveWithAddedModuleReusesClassLoaders() {
+        Module moduleA = createModule("a");
+        Module moduleB = createModule("b", "a");
+        ModuleEnvironment environment = createEnvironment(moduleA, moduleB);
+        assertEquals(2, createdClassLoaders.size());
+
+        ModuleEnvironment derived = environment.derive(Collections.singletonList(createModule("c", "b")), Collections.emptyList());
+
+        assertEquals(ImmutableList.of(new Name("a"), new Name("b"), new Name("c")), derived.getModuleIdsOrderedByDependencies());
+        assertEquals(3, createdClassLoaders.size());
+        assertSame(createdClassLoaders.get(1).getClassLoader(), createdClassLoaders.get(2).parent);
+        assertTrue(derived.getDependencyNamesOf(new Name("c")).contains(new Name("a")));
+    }
+
+    @Test
+    public void deriveWithRemovedModuleRecreatesLaterClassLoaders() {
+        Module moduleA = createModule("a");
+        Module moduleB = createModule("b");
+        Module moduleC = createModule("c");
+        ModuleEnvironment environment = createEnvironment(moduleA, moduleB, moduleC);
+
+        ModuleEnvironment derived = environment.derive(Collections.emptyList(), Collections.singletonList(new Name("b")));
+
+        assertEquals(ImmutableList.of(new Name("a"), new Name("c")), derived.getModuleIdsOrderedByDependencies());
+        assertEquals(4, createdClassLoaders.size());
+        assertSame(createdClassLoaders.get(0).getClassLoader(), createdClassLoaders.get(3).parent);
+    }
+
+    @Test
+    public void closingBaseOnlyClosesClassLoadersNotCarriedOver() {
+        ModuleEnvironment environment = createEnvironment(createModule("a"), createModule("b"), createModule("c"));
+        ModuleEnvironment derived = environment.derive(Collections.emptyList(), Collections.singletonList(new Name("c")));
+
+        environment.close();
+        assertFalse(createdClassLoaders.get(0).closed);
+        assertFalse(createdClassLoaders.get(1).closed);
+        assertTrue(createdClassLoaders.get(2).closed);
+
+        derived.close();
+        assertTrue(createdClassLoaders.get(0).closed);
+        assertTrue(createdClassLoaders.get(1).closed);
+    }
+
+    @Test
+    public void secondDeriveDoesNotShareCarriedOverClassLoaders() {
+        ModuleEnvironment environment = createEnvironment(createModule("a"), createModule("b", "a"));
+        ModuleEnvironment first = environment.derive(Collections.singletonList(createModule("c", "b")), Collections.emptyList());
+        assertEquals(3, createdClassLoaders.size());
+
+        ModuleEnvironment second = environment.derive(Collections.singletonList(createModule("d", "b")), Collections.emptyList());
+        assertEquals(6, createdClassLoaders.size());
+        assertSame(createdClassLoaders.get(3).getClassLoader(), createdClassLoaders.get(4).parent);
+
+        first.close();
+        assertTrue(createdClassLoaders.get(0).closed);
+        assertFalse(createdClassLoaders.get(3).closed);
+        assertFalse(createdClassLoaders.get(4).closed);
+        second.close();
+        assertTrue(createdClassLoaders.get(5).closed);
+    }
+
+    @Test
+    public void failedDeriveReturnsCarriedOverClassLoaders() {
+        ModuleEnvironment environment = createEnvironment(createModule("a"), createModule("b", "a"));
+        failingModule = new Name("c");
+        try {
+            environment.derive(Collections.singletonList(createModule("c", "b")), Collections.emptyList());
+            fail("Expected derive to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        failingModule = null;
+
+        environment.derive(Collections.singletonList(createModule("d", "b")), Collections.emptyList());
+        assertEquals(3, createdClassLoaders.size());
+        assertSame(createdClassLoaders.get(1).getClassLoader(), createdClassLoaders.get(2).parent);
+    }
+
+    @Test
+    public void failedDeriveLeavesClassLoadersWithBase() {
+        ModuleEnvironment environment = createEnvironment(createModule("a"), createModule("b", "a"), createModule("c", "a"));
+        failingModule = new Name("d");
+        try {
+            environment.derive(Collections.singletonList(createModule("d", "c")), Collections.singletonList(new Name("b")));
+            fail("Expected derive to fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(4, createdClassLoaders.size());
+        assertTrue(createdClassLoaders.get(3).closed);
+
+        environment.close();
+        assertTrue(createdClassLoaders.get(0).closed);
+        assertTrue(createdClassLoaders.get(1).closed);
+        assertTrue(createdClassLoaders.get(2).closed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotDeriveFromClosedEnvironment() {
+        ModuleEnvironment environment = createEnvironment(createModule("a"));
+        environment.close();
+        environment.derive(Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    public void dependencyExistsForTransitiveDependencies() {
+        ModuleEnvironment environment = createEnvironment(createModule("a"), createModule("b", "a"), createModule("c", "b", "missing"), createModule("d"));
+        Name a = new Name("a");
+        Name c = new Name("c");
+
+        assertTrue(environment.dependencyExists(c, a));
+        assertTrue(environment.dependencyExists(c, new Name("missing")));
+        assertFalse(environment.dependencyExists(a, c));
+        assertFalse(environment.dependencyExists(new Name("d"), a));
+        assertFalse(environment.dependencyExists(new Name("missing"), a));
+        assertTrue(environment.dependencyExists(environment.getModuleIndex(c), environment.getModuleIndex(a)));
+        assertEquals(-1, environment.getModuleIndex(new Name("missing")));
+        for (Name moduleId : environment.getModuleIdsOrderedByDependencies()) {
+            for (Name dependencyId : environment.getModuleIdsOrderedByDependencies()) {
+                assertEquals(environment.getDependencyNamesOf(moduleId).contains(dependencyId), environment.dependencyExists(moduleId, dependencyId));
+            }
+        }
+    }
+
+    @Test
+    public void adjacentTrustedModulesShareClassLoader() {
+        Set<Name> trusted = ImmutableSet.of(new Name("a"), new Name("b"), new Name("d"));
+        ModuleEnvironment environment = createEnvironment(module -> trusted.contains(module.getId()),
+                createModule("a"), createModule("b", "a"), createModule("c", "b"), createModule("d", "c"));
+
+        assertEquals(3, createdClassLoaders.size());
+        assertEquals(ImmutableList.of(new Name("a"), new Name("b")), sharedClassLoaderModules.get(createdClassLoaders.get(0)));
+        assertEquals(new Name("c"), createdClassLoaders.get(1).getModuleId());
+        assertEquals(ImmutableList.of(new Name("d")), sharedClassLoaderModules.get(createdClassLoaders.get(2)));
+        assertSame(createdClassLoaders.get(0).getClassLoader(), createdClassLoaders.get(1).parent);
+        assertSame(createdClassLoaders.get(1).getClassLoader(), createdClassLoaders.get(2).parent);
+    }
+
+    @Test
+    public void deriveReusesUnchangedSharedClassLoader() {
+        ModuleEnvironment environment = createEnvironment(module -> !module.getId().equals(new Name("c")), createModule("a"), createModule("b", "a"), createModule("c", "b"));
+        assertEquals(2, createdClassLoaders.size());
+
+        environment.derive(Collections.emptyList(), Collections.singletonList(new Name("c")));
+        assertEquals(2, createdClassLoaders.size());
+
+        environment.derive(Collections.singletonList(createModule("d", "b")), Collections.singletonList(new Name("c")));
+        assertEquals(3, createdClassLoaders.size());
+        assertEquals(ImmutableList.of(new Name("a"), new Name("b"), new Name("d")), sharedClassLoaderModules.get(createdClassLoaders.get(2)));
+    }
+
+    private ModuleEnvironment createEnvironment(Module... modules) {
+        return createEnvironment(x -> false, modules);
+    }
+
+    private ModuleEnvironment createEnvironment(Predicate<Module> trustedModules, Module... modules) {
+        return new ModuleEnvironment(ImmutableList.copyOf(modules), (module, classpathModuleClasses) -> null, (module, parent, permissionProvider) -> {
+            if (module.getId().equals(failingModule)) {
+                throw new IllegalStateException("Failed to create class loader for " + module.getId());
+            }
+            StubClassLoader classLoader = new StubClassLoader(module.getId(), parent);
+            createdClassLoaders.add(classLoader);
+            return classLoader;
+        }, getClass().getClassLoader(), trustedModules, (sharedModules, parent) -> {
+            StubClassLoader classLoader = new StubClassLoader(sharedModules.get(0).getId(), parent);
+            createdClassLoaders.add(classLoader);
+            sharedClassLoaderModules.put(classLoader, sharedModules.stream().map(Module::getId).collect(Collectors.toList()));
+            return classLoader;
+        });
+    }
+
+    private Module createModule(String id, String... dependencies) {
+        ModuleMetadata metadata = new ModuleMetadata();
+        metadata.setId(new Name(id));
+        metadata.setVersion(new Version(1, 0, 0));
+        for (String dependency : dependencies) {
+            DependencyInfo dependencyInfo = new DependencyInfo();
+            dependencyInfo.setId(new Name(dependency));
+            metadata.getDependencies().add(dependencyInfo);
+        }
+        Reflections manifest = new Reflections(new ConfigurationBuilder());
+        manifest.getStore().getOrCreate("SubTypesScanner");
+        return new Module(metadata, new EmptyFileSource(), Collections.singletonList(new File(id)), manifest, x -> false);
+    }
+
+    private static class StubClassLoader implements ModuleClassLoader {
+        private final Name moduleId;
+        private final ClassLoader parent;
+        private final ClassLoader classLoader;
+        private boolean closed;
+
+        StubClassLoader(Name moduleId, ClassLoader parent) {
+            this.moduleId = moduleId;
+            this.parent = parent;
+            this.classLoader = new ClassLoader(parent) {
+            };
+        }
+
+        @Override
+        public Name getModuleId() {
+            return moduleId;
+        }
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public PermissionProvider getPermissionProvider() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reflections.Reflections;
+import org.reflections.util.ConfigurationBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ModuleManifestCacheTest {
+
+    private static final String SCOPE = "test";
+    private static final String INDEX = "SubTypesScanner";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void storeAndLoadManifest() throws IOException {
+        ModuleManifestCache cache = new ModuleManifestCache(tempFolder.newFolder("cache"));
+        File module = createModule();
+        cache.store(module, SCOPE, createManifest());
+
+        Optional<Reflections> manifest = cache.load(module, SCOPE);
+        assertTrue(manifest.isPresent());
+        assertEquals(ImmutableSet.of("test.Impl"), manifest.get().getStore().get(INDEX, "test.Base"));
+    }
+
+    @Test
+    public void manifestNotUsedForDifferentScope() throws IOException {
+        ModuleManifestCache cache = new ModuleManifestCache(tempFolder.newFolder("cache"));
+        File module = createModule();
+        cache.store(module, SCOPE, createManifest());
+
+        assertFalse(cache.load(module, "other").isPresent());
+    }
+
+    @Test
+    public void manifestInvalidatedWhenModuleChanges() throws IOException {
+        ModuleManifestCache cache = new ModuleManifestCache(tempFolder.newFolder("cache"));
+        File module = createModule();
+        cache.store(module, SCOPE, createManifest());
+
+        Files.write(new File(module, "Extra.class").toPath(), "extra".getBytes(Charsets.UTF_8));
+        assertFalse(cache.load(module, SCOPE).isPresent());
+    }
+
+    @Test
+    public void changedModuleReplacesManifest() throws IOException {
+        File cacheDir = tempFolder.newFolder("cache");
+        ModuleManifestCache cache = new ModuleManifestCache(cacheDir);
+        File module = createModule();
+        cache.store(module, SCOPE, createManifest());
+
+        Files.write(new File(module, "Extra.class").toPath(), "extra".getBytes(Charsets.UTF_8));
+        cache.store(module, SCOPE, createManifest());
+        assertTrue(cache.load(module, SCOPE).isPresent());
+        assertEquals(1, cacheDir.listFiles().length);
+    }
+
+    @Test
+    public void loadOrScanOnlyScansWithoutManifest() throws IOException {
+        ModuleManifestCache cache = new ModuleManifestCache(tempFolder.newFolder("cache"));
+        File module = createModule();
+        AtomicInteger scans = new AtomicInteger();
+        Supplier<Reflections> scanner = () -> {
+            scans.incrementAndGet();
+            return createManifest();
+        };
+
+        cache.loadOrScan(module, SCOPE, scanner);
+        Reflections manifest = cache.loadOrScan(module, SCOPE, scanner);
+        assertEquals(1, scans.get());
+        assertEquals(ImmutableSet.of("test.Impl"), manifest.getStore().get(INDEX, "test.Base"));
+    }
+
+    @Test
+    public void clearRemovesManifests() throws IOException {
+        ModuleManifestCache cache = new ModuleManifestCache(tempFolder.newFolder("cache"));
+        File module = createModule();
+        cache.store(module, SCOPE, createManifest());
+
+        cache.clear();
+        assertFalse(cache.load(module, SCOPE).isPresent());
+    }
+
+    private File createModule() throws IOException {
+        File module = tempFolder.newFolder("module");
+        Files.write(new File(module, "Impl.class").toPath(), "impl".getBytes(Charsets.UTF_8));
+        return module;
+    }
+
+    private Reflections createManifest() {
+        Reflections manifest = new Reflections(new ConfigurationBuilder());
+        manifest.getStore().put(INDEX, "test.Base", "test.Impl");
+        return manifest;
+    }
+}
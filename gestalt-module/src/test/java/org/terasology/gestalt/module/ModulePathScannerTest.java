@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.gestalt.naming.Version;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ModulePathScannerTest {
+
+    private static final Version VERSION = new Version("1.0.0");
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void scanSequentially() throws IOException {
+        assertFirstCopyWins(new ModulePathScanner());
+    }
+
+    @Test
+    public void scanConcurrently() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ModulePathScanner scanner = new ModulePathScanner();
+            scanner.setDiscoveryExecutor(executor);
+            assertFirstCopyWins(scanner);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void discoveryListenerInformedOfEachModulePath() throws IOException {
+        File path = tempFolder.newFolder("modules");
+        createModule(path, "moduleA", "first");
+        createModule(path, "moduleB", "first");
+        new File(path, "notAModule").mkdir();
+
+        Set<String> createdFrom = Sets.newConcurrentHashSet();
+        Set<String> failed = Sets.newConcurrentHashSet();
+        ModulePathScanner scanner = new ModulePathScanner();
+        scanner.setDiscoveryListener((modulePath, module, nanos) -> (module != null ? createdFrom : failed).add(modulePath.getName()));
+        scanner.scan(new TableModuleRegistry(), path);
+
+        assertEquals(Sets.newHashSet("moduleA", "moduleB"), createdFrom);
+        assertEquals(Collections.singleton("notAModule"), failed);
+    }
+
+    private void assertFirstCopyWins(ModulePathScanner scanner) throws IOException {
+        File firstPath = tempFolder.newFolder("first");
+        File secondPath = tempFolder.newFolder("second");
+        for (int i = 0; i < 16; ++i) {
+            createModule(firstPath, "module" + i, "first");
+            createModule(secondPath, "module" + i, "second");
+        }
+        createModule(secondPath, "extra", "second");
+
+        ModuleRegistry registry = new TableModuleRegistry();
+        scanner.scan(registry, Arrays.asList(firstPath, secondPath));
+
+        assertEquals(17, registry.size());
+        for (int i = 0; i < 16; ++i) {
+            assertEquals("first", registry.getModule(new Name("module" + i), VERSION).getMetadata().getDisplayName().value());
+        }
+        assertEquals("second", registry.getModule(new Name("extra"), VERSION).getMetadata().getDisplayName().value());
+        assertNull(registry.getModule(new Name("missing"), VERSION));
+    }
+
+    private void createModule(File path, String id, String displayName) throws IOException {
+        File moduleDir = new File(path, id);
+        moduleDir.mkdirs();
+        String metadata = "{\"id\": \"" + id + "\", \"version\": \"" + VERSION + "\", \"displayName\": \"" + displayName + "\"}";
+        Files.write(new File(moduleDir, "module.json").toPath(), metadata.getBytes(Charsets.UTF_8));
+    }
+}
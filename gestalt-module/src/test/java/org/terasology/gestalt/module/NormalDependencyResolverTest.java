@@ -25,6 +25,12 @@
 import org.terasology.gestalt.naming.Version;
 import org.terasology.gestalt.naming.VersionRange;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -270,4 +276,38 @@ public void resolveExplicitVersionRange() {
                 new VersionRange(new Version(1, 0, 0), new Version(2, 0, 0))).build();
         assertTrue(result.getModules().iterator().next().getVersion().equals(targetVersion));
     }
+
+    @Test
+    public void resolutionUsesModulesAddedAfterEarlierResolution() {
+        ModuleRegistry registry = new TableModuleRegistry();
+        createStubModule(registry, "core", "1.0.0");
+        DependencyResolver resolver = new DependencyResolver(registry);
+        resolver.resolve(new Name("core"));
+
+        Module latestCore = createStubModule(registry, "core", "2.0.0");
+        ResolutionResult results = resolver.resolve(new Name("core"));
+        assertTrue(results.isSuccess());
+        assertEquals(Sets.newHashSet(latestCore), results.getModules());
+    }
+
+    @Test
+    public void resolveMultipleSetsInParallel() {
+        ModuleRegistry registry = new TableModuleRegistry();
+        Module core = createStubModule(registry, "core", "1.0.0");
+        Module moduleA = createStubModule(registry, "a", "1.0.0");
+        addDependency(moduleA, "core");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DependencyResolver resolver = new DependencyResolver(registry);
+            List<ResolutionResult> results = resolver.resolveAll(Arrays.asList(Collections.singletonList(new Name("a")),
+                    Collections.singletonList(new Name("missing")), Collections.singletonList(new Name("core"))), executor);
+
+            assertEquals(3, results.size());
+            assertEquals(Sets.newHashSet(moduleA, core), results.get(0).getModules());
+            assertFalse(results.get(1).isSuccess());
+            assertEquals(Sets.newHashSet(core), results.get(2).getModules());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
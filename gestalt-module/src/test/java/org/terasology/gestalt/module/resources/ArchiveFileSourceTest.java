@@ -16,8 +16,23 @@
 
 package org.terasology.gestalt.module.resources;
 
+import com.google.common.base.Charsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ArchiveFileSourceTest extends BaseFileSourceTest {
 
@@ -31,4 +46,39 @@ public ArchiveFileSourceTest() throws IOException {
     public ModuleFileSource getFileSource() {
         return source;
     }
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void mapStoredEntries() throws IOException {
+        File archive = tempFolder.newFile("stored.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            writeStoredEntry(out, "content/first.txt", "first entry");
+            writeStoredEntry(out, "content/second.txt", "second entry");
+        }
+        ArchiveFileSource storedSource = new ArchiveFileSource(archive, "content");
+
+        for (String name : new String[]{"first", "second"}) {
+            Optional<FileReference> file = storedSource.getFile(name + ".txt");
+            assertTrue(file.isPresent());
+            ByteBuffer buffer = file.get().map();
+            assertTrue(buffer.isDirect());
+            assertEquals(name + " entry", Charsets.UTF_8.decode(buffer).toString());
+        }
+    }
+
+    private void writeStoredEntry(ZipOutputStream out, String name, String content) throws IOException {
+        byte[] data = content.getBytes(Charsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
 }
@@ -19,18 +19,23 @@
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -127,6 +132,40 @@ public void getExistentFile() throws IOException {
         }
     }
 
+    @Test
+    public void getFileSize() {
+        Optional<FileReference> file = getFileSource().getFile("subfolder", "test.resource");
+        assertTrue(file.isPresent());
+        OptionalLong size = file.get().getSize();
+        assertTrue(size.isPresent());
+        assertEquals("this space intentionally left blank".length(), size.getAsLong());
+    }
+
+    @Test
+    public void mapExistentFile() throws IOException {
+        Optional<FileReference> file = getFileSource().getFile("subfolder", "test.resource");
+        assertTrue(file.isPresent());
+
+        ByteBuffer buffer = file.get().map();
+        assertTrue(buffer.isReadOnly());
+        assertEquals("this space intentionally left blank", Charsets.UTF_8.decode(buffer).toString());
+    }
+
+    @Test
+    public void mapMatchesOpen() throws IOException {
+        Optional<FileReference> file = getFileSource().getFile("readme.txt");
+        assertTrue(file.isPresent());
+
+        byte[] expected;
+        try (InputStream stream = file.get().open()) {
+            expected = ByteStreams.toByteArray(stream);
+        }
+        ByteBuffer buffer = file.get().map();
+        byte[] actual = new byte[buffer.remaining()];
+        buffer.get(actual);
+        assertArrayEquals(expected, actual);
+    }
+
     @Test
     public void getSubpaths() {
         assertEquals(Sets.newHashSet("subfolder", "folder"), getFileSource().getSubpaths());
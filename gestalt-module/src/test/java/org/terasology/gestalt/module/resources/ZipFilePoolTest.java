@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.resources;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ZipFilePoolTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final File ARCHIVE = new File("src/test/resources/archive.zip");
+    private static final File OTHER_ARCHIVE = new File("src/test/resources/halftwo.zip");
+    private static final String ENTRY = "content/subfolder/test.resource";
+
+    @Test
+    public void archiveSharedBetweenStreams() throws IOException {
+        ZipFilePool pool = new ZipFilePool(0);
+        try (InputStream first = pool.open(ARCHIVE, ENTRY); InputStream second = pool.open(ARCHIVE, ENTRY)) {
+            assertEquals(1, pool.getOpenCount());
+            assertEquals("this space intentionally left blank", read(first));
+            assertEquals("this space intentionally left blank", read(second));
+        }
+        assertEquals(0, pool.getOpenCount());
+    }
+
+    @Test
+    public void idleArchivesBounded() throws IOException {
+        ZipFilePool pool = new ZipFilePool(1);
+        pool.open(ARCHIVE, ENTRY).close();
+        assertEquals(1, pool.getOpenCount());
+        pool.readEntries(OTHER_ARCHIVE, zipFile -> {
+        });
+        assertEquals(1, pool.getOpenCount());
+        pool.closeIdle();
+        assertEquals(0, pool.getOpenCount());
+    }
+
+    @Test
+    public void closingStreamTwiceReleasesOnce() throws IOException {
+        ZipFilePool pool = new ZipFilePool(0);
+        InputStream held = pool.open(ARCHIVE, ENTRY);
+        InputStream closedTwice = pool.open(ARCHIVE, ENTRY);
+        closedTwice.close();
+        closedTwice.close();
+        assertEquals(1, pool.getOpenCount());
+        assertEquals("this space intentionally left blank", read(held));
+        held.close();
+        assertEquals(0, pool.getOpenCount());
+    }
+
+    @Test
+    public void replacedArchiveReopened() throws IOException {
+        File archive = tempFolder.newFile("replaced.zip");
+        writeArchive(archive, "one", 1000);
+        ZipFilePool pool = new ZipFilePool(1);
+        InputStream held = pool.open(archive, "entry");
+
+        writeArchive(archive, "second", 5000);
+        try (InputStream replaced = pool.open(archive, "entry")) {
+            assertEquals("second", read(replaced));
+        }
+        assertEquals(2, pool.getOpenCount());
+        assertEquals("one", read(held));
+        held.close();
+        assertEquals(1, pool.getOpenCount());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void openMissingEntry() throws IOException {
+        ZipFilePool pool = new ZipFilePool(0);
+        try {
+            pool.open(ARCHIVE, "content/missing.resource");
+        } finally {
+            assertEquals(0, pool.getOpenCount());
+        }
+    }
+
+    /**
+     * Writes an archive to a new file and moves it into place, as an archive is replaced when a module is updated
+     */
+    private void writeArchive(File archive, String content, long lastModified) throws IOException {
+        File newArchive = tempFolder.newFile();
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(newArchive))) {
+            output.putNextEntry(new ZipEntry("entry"));
+            output.write(content.getBytes(Charsets.UTF_8));
+            output.closeEntry();
+        }
+        assertTrue(newArchive.setLastModified(lastModified));
+        assertTrue(newArchive.renameTo(archive));
+    }
+
+    private String read(InputStream stream) throws IOException {
+        return CharStreams.toString(new InputStreamReader(stream, Charsets.UTF_8));
+    }
+}
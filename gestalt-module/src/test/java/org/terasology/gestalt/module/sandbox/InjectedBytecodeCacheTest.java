@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.sandbox;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reflections.Reflections;
+import org.reflections.util.ConfigurationBuilder;
+import org.terasology.gestalt.module.Module;
+import org.terasology.gestalt.module.ModuleEnvironment;
+import org.terasology.gestalt.module.ModuleMetadata;
+import org.terasology.gestalt.module.resources.EmptyFileSource;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.gestalt.naming.Version;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InjectedBytecodeCacheTest {
+
+    private static final String CLASS_NAME = "test.injected.Generated";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private InjectedBytecodeCache cache;
+    private File classpath;
+    private byte[] originalBytecode;
+    private CountingInjector injector = new CountingInjector("v1");
+
+    @Before
+    public void setup() throws Exception {
+        cache = new InjectedBytecodeCache(tempFolder.newFolder("cache"));
+        classpath = tempFolder.newFolder("classes");
+        CtClass generated = new ClassPool(true).makeClass(CLASS_NAME);
+        originalBytecode = generated.toBytecode();
+        File classFile = new File(classpath, CLASS_NAME.replace('.', '/') + ".class");
+        assertTrue(classFile.getParentFile().mkdirs());
+        Files.write(classFile.toPath(), originalBytecode);
+    }
+
+    @Test
+    public void storeAndLoad() {
+        byte[] injected = {1, 2, 3};
+        cache.store(CLASS_NAME, originalBytecode, "key", injected);
+
+        Optional<byte[]> loaded = cache.load(CLASS_NAME, originalBytecode, "key");
+        assertTrue(loaded.isPresent());
+        assertArrayEquals(injected, loaded.get());
+        assertFalse(cache.load(CLASS_NAME, originalBytecode, "other").isPresent());
+        assertFalse(cache.load(CLASS_NAME, new byte[]{4}, "key").isPresent());
+    }
+
+    @Test
+    public void corruptEntryDiscarded() throws IOException {
+        cache.store(CLASS_NAME, originalBytecode, "key", new byte[]{1, 2, 3});
+        File[] entries = cache.getDirectory().listFiles();
+        assertEquals(1, entries.length);
+        byte[] content = Files.readAllBytes(entries[0].toPath());
+        content[content.length - 1]++;
+        Files.write(entries[0].toPath(), content);
+
+        assertFalse(cache.load(CLASS_NAME, originalBytecode, "key").isPresent());
+        assertFalse(entries[0].exists());
+    }
+
+    @Test
+    public void truncatedEntryDiscarded() throws IOException {
+        cache.store(CLASS_NAME, originalBytecode, "key", new byte[]{1, 2, 3});
+        File entry = cache.getDirectory().listFiles()[0];
+        byte[] content = Files.readAllBytes(entry.toPath());
+        Files.write(entry.toPath(), Arrays.copyOf(content, content.length - 1));
+
+        assertFalse(cache.load(CLASS_NAME, originalBytecode, "key").isPresent());
+    }
+
+    @Test
+    public void noCacheKeyWithoutInjectorKeys() {
+        assertFalse(InjectedBytecodeCache.getCacheKey(ImmutableList.of(injector, cc -> {
+        })).isPresent());
+        assertTrue(InjectedBytecodeCache.getCacheKey(ImmutableList.of(injector)).isPresent());
+    }
+
+    @Test
+    public void classLoaderReusesCachedClasses() throws Exception {
+        loadGeneratedClass(injector);
+        assertEquals(1, injector.count);
+
+        loadGeneratedClass(injector);
+        assertEquals(1, injector.count);
+
+        CountingInjector newVersion = new CountingInjector("v2");
+        loadGeneratedClass(newVersion);
+        assertEquals(1, newVersion.count);
+    }
+
+    @Test
+    public void warmModule() throws Exception {
+        Module module = createModule();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            cache.warm(module, ImmutableList.of(injector), executor, 2).join();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, injector.count);
+        assertTrue(cache.load(CLASS_NAME, originalBytecode, InjectedBytecodeCache.getCacheKey(ImmutableList.of(injector)).get()).isPresent());
+
+        loadGeneratedClass(injector);
+        assertEquals(1, injector.count);
+    }
+
+    @Test
+    public void supplierCreatesClassLoadersUsingCache() throws Exception {
+        ModuleEnvironment.ClassLoaderSupplier supplier = JavaModuleClassLoader.supplier(ImmutableList.of(injector), cache);
+        for (int i = 0; i < 2; i++) {
+            ModuleClassLoader classLoader = supplier.create(createModule(), getClass().getClassLoader(), new PredicatePermissionProvider(type -> true));
+            try {
+                assertEquals(CLASS_NAME, classLoader.getClassLoader().loadClass(CLASS_NAME).getName());
+            } finally {
+                classLoader.close();
+            }
+        }
+        assertEquals(1, injector.count);
+    }
+
+    private Module createModule() {
+        ModuleMetadata metadata = new ModuleMetadata();
+        metadata.setId(new Name("test"));
+        metadata.setVersion(new Version(1, 0, 0));
+        return new Module(metadata, new EmptyFileSource(), Collections.singletonList(classpath), new Reflections(new ConfigurationBuilder()), x -> false);
+    }
+
+    private void loadGeneratedClass(BytecodeInjector classInjector) throws IOException, ClassNotFoundException {
+        try (JavaModuleClassLoader classLoader = new JavaModuleClassLoader(new Name("test"), new URL[]{classpath.toURI().toURL()}, getClass().getClassLoader(),
+                new PredicatePermissionProvider(type -> true), ImmutableList.of(classInjector), cache)) {
+            assertEquals(CLASS_NAME, classLoader.loadClass(CLASS_NAME).getName());
+        }
+    }
+
+    private static class CountingInjector implements BytecodeInjector {
+        private final String version;
+        private int count;
+
+        CountingInjector(String version) {
+            this.version = version;
+        }
+
+        @Override
+        public void inject(CtClass cc) {
+            count++;
+        }
+
+        @Override
+        public Optional<String> getCacheKey() {
+            return Optional.of("counting-" + version);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.sandbox;
+
+import org.junit.Test;
+import org.terasology.gestalt.naming.Name;
+
+import java.io.IOException;
+import java.net.URL;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class JavaModuleClassLoaderTest {
+
+    @Test
+    public void revokedClassDeniedAfterBeingLoaded() throws IOException, ClassNotFoundException {
+        PermissionSet permissionSet = new PermissionSet();
+        permissionSet.addAPIClass(APIClass.class);
+        try (JavaModuleClassLoader classLoader = new JavaModuleClassLoader(new Name("test"), new URL[0], getClass().getClassLoader(), permissionSet)) {
+            assertSame(APIClass.class, classLoader.loadClass(APIClass.class.getName()));
+
+            permissionSet.revokeAPIClass(APIClass.class);
+            assertNull(classLoader.loadClass(APIClass.class.getName()));
+
+            permissionSet.addAPIClass(APIClass.class);
+            assertSame(APIClass.class, classLoader.loadClass(APIClass.class.getName()));
+        }
+    }
+}
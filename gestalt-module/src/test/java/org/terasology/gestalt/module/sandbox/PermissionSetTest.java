@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.sandbox;
+
+import org.junit.Test;
+
+import java.io.FilePermission;
+import java.lang.reflect.ReflectPermission;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PermissionSetTest {
+
+    private static final ReflectPermission PERMISSION = new ReflectPermission("suppressAccessChecks");
+
+    @Test
+    public void grantedPermissionTypeAfterDenial() {
+        PermissionSet permissionSet = new PermissionSet();
+        assertFalse(permissionSet.isPermitted(PERMISSION, APIClass.class));
+
+        permissionSet.grantPermission(APIClass.class, ReflectPermission.class);
+        assertTrue(permissionSet.isPermitted(PERMISSION, APIClass.class));
+        assertFalse(permissionSet.isPermitted(PERMISSION, NonAPIClassInheritingAPIClass.class));
+    }
+
+    @Test
+    public void revokedPermissionTypeAfterGrant() {
+        PermissionSet permissionSet = new PermissionSet();
+        permissionSet.grantPermission(APIClass.class.getPackage().getName(), ReflectPermission.class);
+        assertTrue(permissionSet.isPermitted(PERMISSION, APIClass.class));
+
+        permissionSet.revokePermission(APIClass.class.getPackage().getName(), ReflectPermission.class);
+        assertFalse(permissionSet.isPermitted(PERMISSION, APIClass.class));
+    }
+
+    @Test
+    public void permissionInstances() {
+        PermissionSet permissionSet = new PermissionSet();
+        FilePermission permission = new FilePermission("test", "read");
+        permissionSet.grantPermission(APIClass.class, permission);
+
+        assertTrue(permissionSet.isPermitted(permission, APIClass.class));
+        assertFalse(permissionSet.isPermitted(new FilePermission("other", "read"), APIClass.class));
+
+        permissionSet.revokePermission(APIClass.class, permission);
+        assertFalse(permissionSet.isPermitted(permission, APIClass.class));
+    }
+
+    @Test
+    public void apiClassAccessUpdatedOnChanges() {
+        PermissionSet permissionSet = new PermissionSet();
+        assertFalse(permissionSet.isPermitted(APIClass.class));
+
+        permissionSet.addAPIPackage(APIClass.class.getPackage().getName());
+        assertTrue(permissionSet.isPermitted(APIClass.class));
+
+        permissionSet.revokeAPIPackage(APIClass.class.getPackage().getName());
+        assertFalse(permissionSet.isPermitted(APIClass.class));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terasology.gestalt.module.sandbox;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reflections.Reflections;
+import org.reflections.util.ConfigurationBuilder;
+import org.terasology.gestalt.module.Module;
+import org.terasology.gestalt.module.ModuleMetadata;
+import org.terasology.gestalt.module.resources.EmptyFileSource;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.gestalt.naming.Version;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SharedModuleClassLoaderTest {
+
+    private static final String CLASS_A = "test.shared.ClassA";
+    private static final String CLASS_B = "test.shared.ClassB";
+    private static final String UNINDEXED_CLASS = "test.shared.Unindexed";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void classesIndexedByProvidingModule() throws Exception {
+        ModuleClassLoader classLoader = SharedModuleClassLoader.create(ImmutableList.of(createModule("a", CLASS_A), createModule("b", CLASS_B)),
+                getClass().getClassLoader());
+        try {
+            assertEquals(new Name("a"), classLoader.getModuleProviding(classLoader.getClassLoader().loadClass(CLASS_A)));
+            assertEquals(new Name("b"), classLoader.getModuleProviding(classLoader.getClassLoader().loadClass(CLASS_B)));
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void classesMissingFromIndexNotFound() throws Exception {
+        Module module = createModule("a", CLASS_A);
+        ModuleClassLoader classLoader = SharedModuleClassLoader.create(ImmutableList.of(module), getClass().getClassLoader());
+        try {
+            writeClass(module.getClasspaths().get(0), UNINDEXED_CLASS);
+            classLoader.getClassLoader().loadClass(UNINDEXED_CLASS);
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    @Test
+    public void noProvidingModuleForClassesMissingFromIndex() throws Exception {
+        ModuleClassLoader classLoader = SharedModuleClassLoader.create(ImmutableList.of(createModule("a", CLASS_A)), getClass().getClassLoader());
+        try {
+            assertNull(classLoader.getModuleProviding(String.class));
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    @Test
+    public void moduleClassLoaderAboveSharedClassLoaderUsesOwnPermissions() throws Exception {
+        ClassLoader apiClassLoader = getClass().getClassLoader();
+        PermissionSet untrustedPermissions = new PermissionSet();
+        PermissionSet apiPermissions = new PermissionSet();
+        apiPermissions.addAPIClass(APIClass.class);
+
+        try (JavaModuleClassLoader untrusted = new JavaModuleClassLoader(new Name("x"), new URL[0], apiClassLoader, untrustedPermissions)) {
+            ModuleClassLoader shared = SharedModuleClassLoader.create(ImmutableList.of(createModule("y", CLASS_A)), untrusted);
+            try (JavaModuleClassLoader permitted = new JavaModuleClassLoader(new Name("z"), new URL[0], shared.getClassLoader(), apiPermissions)) {
+                assertSame(apiClassLoader, shared.getBaseClassLoader());
+                assertSame(apiClassLoader, permitted.getBaseClassLoader());
+
+                assertNull(untrusted.loadClass(APIClass.class.getName()));
+                assertSame(APIClass.class, permitted.loadClass(APIClass.class.getName()));
+                assertNull(permitted.loadClass(NonAPIClassInheritingAPIClass.class.getName()));
+            } finally {
+                shared.close();
+            }
+        }
+    }
+
+    private Module createModule(String id, String className) throws IOException, CannotCompileException {
+        File classpath = tempFolder.newFolder(id);
+        writeClass(classpath, className);
+        ModuleMetadata metadata = new ModuleMetadata();
+        metadata.setId(new Name(id));
+        metadata.setVersion(new Version(1, 0, 0));
+        return new Module(metadata, new EmptyFileSource(), Collections.singletonList(classpath), new Reflections(new ConfigurationBuilder()), x -> false);
+    }
+
+    private void writeClass(File classpath, String className) throws IOException, CannotCompileException {
+        File classFile = new File(classpath, className.replace('.', '/') + ".class");
+        if (!classFile.getParentFile().isDirectory() && !classFile.getParentFile().mkdirs()) {
+            throw new IOException("Failed to create " + classFile.getParentFile());
+        }
+        Files.write(classFile.toPath(), new ClassPool(true).makeClass(className).toBytecode());
+    }
+}
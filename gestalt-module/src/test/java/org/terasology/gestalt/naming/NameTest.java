@@ -20,6 +20,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author Immortius
@@ -45,4 +46,11 @@ public void maintainOriginalCase() {
     public void differentNamesNotEqual() {
         assertNotEquals(new Name("hello"), new Name("Goodbye"));
     }
+
+    @Test
+    public void ofReturnsCanonicalInstance() {
+        assertSame(Name.of("Hello"), Name.of("Hello"));
+        assertEquals(new Name("hello"), Name.of("Hello"));
+        assertEquals("HeLLO", Name.of("HeLLO").toString());
+    }
 }